@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fetches data of {@link DataSeries} in the background on behalf of {@link PrefetchingDataSeries}, so that UI components reading a series
+ * during an update never wait for a data series that queries a remote datastore.
+ * <p>
+ * Data is fetched in windows wider than the requested range, which are cached and shared by every request for the same data: a request
+ * covered by a cached window is answered from it right away, and a request covered by a window being fetched waits for that fetch instead
+ * of starting another one. Charts usually create their own data series, so the data of a series is identified by a key compared with
+ * {@link Object#equals}, e.g. the session and the kind of data it queries, rather than by the series itself. The windows of a key are
+ * dropped once none of the {@link PrefetchingDataSeries} of that key is in use anymore. Cached windows are refreshed in the background once they are older than the refresh interval, so
+ * that data still streaming in eventually shows up, and the least recently used ones are dropped once there are too many of them.
+ */
+public final class DataSeriesFetcher {
+  public static final int DEFAULT_MAX_WINDOWS = 256;
+  public static final long DEFAULT_REFRESH_INTERVAL_NS = 100_000_000L;
+
+  /**
+   * Fraction of the length of a requested range that is also fetched on each side of it, so that panning does not need a fetch per frame.
+   */
+  private static final double PREFETCH_FRACTION = 0.5;
+
+  @NotNull private final Executor myFetchExecutor;
+  @NotNull private final Executor myDeliveryExecutor;
+  private final int myMaxWindows;
+  private final long myRefreshIntervalNs;
+
+  /**
+   * Cached windows in least recently used order. Guarded by this.
+   */
+  @NotNull private final LinkedHashMap<Window, Boolean> myWindows = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The windows of each data key. Guarded by this.
+   */
+  @NotNull private final Map<Object, List<Window>> myKeyWindows = new HashMap<>();
+
+  /**
+   * Number of {@link PrefetchingDataSeries} in use for each data key. Guarded by this.
+   */
+  @NotNull private final Map<Object, Integer> myKeyUsers = new HashMap<>();
+
+  /**
+   * @param fetchExecutor    runs the queries to the data series.
+   * @param deliveryExecutor runs the callbacks of the requests once their data has been fetched, typically the UI thread.
+   */
+  public DataSeriesFetcher(@NotNull Executor fetchExecutor, @NotNull Executor deliveryExecutor) {
+    this(fetchExecutor, deliveryExecutor, DEFAULT_MAX_WINDOWS, DEFAULT_REFRESH_INTERVAL_NS);
+  }
+
+  public DataSeriesFetcher(@NotNull Executor fetchExecutor, @NotNull Executor deliveryExecutor, int maxWindows, long refreshIntervalNs) {
+    myFetchExecutor = fetchExecutor;
+    myDeliveryExecutor = deliveryExecutor;
+    myMaxWindows = maxWindows;
+    myRefreshIntervalNs = refreshIntervalNs;
+  }
+
+  /**
+   * Marks the data of {@code key} as used, until a matching call to {@link #release(Object)}.
+   */
+  synchronized void acquire(@NotNull Object key) {
+    myKeyUsers.merge(key, 1, Integer::sum);
+  }
+
+  /**
+   * Drops the windows of {@code key} once it is not used anymore.
+   */
+  synchronized void release(@NotNull Object key) {
+    Integer users = myKeyUsers.get(key);
+    if (users == null) {
+      return;
+    }
+    if (users > 1) {
+      myKeyUsers.put(key, users - 1);
+      return;
+    }
+    myKeyUsers.remove(key);
+    List<Window> windows = myKeyWindows.remove(key);
+    if (windows != null) {
+      windows.forEach(myWindows::remove);
+    }
+  }
+
+  /**
+   * Returns the data identified by {@code key} for {@code range} that has been fetched so far, along with the closest data point on each
+   * side of the range, and starts fetching it in the background if needed. This never waits for the data series.
+   *
+   * @param key       identifies the data of {@code series}: requests with equal keys share their windows.
+   * @param series    queried for the data of {@code key} if a window needs to be fetched.
+   *
+   * @param onFetched run on the delivery executor once data fetched for this request is available, at which point calling this method
+   *                  again returns it. Not run if the data was already available and up to date.
+   */
+  @NotNull
+  public <E> List<SeriesData<E>> getData(@NotNull Object key,
+                                         @NotNull DataSeries<E> series,
+                                         @NotNull Range range,
+                                         @NotNull Runnable onFetched) {
+    double min = range.getMin();
+    double max = range.getMax();
+    Window toFetch = null;
+    synchronized (this) {
+      Window latest = null;
+      Window pending = null;
+      for (Window window : getWindows(key)) {
+        if (window.covers(min, max)) {
+          if (window.myData != null && (latest == null || window.myFetchTimeNs > latest.myFetchTimeNs)) {
+            latest = window;
+          }
+          if (window.myFetching) {
+            pending = window;
+          }
+        }
+      }
+
+      if (pending != null) {
+        pending.myCallbacks.add(onFetched);
+      }
+      else if (latest == null || System.nanoTime() - latest.myFetchTimeNs >= myRefreshIntervalNs) {
+        toFetch = latest != null ? latest : createWindow(key, series, min, max);
+        toFetch.myFetching = true;
+        toFetch.myCallbacks.add(onFetched);
+      }
+      if (latest != null) {
+        // Marks the window as recently used.
+        myWindows.get(latest);
+      }
+    }
+
+    if (toFetch != null) {
+      fetch(toFetch);
+    }
+    return getFetchedData(key, min, max);
+  }
+
+  /**
+   * @return the data of the most recently fetched window covering [min, max], or of the one overlapping it the most recently fetched if
+   * none covers it.
+   */
+  @NotNull
+  private synchronized <E> List<SeriesData<E>> getFetchedData(@NotNull Object key, double min, double max) {
+    Window best = null;
+    for (Window window : getWindows(key)) {
+      if (window.myData == null || !window.overlaps(min, max)) {
+        continue;
+      }
+      if (best == null ||
+          (window.covers(min, max) && !best.covers(min, max)) ||
+          (window.covers(min, max) == best.covers(min, max) && window.myFetchTimeNs > best.myFetchTimeNs)) {
+        best = window;
+      }
+    }
+    if (best == null) {
+      return Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    List<SeriesData<E>> data = (List<SeriesData<E>>)best.myData;
+    int from = Math.max(0, countBelow(data, min) - 1);
+    int to = Math.min(data.size(), countAtOrBelow(data, max) + 1);
+    return from < to ? new ArrayList<>(data.subList(from, to)) : Collections.emptyList();
+  }
+
+  @NotNull
+  private List<Window> getWindows(@NotNull Object key) {
+    return myKeyWindows.getOrDefault(key, Collections.emptyList());
+  }
+
+  @NotNull
+  private Window createWindow(@NotNull Object key, @NotNull DataSeries<?> series, double min, double max) {
+    double padding = (max - min) * PREFETCH_FRACTION;
+    if (!Double.isFinite(min - padding) || !Double.isFinite(max + padding)) {
+      padding = 0;
+    }
+    Window window = new Window(key, series, min - padding, max + padding);
+    myWindows.put(window, Boolean.TRUE);
+    myKeyWindows.computeIfAbsent(key, unused -> new ArrayList<>()).add(window);
+    return window;
+  }
+
+  private void fetch(@NotNull Window window) {
+    myFetchExecutor.execute(() -> {
+      List<? extends SeriesData<?>> data;
+      try {
+        data = window.mySeries.getDataForRange(new Range(window.myMin, window.myMax));
+      }
+      catch (RuntimeException e) {
+        // Typically the datastore going away with its session. Requests covered by the window will try again.
+        getLogger().debug("Failed to fetch data series", e);
+        synchronized (this) {
+          window.myFetching = false;
+          window.myCallbacks.clear();
+          if (window.myData == null) {
+            removeWindow(window);
+          }
+        }
+        return;
+      }
+
+      List<Runnable> callbacks;
+      synchronized (this) {
+        window.myData = data;
+        window.myFetchTimeNs = System.nanoTime();
+        window.myFetching = false;
+        callbacks = new ArrayList<>(window.myCallbacks);
+        window.myCallbacks.clear();
+        // Windows covered by a fresher one are of no use anymore.
+        for (Window other : new ArrayList<>(getWindows(window.myKey))) {
+          if (other != window && !other.myFetching && window.covers(other.myMin, other.myMax)) {
+            removeWindow(other);
+          }
+        }
+        evictWindows();
+      }
+      myDeliveryExecutor.execute(() -> callbacks.forEach(Runnable::run));
+    });
+  }
+
+  private void evictWindows() {
+    Iterator<Window> iterator = myWindows.keySet().iterator();
+    while (myWindows.size() > myMaxWindows && iterator.hasNext()) {
+      Window window = iterator.next();
+      if (!window.myFetching) {
+        iterator.remove();
+        removeKeyWindow(window);
+      }
+    }
+  }
+
+  private void removeWindow(@NotNull Window window) {
+    myWindows.remove(window);
+    removeKeyWindow(window);
+  }
+
+  private void removeKeyWindow(@NotNull Window window) {
+    List<Window> windows = myKeyWindows.get(window.myKey);
+    if (windows != null) {
+      windows.remove(window);
+      if (windows.isEmpty()) {
+        myKeyWindows.remove(window.myKey);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the first data point whose x is not lower than t.
+   */
+  private static int countBelow(@NotNull List<? extends SeriesData<?>> data, double t) {
+    int low = 0;
+    int high = data.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (data.get(mid).x < t) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first data point whose x is greater than t.
+   */
+  private static int countAtOrBelow(@NotNull List<? extends SeriesData<?>> data, double t) {
+    int low = 0;
+    int high = data.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (data.get(mid).x <= t) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(DataSeriesFetcher.class);
+  }
+
+  /**
+   * A range of the data of a key, fetched or being fetched.
+   */
+  private static final class Window {
+    @NotNull final Object myKey;
+    @NotNull final DataSeries<?> mySeries;
+    final double myMin;
+    final double myMax;
+    /**
+     * The data of the window, null until it has been fetched once. Kept while the window is being refreshed.
+     */
+    @Nullable List<? extends SeriesData<?>> myData;
+    long myFetchTimeNs;
+    boolean myFetching;
+    /**
+     * Callbacks of the requests waiting for the fetch in progress.
+     */
+    @NotNull final List<Runnable> myCallbacks = new ArrayList<>();
+
+    Window(@NotNull Object key, @NotNull DataSeries<?> series, double min, double max) {
+      myKey = key;
+      mySeries = series;
+      myMin = min;
+      myMax = max;
+    }
+
+    boolean covers(double min, double max) {
+      return myMin <= min && max <= myMax;
+    }
+
+    boolean overlaps(double min, double max) {
+      return myMin <= max && min <= myMax;
+    }
+  }
+}
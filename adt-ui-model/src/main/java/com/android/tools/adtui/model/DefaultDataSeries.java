@@ -15,21 +15,39 @@
  */
 package com.android.tools.adtui.model;
 
-import com.intellij.util.containers.ContainerUtil;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.RandomAccess;
 import org.jetbrains.annotations.NotNull;
 
-
+/**
+ * An append-only {@link DataSeries} kept in insertion order, which is expected to be ascending in x.
+ * <p>
+ * The x values are stored in a growable primitive array so range lookups are a binary search without boxing, and range queries return
+ * read-only views over the stored data instead of copies. Since data is only ever appended, a view returned by a query stays valid (and
+ * unchanged) while more data is added.
+ */
 public class DefaultDataSeries<E> implements DataSeries<E> {
-  @NotNull protected final List<SeriesData<E>> mSeriesList = new ArrayList<>();
+  private static final int INITIAL_CAPACITY = 16;
+
+  @NotNull private long[] myXs = new long[INITIAL_CAPACITY];
+  @NotNull private SeriesData<E>[] myData = newDataArray(INITIAL_CAPACITY);
+  private int mySize;
+
+  @SuppressWarnings("unchecked")
+  @NotNull
+  private static <E> SeriesData<E>[] newDataArray(int capacity) {
+    return (SeriesData<E>[])new SeriesData[capacity];
+  }
 
   @NotNull
   private List<SeriesData<E>> getDataSubList(final int fromIndex, final int toIndex) {
-    return IntStream.range(fromIndex, toIndex).mapToObj(index -> mSeriesList.get(index)).collect(Collectors.toList());
+    if (fromIndex >= toIndex) {
+      return Collections.emptyList();
+    }
+    return new DataView<>(myData, fromIndex, toIndex);
   }
 
   @Override
@@ -52,26 +70,35 @@ public class DefaultDataSeries<E> implements DataSeries<E> {
    * Implementations need to store both the x, and y values. For a given index the X value should correspond to the Y value.
    */
   public void add(long x, E y) {
-    mSeriesList.add(new SeriesData<>(x, y));
+    if (mySize == myXs.length) {
+      int capacity = mySize + (mySize >> 1);
+      myXs = Arrays.copyOf(myXs, capacity);
+      myData = Arrays.copyOf(myData, capacity);
+    }
+    myXs[mySize] = x;
+    myData[mySize] = new SeriesData<>(x, y);
+    mySize++;
   }
 
   public int size() {
-    return mSeriesList.size();
+    return mySize;
   }
 
   public long getX(int index) {
-    return mSeriesList.get(index).x;
+    checkIndex(index);
+    return myXs[index];
   }
 
   /**
    * Returns the value of Y at a given index.
    */
   public E getY(int index) {
-    return mSeriesList.get(index).value;
+    checkIndex(index);
+    return myData[index].value;
   }
 
   public int getNearestXIndex(long x) {
-    int index = Collections.binarySearch(ContainerUtil.map(mSeriesList, data -> data.x), x);
+    int index = Arrays.binarySearch(myXs, 0, mySize, x);
 
     if (index < 0) {
       // No exact match, returns position to the left of the insertion point.
@@ -84,4 +111,48 @@ public class DefaultDataSeries<E> implements DataSeries<E> {
 
     return Math.max(0, Math.min(index, size() - 1));
   }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+
+  /**
+   * Read-only view over a range of the backing array. The array reference is captured so a view is unaffected by the array being grown
+   * by a later {@link #add(long, Object)}.
+   */
+  private static final class DataView<E> extends AbstractList<SeriesData<E>> implements RandomAccess {
+    @NotNull private final SeriesData<E>[] myData;
+    private final int myFromIndex;
+    private final int mySize;
+
+    DataView(@NotNull SeriesData<E>[] data, int fromIndex, int toIndex) {
+      myData = data;
+      myFromIndex = fromIndex;
+      mySize = toIndex - fromIndex;
+    }
+
+    @Override
+    public SeriesData<E> get(int index) {
+      if (index < 0 || index >= mySize) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+      }
+      return myData[myFromIndex + index];
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+
+    @NotNull
+    @Override
+    public List<SeriesData<E>> subList(int fromIndex, int toIndex) {
+      if (fromIndex < 0 || toIndex > mySize || fromIndex > toIndex) {
+        throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + mySize);
+      }
+      return new DataView<>(myData, myFromIndex + fromIndex, myFromIndex + toIndex);
+    }
+  }
 }
@@ -124,10 +124,12 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
   public void add(@NotNull RangedContinuousSeries series) {
     mySeries.add(series);
     series.getXRange().addDependency(this).onChange(Range.Aspect.RANGE, () -> changed(Aspect.LINE_CHART));
+    series.addDataFetchedListener(this, () -> changed(Aspect.LINE_CHART));
   }
 
   public void remove(@NotNull RangedContinuousSeries series) {
     series.getXRange().removeDependencies(this);
+    series.removeDataFetchedListeners(this);
     mySeries.remove(series);
   }
 
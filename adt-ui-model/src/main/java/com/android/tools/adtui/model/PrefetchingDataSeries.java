@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} that never blocks: it returns the data of another data series that has been fetched so far by a
+ * {@link DataSeriesFetcher}, and fires {@link Aspect#DATA_FETCHED} once more of it is available. {@link RangedSeries} listens to it to
+ * query the series again.
+ * <p>
+ * Prefetching series created with equal keys share the data fetched for any of them. Call {@link #dispose()} once the series is not
+ * shown anymore, so the fetched data is dropped once no series of its key is shown.
+ */
+public final class PrefetchingDataSeries<E> extends AspectModel<PrefetchingDataSeries.Aspect> implements DataSeries<E> {
+
+  public enum Aspect {
+    DATA_FETCHED
+  }
+
+  @NotNull private final Object myKey;
+  @NotNull private final DataSeries<E> mySeries;
+  @NotNull private final DataSeriesFetcher myFetcher;
+  private boolean myDisposed;
+
+  /**
+   * @param key identifies the data of {@code series}, see {@link DataSeriesFetcher#getData(Object, DataSeries, Range, Runnable)}.
+   */
+  public PrefetchingDataSeries(@NotNull Object key, @NotNull DataSeries<E> series, @NotNull DataSeriesFetcher fetcher) {
+    myKey = key;
+    mySeries = series;
+    myFetcher = fetcher;
+    myFetcher.acquire(myKey);
+  }
+
+  @Override
+  public List<SeriesData<E>> getDataForRange(Range range) {
+    return myFetcher.getData(myKey, mySeries, range, () -> changed(Aspect.DATA_FETCHED));
+  }
+
+  /**
+   * Releases the data fetched for the key of this series. The series can still be queried, but its data is no longer kept from being
+   * dropped.
+   */
+  public void dispose() {
+    if (!myDisposed) {
+      myDisposed = true;
+      myFetcher.release(myKey);
+    }
+  }
+}
@@ -50,10 +50,12 @@ open class RangedSeries<E>
    * Note - this call is frequently made by UI components on the main thread, so the last queried results are cached and returned if the
    * query range is determined to not have changed to avoid hitting the Datastore redundantly. If the query range's max value is
    * Long.MAX_VALUE or Double.MAX_VALUE, however, then the cache is bypassed since there might be new data that are still streaming in.
+   * The cache is bypassed for a [PrefetchingDataSeries] too, which keeps its own cache and whose data changes once it is fetched.
    */
   val series: List<SeriesData<E>>
     get() = xRange.getIntersection(intersectRange).let { queryRange ->
       when {
+        _series is PrefetchingDataSeries<*> -> getSeriesForRange(queryRange)
         queryRange.max == Long.MAX_VALUE.toDouble() || queryRange.max == Double.MAX_VALUE -> getSeriesForRange(queryRange)
         lastQueriedRange.isSameAs(queryRange) -> lastQueriedSeries
         else -> getSeriesForRange(queryRange).also {
@@ -68,4 +70,23 @@ open class RangedSeries<E>
    * @return A new, immutable [SeriesDataList] that allows the caller to get items in the DataStore scoped to the given range.
    */
   fun getSeriesForRange(range: Range): List<SeriesData<E>> = _series.getDataForRange(range)
+
+  /**
+   * Runs [listener] whenever the data series fetched data in the background, after which [series] may return more data for the same
+   * range. Only [PrefetchingDataSeries] fetch in the background, this does nothing for other data series.
+   */
+  fun addDataFetchedListener(observer: AspectObserver, listener: Runnable) {
+    (_series as? PrefetchingDataSeries<*>)?.addDependency(observer)?.onChange(PrefetchingDataSeries.Aspect.DATA_FETCHED, listener)
+  }
+
+  fun removeDataFetchedListeners(observer: AspectObserver) {
+    (_series as? PrefetchingDataSeries<*>)?.removeDependencies(observer)
+  }
+
+  /**
+   * Releases the data fetched in the background for this series, once it is not shown anymore. See [PrefetchingDataSeries.dispose].
+   */
+  fun dispose() {
+    (_series as? PrefetchingDataSeries<*>)?.dispose()
+  }
 }
\ No newline at end of file
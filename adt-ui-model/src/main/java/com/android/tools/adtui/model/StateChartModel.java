@@ -39,6 +39,7 @@ public class StateChartModel<E> extends AspectModel<StateChartModel.Aspect> {
   public void addSeries(@NotNull RangedSeries<E> series) {
     mSeriesList.add(series);
     series.getXRange().addDependency(this).onChange(Range.Aspect.RANGE, () -> changed(Aspect.MODEL_CHANGED));
+    series.addDataFetchedListener(this, () -> changed(Aspect.MODEL_CHANGED));
     changed(Aspect.MODEL_CHANGED);
   }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataSeriesFetcherTest {
+  private static final Object KEY = Arrays.asList("session", "memory");
+
+  private final Queue<Runnable> myFetchQueue = new ArrayDeque<>();
+  private final Executor myFetchExecutor = myFetchQueue::add;
+  private final Executor myDeliveryExecutor = Runnable::run;
+  private CountingDataSeries mySeries;
+  private int myCallbackCount;
+
+  @Before
+  public void setUp() {
+    mySeries = new CountingDataSeries();
+    myCallbackCount = 0;
+  }
+
+  @Test
+  public void dataIsAvailableOnceFetched() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    assertThat(fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched)).isEmpty();
+    assertThat(myCallbackCount).isEqualTo(0);
+
+    runFetches();
+    assertThat(myCallbackCount).isEqualTo(1);
+    // The window fetched is padded on each side of the requested range.
+    assertThat(mySeries.myRequests).containsExactly("[5.0, 25.0]");
+    // The closest data point on each side of the range is kept.
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(10.5, 20), this::onFetched)))
+      .containsExactly(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L, 20L, 21L).inOrder();
+    assertThat(myFetchQueue).isEmpty();
+  }
+
+  @Test
+  public void overlappingRequestsShareTheFetch() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched);
+    fetcher.getData(KEY, mySeries, new Range(12, 18), this::onFetched);
+    fetcher.getData(KEY, mySeries, new Range(6, 24), this::onFetched);
+    assertThat(myFetchQueue).hasSize(1);
+
+    runFetches();
+    assertThat(mySeries.myRequests).hasSize(1);
+    assertThat(myCallbackCount).isEqualTo(3);
+  }
+
+  @Test
+  public void rangesCoveredByAFetchedWindowAreNotFetchedAgain() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched);
+    runFetches();
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(14, 24), this::onFetched))).hasSize(13);
+    assertThat(myFetchQueue).isEmpty();
+
+    // Panning past the window fetches a new one, and serves what overlaps it in the meantime.
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(20, 30), this::onFetched))).containsExactly(19L, 20L, 21L, 22L, 23L, 24L, 25L)
+      .inOrder();
+    runFetches();
+    assertThat(mySeries.myRequests).containsExactly("[5.0, 25.0]", "[15.0, 35.0]").inOrder();
+  }
+
+  @Test
+  public void staleWindowsAreRefreshed() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, 0);
+    fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched);
+    runFetches();
+    mySeries.myMax = 15;
+    // The data fetched before is served while it is refreshed.
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched))).hasSize(13);
+    runFetches();
+    assertThat(mySeries.myRequests).containsExactly("[5.0, 25.0]", "[5.0, 25.0]");
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched))).containsExactly(9L, 10L, 11L, 12L, 13L, 14L, 15L)
+      .inOrder();
+  }
+
+  @Test
+  public void leastRecentlyUsedWindowsAreEvicted() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 2, Long.MAX_VALUE);
+    fetcher.getData(KEY, mySeries, new Range(0, 10), this::onFetched);
+    runFetches();
+    fetcher.getData(KEY, mySeries, new Range(100, 110), this::onFetched);
+    runFetches();
+    // Uses the first window again so that the second one is evicted by the third one.
+    fetcher.getData(KEY, mySeries, new Range(0, 10), this::onFetched);
+    fetcher.getData(KEY, mySeries, new Range(200, 210), this::onFetched);
+    runFetches();
+    assertThat(mySeries.myRequests).hasSize(3);
+
+    fetcher.getData(KEY, mySeries, new Range(0, 10), this::onFetched);
+    assertThat(myFetchQueue).isEmpty();
+    fetcher.getData(KEY, mySeries, new Range(100, 110), this::onFetched);
+    assertThat(myFetchQueue).hasSize(1);
+  }
+
+  @Test
+  public void failedFetchesAreRetried() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    mySeries.myFailing = true;
+    fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched);
+    runFetches();
+    assertThat(myCallbackCount).isEqualTo(0);
+
+    mySeries.myFailing = false;
+    assertThat(fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched)).isEmpty();
+    runFetches();
+    assertThat(myCallbackCount).isEqualTo(1);
+    assertThat(xs(fetcher.getData(KEY, mySeries, new Range(10, 20), this::onFetched))).hasSize(13);
+  }
+
+  @Test
+  public void chartsOverTheSameDataShareTheirFetches() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    // Each chart creates its own data series, for the same data.
+    CountingDataSeries otherSeries = new CountingDataSeries();
+    Range viewRange = new Range(10, 20);
+    LineChartModel chart = new LineChartModel();
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("Total", viewRange, new Range(0, 100),
+                                                                     new PrefetchingDataSeries<>(Arrays.asList("session", "memory"),
+                                                                                                 mySeries, fetcher));
+    chart.add(rangedSeries);
+    LineChartModel otherChart = new LineChartModel();
+    RangedContinuousSeries otherRangedSeries = new RangedContinuousSeries("Total", viewRange, new Range(0, 100),
+                                                                          new PrefetchingDataSeries<>(Arrays.asList("session", "memory"),
+                                                                                                      otherSeries, fetcher));
+    otherChart.add(otherRangedSeries);
+
+    assertThat(rangedSeries.getSeries()).isEmpty();
+    assertThat(otherRangedSeries.getSeries()).isEmpty();
+    runFetches();
+    assertThat(xs(rangedSeries.getSeries())).hasSize(13);
+    assertThat(xs(otherRangedSeries.getSeries())).hasSize(13);
+    assertThat(mySeries.myRequests).hasSize(1);
+    assertThat(otherSeries.myRequests).isEmpty();
+    assertThat(myFetchQueue).isEmpty();
+  }
+
+  @Test
+  public void dataIsDroppedOnceNoSeriesOfItsKeyIsUsed() {
+    DataSeriesFetcher fetcher = new DataSeriesFetcher(myFetchExecutor, myDeliveryExecutor, 16, Long.MAX_VALUE);
+    PrefetchingDataSeries<Long> series = new PrefetchingDataSeries<>(KEY, mySeries, fetcher);
+    PrefetchingDataSeries<Long> otherSeries = new PrefetchingDataSeries<>(KEY, mySeries, fetcher);
+    series.getDataForRange(new Range(10, 20));
+    runFetches();
+
+    series.dispose();
+    assertThat(otherSeries.getDataForRange(new Range(10, 20))).hasSize(13);
+    assertThat(myFetchQueue).isEmpty();
+
+    otherSeries.dispose();
+    assertThat(new PrefetchingDataSeries<>(KEY, mySeries, fetcher).getDataForRange(new Range(10, 20))).isEmpty();
+    runFetches();
+    assertThat(mySeries.myRequests).hasSize(2);
+  }
+
+  private void onFetched() {
+    myCallbackCount++;
+  }
+
+  private void runFetches() {
+    while (!myFetchQueue.isEmpty()) {
+      myFetchQueue.remove().run();
+    }
+  }
+
+  private static List<Long> xs(List<SeriesData<Long>> data) {
+    return data.stream().map(point -> point.x).collect(Collectors.toList());
+  }
+
+  /**
+   * A data series with a data point at each integer up to {@link #myMax}, which records the ranges it is queried for.
+   */
+  private static final class CountingDataSeries implements DataSeries<Long> {
+    private final List<String> myRequests = new ArrayList<>();
+    private long myMax = Long.MAX_VALUE;
+    private boolean myFailing;
+
+    @Override
+    public List<SeriesData<Long>> getDataForRange(Range range) {
+      if (myFailing) {
+        throw new IllegalStateException("Datastore is gone");
+      }
+      myRequests.add(String.format("[%s, %s]", range.getMin(), range.getMax()));
+      List<SeriesData<Long>> data = new ArrayList<>();
+      for (long x = (long)Math.ceil(range.getMin()); x <= Math.min(range.getMax(), myMax); x++) {
+        data.add(new SeriesData<>(x, x));
+      }
+      return data;
+    }
+  }
+}
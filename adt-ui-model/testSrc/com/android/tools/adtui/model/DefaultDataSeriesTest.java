@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class DefaultDataSeriesTest {
+
+  @Test
+  public void testGetNearestXIndex() {
+    DefaultDataSeries<Long> series = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      series.add(i * 10, (long)i);
+    }
+
+    assertThat(series.getNearestXIndex(-5)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(0)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(25)).isEqualTo(2);
+    assertThat(series.getNearestXIndex(30)).isEqualTo(3);
+    assertThat(series.getNearestXIndex(5000)).isEqualTo(99);
+  }
+
+  @Test
+  public void testGetDataForRange() {
+    DefaultDataSeries<Long> series = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      series.add(i * 10, (long)i);
+    }
+
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(15, 45));
+    assertThat(data).hasSize(4);
+    assertThat(data.get(0).x).isEqualTo(10);
+    assertThat(data.get(3).x).isEqualTo(40);
+    assertThat(data.subList(1, 3)).containsExactly(new SeriesData<>(20, 2L), new SeriesData<>(30, 3L)).inOrder();
+
+    assertThat(series.getDataForRange(new Range())).isEmpty();
+    assertThat(new DefaultDataSeries<Long>().getDataForRange(new Range(0, 10))).isEmpty();
+  }
+
+  @Test
+  public void testQueriedDataIsUnaffectedByLaterAdds() {
+    DefaultDataSeries<Long> series = new DefaultDataSeries<>();
+    series.add(0, 0L);
+    series.add(1, 1L);
+    List<SeriesData<Long>> data = series.getAllData();
+
+    // Adding enough data to grow the backing storage should not change what was already returned.
+    for (int i = 2; i < 1000; i++) {
+      series.add(i, (long)i);
+    }
+    assertThat(data).containsExactly(new SeriesData<>(0, 0L), new SeriesData<>(1, 1L)).inOrder();
+    assertThat(series.size()).isEqualTo(1000);
+    assertThat(series.getX(999)).isEqualTo(999);
+    assertThat(series.getY(500)).isEqualTo(500L);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The nodes of a {@link HNode} tree grouped by depth, each depth sorted by start. Finding the nodes of a depth that intersect a range
+ * is then a binary search followed by a walk over the nodes found, instead of a walk of the whole tree.
+ * <p>
+ * Nodes are assumed to lie within their parent, as they do in call charts. A node intersecting a range then has all of its ancestors
+ * intersecting it too, so looking at each depth on its own finds the same nodes as walking down from the root.
+ */
+final class HNodeIntervalIndex<N extends HNode<N>> {
+  /**
+   * Rows of the index, from the smallest depth to the largest one.
+   */
+  @NotNull private final List<Row<N>> myRows;
+
+  private final int myMaxDepth;
+
+  HNodeIntervalIndex(@Nullable N root) {
+    List<N> nodes = new ArrayList<>();
+    int minDepth = Integer.MAX_VALUE;
+    int maxDepth = -1;
+    if (root != null) {
+      nodes.add(root);
+    }
+    for (int head = 0; head < nodes.size(); ++head) {
+      N node = nodes.get(head);
+      minDepth = Math.min(minDepth, node.getDepth());
+      maxDepth = Math.max(maxDepth, node.getDepth());
+      for (int i = 0; i < node.getChildCount(); ++i) {
+        nodes.add(node.getChildAt(i));
+      }
+    }
+    myMaxDepth = maxDepth;
+    myRows = new ArrayList<>();
+    if (nodes.isEmpty()) {
+      return;
+    }
+
+    int[] rowSizes = new int[maxDepth - minDepth + 1];
+    for (N node : nodes) {
+      rowSizes[node.getDepth() - minDepth]++;
+    }
+    List<List<N>> rowNodes = new ArrayList<>(rowSizes.length);
+    for (int rowSize : rowSizes) {
+      rowNodes.add(new ArrayList<>(rowSize));
+    }
+    for (N node : nodes) {
+      rowNodes.get(node.getDepth() - minDepth).add(node);
+    }
+    for (List<N> row : rowNodes) {
+      if (!row.isEmpty()) {
+        myRows.add(new Row<>(row));
+      }
+    }
+  }
+
+  /**
+   * @return the largest depth of the indexed nodes, or -1 if there are none.
+   */
+  int getMaxDepth() {
+    return myMaxDepth;
+  }
+
+  /**
+   * Visits the nodes intersecting [min, max], depth by depth and in order of start within a depth.
+   * <p>
+   * If {@code resolution} is positive, the range is split into consecutive cells of that length starting at {@code min}, typically one
+   * per pixel. A node that starts and ends in the same cell is visited along with the end of the run of nodes of its depth ending in that
+   * cell, and the other nodes of the run are skipped. This merges what {@link DefaultHTreeChartReducer} would merge, without visiting every
+   * node of a run.
+   */
+  void visit(double min, double max, double resolution, @NotNull Visitor<N> visitor) {
+    for (Row<N> row : myRows) {
+      row.visit(min, max, resolution, visitor);
+    }
+  }
+
+  interface Visitor<N> {
+    /**
+     * @param end the end of the node, or of the last node of the run the node was merged with.
+     */
+    void visit(@NotNull N node, long start, long end);
+  }
+
+  private static final class Row<N extends HNode<N>> {
+    @NotNull private final N[] myNodes;
+    @NotNull private final long[] myStarts;
+    @NotNull private final long[] myEnds;
+    /**
+     * myMaxEnds[i] is the largest end among the first i + 1 nodes. It is the same as myEnds when the nodes of a depth do not overlap.
+     */
+    @NotNull private final long[] myMaxEnds;
+
+    @SuppressWarnings("unchecked")
+    Row(@NotNull List<N> nodes) {
+      myNodes = (N[])nodes.toArray(new HNode[0]);
+      // Children are usually already in order, which the stable sort handles in linear time.
+      Arrays.sort(myNodes, Comparator.comparingLong(HNode::getStart));
+      myStarts = new long[myNodes.length];
+      myEnds = new long[myNodes.length];
+      myMaxEnds = new long[myNodes.length];
+      for (int i = 0; i < myNodes.length; ++i) {
+        myStarts[i] = myNodes[i].getStart();
+        myEnds[i] = myNodes[i].getEnd();
+        myMaxEnds[i] = i == 0 ? myEnds[i] : Math.max(myMaxEnds[i - 1], myEnds[i]);
+      }
+    }
+
+    void visit(double min, double max, double resolution, @NotNull Visitor<N> visitor) {
+      // Nodes before the first one whose max end reaches min all end before the range, nodes from the first start after max on all start
+      // after it.
+      int last = countAtOrBelow(myStarts, 0, myStarts.length, max);
+      int i = countBelow(myMaxEnds, 0, last, min);
+      while (i < last) {
+        if (myEnds[i] < min) {
+          ++i;
+          continue;
+        }
+        if (resolution > 0) {
+          double cell = Math.floor((myEnds[i] - min) / resolution);
+          if (Math.floor((myStarts[i] - min) / resolution) == cell) {
+            int next = Math.max(i + 1, countBelow(myMaxEnds, i + 1, last, min + (cell + 1) * resolution));
+            visitor.visit(myNodes[i], myStarts[i], myMaxEnds[next - 1]);
+            i = next;
+            continue;
+          }
+        }
+        visitor.visit(myNodes[i], myStarts[i], myEnds[i]);
+        ++i;
+      }
+    }
+
+    /**
+     * @return the index of the first value of sorted[from, to) that is not lower than t, or {@code to} if there is none.
+     */
+    private static int countBelow(@NotNull long[] sorted, int from, int to, double t) {
+      int low = from;
+      int high = to;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (sorted[mid] < t) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first value of sorted[from, to) that is greater than t, or {@code to} if there is none.
+     */
+    private static int countAtOrBelow(@NotNull long[] sorted, int from, int to, double t) {
+      int low = from;
+      int high = to;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (sorted[mid] <= t) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -37,9 +37,7 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
 import org.jetbrains.annotations.NotNull;
@@ -113,6 +111,22 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final HTreeChartReducer<N> myReducer;
 
+  /**
+   * Whether runs of nodes narrower than a pixel are merged while looking the nodes up in {@link #myIndex}, so that panning and zooming a
+   * chart with millions of nodes only visits a few nodes per pixel. Only done for the default reducer, which merges the same runs anyway.
+   */
+  private final boolean myMergeSubPixelNodes;
+
+  /**
+   * The nodes of {@link #myRoot} indexed by depth and start, rebuilt whenever the root changes.
+   */
+  private HNodeIntervalIndex<N> myIndex;
+
+  /**
+   * The width in pixels {@link #myNodes} were last computed for.
+   */
+  private int myNodesWidth;
+
   @Nullable
   private Image myCanvas;
 
@@ -143,6 +157,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     myXRange = builder.myXRange;
     myRoot = builder.myRoot;
     myReducer = builder.myReducer;
+    myMergeSubPixelNodes = myReducer instanceof DefaultHTreeChartReducer;
     myRenderer = builder.myRenderer;
     myOrientation = builder.myOrientation;
     myRootVisible = builder.myRootVisible;
@@ -209,6 +224,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   }
 
   private void rootChanged() {
+    myIndex = new HNodeIntervalIndex<>(myRoot);
     myCachedMaxHeight = calculateMaximumHeight();
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     setPreferredSize(new Dimension(getPreferredSize().width, myCachedMaxHeight));
@@ -218,9 +234,9 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @Override
   protected void draw(Graphics2D g, Dimension dim) {
     long startTime = System.nanoTime();
-    if (myDataUpdated) {
+    if (myDataUpdated || (myMergeSubPixelNodes && myNodesWidth != dim.width)) {
       // Nulling out the canvas will trigger a render pass, below
-      updateNodesAndClearCanvas();
+      updateNodesAndClearCanvas(dim.width);
       myDataUpdated = false;
     }
     g.setFont(getFont());
@@ -298,48 +314,31 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     g.dispose();
   }
 
-  private void updateNodesAndClearCanvas() {
+  private void updateNodesAndClearCanvas(int width) {
     myNodes.clear();
     myRectangles.clear();
     myCanvas = null;
+    myNodesWidth = width;
     if (myRoot == null) {
       return;
     }
 
-    if (inRange(myRoot)) {
-      myNodes.add(myRoot);
-      myRectangles.add(createRectangle(myRoot));
-    }
-
-    int head = 0;
-    while (head < myNodes.size()) {
-      N curNode = myNodes.get(head++);
-
-      for (int i = 0; i < curNode.getChildCount(); ++i) {
-        N child = curNode.getChildAt(i);
-        if (inRange(child)) {
-          myNodes.add(child);
-          myRectangles.add(createRectangle(child));
-        }
+    double resolution = myMergeSubPixelNodes && width > 0 ? myXRange.getLength() / width : 0;
+    myIndex.visit(myXRange.getMin(), myXRange.getMax(), resolution, (node, start, end) -> {
+      if (node != myRoot || myRootVisible) {
+        myNodes.add(node);
+        myRectangles.add(createRectangle(start, end, node.getDepth()));
       }
-    }
-    if (!myRootVisible && !myNodes.isEmpty()) {
-      myNodes.remove(0);
-      myRectangles.remove(0);
-    }
-  }
-
-  private boolean inRange(@NotNull N node) {
-    return node.getStart() <= myXRange.getMax() && node.getEnd() >= myXRange.getMin();
+    });
   }
 
   @NotNull
-  private Rectangle2D.Float createRectangle(@NotNull N node) {
-    float left = (float)((node.getStart() - myXRange.getMin()) / myXRange.getLength());
-    float right = (float)((node.getEnd() - myXRange.getMin()) / myXRange.getLength());
+  private Rectangle2D.Float createRectangle(long start, long end, int depth) {
+    float left = (float)((start - myXRange.getMin()) / myXRange.getLength());
+    float right = (float)((end - myXRange.getMin()) / myXRange.getLength());
     Rectangle2D.Float rect = new Rectangle2D.Float();
     rect.x = left;
-    rect.y = (float)((getNodeHeight() + myNodeYPaddingPx) * node.getDepth() - getYRange().getMin());
+    rect.y = (float)((getNodeHeight() + myNodeYPaddingPx) * depth - getYRange().getMin());
     rect.width = right - left;
     rect.height = getNodeHeight();
     return rect;
@@ -349,6 +348,10 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     return x / getWidth() * myXRange.getLength() + myXRange.getMin();
   }
 
+  /**
+   * Sets the root of the chart. The nodes of the tree are indexed when they are set, so this needs to be called again if their ranges
+   * change.
+   */
   public void setHTree(@Nullable N root) {
     this.myRoot = root;
     rootChanged();
@@ -522,22 +525,7 @@ public class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       return 0;
     }
 
-    int maxDepth = -1;
-    Queue<N> queue = new LinkedList<>();
-    queue.add(myRoot);
-
-    while (!queue.isEmpty()) {
-      N n = queue.poll();
-      assert n != null;
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
+    int maxDepth = myIndex.getMaxDepth() + 1;
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
@@ -65,6 +65,78 @@ class DefaultLineChartReducer implements LineChartReducer {
     return reduced;
   }
 
+  /**
+   * Keeps at most four points of every pixel column before reducing the data as above: the first and the last points of the column, and
+   * the points with the minimum and maximum values, in their original order. This is the same idea as {@link #reducePath}, but applied
+   * before the path is built, so that a path is never created for more points than the chart has pixels.
+   * <p>
+   * The points left and right of the visible range are grouped into one column on each side, which keeps the points {@link LineChart}
+   * interpolates the edges of the line from.
+   */
+  @Override
+  public List<SeriesData<Long>> reduceData(@NotNull List<SeriesData<Long>> dataList,
+                                           @NotNull LineConfig config,
+                                           double xMin,
+                                           double xLength,
+                                           int width) {
+    if (config.getDataBucketInterval() > 0 || width <= 0 || xLength <= 0) {
+      return reduceData(dataList, config);
+    }
+
+    List<SeriesData<Long>> aggregated = new ArrayList<>();
+    int size = dataList.size();
+    int first = 0;
+    while (first < size) {
+      int column = getColumn(dataList.get(first).x, xMin, xLength, width);
+      int last = first;
+      int minIndex = first;
+      int maxIndex = first;
+      long min = dataList.get(first).value;
+      long max = min;
+      while (last + 1 < size && getColumn(dataList.get(last + 1).x, xMin, xLength, width) == column) {
+        ++last;
+        long value = dataList.get(last).value;
+        if (value < min) {
+          min = value;
+          minIndex = last;
+        }
+        if (value > max) {
+          max = value;
+          maxIndex = last;
+        }
+      }
+
+      aggregated.add(dataList.get(first));
+      int lowIndex = Math.min(minIndex, maxIndex);
+      int highIndex = Math.max(minIndex, maxIndex);
+      if (lowIndex != first && lowIndex != last) {
+        aggregated.add(dataList.get(lowIndex));
+      }
+      if (highIndex != first && highIndex != last && highIndex != lowIndex) {
+        aggregated.add(dataList.get(highIndex));
+      }
+      if (last != first) {
+        aggregated.add(dataList.get(last));
+      }
+      first = last + 1;
+    }
+    return reduceData(aggregated, config);
+  }
+
+  /**
+   * @return the pixel column of x, -1 for any x left of the visible range and width + 1 for any x right of it.
+   */
+  private static int getColumn(long x, double xMin, double xLength, int width) {
+    double xd = (x - xMin) / xLength;
+    if (xd < 0) {
+      return -1;
+    }
+    if (xd > 1) {
+      return width + 1;
+    }
+    return (int)Math.floor(xd * width);
+  }
+
   /**
   * The basic idea behind this algorithm is to reduce number of points to available pixels.
   * For every pixel it draws 4 points: the first point, the last point,
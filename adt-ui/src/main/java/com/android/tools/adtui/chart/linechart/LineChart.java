@@ -111,6 +111,11 @@ public class LineChart extends AnimatedComponent {
 
   private boolean myRedraw;
 
+  /**
+   * The width in pixels the line paths were last built for, as the data is reduced to what that width can show.
+   */
+  private int myRedrawWidth;
+
   @NotNull private DoubleSupplier myFillEndSupplier = ALWAYS_0;
 
   @NotNull
@@ -224,7 +229,7 @@ public class LineChart extends AnimatedComponent {
       double firstXd = 0f;
       // Actual value of first point
       double firstX = 0;
-      seriesList = myReducer.reduceData(seriesList, config);
+      seriesList = myReducer.reduceData(seriesList, config, xMin, xLength, dim.width);
       double xBucketInterval = config.getDataBucketInterval() / xLength;
       double xBucketBarWidth = xBucketInterval * BUCKET_BAR_PERCENTAGE;
       // If we are a stepped chart or bar chart, we don't need to worry about start and end points' Y value.
@@ -395,8 +400,9 @@ public class LineChart extends AnimatedComponent {
       myLastCount = now;
     }
     myDraws++;
-    if (myRedraw) {
+    if (myRedraw || myRedrawWidth != dim.width) {
       myRedraw = false;
+      myRedrawWidth = dim.width;
       redraw(dim);
       myRedraws++;
     }
@@ -30,6 +30,15 @@ public interface LineChartReducer {
    */
   List<SeriesData<Long>> reduceData(List<SeriesData<Long>> data, LineConfig config);
 
+  /**
+   * Reduces data used to represent a line that is {@code width} pixels wide, where {@code xMin} and {@code xLength} map the X values of
+   * the data onto the width. {@link LineChart} calls this before building the path of the line.
+   * The result shouldn't affect the looking of the line when it's drawn.
+   */
+  default List<SeriesData<Long>> reduceData(List<SeriesData<Long>> data, LineConfig config, double xMin, double xLength, int width) {
+    return reduceData(data, config);
+  }
+
   /**
    * Reduces the given path in a pixel level, i.e when dimensions are available.
    * The result shouldn't affect the looking of the line when it's drawn.
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.adtui.model.DefaultHNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class HNodeIntervalIndexTest {
+  /**
+   * The structure of the tree:
+   *   0 1 2 3 4 5 6 7 8 9 10
+   *   A++++++++++++++++++++
+   *   B++++++++++ C++++++++
+   *   D+ E+ F+G+    H++
+   */
+  private static DefaultHNode<String> createTree() {
+    DefaultHNode<String> a = createNode("A", 0, 100, 0);
+    DefaultHNode<String> b = createNode("B", 0, 50, 1);
+    DefaultHNode<String> c = createNode("C", 60, 100, 1);
+    a.addChild(b);
+    a.addChild(c);
+    b.addChild(createNode("D", 0, 5, 2));
+    b.addChild(createNode("E", 7, 9, 2));
+    b.addChild(createNode("F", 21, 22, 2));
+    b.addChild(createNode("G", 22, 24, 2));
+    c.addChild(createNode("H", 79, 80, 2));
+    return a;
+  }
+
+  @Test
+  public void nodesIntersectingTheRangeAreVisitedDepthByDepth() {
+    HNodeIntervalIndex<DefaultHNode<String>> index = new HNodeIntervalIndex<>(createTree());
+    assertThat(index.getMaxDepth()).isEqualTo(2);
+    assertThat(visit(index, 0, 100, 0)).containsExactly("A", "B", "C", "D", "E", "F", "G", "H").inOrder();
+    assertThat(visit(index, 8, 21, 0)).containsExactly("A", "B", "E", "F").inOrder();
+    assertThat(visit(index, 51, 59, 0)).containsExactly("A");
+    assertThat(visit(index, 101, 200, 0)).isEmpty();
+  }
+
+  @Test
+  public void subPixelRunsAreMerged() {
+    HNodeIntervalIndex<DefaultHNode<String>> index = new HNodeIntervalIndex<>(createTree());
+    // Cells of 10: D and E are merged into [0, 9], F and G into [21, 24], H ends on the boundary of its cell and is left alone.
+    assertThat(visit(index, 0, 100, 10)).containsExactly("A[0, 100]", "B[0, 50]", "C[60, 100]", "D[0, 9]", "F[21, 24]", "H[79, 80]")
+      .inOrder();
+  }
+
+  @Test
+  public void nodesOutOfOrderAreSorted() {
+    DefaultHNode<String> root = createNode("A", 0, 100, 0);
+    root.addChild(createNode("C", 60, 100, 1));
+    root.addChild(createNode("B", 0, 50, 1));
+    HNodeIntervalIndex<DefaultHNode<String>> index = new HNodeIntervalIndex<>(root);
+    assertThat(visit(index, 0, 100, 0)).containsExactly("A", "B", "C").inOrder();
+    assertThat(visit(index, 55, 100, 0)).containsExactly("A", "C").inOrder();
+  }
+
+  @Test
+  public void emptyTreeHasNoDepth() {
+    HNodeIntervalIndex<DefaultHNode<String>> index = new HNodeIntervalIndex<>(null);
+    assertThat(index.getMaxDepth()).isEqualTo(-1);
+    assertThat(visit(index, 0, 100, 0)).isEmpty();
+  }
+
+  private static List<String> visit(HNodeIntervalIndex<DefaultHNode<String>> index, double min, double max, double resolution) {
+    List<String> visited = new ArrayList<>();
+    index.visit(min, max, resolution,
+                (node, start, end) -> visited.add(resolution > 0 ? String.format("%s[%d, %d]", node.getData(), start, end) : node.getData()));
+    return visited;
+  }
+
+  private static DefaultHNode<String> createNode(String id, long start, long end, int depth) {
+    DefaultHNode<String> node = new DefaultHNode<>(id, start, end);
+    node.setDepth(depth);
+    return node;
+  }
+}
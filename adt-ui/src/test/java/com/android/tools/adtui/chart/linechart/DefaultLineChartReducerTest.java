@@ -88,6 +88,48 @@ public class DefaultLineChartReducerTest {
     assertSeriesEquals(expected, result);
   }
 
+  @Test
+  public void reduceDataKeepsFourPointsPerPixel() {
+    List<SeriesData<Long>> data = new ImmutableList.Builder<SeriesData<Long>>()
+      .add(new SeriesData<>(-20, 1L))
+      .add(new SeriesData<>(-10, 2L))
+      .add(new SeriesData<>(0, 7L))
+      .add(new SeriesData<>(2, 9L))
+      .add(new SeriesData<>(4, 1L))
+      .add(new SeriesData<>(6, 3L))
+      .add(new SeriesData<>(8, 5L))
+      .add(new SeriesData<>(10, 4L))
+      .add(new SeriesData<>(15, 6L))
+      .add(new SeriesData<>(110, 8L))
+      .add(new SeriesData<>(120, 9L)).build();
+    // Pixels are 10 wide. The points left and right of the range share a column on each side.
+    List<SeriesData<Long>> expected = new ImmutableList.Builder<SeriesData<Long>>()
+      .add(new SeriesData<>(-20, 1L))
+      .add(new SeriesData<>(-10, 2L))
+      .add(new SeriesData<>(0, 7L))
+      .add(new SeriesData<>(2, 9L))
+      .add(new SeriesData<>(4, 1L))
+      .add(new SeriesData<>(8, 5L))
+      .add(new SeriesData<>(10, 4L))
+      .add(new SeriesData<>(15, 6L))
+      .add(new SeriesData<>(110, 8L))
+      .add(new SeriesData<>(120, 9L)).build();
+    List<SeriesData<Long>> result = myReducer.reduceData(data, myConfig, 0, 100, 10);
+    assertSeriesEquals(expected, result);
+  }
+
+  @Test
+  public void reduceDataDoesNotAggregateBars() {
+    List<SeriesData<Long>> data = new ImmutableList.Builder<SeriesData<Long>>()
+      .add(new SeriesData<>(0, 7L))
+      .add(new SeriesData<>(2, 9L))
+      .add(new SeriesData<>(4, 1L))
+      .add(new SeriesData<>(6, 3L)).build();
+    myConfig.setDataBucketInterval(2);
+    List<SeriesData<Long>> result = myReducer.reduceData(data, myConfig, 0, 100, 10);
+    assertSeriesEquals(data, result);
+  }
+
   @Test
   public void simpleReducePath() {
     float[][] given = {{0, 0}, {0.1f, 1}, {0.2f, 6}, {0.3f, 4}, {1, 2}, {1.1f, 5}};
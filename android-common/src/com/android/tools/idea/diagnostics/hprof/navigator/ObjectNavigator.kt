@@ -19,7 +19,9 @@ import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
 import com.android.tools.idea.diagnostics.hprof.classstore.ClassStore
 import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
+import com.android.tools.idea.diagnostics.hprof.util.HProfTempFiles
 import com.android.tools.idea.diagnostics.hprof.visitors.CreateAuxiliaryFilesVisitor
+import com.android.tools.idea.diagnostics.hprof.visitors.RemapIDsVisitor
 import gnu.trove.TLongArrayList
 import java.nio.channels.FileChannel
 
@@ -85,6 +87,36 @@ abstract class ObjectNavigator(val classStore: ClassStore, val instanceCount: Lo
   }
 
   companion object {
+    /**
+     * @return whether the objects of a heap dump with that many instances can be numbered by [createOnAuxiliaryFiles].
+     */
+    fun isSupported(instanceCount: Long): Boolean {
+      // Limitation due to FileBackedHashMap in RemapIDsVisitor. Many other components
+      // assume instanceCount <= Int.MAX_VALUE.
+      return RemapIDsVisitor.isSupported(instanceCount) && instanceCount <= Int.MAX_VALUE
+    }
+
+    /**
+     * Numbers the objects of the heap dump from 1 to [instanceCount], and creates a navigator over them whose data is kept in files of
+     * [tempFiles]. The ids of [hprofMetadata], and of the records [parser] visits from then on, are remapped to these numbers.
+     */
+    fun createOnAuxiliaryFiles(parser: HProfEventBasedParser,
+                               hprofMetadata: HProfMetadata,
+                               instanceCount: Long,
+                               tempFiles: HProfTempFiles): ObjectNavigator {
+      val remapIDsVisitor = RemapIDsVisitor.createFileBased(tempFiles.openEmptyFileChannel("id-mapping"), instanceCount)
+
+      parser.accept(remapIDsVisitor, "id mapping")
+      parser.setIdRemappingFunction(remapIDsVisitor.getRemappingFunction())
+      hprofMetadata.remapIds(remapIDsVisitor.getRemappingFunction())
+
+      return createOnAuxiliaryFiles(parser,
+                                    tempFiles.openEmptyFileChannel("auxOffset"),
+                                    tempFiles.openEmptyFileChannel("aux"),
+                                    hprofMetadata,
+                                    instanceCount)
+    }
+
     fun createOnAuxiliaryFiles(parser: HProfEventBasedParser,
                                auxOffsetsChannel: FileChannel,
                                auxChannel: FileChannel,
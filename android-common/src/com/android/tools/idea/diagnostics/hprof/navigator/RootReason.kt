@@ -53,6 +53,18 @@ private constructor(val description: String, val javaFrame: Boolean = false) {
       "Thread object")
     val rootMonitorUsed: RootReason = RootReason(
       "Monitor used")
+    val rootInternedString: RootReason = RootReason(
+      "Interned string")
+    val rootFinalizing: RootReason = RootReason(
+      "Finalizing")
+    val rootDebugger: RootReason = RootReason(
+      "Debugger")
+    val rootReferenceCleanup: RootReason = RootReason(
+      "Reference cleanup")
+    val rootVMInternal: RootReason = RootReason(
+      "VM internal")
+    val rootJNIMonitor: RootReason = RootReason(
+      "JNI monitor")
   }
 }
 
@@ -171,6 +171,15 @@ class HProfEventBasedParser(fileChannel: FileChannel) : AutoCloseable {
       HeapDumpRecordType.InstanceDump -> acceptInstanceDump(visitor)
       HeapDumpRecordType.ObjectArrayDump -> acceptObjectArrayDump(visitor)
       HeapDumpRecordType.PrimitiveArrayDump -> acceptPrimitiveArrayDump(visitor)
+      HeapDumpRecordType.RootInternedString -> visitor.visitRootInternedString(readId())
+      HeapDumpRecordType.RootFinalizing -> visitor.visitRootFinalizing(readId())
+      HeapDumpRecordType.RootDebugger -> visitor.visitRootDebugger(readId())
+      HeapDumpRecordType.RootReferenceCleanup -> visitor.visitRootReferenceCleanup(readId())
+      HeapDumpRecordType.RootVMInternal -> visitor.visitRootVMInternal(readId())
+      HeapDumpRecordType.RootJNIMonitor -> visitor.visitRootJNIMonitor(readId(), readUnsignedInt(), readUnsignedInt())
+      HeapDumpRecordType.Unreachable -> skip(idSize.toLong())
+      HeapDumpRecordType.PrimitiveArrayNoDataDump -> acceptPrimitiveArrayNoDataDump(visitor)
+      HeapDumpRecordType.HeapDumpInfo -> visitor.visitHeapDumpInfo(readUnsignedInt(), readRawId())
       else -> throw IOException("Unknown heap dump record type: $heapDumpRecordType")
     }
   }
@@ -217,6 +226,15 @@ class HProfEventBasedParser(fileChannel: FileChannel) : AutoCloseable {
         val elementTypeID = readByte()
         skip(primitiveArraySize * Type.getType(elementTypeID.toInt()).size)
       }
+      HeapDumpRecordType.RootInternedString,
+      HeapDumpRecordType.RootFinalizing,
+      HeapDumpRecordType.RootDebugger,
+      HeapDumpRecordType.RootReferenceCleanup,
+      HeapDumpRecordType.RootVMInternal,
+      HeapDumpRecordType.Unreachable -> skip(idSize.toLong())
+      HeapDumpRecordType.RootJNIMonitor -> skip((idSize + 2 * 4).toLong())
+      HeapDumpRecordType.PrimitiveArrayNoDataDump -> skip((idSize + 2 * 4 + 1).toLong())
+      HeapDumpRecordType.HeapDumpInfo -> skip((4 + idSize).toLong())
       else -> throw IOException("Unknown heap dump record type: $heapDumpRecordType")
     }
   }
@@ -267,6 +285,19 @@ class HProfEventBasedParser(fileChannel: FileChannel) : AutoCloseable {
     )
   }
 
+  private fun acceptPrimitiveArrayNoDataDump(visitor: HProfVisitor) {
+    val arrayObjectId = readId()
+    val stackTraceSerialNumber = readUnsignedInt()
+    val numberOfElements = readUnsignedInt()
+    val elementType = Type.getType(readUnsignedByte())
+    visitor.visitPrimitiveArrayDump(
+      arrayObjectId,
+      stackTraceSerialNumber,
+      numberOfElements,
+      elementType
+    )
+  }
+
   private fun acceptClassDump(visitor: HProfVisitor) {
     val classId = readId()
     val stackTraceSerialNumber = readUnsignedInt()
@@ -350,7 +381,8 @@ class HProfEventBasedParser(fileChannel: FileChannel) : AutoCloseable {
   }
 
   private fun verifyFormat(version: String) {
-    if (version != "JAVA PROFILE 1.0.1" && version != "JAVA PROFILE 1.0.2") {
+    // 1.0.3 is the version written by the Android runtime.
+    if (version != "JAVA PROFILE 1.0.1" && version != "JAVA PROFILE 1.0.2" && version != "JAVA PROFILE 1.0.3") {
       throw RuntimeException("Invalid format. Got: $version")
     }
   }
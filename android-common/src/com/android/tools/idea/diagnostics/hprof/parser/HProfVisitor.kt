@@ -73,6 +73,10 @@ open class HProfVisitor {
   fun enable(type: HeapDumpRecordType) {
     enable(RecordType.HeapDump)
     myHeapDumpVisits[type.value] = true
+    // Primitive arrays dumped without their values are visited as primitive arrays too.
+    if (type === HeapDumpRecordType.PrimitiveArrayDump) {
+      myHeapDumpVisits[HeapDumpRecordType.PrimitiveArrayNoDataDump.value] = true
+    }
   }
 
   fun disable(type: RecordType) {
@@ -81,6 +85,9 @@ open class HProfVisitor {
 
   fun disable(type: HeapDumpRecordType) {
     myHeapDumpVisits[type.value] = false
+    if (type === HeapDumpRecordType.PrimitiveArrayDump) {
+      myHeapDumpVisits[HeapDumpRecordType.PrimitiveArrayNoDataDump.value] = false
+    }
   }
 
   open fun preVisit() {}
@@ -123,6 +130,17 @@ open class HProfVisitor {
   open fun visitRootThreadBlock(objectId: Long, threadSerialNumber: Long) {}
   open fun visitRootMonitorUsed(objectId: Long) {}
   open fun visitRootThreadObject(objectId: Long, threadSerialNumber: Long, stackTraceSerialNumber: Long) {}
+  open fun visitRootInternedString(objectId: Long) {}
+  open fun visitRootFinalizing(objectId: Long) {}
+  open fun visitRootDebugger(objectId: Long) {}
+  open fun visitRootReferenceCleanup(objectId: Long) {}
+  open fun visitRootVMInternal(objectId: Long) {}
+  open fun visitRootJNIMonitor(objectId: Long, threadSerialNumber: Long, frameNumber: Long) {}
+
+  /**
+   * Android heap dumps are split in heaps (app, image, zygote...), each record following this one up to the next one belongs to the heap.
+   */
+  open fun visitHeapDumpInfo(heapId: Long, heapNameStringId: Long) {}
 
   open fun visitPrimitiveArrayDump(
     arrayObjectId: Long, stackTraceSerialNumber: Long,
@@ -29,7 +29,18 @@ enum class HeapDumpRecordType(val value: Int) {
   ClassDump(0x20),
   InstanceDump(0x21),
   ObjectArrayDump(0x22),
-  PrimitiveArrayDump(0x23);
+  PrimitiveArrayDump(0x23),
+
+  // Records only found in heap dumps of the Android runtime.
+  RootInternedString(0x89),
+  RootFinalizing(0x8a),
+  RootDebugger(0x8b),
+  RootReferenceCleanup(0x8c),
+  RootVMInternal(0x8d),
+  RootJNIMonitor(0x8e),
+  Unreachable(0x90),
+  PrimitiveArrayNoDataDump(0xc3),
+  HeapDumpInfo(0xfe);
 
   companion object {
     private val map = HeapDumpRecordType.values().associateBy(HeapDumpRecordType::value)
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof.util
+
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+/**
+ * Temporary files holding the auxiliary data built from a heap dump, so that it is memory-mapped instead of kept in the heap. The files
+ * are deleted on [close].
+ *
+ * @param pathSupplier returns the path of a new temporary file for the given type of data.
+ */
+class HProfTempFiles(private val pathSupplier: (String) -> Path) : AutoCloseable {
+
+  private data class TempFile(
+    val type: String,
+    val path: Path,
+    val channel: FileChannel
+  )
+
+  private val tempFiles = mutableListOf<TempFile>()
+
+  val listProvider = object : ListProvider {
+    override fun createUByteList(name: String, size: Long) = FileBackedUByteList.createEmpty(openEmptyFileChannel(name), size)
+    override fun createUShortList(name: String, size: Long) = FileBackedUShortList.createEmpty(openEmptyFileChannel(name), size)
+    override fun createIntList(name: String, size: Long) = FileBackedIntList.createEmpty(openEmptyFileChannel(name), size)
+  }
+
+  fun openEmptyFileChannel(type: String): FileChannel {
+    val tempPath = pathSupplier(type)
+
+    val tempChannel = FileChannel.open(tempPath,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                       StandardOpenOption.DELETE_ON_CLOSE)
+
+    tempFiles.add(TempFile(type, tempPath, tempChannel))
+    return tempChannel
+  }
+
+  /**
+   * @return the type and size of each file still open, in order of creation.
+   */
+  fun getOpenFileSizes(): List<Pair<String, Long>> = tempFiles.filter { it.channel.isOpen }.map { it.type to it.channel.size() }
+
+  override fun close() {
+    tempFiles.forEach { tempFile ->
+      try {
+        tempFile.channel.close()
+      }
+      catch (ignored: Throwable) {
+      }
+      try {
+        tempFile.path.let { Files.deleteIfExists(it) }
+      }
+      catch (ignored: Throwable) {
+      }
+    }
+    tempFiles.clear()
+  }
+}
@@ -35,6 +35,12 @@ class CollectRootReasonsVisitor(private val threadsMap: TLongObjectHashMap<Threa
     enable(HeapDumpRecordType.RootThreadBlock)
     enable(HeapDumpRecordType.RootThreadObject)
     enable(HeapDumpRecordType.RootUnknown)
+    enable(HeapDumpRecordType.RootInternedString)
+    enable(HeapDumpRecordType.RootFinalizing)
+    enable(HeapDumpRecordType.RootDebugger)
+    enable(HeapDumpRecordType.RootReferenceCleanup)
+    enable(HeapDumpRecordType.RootVMInternal)
+    enable(HeapDumpRecordType.RootJNIMonitor)
   }
 
   override fun visitRootUnknown(objectId: Long) {
@@ -82,4 +88,28 @@ class CollectRootReasonsVisitor(private val threadsMap: TLongObjectHashMap<Threa
   override fun visitRootMonitorUsed(objectId: Long) {
     roots.put(objectId, RootReason.rootMonitorUsed)
   }
+
+  override fun visitRootInternedString(objectId: Long) {
+    roots.put(objectId, RootReason.rootInternedString)
+  }
+
+  override fun visitRootFinalizing(objectId: Long) {
+    roots.put(objectId, RootReason.rootFinalizing)
+  }
+
+  override fun visitRootDebugger(objectId: Long) {
+    roots.put(objectId, RootReason.rootDebugger)
+  }
+
+  override fun visitRootReferenceCleanup(objectId: Long) {
+    roots.put(objectId, RootReason.rootReferenceCleanup)
+  }
+
+  override fun visitRootVMInternal(objectId: Long) {
+    roots.put(objectId, RootReason.rootVMInternal)
+  }
+
+  override fun visitRootJNIMonitor(objectId: Long, threadSerialNumber: Long, frameNumber: Long) {
+    roots.put(objectId, RootReason.rootJNIMonitor)
+  }
 }
@@ -144,6 +144,34 @@ class CompositeVisitor(private vararg val visitors: HProfVisitor) : HProfVisitor
     visitors.forEach { it.visitRootThreadObject(objectId, threadSerialNumber, stackTraceSerialNumber) }
   }
 
+  override fun visitRootInternedString(objectId: Long) {
+    visitors.forEach { it.visitRootInternedString(objectId) }
+  }
+
+  override fun visitRootFinalizing(objectId: Long) {
+    visitors.forEach { it.visitRootFinalizing(objectId) }
+  }
+
+  override fun visitRootDebugger(objectId: Long) {
+    visitors.forEach { it.visitRootDebugger(objectId) }
+  }
+
+  override fun visitRootReferenceCleanup(objectId: Long) {
+    visitors.forEach { it.visitRootReferenceCleanup(objectId) }
+  }
+
+  override fun visitRootVMInternal(objectId: Long) {
+    visitors.forEach { it.visitRootVMInternal(objectId) }
+  }
+
+  override fun visitRootJNIMonitor(objectId: Long, threadSerialNumber: Long, frameNumber: Long) {
+    visitors.forEach { it.visitRootJNIMonitor(objectId, threadSerialNumber, frameNumber) }
+  }
+
+  override fun visitHeapDumpInfo(heapId: Long, heapNameStringId: Long) {
+    visitors.forEach { it.visitHeapDumpInfo(heapId, heapNameStringId) }
+  }
+
   override fun visitPrimitiveArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, numberOfElements: Long, elementType: Type) {
     visitors.forEach { it.visitPrimitiveArrayDump(arrayObjectId, stackTraceSerialNumber, numberOfElements, elementType) }
   }
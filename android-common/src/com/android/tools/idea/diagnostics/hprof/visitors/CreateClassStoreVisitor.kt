@@ -86,7 +86,7 @@ class CreateClassStoreVisitor(private val stringIdMap: TLongObjectHashMap<String
     }
     result.put(classId,
                ClassDefinition(
-                 stringIdMap[classIDToNameStringID[classId]].replace('/', '.'),
+                 toArrayDescriptor(stringIdMap[classIDToNameStringID[classId]].replace('/', '.')),
                  classId,
                  superClassId,
                  instanceSize.toInt(),
@@ -102,4 +102,24 @@ class CreateClassStoreVisitor(private val stringIdMap: TLongObjectHashMap<String
     assert(completed)
     return ClassStore(result)
   }
+
+  companion object {
+    private val PRIMITIVE_DESCRIPTORS = mapOf(
+      "boolean" to 'Z', "char" to 'C', "float" to 'F', "double" to 'D', "byte" to 'B', "short" to 'S', "int" to 'I', "long" to 'J')
+
+    /**
+     * Android heap dumps name array classes like source code, e.g. "int[]" or "java.lang.String[][]". Turns those names into the
+     * descriptors JVM heap dumps use, e.g. "[I" or "[[Ljava.lang.String;", which the class store and navigator expect. Other names are
+     * returned as is.
+     */
+    fun toArrayDescriptor(name: String): String {
+      if (!name.endsWith("[]")) {
+        return name
+      }
+      val elementName = name.substringBefore("[]")
+      val dimensions = (name.length - elementName.length) / 2
+      val elementDescriptor = PRIMITIVE_DESCRIPTORS[elementName]?.toString() ?: "L$elementName;"
+      return "[".repeat(dimensions) + elementDescriptor
+    }
+  }
 }
\ No newline at end of file
@@ -105,11 +105,26 @@ public final class StudioFlags {
     "CpuProfilerStageView flow.",
     true);
 
+  public static final Flag<Boolean> PROFILER_CPU_CAPTURE_CACHE = Flag.create(
+    PROFILER, "cpu.capture.cache", "Cache parsed CPU captures",
+    "Stores parsed ART and simpleperf captures on disk, so reopening a trace doesn't parse the trace file again.",
+    true);
+
+  public static final Flag<Boolean> PROFILER_ASYNC_DATA_FETCH = Flag.create(
+    PROFILER, "async.data.fetch", "Fetch chart data in the background",
+    "Queries the data of the memory and thread state charts off the UI thread, sharing and caching the fetched ranges between charts.",
+    false);
+
   public static final Flag<Boolean> PROFILER_UNIFIED_PIPELINE = Flag.create(
     PROFILER, "unified.pipeline", "Enables new event pipeline to be used for core components.",
     "Toggles usage of gRPC apis to fetch data from perfd and the datastore.",
     true);
 
+  public static final Flag<Boolean> PROFILER_DATASTORE_BATCHED_WRITES = Flag.create(
+    PROFILER, "datastore.batched.writes", "Batch datastore event inserts",
+    "Queues unified events and live allocation data inserted into the datastore and writes them in JDBC batches.",
+    true);
+
   public static final Flag<Boolean> PROFILER_ENERGY_PROFILER_ENABLED = Flag.create(
     PROFILER, "energy", "Enable Energy profiling",
     "Enable the new energy profiler. It monitors battery usage of the selected app.", true);
@@ -124,6 +139,12 @@ public final class StudioFlags {
     "Allow exporting entries in the views for heap dump and native/JVM recordings in CSV format.",
     false);
 
+  public static final Flag<Boolean> PROFILER_MEMORY_HEAP_DUMP_NAVIGATOR = Flag.create(
+    PROFILER, "memory.heap.dump.navigator", "Load heap dumps into memory-mapped files",
+    "Loads heap dumps with the event-based HPROF parser into an object graph kept in memory-mapped temporary files, instead of a " +
+    "perflib snapshot kept in the IDE heap. Fields, referrers and retained sizes are not available in this mode.",
+    false);
+
   public static final Flag<Boolean> PROFILER_TRACK_JNI_REFS = Flag.create(
     PROFILER, "jni", "Enable JVMTI-based JNI reference tracking.",
     "For Android O or newer, JNI references are tracked in Memory Profiler and shown in JNI heap.",
@@ -427,6 +448,16 @@ public final class StudioFlags {
     "Enable binary cache of classes used in preview",
     true);
 
+  public static final Flag<Boolean> NELE_BUDGETED_IMAGE_POOL = Flag.create(
+    NELE, "budgeted.image.pool", "Keep pooled images within byte budgets",
+    "If enabled, the rendered images are pooled within byte budgets instead of soft references reclaimed by the garbage collector",
+    false);
+
+  public static final Flag<Boolean> NELE_PERSISTENT_CLASS_BINARY_CACHE = Flag.create(
+    NELE, "toggle.layout.editor.persistent.class.binary.cache", "Enable persistent binary cache",
+    "Keep the transformed library classes used in preview on disk, so they are not transformed again after a restart",
+    true);
+
   public static final Flag<Boolean> NELE_STATE_LIST_PICKER = Flag.create(
     NELE, "state.list.picker", "Enable State List Picker",
     "Enable state list picker for selector drawable.",
@@ -19,6 +19,7 @@ import com.android.SdkConstants.ANDROID_MANIFEST_XML
 import com.android.ide.common.repository.GradleCoordinate
 import com.android.ide.common.repository.GradleVersion
 import com.android.ide.common.repository.SdkMavenRepository
+import com.android.tools.idea.AndroidPsiUtils
 import com.android.tools.idea.gradle.plugin.LatestKnownPluginVersionProvider
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel
 import com.android.tools.idea.gradle.project.upgrade.GradlePluginUpgradeState.Importance.RECOMMEND
@@ -35,12 +36,14 @@ import com.android.tools.idea.lint.common.LintIdeClient
 import com.android.tools.idea.lint.common.LintIdeSupport
 import com.android.tools.idea.lint.common.LintResult
 import com.android.tools.idea.lint.common.getModuleDir
+import com.android.tools.idea.model.MergedManifestModificationTracker
 import com.android.tools.idea.progress.StudioLoggerProgressIndicator
 import com.android.tools.idea.project.AndroidProjectInfo
 import com.android.tools.idea.projectsystem.ProjectSystemSyncManager
 import com.android.tools.idea.projectsystem.getModuleSystem
 import com.android.tools.idea.projectsystem.getProjectSystem
 import com.android.tools.idea.res.AndroidFileChangeListener
+import com.android.tools.idea.res.ResourceRepositoryManager
 import com.android.tools.idea.sdk.AndroidSdks
 import com.android.tools.idea.sdk.StudioSdkUtil
 import com.android.tools.lint.client.api.IssueRegistry
@@ -58,7 +61,9 @@ import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.fileTypes.FileTypes
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootManager
 import com.intellij.openapi.ui.Messages
+import com.intellij.openapi.util.ModificationTracker
 import com.intellij.openapi.util.Pair
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiElement
@@ -166,6 +171,18 @@ class AndroidLintIdeSupport : LintIdeSupport() {
     return false
   }
 
+  override fun getEditorLintModificationTracker(module: Module): ModificationTracker {
+    val facet = AndroidFacet.getInstance(module) ?: return super.getEditorLintModificationTracker(module)
+    // Edits to other XML files, such as layouts, only matter to lint through the resources and the manifests they define.
+    val sourceTracker = AndroidPsiUtils.getPsiModificationTrackerIgnoringXml(module.project)
+    val resources = ResourceRepositoryManager.getAppResources(facet)
+    val manifestTracker = MergedManifestModificationTracker.getInstance(module)
+    val rootTracker = ProjectRootManager.getInstance(module.project)
+    return ModificationTracker {
+      sourceTracker.modificationCount + resources.modificationCount + manifestTracker.modificationCount + rootTracker.modificationCount
+    }
+  }
+
   override fun canAnalyze(project: Project): Boolean {
     // Only run in Android projects. This is relevant when the Android plugin is
     // enabled in IntelliJ.
@@ -19,21 +19,16 @@ import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
 import com.android.tools.idea.diagnostics.hprof.histogram.Histogram
 import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
-import com.android.tools.idea.diagnostics.hprof.util.FileBackedIntList
-import com.android.tools.idea.diagnostics.hprof.util.FileBackedUByteList
-import com.android.tools.idea.diagnostics.hprof.util.FileBackedUShortList
+import com.android.tools.idea.diagnostics.hprof.util.HProfTempFiles
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.sectionHeader
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toShortStringAsCount
 import com.android.tools.idea.diagnostics.hprof.util.ListProvider
 import com.android.tools.idea.diagnostics.hprof.util.PartialProgressIndicator
-import com.android.tools.idea.diagnostics.hprof.visitors.RemapIDsVisitor
 import com.google.common.base.Stopwatch
 import com.intellij.openapi.progress.ProgressIndicator
 import org.jetbrains.annotations.TestOnly
 import java.nio.channels.FileChannel
-import java.nio.file.Files
 import java.nio.file.Path
-import java.nio.file.StandardOpenOption
 
 class HProfAnalysis(private val hprofFileChannel: FileChannel,
                     private val tempFilenameSupplier: TempFilenameSupplier) {
@@ -42,13 +37,7 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
     fun getTempFilePath(type: String): Path
   }
 
-  private data class TempFile(
-    val type: String,
-    val path: Path,
-    val channel: FileChannel
-  )
-
-  private val tempFiles = mutableListOf<TempFile>()
+  private val tempFiles = HProfTempFiles(tempFilenameSupplier::getTempFilePath)
 
   private var includeMetaInfo = true
 
@@ -57,25 +46,8 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
     includeMetaInfo = value
   }
 
-  private fun openTempEmptyFileChannel(type: String): FileChannel {
-    val tempPath = tempFilenameSupplier.getTempFilePath(type)
-
-    val tempChannel = FileChannel.open(tempPath,
-                                       StandardOpenOption.READ,
-                                       StandardOpenOption.WRITE,
-                                       StandardOpenOption.CREATE,
-                                       StandardOpenOption.TRUNCATE_EXISTING,
-                                       StandardOpenOption.DELETE_ON_CLOSE)
-
-    tempFiles.add(TempFile(type, tempPath, tempChannel))
-    return tempChannel
-  }
-
-  val fileBackedListProvider = object: ListProvider {
-    override fun createUByteList(name: String, size: Long) = FileBackedUByteList.createEmpty(openTempEmptyFileChannel(name), size)
-    override fun createUShortList(name: String, size: Long) = FileBackedUShortList.createEmpty(openTempEmptyFileChannel(name), size)
-    override fun createIntList(name: String, size: Long) = FileBackedIntList.createEmpty(openTempEmptyFileChannel(name), size)
-  }
+  val fileBackedListProvider: ListProvider
+    get() = tempFiles.listProvider
 
   fun analyze(progress: ProgressIndicator): String {
     val result = StringBuilder()
@@ -106,30 +78,15 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
 
       // Currently, there is a maximum count of supported instances. Produce simplified report
       // (histogram only), if the count exceeds maximum.
-      if (!isSupported(histogram.instanceCount)) {
+      if (!ObjectNavigator.isSupported(histogram.instanceCount)) {
         result.appendln(histogram.prepareReport("All", 50))
         return result.toString()
       }
 
-      val idMappingChannel = openTempEmptyFileChannel("id-mapping")
-      val remapIDsVisitor = RemapIDsVisitor.createFileBased(
-        idMappingChannel,
-        histogram.instanceCount)
-
-      parser.accept(remapIDsVisitor, "id mapping")
-      parser.setIdRemappingFunction(remapIDsVisitor.getRemappingFunction())
-      hprofMetadata.remapIds(remapIDsVisitor.getRemappingFunction())
-
       progress.text2 = "Create reference graph"
       progress.fraction = 0.3
 
-      val navigator = ObjectNavigator.createOnAuxiliaryFiles(
-        parser,
-        openTempEmptyFileChannel("auxOffset"),
-        openTempEmptyFileChannel("aux"),
-        hprofMetadata,
-        histogram.instanceCount
-      )
+      val navigator = ObjectNavigator.createOnAuxiliaryFiles(parser, hprofMetadata, histogram.instanceCount, tempFiles)
 
       prepareFilesStopwatch.stop()
 
@@ -167,41 +124,16 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
         result.appendln("Temp files:")
         result.appendln("  heapdump = ${toShortStringAsCount(hprofFileChannel.size())}")
 
-        tempFiles.forEach { temp ->
-          val channel = temp.channel
-          if (channel.isOpen) {
-            result.appendln("  ${temp.type} = ${toShortStringAsCount(channel.size())}")
-          }
+        tempFiles.getOpenFileSizes().forEach { (type, size) ->
+          result.appendln("  $type = ${toShortStringAsCount(size)}")
         }
         result.appendln(analysisReport.metaInfo)
       }
     }
     finally {
       parser.close()
-      closeAndDeleteTemporaryFiles()
+      tempFiles.close()
     }
     return result.toString()
   }
-
-  private fun isSupported(instanceCount: Long): Boolean {
-    // Limitation due to FileBackedHashMap in RemapIDsVisitor. Many other components
-    // assume instanceCount <= Int.MAX_VALUE.
-    return RemapIDsVisitor.isSupported(instanceCount) && instanceCount <= Int.MAX_VALUE
-  }
-
-  private fun closeAndDeleteTemporaryFiles() {
-    tempFiles.forEach { tempFile ->
-      try {
-        tempFile.channel.close()
-      }
-      catch (ignored: Throwable) {
-      }
-      try {
-        tempFile.path.let { Files.deleteIfExists(it) }
-      }
-      catch (ignored: Throwable) {
-      }
-    }
-    tempFiles.clear()
-  }
 }
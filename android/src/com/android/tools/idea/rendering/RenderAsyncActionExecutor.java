@@ -20,11 +20,37 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Interface to be implemented by executors of rendered async actions.
  */
 public interface RenderAsyncActionExecutor {
+  /**
+   * Priority of a render action over the other actions waiting to run.
+   */
+  enum RenderingPriority {
+    /**
+     * Actions someone is waiting for, like the render of a preview that is visible.
+     */
+    HIGH,
+    /**
+     * Actions that can wait for the others to run, like the render of a preview that is not visible. These are evicted first when too
+     * many actions are waiting to run.
+     */
+    LOW
+  }
+
+  /**
+   * Exception completing the future of an action superseded by a newer action with the same coalescing key. The superseded action did not
+   * run, and the newer one delivers its result to its own caller only, so callers can ignore this exception.
+   */
+  final class SupersededException extends Exception {
+    public SupersededException(@NotNull String message) {
+      super(message);
+    }
+  }
+
   /**
    * Number of ms that we will wait for the rendering thread to return before timing out
    */
@@ -55,6 +81,25 @@ public interface RenderAsyncActionExecutor {
     long actionTimeout, @NotNull TimeUnit actionTimeoutUnit,
     @NotNull Callable<T> callable);
 
+  /**
+   * Same as {@link #runAsyncActionWithTimeout(long, TimeUnit, long, TimeUnit, Callable)} but the action is scheduled with the given
+   * priority, on behalf of the given owner. Actions of a higher priority run first and, for the same priority, owners take turns so that
+   * an owner queueing many actions, like a file with many previews, does not hold back the others.
+   *
+   * @param priority the {@link RenderingPriority} of the action.
+   * @param owner the owner of the action, like the file it renders, or null if it has none. Actions without owner take turns as if
+   *              they all had the same one.
+   * @param coalescingKey if not null, an action with the same key that is still waiting to run is superseded by this one: it does not
+   *                      run and completes exceptionally with a {@link SupersededException}.
+   */
+  default @NotNull <T> CompletableFuture<T> runAsyncActionWithTimeout(
+    long queueingTimeout, @NotNull TimeUnit queueingTimeoutUnit,
+    long actionTimeout, @NotNull TimeUnit actionTimeoutUnit,
+    @NotNull RenderingPriority priority, @Nullable Object owner, @Nullable Object coalescingKey,
+    @NotNull Callable<T> callable) {
+    return runAsyncActionWithTimeout(queueingTimeout, queueingTimeoutUnit, actionTimeout, actionTimeoutUnit, callable);
+  }
+
   /**
    * Runs an action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
    * method.
@@ -16,10 +16,11 @@
 package com.android.tools.idea.rendering
 
 import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.rendering.RenderAsyncActionExecutor.RenderingPriority
 import com.intellij.openapi.diagnostic.Logger
 import org.jetbrains.annotations.TestOnly
 import java.util.LinkedList
-import java.util.Queue
+import java.util.WeakHashMap
 import java.util.concurrent.Callable
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ExecutorService
@@ -52,6 +53,11 @@ private fun singleThreadExecutor(factory: ThreadFactory): ExecutorService = Thre
  * This executor guarantees that unit of work passed to [runAction] or [runAsyncAction]
  * will be executed sequentially from the same thread.
  *
+ * Since actions can not run concurrently, the order in which they run is what decides how soon a preview shows up. Whenever the thread
+ * is free, it runs the waiting action of the highest [RenderingPriority] and, among those, the one of the owner that has waited the
+ * longest for its turn, so that a file with many previews does not hold back the previews of other editors. Actions with the same
+ * owner run in the order they were submitted.
+ *
  * @param maxQueueingTasks max number of tasks that can be queueing waiting for a task to complete.
  * @param executorProvider a provider of the [ExecutorService] using the given [ThreadFactory].
  * @param timeoutExecutorProvider a [ScheduledExecutorService] to keep track of the task timeout.
@@ -73,8 +79,16 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
   }
   private val pendingActionsQueueLock: Lock = ReentrantLock()
 
+  /** Actions waiting to run, in submission order. */
+  @GuardedBy("pendingActionsQueueLock")
+  private val pendingActionsQueue = LinkedList<PendingAction>()
+
+  /** The last turn at which each owner had an action run. Owners are usually files or render tasks, so they are not kept alive by this. */
   @GuardedBy("pendingActionsQueueLock")
-  private val pendingActionsQueue: Queue<CompletableFuture<*>> = LinkedList()
+  private val ownerTurns = WeakHashMap<Any?, Long>()
+
+  @GuardedBy("pendingActionsQueueLock")
+  private var turn = 0L
   private val renderingExecutor: ExecutorService = executorProvider(threadFactory)
   private val timeoutExecutor: ScheduledExecutorService = timeoutExecutorProvider()
   private val accumulatedTimeoutExceptions = AtomicInteger(0)
@@ -118,6 +132,12 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
 
   private class EvictedException(message: String?) : Exception(message)
 
+  private class PendingAction(val future: CompletableFuture<Any?>,
+                              val priority: RenderingPriority,
+                              val owner: Any?,
+                              val coalescingKey: Any?,
+                              val run: () -> Unit)
+
   private fun scheduleTimeoutAction(timeout: Long, unit: TimeUnit, action: () -> Unit): ScheduledFuture<*> =
     timeoutExecutor.schedule(
       action,
@@ -128,6 +148,17 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
                                                     queueingTimeoutUnit: TimeUnit,
                                                     actionTimeout: Long,
                                                     actionTimeoutUnit: TimeUnit,
+                                                    callable: Callable<T>): CompletableFuture<T> =
+    runAsyncActionWithTimeout(queueingTimeout, queueingTimeoutUnit, actionTimeout, actionTimeoutUnit, RenderingPriority.HIGH, null, null,
+                              callable)
+
+  override fun <T : Any?> runAsyncActionWithTimeout(queueingTimeout: Long,
+                                                    queueingTimeoutUnit: TimeUnit,
+                                                    actionTimeout: Long,
+                                                    actionTimeoutUnit: TimeUnit,
+                                                    priority: RenderingPriority,
+                                                    owner: Any?,
+                                                    coalescingKey: Any?,
                                                     callable: Callable<T>): CompletableFuture<T> {
     val future = object : CompletableFuture<T>() {
       override fun cancel(mayInterruptIfRunning: Boolean): Boolean = super.cancel(mayInterruptIfRunning).also {
@@ -137,7 +168,8 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
       }
     }
 
-    val queueTimeoutFuture = if (queueingTimeout > 0) {
+    // Low priority actions wait for all the others by design, so the queueing timeout would mistake them being starved for a stuck render.
+    val queueTimeoutFuture = if (queueingTimeout > 0 && priority != RenderingPriority.LOW) {
       scheduleTimeoutAction(queueingTimeout, queueingTimeoutUnit) {
         val message = """
         Preview timed out (${queueingTimeoutUnit.toMillis(queueingTimeout)}ms).
@@ -151,26 +183,15 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
       // No queue timeout. This will wait indefinitely unless is evicted by other actions being added to the queue.
       null
     }
-    pendingActionsQueueLock.withLock {
-      pendingActionsQueue.add(future)
-      // We have reached the maximum, evict overflow
-      if (maxQueueingTasks > 0) {
-        while (pendingActionsQueue.size > maxQueueingTasks) {
-          pendingActionsQueue.remove().completeExceptionally(EvictedException("Max number ($maxQueueingTasks) of render actions reached"))
-        }
-      }
-    }
-    renderingExecutor.execute {
+    @Suppress("UNCHECKED_CAST")
+    val action = PendingAction(future as CompletableFuture<Any?>, priority, owner, coalescingKey, fun() {
       // Clear the interrupted state
       Thread.interrupted()
       isBusy.set(true)
       try {
         queueTimeoutFuture?.cancel(false)
-        pendingActionsQueueLock.withLock {
-          pendingActionsQueue.remove(future)
-        }
 
-        if (future.isDone) return@execute
+        if (future.isDone) return
 
         val actionTimeoutFuture = scheduleTimeoutAction(actionTimeout, actionTimeoutUnit) {
           if (!future.isDone) {
@@ -193,7 +214,30 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
       finally {
         isBusy.set(false)
       }
+    })
+    val superseded = mutableListOf<PendingAction>()
+    val evicted = mutableListOf<PendingAction>()
+    pendingActionsQueueLock.withLock {
+      if (coalescingKey != null) {
+        pendingActionsQueue.filterTo(superseded) { it.coalescingKey == coalescingKey }
+        pendingActionsQueue.removeAll(superseded)
+      }
+      pendingActionsQueue.add(action)
+      // We have reached the maximum, evict overflow, starting with the oldest actions of the lowest priority
+      if (maxQueueingTasks > 0) {
+        while (pendingActionsQueue.size > maxQueueingTasks) {
+          val lowestPriority = pendingActionsQueue.maxOf { it.priority }
+          val toEvict = pendingActionsQueue.first { it.priority == lowestPriority }
+          pendingActionsQueue.remove(toEvict)
+          evicted.add(toEvict)
+        }
+      }
     }
+    // The result of the newer action is not shared with the superseded ones, so that it has a single owner.
+    superseded.forEach { it.future.completeExceptionally(RenderAsyncActionExecutor.SupersededException("Superseded by a newer render action")) }
+    evicted.forEach { it.future.completeExceptionally(EvictedException("Max number ($maxQueueingTasks) of render actions reached")) }
+    // Each submission makes the thread run one of the pending actions, not necessarily this one.
+    renderingExecutor.execute { pollNextAction()?.run?.invoke() }
     return future
       .whenComplete { result, exception ->
         queueTimeoutFuture?.cancel(true)
@@ -206,6 +250,21 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
       }
   }
 
+  /**
+   * Removes and returns the next action to run, or null if there is none.
+   */
+  private fun pollNextAction(): PendingAction? = pendingActionsQueueLock.withLock {
+    pendingActionsQueue.removeIf { it.future.isDone }
+    val highestPriority = pendingActionsQueue.minOfOrNull { it.priority } ?: return null
+    // minByOrNull returns the first of the minimum elements, so actions of the same owner run in submission order.
+    val next = pendingActionsQueue
+      .filter { it.priority == highestPriority }
+      .minByOrNull { ownerTurns[it.owner] ?: -1L }!!
+    pendingActionsQueue.remove(next)
+    ownerTurns[next.owner] = turn++
+    next
+  }
+
   @TestOnly
   fun shutdown(timeoutSeconds: Long) {
     if (timeoutSeconds > 0) {
@@ -24,6 +24,7 @@ import com.android.sdklib.IAndroidTarget;
 import com.android.sdklib.devices.Device;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.diagnostics.crash.StudioCrashReporter;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.layoutlib.LayoutLibrary;
 import com.android.tools.idea.layoutlib.RenderingException;
 import com.android.tools.idea.layoutlib.UnsupportedJavaRuntimeException;
@@ -118,7 +119,9 @@ public class RenderService implements Disposable {
 
   private final Object myCredential = new Object();
 
-  private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
+  private final ImagePool myImagePool = StudioFlags.NELE_BUDGETED_IMAGE_POOL.get()
+                                        ? ImagePoolFactory.createBudgetedImagePool()
+                                        : ImagePoolFactory.createImagePool();
 
   @NotNull
   public static RenderAsyncActionExecutor getRenderAsyncActionExecutor() {
@@ -373,6 +376,7 @@ public class RenderService implements Disposable {
     private boolean enableLayoutScanner = false;
     private SessionParams.RenderingMode myRenderingMode = null;
     private boolean useTransparentBackground = false;
+    @NotNull private RenderAsyncActionExecutor.RenderingPriority myPriority = RenderAsyncActionExecutor.RenderingPriority.HIGH;
     @NotNull private Function<Module, MergedManifestSnapshot> myManifestProvider =
       module -> {
         try {
@@ -570,6 +574,15 @@ public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * @see RenderTask#setPriority(RenderAsyncActionExecutor.RenderingPriority)
+     */
+    @NotNull
+    public RenderTaskBuilder withPriority(@NotNull RenderAsyncActionExecutor.RenderingPriority priority) {
+      myPriority = priority;
+      return this;
+    }
+
     /**
      * @see RenderTask#setTransparentBackground()
      */
@@ -695,7 +708,8 @@ public class RenderService implements Disposable {
             .setHighQualityShadows(useHighQualityShadows)
             .setShadowEnabled(isShadowEnabled)
             .setShowWithToolsVisibilityAndPosition(showWithToolsVisibilityAndPosition)
-            .setEnableLayoutScanner(enableLayoutScanner);
+            .setEnableLayoutScanner(enableLayoutScanner)
+            .setPriority(myPriority);
 
           if (myMaxRenderWidth != -1 && myMaxRenderHeight != -1) {
             task.setMaxRenderSize(myMaxRenderWidth, myMaxRenderHeight);
@@ -73,9 +73,11 @@ import com.android.utils.HtmlBuilder;
 import com.android.utils.SdkUtils;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.Futures;
+import com.intellij.notebook.editor.BackedVirtualFile;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlFile;
@@ -97,6 +99,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -157,6 +160,10 @@ public class RenderTask {
   @VisibleForTesting
   static final ExecutorService ourDisposeService =
     AppExecutorUtil.createBoundedApplicationPoolExecutor("RenderTask Dispose Thread", 1);
+  /**
+   * Coalescing key of the render actions, see {@link #runAsyncRenderAction(Callable, long, TimeUnit, Object)}.
+   */
+  private static final String RENDER_ACTION_KEY = "render";
   public static final String GAP_WORKER_CLASS_NAME = "androidx.recyclerview.widget.GapWorker";
 
   @NotNull private final ImagePool myImagePool;
@@ -177,6 +184,7 @@ public class RenderTask {
   private boolean myShowWithToolsVisibilityAndPosition = true;
   private AssetRepositoryImpl myAssetRepository;
   private long myTimeout;
+  @NotNull private RenderAsyncActionExecutor.RenderingPriority myPriority = RenderAsyncActionExecutor.RenderingPriority.HIGH;
   @NotNull private final Locale myLocale;
   @NotNull private final Object myCredential;
   private boolean myProvideCookiesForIncludedViews = false;
@@ -188,6 +196,11 @@ public class RenderTask {
   private final List<CompletableFuture<?>> myRunningFutures = new LinkedList<>();
   @NotNull private final AtomicBoolean isDisposed = new AtomicBoolean(false);
   @Nullable private XmlFile myXmlFile;
+  /**
+   * Owner the render actions of this task take turns with, see {@link #runAsyncRenderAction(Callable, long, TimeUnit, Object)}. This is
+   * the source file being rendered, so that all the previews of a file share one turn, or the task itself if it renders no file.
+   */
+  @NotNull private Object myRenderActionOwner = this;
   @NotNull private final Function<Module, MergedManifestSnapshot> myManifestProvider;
   @NotNull private final ModuleClassLoader myModuleClassLoader;
 
@@ -334,6 +347,7 @@ public class RenderTask {
   public void setXmlFile(@NotNull XmlFile file) {
     myXmlFile = file;
     ReadAction.run(() -> getContext().setFolderType(IdeResourcesUtil.getFolderType(file)));
+    myRenderActionOwner = ReadAction.compute(() -> getSourceFile(file));
   }
 
   @Nullable
@@ -341,6 +355,19 @@ public class RenderTask {
     return myXmlFile;
   }
 
+  /**
+   * Returns the user file the given file was generated from, like the Kotlin file of a Compose preview, or the file itself.
+   */
+  @SuppressWarnings("UnstableApiUsage")
+  @NotNull
+  private static Object getSourceFile(@NotNull XmlFile file) {
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null) {
+      return file;
+    }
+    return virtualFile instanceof BackedVirtualFile ? ((BackedVirtualFile)virtualFile).getOriginFile() : virtualFile;
+  }
+
   @NotNull
   public IRenderLogger getLogger() {
     return myLogger;
@@ -507,6 +534,19 @@ public class RenderTask {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions of this task over the ones of other tasks, e.g.
+   * {@link RenderAsyncActionExecutor.RenderingPriority#LOW} for a preview that is not visible.
+   *
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderAsyncActionExecutor.RenderingPriority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   /**
    * Sets the transparent background to be used.
    *
@@ -841,14 +881,34 @@ public class RenderTask {
   @VisibleForTesting
   @NotNull
   private <V> CompletableFuture<V> runAsyncRenderAction(@NotNull Callable<V> callable, long timeout, @NotNull TimeUnit unit) {
+    return runAsyncRenderAction(callable, timeout, unit, null);
+  }
+
+  /**
+   * Same as {@link #runAsyncRenderAction(Callable, long, TimeUnit)}. The action is scheduled with the priority of this task, taking turns
+   * with the actions of other files.
+   *
+   * @param coalescingKey if not null, an action of this task with the same key that has not started running yet is superseded by this one.
+   */
+  @NotNull
+  private <V> CompletableFuture<V> runAsyncRenderAction(@NotNull Callable<V> callable,
+                                                        long timeout,
+                                                        @NotNull TimeUnit unit,
+                                                        @Nullable Object coalescingKey) {
     if (isDisposed.get()) {
       return immediateFailedFuture(new IllegalStateException("RenderTask was already disposed"));
     }
 
+    if (timeout < 1) {
+      timeout = RenderAsyncActionExecutor.DEFAULT_RENDER_THREAD_TIMEOUT_MS;
+      unit = TimeUnit.MILLISECONDS;
+    }
     synchronized (myRunningFutures) {
-      CompletableFuture<V> newFuture = timeout < 1 ?
-                                       RenderService.getRenderAsyncActionExecutor().runAsyncAction(callable) :
-                                       RenderService.getRenderAsyncActionExecutor().runAsyncActionWithTimeout(timeout, unit, callable);
+      CompletableFuture<V> newFuture = RenderService.getRenderAsyncActionExecutor().runAsyncActionWithTimeout(
+        RenderAsyncActionExecutor.DEFAULT_RENDER_THREAD_QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+        timeout, unit,
+        myPriority, myRenderActionOwner, coalescingKey != null ? Pair.create(this, coalescingKey) : null,
+        callable);
       myRunningFutures.add(newFuture);
       newFuture
         .whenCompleteAsync((result, ex) -> {
@@ -1041,6 +1101,8 @@ public class RenderTask {
     return inflateCompletableResult.thenCompose(inflateResult -> {
       try {
         long startRenderTimeMs = System.currentTimeMillis();
+        // A render waiting to run is superseded by a newer one, which renders the latest state of the session anyway. The superseded render
+        // completes with a null result.
         return runAsyncRenderAction(() -> {
           myRenderSession.render();
           RenderResult result =
@@ -1058,7 +1120,12 @@ public class RenderTask {
             myLogger.addMessage(problem);
           }
           return result;
-        }).handle((result, ex) -> {
+        }, 0, TimeUnit.SECONDS, RENDER_ACTION_KEY).handle((result, ex) -> {
+          Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+          if (cause instanceof RenderAsyncActionExecutor.SupersededException) {
+            // A newer render replaced this one before it ran, and only its caller gets the result.
+            return null;
+          }
           // After render clean-up. Dispose the GapWorker cache.
           clearGapWorkerCache();
           return result.createWithStats(new RenderResultStats(
@@ -1098,7 +1165,8 @@ public class RenderTask {
    * Run rendering with default IImageFactory implementation provided by RenderTask. This render call will render the image to a bitmap
    * that can be accessed via the returned {@link RenderResult}
    * <p/>
-   * If {@link #inflate()} hasn't been called before, this method will implicitly call it.
+   * If {@link #inflate()} hasn't been called before, this method will implicitly call it. The result is null if a newer render of this
+   * task superseded this one before it ran.
    */
   @NotNull
   public CompletableFuture<RenderResult> render() {
@@ -46,7 +46,7 @@ class RepackageTransform(delegate: ClassVisitor,
   ClassRemapper(delegate,
                 RepackageRemapper(packagePrefixes.map { it.fromPackageNameToBinaryName() },
                                   remappedPrefix.fromPackageNameToBinaryName())), ClassVisitorUniqueIdProvider {
-  override val uniqueId: String = RepackageTransform::class.qualifiedName + "," + com.google.common.hash.Hashing.goodFastHash(64)
+  override val uniqueId: String = RepackageTransform::class.qualifiedName + "," + com.google.common.hash.Hashing.farmHashFingerprint64()
     .newHasher()
     .putString(packagePrefixes.joinToString(","), Charsets.UTF_8)
     .putString(remappedPrefix, Charsets.UTF_8)
@@ -67,6 +67,22 @@ class ClassTransform(private val transforms: List<java.util.function.Function<Cl
     Hashing.goodFastHash(64).hashString(debugId, Charsets.UTF_8).toString()
   }
 
+  /**
+   * An id that, unlike [id], is the same across IDE restarts so it can identify transformed classes stored on disk. Null if some of the
+   * transformations do not implement [ClassVisitorUniqueIdProvider], since they can not be identified across restarts.
+   */
+  val persistentId: String? by lazy {
+    var visitor: ClassVisitor = EmptyClassVisitor
+    for (transform in transforms) {
+      val newVisitor = transform.apply(visitor)
+      if (newVisitor != visitor && newVisitor !is ClassVisitorUniqueIdProvider) {
+        return@lazy null
+      }
+      visitor = newVisitor
+    }
+    Hashing.sha256().hashString(debugId, Charsets.UTF_8).toString()
+  }
+
   operator fun invoke(visitor: ClassVisitor): ClassVisitor =
     java.util.function.Function<ClassVisitor, ClassVisitor> { transforms.fold(it) { acc, visitor -> visitor.apply(acc) } }.apply(visitor)
   operator fun plus(f2: ClassTransform) = ClassTransform(transforms + f2.transforms)
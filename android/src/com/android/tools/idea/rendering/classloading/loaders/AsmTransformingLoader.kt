@@ -18,6 +18,7 @@ package com.android.tools.idea.rendering.classloading.loaders
 import com.android.tools.idea.rendering.classloading.ClassConverter
 import com.android.tools.idea.rendering.classloading.ClassTransform
 import com.android.tools.idea.rendering.classloading.PseudoClassLocator
+import org.jetbrains.android.uipreview.TransformedClassDiskCache
 import org.jetbrains.org.objectweb.asm.ClassWriter
 
 /**
@@ -28,21 +29,37 @@ import org.jetbrains.org.objectweb.asm.ClassWriter
  * [asmFlags] includes the flags needed to apply the transformation. See [ClassWriter].
  *
  * [onRewrite] will be called after a class has been successfully transformed.
+ *
+ * If a [diskCache] is given, transformed classes are stored there and classes found there are not transformed again. This is only done
+ * if the [transform] can be identified across restarts, see [ClassTransform.persistentId].
  */
 class AsmTransformingLoader @JvmOverloads constructor(
   private val transform: ClassTransform,
   private val delegate: DelegatingClassLoader.Loader,
   private val pseudoClassLocator: PseudoClassLocator,
   private val asmFlags: Int = ClassWriter.COMPUTE_FRAMES,
-  private val onRewrite: (fqcn: String, durationMs: Long, size: Int) -> Unit = { _, _, _ -> }) : DelegatingClassLoader.Loader {
+  private val onRewrite: (fqcn: String, durationMs: Long, size: Int) -> Unit = { _, _, _ -> },
+  private val diskCache: TransformedClassDiskCache? = null) : DelegatingClassLoader.Loader {
 
   val transformId: String get() = transform.id
 
+  /**
+   * Id of the transform in the [diskCache], or null if the transformed classes are not stored there.
+   */
+  private val diskCacheTransformId: String? by lazy { diskCache?.let { transform.persistentId } }
+
   override fun loadClass(fqcn: String): ByteArray? {
     val bytes = delegate.loadClass(fqcn) ?: return null
+    val diskCacheTransformId = diskCacheTransformId
+    if (diskCacheTransformId != null) {
+      diskCache?.get(bytes, diskCacheTransformId)?.let { return it }
+    }
     val startTime = System.currentTimeMillis()
     val rewrittenBytes = ClassConverter.rewriteClass(bytes, transform, asmFlags, pseudoClassLocator)
     onRewrite(fqcn, System.currentTimeMillis() - startTime, rewrittenBytes.size)
+    if (diskCacheTransformId != null) {
+      diskCache?.put(bytes, diskCacheTransformId, rewrittenBytes)
+    }
     return rewrittenBytes
   }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.util.Arrays;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -114,6 +115,18 @@ public interface ImagePool {
      * Returns the number of times we had an image that was returned to this bucket.
      */
     long imageWasReturned();
+
+    /**
+     * Returns the number of images dropped from this bucket before being reused, either reclaimed by the garbage collector or evicted to
+     * stay within the byte budgets of the pool.
+     */
+    long bucketEvictions();
+
+    /**
+     * Returns the number of bytes of the images kept by this bucket to be reused, or -1 if unknown because the garbage collector can
+     * reclaim them.
+     */
+    long bytesPooled();
   }
 
   interface Stats {
@@ -122,6 +135,27 @@ public interface ImagePool {
     long totalBytesInUse();
 
     BucketStats[] getBucketStats();
+
+    /**
+     * Returns the number of times an image was reused from the pool.
+     */
+    default long totalHits() {
+      return Arrays.stream(getBucketStats()).mapToLong(BucketStats::bucketHits).sum();
+    }
+
+    /**
+     * Returns the number of times a new image had to be allocated for a pooled size.
+     */
+    default long totalMisses() {
+      return Arrays.stream(getBucketStats()).mapToLong(BucketStats::bucketMisses).sum();
+    }
+
+    /**
+     * Returns the number of images dropped from the pool before being reused.
+     */
+    default long totalEvictions() {
+      return Arrays.stream(getBucketStats()).mapToLong(BucketStats::bucketEvictions).sum();
+    }
   }
 
   /**
@@ -48,6 +48,15 @@ public class ImagePoolFactory {
     }
   };
 
+  /**
+   * Max number of bytes of the images kept by each bucket of the pools created by {@link #createBudgetedImagePool()}.
+   */
+  private static final long BUCKET_BUDGET_BYTES = 64_000_000L;
+  /**
+   * Max number of bytes of the images kept by the pools created by {@link #createBudgetedImagePool()}, if the heap is large enough.
+   */
+  private static final long MAX_POOLED_BYTES = 512_000_000L;
+
   private ImagePoolFactory() {
   }
 
@@ -66,6 +75,22 @@ public class ImagePoolFactory {
     });
   }
 
+  /**
+   * Creates a new {@link ImagePool} that keeps the pooled images until they are reused, within byte budgets, instead of letting the
+   * garbage collector reclaim them under memory pressure.
+   */
+  @NotNull
+  public static ImagePool createBudgetedImagePool() {
+    return new ImagePoolImpl(new int[]{50, 500, 1000, 1500, 2000, 5000}, (w, h) -> (type) -> {
+      // Images below 1k, do not pool
+      if (w * h < 1000) {
+        return 0L;
+      }
+
+      return BUCKET_BUDGET_BYTES;
+    }, Math.min(Runtime.getRuntime().maxMemory() / 8, MAX_POOLED_BYTES));
+  }
+
   /**
    * Returns an {@link ImagePool} instance that does not do image pooling
    */
@@ -17,12 +17,11 @@ package com.android.tools.idea.rendering.imagepool;
 
 import static com.android.tools.idea.rendering.imagepool.ImagePoolUtil.stackTraceToAssertionString;
 
+import com.android.annotations.concurrency.GuardedBy;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.FinalizablePhantomReference;
 import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.EvictingQueue;
-import com.google.common.collect.ForwardingQueue;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.diagnostic.Logger;
 import java.awt.AlphaComposite;
@@ -34,13 +33,16 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.NoSuchElementException;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -55,16 +57,34 @@ import org.jetbrains.annotations.Nullable;
  * Class that offers a pool of {@link BufferedImage}s. The returned {@link Image} do not offer a direct access
  * to the underlying {@link BufferedImage} to avoid clients holding references to it.
  * Once the {@link Image} is not being referenced anymore, it will be automatically returned to the pool.
+ * <p/>
+ * By default, the pooled images are kept through {@link SoftReference}s so the garbage collector can reclaim them when memory is low.
+ * The pool can also keep them until they are reused, within explicit byte budgets, so that they are not reclaimed unpredictably under
+ * memory pressure, which causes bursts of allocations of large images right when memory is scarce.
  */
 @SuppressWarnings("ALL")
 class ImagePoolImpl implements ImagePool {
   private static final Logger LOG = Logger.getInstance(ImagePoolImpl.class);
 
-  private static final Bucket NULL_BUCKET = new Bucket();
+  /**
+   * Clock used to order the accesses to the buckets.
+   */
+  private static final AtomicLong ourAccessClock = new AtomicLong(0);
+  private static final Bucket NULL_BUCKET = new NullBucket();
   private final int[] myBucketSizes;
   private final HashMap<String, Bucket> myPool = new HashMap<>();
   private final IdentityHashMap<Bucket, BucketStatsImpl> myBucketStats = new IdentityHashMap<>();
-  private final BiFunction<Integer, Integer, Function<Integer, Integer>> myBucketSizingPolicy;
+  /**
+   * Returns the capacity of a bucket: the max number of images for {@link SoftReferenceBucket}s, or the max number of bytes for
+   * {@link BudgetBucket}s.
+   */
+  private final BiFunction<Integer, Integer, Function<Integer, Long>> myBucketCapacityPolicy;
+  /**
+   * Max number of bytes of the images kept by all the buckets, or -1 if the pooled images are kept through {@link SoftReference}s.
+   */
+  private final long myMaxPooledBytes;
+  private final AtomicLong myPooledBytes = new AtomicLong(0);
+  private final List<BudgetBucket> myBudgetBuckets = new CopyOnWriteArrayList<>();
   @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
   private final FinalizableReferenceQueue myFinalizableReferenceQueue = new FinalizableReferenceQueue();
   private final Set<Reference<?>> myReferences = Sets.newConcurrentHashSet();
@@ -93,8 +113,8 @@ class ImagePoolImpl implements ImagePool {
   /**
    * Constructs a new {@link ImagePoolImpl} with a custom queue sizing policy. The passed bucketSizingPolicy will be called
    * every time that a new cache is needed for a given (width, height) -> (imageType).
-   * The return value from calling that function will be the size of the EvictingQueue used for caching the pooled
-   * images.
+   * The return value from calling that function will be the max number of pooled images kept in the bucket through
+   * {@link SoftReference}s.
    *
    * @param bucketSizes        Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its two
    *                           dimensions. If an image contains one dimension bigger than the biggest given bucket size, the image won't be
@@ -103,18 +123,36 @@ class ImagePoolImpl implements ImagePool {
    *                           type. If the returned size is 0, no pooling will be done for that bucket size.
    */
   ImagePoolImpl(@NotNull int[] bucketSizes, @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy) {
+    this(bucketSizes, (w, h) -> (type) -> (long)bucketSizingPolicy.apply(w, h).apply(type), -1);
+  }
+
+  /**
+   * Constructs a new {@link ImagePoolImpl} that keeps the pooled images until they are reused or evicted to stay within its byte budgets,
+   * instead of through {@link SoftReference}s.
+   *
+   * @param bucketSizes        See {@link #ImagePoolImpl(int[], BiFunction)}.
+   * @param bucketBudgetPolicy Function that returns the maximum number of bytes of the images kept by a given bucket. Once exceeded, the
+   *                           images returned the least recently to that bucket are evicted. If the returned budget is 0, no pooling will be
+   *                           done for that bucket size.
+   * @param maxPooledBytes     Maximum number of bytes of the images kept by all the buckets. Once exceeded, images are evicted from the
+   *                           buckets used the least recently.
+   */
+  ImagePoolImpl(@NotNull int[] bucketSizes,
+                @NotNull BiFunction<Integer, Integer, Function<Integer, Long>> bucketBudgetPolicy,
+                long maxPooledBytes) {
     if (LOG.isDebugEnabled()) {
       LOG.debug("New ImagePool " + Arrays.toString(bucketSizes));
     }
     myBucketSizes = bucketSizes;
     Arrays.sort(myBucketSizes);
-    myBucketSizingPolicy = bucketSizingPolicy;
+    myBucketCapacityPolicy = bucketBudgetPolicy;
+    myMaxPooledBytes = maxPooledBytes;
   }
 
   private boolean isDisposed = false;
 
   /**
-   * Returns the key to be used for indexing the {@link EvictingQueue}.
+   * Returns the key to be used for indexing the {@link Bucket}s.
    */
   @NotNull
   private static String getPoolKey(int w, int h, int type) {
@@ -134,7 +172,7 @@ class ImagePoolImpl implements ImagePool {
    */
   @NotNull
   private Bucket getTypeBucket(int w, int h, int type) {
-    if (myBucketSizingPolicy.apply(w, h).apply(type) == 0) {
+    if (myBucketCapacityPolicy.apply(w, h).apply(type) == 0) {
       // Do not cache
       return NULL_BUCKET;
     }
@@ -169,14 +207,22 @@ class ImagePoolImpl implements ImagePool {
     int finalWidthBucket = widthBucket;
     int finalHeightBucket = heightBucket;
     return myPool.computeIfAbsent(poolKey, (k) -> {
-      int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
+      long capacity = myBucketCapacityPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
 
-      if (size == 0) {
-        // For size 0, do not allocate extra memory for a new EvictingQueue.
+      if (capacity == 0) {
+        // For capacity 0, do not allocate extra memory for a new bucket.
         return NULL_BUCKET;
       }
 
-      Bucket newBucket = new Bucket(finalWidthBucket, finalHeightBucket, size);
+      Bucket newBucket;
+      if (myMaxPooledBytes < 0) {
+        newBucket = new SoftReferenceBucket(finalWidthBucket, finalHeightBucket, (int)capacity);
+      }
+      else {
+        BudgetBucket budgetBucket = new BudgetBucket(finalWidthBucket, finalHeightBucket, capacity);
+        myBudgetBuckets.add(budgetBucket);
+        newBucket = budgetBucket;
+      }
       myBucketStats.put(newBucket, new BucketStatsImpl(newBucket));
 
       return newBucket;
@@ -188,7 +234,7 @@ class ImagePoolImpl implements ImagePool {
   ImageImpl create(final int w, final int h, final int type, @Nullable Consumer<BufferedImage> freedCallback) {
     assert !isDisposed : "ImagePool already disposed";
 
-    // To avoid creating a large number of EvictingQueues, we distribute the images in buckets and use that
+    // To avoid creating a large number of buckets, we distribute the images in buckets by size ranges and use that
     Bucket bucket = getTypeBucket(w, h, type);
     BucketStatsImpl bucketStats = myBucketStats.get(bucket);
     if (LOG.isDebugEnabled()) {
@@ -196,14 +242,8 @@ class ImagePoolImpl implements ImagePool {
                               bucketStats != null));
     }
 
-    BufferedImage image;
-    SoftReference<BufferedImage> imageRef;
-    try {
-      imageRef = bucket.remove();
-      while ((image = imageRef.get()) == null) {
-        imageRef = bucket.remove();
-      }
-
+    BufferedImage image = bucket.poll();
+    if (image != null) {
       long totalSize = image.getWidth() * image.getHeight();
       if (bucketStats != null) {
         bucketStats.bucketHit();
@@ -227,7 +267,7 @@ class ImagePoolImpl implements ImagePool {
         g.dispose();
       }
     }
-    catch (NoSuchElementException e) {
+    else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("  New image %dx%d - %d\n", w, h, type));
       }
@@ -241,7 +281,7 @@ class ImagePoolImpl implements ImagePool {
       // Set acceleration priority to 0.9 out of 1.0. We reserve 1.0 for the shared buffers
       // that we paint to screen.
       image.setAccelerationPriority(0.9f);
-      long estimatedSize = newImageWidth * newImageHeight * 4;
+      long estimatedSize = getEstimatedSize(image);
       myTotalAllocatedBytes.add(estimatedSize);
       myTotalInUseBytes.add(estimatedSize);
 
@@ -255,7 +295,7 @@ class ImagePoolImpl implements ImagePool {
       public void finalizeReferent() {
         // This method might be called twice if the user has manually called the free() method. The second call will have no effect.
         if (myReferences.remove(this)) {
-          boolean accepted = bucket.offer(new SoftReference<>(imagePointer));
+          boolean accepted = bucket.offer(imagePointer);
           if (bucketStats != null) {
             if (accepted) {
               bucketStats.returnedImageAccepted();
@@ -270,13 +310,11 @@ class ImagePoolImpl implements ImagePool {
                                     w, h, type, bucket.myMinWidth, bucket.myMinHeight));
           }
 
-          long estimatedSize = imagePointer.getWidth() * imagePointer.getHeight() * 4;
+          long estimatedSize = getEstimatedSize(imagePointer);
+          myTotalInUseBytes.add(-estimatedSize);
           if (!accepted) {
             myTotalAllocatedBytes.add(-estimatedSize);
           }
-          else {
-            myTotalInUseBytes.add(-estimatedSize);
-          }
           if (freedCallback != null) {
             freedCallback.accept(imagePointer);
           }
@@ -289,6 +327,28 @@ class ImagePoolImpl implements ImagePool {
     return pooledImage;
   }
 
+  /**
+   * Returns the estimated number of bytes used by the given image.
+   */
+  private static long getEstimatedSize(@NotNull BufferedImage image) {
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+
+  /**
+   * Evicts images from the buckets used the least recently until the images kept by all the buckets fit in {@link #myMaxPooledBytes}.
+   */
+  private void evictToMaxPooledBytes() {
+    while (myPooledBytes.get() > myMaxPooledBytes) {
+      BudgetBucket leastRecentlyUsed = myBudgetBuckets.stream()
+        .filter(BudgetBucket::hasImages)
+        .min(Comparator.comparingLong(Bucket::getLastAccess))
+        .orElse(null);
+      if (leastRecentlyUsed == null || !leastRecentlyUsed.evictOldest()) {
+        break;
+      }
+    }
+  }
+
   private static final class BucketStatsImpl implements BucketStats {
     private final Bucket myBucket;
     private final AtomicLong myLastAccessMs = new AtomicLong(System.currentTimeMillis());
@@ -341,6 +401,16 @@ class ImagePoolImpl implements ImagePool {
       return myBucketHadSpace.get();
     }
 
+    @Override
+    public long bucketEvictions() {
+      return myBucket.myEvictions.get();
+    }
+
+    @Override
+    public long bytesPooled() {
+      return myBucket.getPooledBytes();
+    }
+
     void bucketHit() {
       myLastAccessMs.set(System.currentTimeMillis());
       myBucketHit.incrementAndGet();
@@ -360,35 +430,218 @@ class ImagePoolImpl implements ImagePool {
     }
   }
 
-  private static class Bucket extends ForwardingQueue<SoftReference<BufferedImage>> {
-    private final Queue<SoftReference<BufferedImage>> myDelegate;
-    private final int myMinWidth;
-    private final int myMinHeight;
-    private final int myMaxSize;
+  /**
+   * Bucket keeping the images of a range of sizes until they are reused.
+   */
+  private static abstract class Bucket {
+    final int myMinWidth;
+    final int myMinHeight;
+    private final AtomicLong myEvictions = new AtomicLong(0);
+    private volatile long myLastAccess = ourAccessClock.incrementAndGet();
 
-    Bucket(int minWidth, int minHeight, int maxSize) {
-      Preconditions.checkArgument(maxSize > 0);
+    Bucket(int minWidth, int minHeight) {
       myMinWidth = minWidth;
       myMinHeight = minHeight;
+    }
+
+    /**
+     * Removes and returns an image from the bucket, or null if the bucket is empty.
+     */
+    @Nullable
+    final BufferedImage poll() {
+      myLastAccess = ourAccessClock.incrementAndGet();
+      return doPoll();
+    }
+
+    /**
+     * Returns an image to the bucket. Returns false if the bucket did not accept it.
+     */
+    final boolean offer(@NotNull BufferedImage image) {
+      myLastAccess = ourAccessClock.incrementAndGet();
+      return doOffer(image);
+    }
+
+    long getLastAccess() {
+      return myLastAccess;
+    }
+
+    void imageEvicted() {
+      myEvictions.incrementAndGet();
+    }
+
+    @Nullable
+    abstract BufferedImage doPoll();
+
+    abstract boolean doOffer(@NotNull BufferedImage image);
+
+    abstract int getMaxSize();
+
+    /**
+     * Returns the number of bytes of the images kept by this bucket, or -1 if unknown.
+     */
+    abstract long getPooledBytes();
+  }
+
+  /**
+   * Bucket used for the images that are not pooled.
+   */
+  private static final class NullBucket extends Bucket {
+    NullBucket() {
+      super(0, 0);
+    }
+
+    @Nullable
+    @Override
+    BufferedImage doPoll() {
+      return null;
+    }
+
+    @Override
+    boolean doOffer(@NotNull BufferedImage image) {
+      return false;
+    }
+
+    @Override
+    int getMaxSize() {
+      return 0;
+    }
+
+    @Override
+    long getPooledBytes() {
+      return 0;
+    }
+  }
+
+  /**
+   * Bucket keeping up to a number of images through {@link SoftReference}s, so they can be reclaimed by the garbage collector.
+   */
+  private static final class SoftReferenceBucket extends Bucket {
+    private final Queue<SoftReference<BufferedImage>> myImages;
+    private final int myMaxSize;
+
+    SoftReferenceBucket(int minWidth, int minHeight, int maxSize) {
+      super(minWidth, minHeight);
+      Preconditions.checkArgument(maxSize > 0);
       myMaxSize = maxSize;
-      myDelegate = new ArrayBlockingQueue<>(maxSize);
+      myImages = new ArrayBlockingQueue<>(maxSize);
     }
 
-    Bucket() {
-      myMinWidth = 0;
-      myMinHeight = 0;
-      myMaxSize = 0;
-      myDelegate = EvictingQueue.create(0);
+    @Nullable
+    @Override
+    BufferedImage doPoll() {
+      SoftReference<BufferedImage> imageRef;
+      while ((imageRef = myImages.poll()) != null) {
+        BufferedImage image = imageRef.get();
+        if (image != null) {
+          return image;
+        }
+        // The image was reclaimed by the garbage collector
+        imageEvicted();
+      }
+      return null;
     }
 
     @Override
-    protected Queue<SoftReference<BufferedImage>> delegate() {
-      return myDelegate;
+    boolean doOffer(@NotNull BufferedImage image) {
+      return myImages.offer(new SoftReference<>(image));
     }
 
+    @Override
     int getMaxSize() {
       return myMaxSize;
     }
+
+    @Override
+    long getPooledBytes() {
+      return -1;
+    }
+  }
+
+  /**
+   * Bucket keeping images until they are reused or evicted to stay within its byte budget and the one of the pool.
+   */
+  private final class BudgetBucket extends Bucket {
+    private final long myMaxBytes;
+    /**
+     * The images of the bucket, from the least to the most recently returned.
+     */
+    @GuardedBy("this")
+    private final ArrayDeque<BufferedImage> myImages = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long myBytes = 0;
+
+    BudgetBucket(int minWidth, int minHeight, long maxBytes) {
+      super(minWidth, minHeight);
+      Preconditions.checkArgument(maxBytes > 0);
+      myMaxBytes = maxBytes;
+    }
+
+    @Nullable
+    @Override
+    BufferedImage doPoll() {
+      BufferedImage image;
+      synchronized (this) {
+        // Reuse the most recently returned image so the ones not needed anymore are the ones evicted.
+        image = myImages.pollLast();
+        if (image == null) {
+          return null;
+        }
+        myBytes -= getEstimatedSize(image);
+      }
+      myPooledBytes.addAndGet(-getEstimatedSize(image));
+      return image;
+    }
+
+    @Override
+    boolean doOffer(@NotNull BufferedImage image) {
+      long size = getEstimatedSize(image);
+      if (size > myMaxBytes) {
+        return false;
+      }
+      synchronized (this) {
+        myImages.addLast(image);
+        myBytes += size;
+      }
+      myPooledBytes.addAndGet(size);
+      while (getPooledBytes() > myMaxBytes && evictOldest()) {
+        // Keep evicting until the bucket is within its budget
+      }
+      evictToMaxPooledBytes();
+      return true;
+    }
+
+    synchronized boolean hasImages() {
+      return !myImages.isEmpty();
+    }
+
+    /**
+     * Evicts the image returned the least recently to this bucket. Returns false if the bucket is empty.
+     */
+    boolean evictOldest() {
+      BufferedImage image;
+      synchronized (this) {
+        image = myImages.pollFirst();
+        if (image == null) {
+          return false;
+        }
+        myBytes -= getEstimatedSize(image);
+      }
+      long size = getEstimatedSize(image);
+      myPooledBytes.addAndGet(-size);
+      myTotalAllocatedBytes.add(-size);
+      imageEvicted();
+      return true;
+    }
+
+    @Override
+    int getMaxSize() {
+      return (int)Math.min(Integer.MAX_VALUE, myMaxBytes / ((long)Math.max(1, myMinWidth) * Math.max(1, myMinHeight) * 4));
+    }
+
+    @Override
+    synchronized long getPooledBytes() {
+      return myBytes;
+    }
   }
 
   /**
@@ -17,6 +17,7 @@ package com.android.tools.idea.ui.resourcemanager.plugin
 
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.layoutlib.RenderingException
+import com.android.tools.idea.rendering.RenderAsyncActionExecutor
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
@@ -53,6 +54,7 @@ private fun createRenderTask(facet: AndroidFacet,
     .withMaxRenderSize(MAX_RENDER_WIDTH, MAX_RENDER_HEIGHT)
     .disableDecorations()
     .disableShadow()
+    .withPriority(RenderAsyncActionExecutor.RenderingPriority.LOW)
     .build()
 }
 
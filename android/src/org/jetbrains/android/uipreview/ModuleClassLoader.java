@@ -1,6 +1,7 @@
 package org.jetbrains.android.uipreview;
 
 import static com.android.tools.idea.flags.StudioFlags.NELE_CLASS_BINARY_CACHE;
+import static com.android.tools.idea.flags.StudioFlags.NELE_PERSISTENT_CLASS_BINARY_CACHE;
 import static com.android.tools.idea.rendering.classloading.ClassConverter.getCurrentClassVersion;
 import static com.android.tools.idea.rendering.classloading.ReflectionUtilKt.findMethodLike;
 import static com.android.tools.idea.rendering.classloading.UtilKt.toClassTransform;
@@ -25,6 +26,7 @@ import com.android.tools.idea.rendering.classloading.loaders.DelegatingClassLoad
 import com.android.tools.idea.rendering.classloading.loaders.ProjectSystemClassLoader;
 import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.util.Disposer;
@@ -144,6 +146,10 @@ public final class ModuleClassLoader extends DelegatingClassLoader implements Mo
          NELE_CLASS_BINARY_CACHE.get()
          ? ClassBinaryCacheManager.getInstance().getCache(renderContext.getModule())
          : ClassBinaryCache.NO_CACHE,
+         // Don't use the persistent cache in tests to avoid sharing classes across them.
+         NELE_PERSISTENT_CLASS_BINARY_CACHE.get() && !ApplicationManager.getApplication().isUnitTestMode()
+         ? TransformedClassDiskCache.getInstance()
+         : null,
          diagnostics);
   }
 
@@ -191,6 +197,7 @@ public final class ModuleClassLoader extends DelegatingClassLoader implements Mo
                             @NotNull ClassTransform projectTransformations,
                             @NotNull ClassTransform nonProjectTransformations,
                             @NotNull ClassBinaryCache cache,
+                            @Nullable TransformedClassDiskCache diskCache,
                             @NotNull ModuleClassLoaderDiagnosticsWrite diagnostics) {
     this(
       parent,
@@ -201,6 +208,7 @@ public final class ModuleClassLoader extends DelegatingClassLoader implements Mo
         projectTransformations,
         nonProjectTransformations,
         cache,
+        diskCache,
         (fqcn, timeMs, size) -> {
           diagnostics.classRewritten(fqcn, size, timeMs);
           return Unit.INSTANCE;
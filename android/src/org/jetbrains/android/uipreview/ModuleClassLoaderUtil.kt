@@ -143,13 +143,15 @@ fun Module?.isSourceModified(fqcn: String, classFile: VirtualFile): Boolean = th
  * libraries are given in [nonProjectTransforms].
  *
  * The [binaryCache] provides a cache where the transformed classes from the libraries are reused. The cache can be shared across multiple
- * [ModuleClassLoaderImpl] to benefit from sharing the classes already loaded.
+ * [ModuleClassLoaderImpl] to benefit from sharing the classes already loaded. The [diskCache], if any, keeps the transformed classes
+ * from the libraries across IDE restarts.
  */
 internal class ModuleClassLoaderImpl(module: Module,
                                      private val projectSystemLoader: ProjectSystemClassLoader,
                                      val projectTransforms: ClassTransform,
                                      val nonProjectTransforms: ClassTransform,
                                      private val binaryCache: ClassBinaryCache,
+                                     private val diskCache: TransformedClassDiskCache?,
                                      onClassRewrite: (String, Long, Int) -> Unit) : UserDataHolderBase(), DelegatingClassLoader.Loader, Disposable {
   private val loader: DelegatingClassLoader.Loader
 
@@ -222,6 +224,7 @@ internal class ModuleClassLoaderImpl(module: Module,
 
   fun createNonProjectLoader(nonProjectTransforms: ClassTransform,
                              binaryCache: ClassBinaryCache,
+                             diskCache: TransformedClassDiskCache?,
                              externalLibraries: List<Path>,
                              onClassLoaded: (String) -> Unit,
                              onClassRewrite: (String, Long, Int) -> Unit): DelegatingClassLoader.Loader {
@@ -246,7 +249,8 @@ internal class ModuleClassLoaderImpl(module: Module,
               jarLoader
             ),
             ClassWriter.COMPUTE_MAXS,
-            onClassRewrite),
+            onClassRewrite,
+            diskCache),
           onAfterLoad = { fqcn, bytes ->
             onClassLoaded(fqcn)
             // Map the fqcn to the library path and insert the class into the class binary cache
@@ -280,6 +284,7 @@ internal class ModuleClassLoaderImpl(module: Module,
     }
     val nonProjectLoader = createNonProjectLoader(nonProjectTransforms,
                                                   binaryCache,
+                                                  diskCache,
                                                   externalLibraries,
                                                   { _nonProjectLoadedClassNames.add(it) },
                                                   onClassRewrite)
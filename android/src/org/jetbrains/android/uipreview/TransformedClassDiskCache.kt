@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.res.getAndroidPluginVersion
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.diagnostic.Logger
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.util.zip.CRC32
+import kotlin.streams.toList
+
+private const val MAX_SIZE_BYTES = 200_000_000L // We will store no more than 200Mb of transformed classes on disk
+private const val CACHE_DIRECTORY = "layoutlib-transformed-classes"
+private const val ENTRY_SUFFIX = ".bin"
+private const val TEMP_SUFFIX = ".tmp"
+private const val ENTRY_MAGIC = 0x54434C53 // "TCLS"
+private const val ENTRY_HEADER_SIZE = 12 // magic, CRC32 and length of the class data
+
+/**
+ * A disk cache of transformed classes that is kept across IDE restarts, so that the classes of the libraries do not need to be transformed
+ * again every time the IDE starts or a new class loader is created.
+ *
+ * Entries are addressed by the content of the class before the transformation and the id of the transformation, so they never need to be
+ * invalidated: a class that changes gets a new entry and the old one is eventually evicted. The id of the transformation must be the same
+ * across restarts, see [com.android.tools.idea.rendering.classloading.ClassTransform.persistentId].
+ *
+ * Each entry is written to a temporary file that is only moved in place once complete, and the class data is checked against a checksum
+ * when read, so that an entry left incomplete by a crash is never returned. Once the entries take more than [maxSizeBytes], the least
+ * recently used ones are deleted. The modification time of the entry files is updated when they are used, to keep that order across
+ * restarts.
+ */
+class TransformedClassDiskCache @VisibleForTesting constructor(private val directory: Path, private val maxSizeBytes: Long) {
+  /**
+   * Size of each entry by file name, in least recently used order. Null until the directory has been read.
+   */
+  @GuardedBy("this")
+  private var entries: LinkedHashMap<String, Long>? = null
+
+  @GuardedBy("this")
+  private var totalSizeBytes = 0L
+
+  /**
+   * Returns the class with the given [inputBytes] as transformed by the transformation with the given [transformationId], or null if it
+   * is not cached.
+   */
+  fun get(inputBytes: ByteArray, transformationId: String): ByteArray? {
+    val name = getEntryName(inputBytes, transformationId)
+    synchronized(this) {
+      // Reading the entry also makes it the most recently used one.
+      getEntries()[name] ?: return null
+    }
+
+    val path = directory.resolve(name)
+    val data = try {
+      readEntry(path)
+    }
+    catch (e: IOException) {
+      null
+    }
+    if (data == null) {
+      // The entry is corrupt or has been deleted by someone else.
+      LOG.debug("Invalid transformed class cache entry $path")
+      remove(name)
+      return null
+    }
+
+    try {
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()))
+    }
+    catch (ignored: IOException) {
+    }
+    return data
+  }
+
+  /**
+   * Stores the [transformedBytes] of the class with [inputBytes] for the transformation with the given [transformationId].
+   */
+  fun put(inputBytes: ByteArray, transformationId: String, transformedBytes: ByteArray) {
+    val name = getEntryName(inputBytes, transformationId)
+    synchronized(this) {
+      if (getEntries().containsKey(name)) return
+    }
+
+    val size: Long
+    try {
+      Files.createDirectories(directory)
+      val tempPath = Files.createTempFile(directory, name, TEMP_SUFFIX)
+      try {
+        Files.write(tempPath, encodeEntry(transformedBytes))
+        size = Files.size(tempPath)
+        Files.move(tempPath, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+      }
+      finally {
+        Files.deleteIfExists(tempPath)
+      }
+    }
+    catch (e: IOException) {
+      LOG.debug("Unable to write transformed class cache entry $name", e)
+      return
+    }
+
+    val evicted = synchronized(this) {
+      getEntries().put(name, size)?.let { totalSizeBytes -= it }
+      totalSizeBytes += size
+      evict()
+    }
+    evicted.forEach { deleteEntryFile(it) }
+  }
+
+  private fun remove(name: String) {
+    synchronized(this) {
+      getEntries().remove(name)?.let { totalSizeBytes -= it }
+    }
+    deleteEntryFile(name)
+  }
+
+  /**
+   * Removes the least recently used entries until the cache is within its size, and returns their names.
+   */
+  @GuardedBy("this")
+  private fun evict(): List<String> {
+    val evicted = mutableListOf<String>()
+    val iterator = getEntries().entries.iterator()
+    while (totalSizeBytes > maxSizeBytes && iterator.hasNext()) {
+      val entry = iterator.next()
+      iterator.remove()
+      totalSizeBytes -= entry.value
+      evicted.add(entry.key)
+    }
+    return evicted
+  }
+
+  @GuardedBy("this")
+  private fun getEntries(): LinkedHashMap<String, Long> = entries ?: readEntries().also { entries = it }
+
+  /**
+   * Lists the entries in [directory] in least recently used order, and deletes the temporary files left by writes that did not complete.
+   */
+  @GuardedBy("this")
+  private fun readEntries(): LinkedHashMap<String, Long> {
+    val result = LinkedHashMap<String, Long>(16, 0.75f, true)
+    totalSizeBytes = 0
+    if (!Files.isDirectory(directory)) return result
+
+    try {
+      val paths = Files.list(directory).use { it.toList() }
+      paths.filter { it.fileName.toString().endsWith(TEMP_SUFFIX) }.forEach { Files.deleteIfExists(it) }
+      paths
+        .filter { it.fileName.toString().endsWith(ENTRY_SUFFIX) }
+        .map { Triple(it.fileName.toString(), Files.size(it), Files.getLastModifiedTime(it)) }
+        .sortedBy { it.third }
+        .forEach { (name, size, _) ->
+          result[name] = size
+          totalSizeBytes += size
+        }
+    }
+    catch (e: IOException) {
+      LOG.warn("Unable to read the transformed class cache in $directory", e)
+    }
+    return result
+  }
+
+  private fun deleteEntryFile(name: String) {
+    try {
+      Files.deleteIfExists(directory.resolve(name))
+    }
+    catch (e: IOException) {
+      LOG.debug("Unable to delete transformed class cache entry $name", e)
+    }
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(TransformedClassDiskCache::class.java)
+
+    private val instance: TransformedClassDiskCache by lazy {
+      // The transformations of a class may change with the version of the plugin even if their id does not, so each version gets its own
+      // cache. The caches of other versions are deleted.
+      val cacheRoot = Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY)
+      val version = getAndroidPluginVersion() ?: "dev"
+      deleteOtherVersions(cacheRoot, version)
+      TransformedClassDiskCache(cacheRoot.resolve(version), MAX_SIZE_BYTES)
+    }
+
+    @JvmStatic
+    fun getInstance(): TransformedClassDiskCache = instance
+
+    private fun deleteOtherVersions(cacheRoot: Path, version: String) {
+      if (!Files.isDirectory(cacheRoot)) return
+      try {
+        Files.list(cacheRoot).use { it.toList() }
+          .filter { it.fileName.toString() != version }
+          .forEach { versionDirectory ->
+            Files.list(versionDirectory).use { it.toList() }.forEach { Files.deleteIfExists(it) }
+            Files.deleteIfExists(versionDirectory)
+          }
+      }
+      catch (e: IOException) {
+        LOG.debug("Unable to delete the transformed class caches of other versions", e)
+      }
+    }
+
+    private fun getEntryName(inputBytes: ByteArray, transformationId: String): String =
+      Hashing.sha256()
+        .newHasher()
+        .putString(transformationId, Charsets.UTF_8)
+        .putBytes(inputBytes)
+        .hash()
+        .toString() + ENTRY_SUFFIX
+
+    private fun encodeEntry(data: ByteArray): ByteArray =
+      ByteBuffer.allocate(ENTRY_HEADER_SIZE + data.size)
+        .putInt(ENTRY_MAGIC)
+        .putInt(checksum(data))
+        .putInt(data.size)
+        .put(data)
+        .array()
+
+    /**
+     * Returns the class data of the entry at [path], or null if it is not valid.
+     */
+    private fun readEntry(path: Path): ByteArray? {
+      val buffer = ByteBuffer.wrap(Files.readAllBytes(path))
+      if (buffer.remaining() < ENTRY_HEADER_SIZE || buffer.int != ENTRY_MAGIC) return null
+      val checksum = buffer.int
+      val size = buffer.int
+      if (size != buffer.remaining()) return null
+      val data = ByteArray(size)
+      buffer.get(data)
+      return data.takeIf { checksum(it) == checksum }
+    }
+
+    private fun checksum(data: ByteArray): Int = CRC32().apply { update(data) }.value.toInt()
+  }
+}
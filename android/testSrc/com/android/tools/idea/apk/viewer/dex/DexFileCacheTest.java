@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getDexPath;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DexFileCacheTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private byte[] myContents;
+
+  @Before
+  public void setUp() throws IOException {
+    DexFileCache.clear();
+    myContents = Files.readAllBytes(getDexPath("Test.dex"));
+  }
+
+  @After
+  public void tearDown() {
+    DexFileCache.clear();
+  }
+
+  @Test
+  public void sameContentIsParsedOnce() throws IOException {
+    DexFileCache.CachedDexFile first = DexFileCache.getDexFile(writeDexFile("first.dex", myContents));
+    DexFileCache.CachedDexFile second = DexFileCache.getDexFile(writeDexFile("second.dex", myContents));
+
+    assertThat(second.getHash()).isEqualTo(first.getHash());
+    assertThat(second.getDexFile()).isSameAs(first.getDexFile());
+    assertThat(first.getSize()).isEqualTo(myContents.length);
+    assertThat(DexFileCache.getReferences(Arrays.asList(second))).isSameAs(DexFileCache.getReferences(Arrays.asList(first)));
+  }
+
+  @Test
+  public void differentContentIsParsedAgain() throws IOException {
+    Path path = writeDexFile("classes.dex", myContents);
+    DexFileCache.CachedDexFile original = DexFileCache.getDexFile(path);
+
+    // A dex file replaced with another one at the same path.
+    Files.write(path, Arrays.copyOf(myContents, myContents.length + 1));
+    DexFileCache.CachedDexFile modified = DexFileCache.getDexFile(path);
+
+    assertThat(modified.getHash()).isNotEqualTo(original.getHash());
+    assertThat(modified.getDexFile()).isNotSameAs(original.getDexFile());
+    assertThat(DexFileCache.getReferences(Arrays.asList(modified))).isNotSameAs(DexFileCache.getReferences(Arrays.asList(original)));
+  }
+
+  @Test
+  public void dexFilesAreInTheOrderOfThePaths() throws Exception {
+    byte[] otherContents = Arrays.copyOf(myContents, myContents.length + 1);
+    Path[] paths = {writeDexFile("classes.dex", myContents), writeDexFile("classes2.dex", otherContents)};
+
+    // Read the dex files in the reverse order.
+    List<Runnable> tasks = new ArrayList<>();
+    ListenableFuture<List<DexFileCache.CachedDexFile>> future = DexFileCache.getDexFiles(paths, tasks::add);
+    assertThat(tasks).hasSize(2);
+    Lists.reverse(tasks).forEach(Runnable::run);
+
+    List<DexFileCache.CachedDexFile> dexFiles = future.get();
+    assertThat(dexFiles).hasSize(2);
+    assertThat(dexFiles.get(0).getHash()).isEqualTo(Hashing.sha256().hashBytes(myContents));
+    assertThat(dexFiles.get(1).getHash()).isEqualTo(Hashing.sha256().hashBytes(otherContents));
+  }
+
+  @NotNull
+  private Path writeDexFile(@NotNull String name, @NotNull byte[] contents) throws IOException {
+    return Files.write(myTemporaryFolder.getRoot().toPath().resolve(name), contents);
+  }
+}
@@ -20,6 +20,10 @@ import com.android.tools.idea.diagnostics.hprof.analysis.HProfAnalysis
 import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
 import com.android.tools.idea.diagnostics.hprof.navigator.RootReason
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
+import com.android.tools.idea.diagnostics.hprof.parser.HProfVisitor
+import com.android.tools.idea.diagnostics.hprof.parser.HeapDumpRecordType
+import com.android.tools.idea.diagnostics.hprof.parser.RecordType
+import com.android.tools.idea.diagnostics.hprof.parser.Type
 import com.intellij.openapi.progress.util.AbstractProgressIndicatorBase
 import gnu.trove.TObjectIntHashMap
 import org.junit.After
@@ -27,6 +31,8 @@ import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.junit.Test
 import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
 import java.nio.channels.FileChannel
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
@@ -129,6 +135,90 @@ class HProfEventBasedParserTest {
                         baselineReport, generatedReport)
   }
 
+  @Test
+  fun testAndroidRecords() {
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { out ->
+      out.write("JAVA PROFILE 1.0.3".toByteArray(StandardCharsets.UTF_8))
+      out.writeByte(0)
+      out.writeInt(4) // ID size
+      out.writeLong(0) // Timestamp
+
+      val segment = ByteArrayOutputStream()
+      DataOutputStream(segment).use { record ->
+        record.writeByte(HeapDumpRecordType.HeapDumpInfo.value)
+        record.writeInt('A'.toInt())
+        record.writeInt(100)
+        record.writeByte(HeapDumpRecordType.RootInternedString.value)
+        record.writeInt(1)
+        record.writeByte(HeapDumpRecordType.RootJNIMonitor.value)
+        record.writeInt(2)
+        record.writeInt(0)
+        record.writeInt(0)
+        record.writeByte(HeapDumpRecordType.Unreachable.value)
+        record.writeInt(3)
+        record.writeByte(HeapDumpRecordType.PrimitiveArrayNoDataDump.value)
+        record.writeInt(4)
+        record.writeInt(0)
+        record.writeInt(10)
+        record.writeByte(Type.BYTE.typeId)
+        record.writeByte(HeapDumpRecordType.PrimitiveArrayDump.value)
+        record.writeInt(5)
+        record.writeInt(0)
+        record.writeInt(2)
+        record.writeByte(Type.BYTE.typeId)
+        record.write(byteArrayOf(1, 2))
+      }
+      out.writeByte(RecordType.HeapDumpSegment.value)
+      out.writeInt(0)
+      out.writeInt(segment.size())
+      segment.writeTo(out)
+      out.writeByte(RecordType.HeapDumpEnd.value)
+      out.writeInt(0)
+      out.writeInt(0)
+    }
+    val androidFile = tmpFolder.newFile().toPath()
+    Files.write(androidFile, bytes.toByteArray())
+
+    val allRecords = mutableListOf<String>()
+    val arrays = mutableListOf<String>()
+    FileChannel.open(androidFile, StandardOpenOption.READ).use { androidChannel ->
+      HProfEventBasedParser(androidChannel).use { androidParser ->
+        androidParser.accept(object : HProfVisitor() {
+          override fun visitHeapDumpInfo(heapId: Long, heapNameStringId: Long) {
+            allRecords.add("heap $heapId $heapNameStringId")
+          }
+
+          override fun visitRootInternedString(objectId: Long) {
+            allRecords.add("interned string $objectId")
+          }
+
+          override fun visitRootJNIMonitor(objectId: Long, threadSerialNumber: Long, frameNumber: Long) {
+            allRecords.add("jni monitor $objectId")
+          }
+
+          override fun visitPrimitiveArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, numberOfElements: Long, elementType: Type) {
+            allRecords.add("array $arrayObjectId $numberOfElements $elementType")
+          }
+        }, null)
+
+        // Visitors of primitive arrays see the arrays dumped without their values too.
+        androidParser.accept(object : HProfVisitor() {
+          override fun preVisit() {
+            disableAll()
+            enable(HeapDumpRecordType.PrimitiveArrayDump)
+          }
+
+          override fun visitPrimitiveArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, numberOfElements: Long, elementType: Type) {
+            arrays.add("array $arrayObjectId $numberOfElements $elementType")
+          }
+        }, null)
+      }
+    }
+    assertEquals(listOf("heap 65 100", "interned string 1", "jni monitor 2", "array 4 10 BYTE", "array 5 2 BYTE"), allRecords)
+    assertEquals(listOf("array 4 10 BYTE", "array 5 2 BYTE"), arrays)
+  }
+
   /**
    * Get the contents of the baseline file, with system-dependent line endings
    */
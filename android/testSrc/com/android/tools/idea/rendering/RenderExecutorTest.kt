@@ -47,6 +47,12 @@ private fun RenderExecutor.runAsyncActionWithTestDefault(queueingTimeout: Long =
     null
   })
 
+private fun RenderExecutor.runAsyncActionWithTestDefault(priority: RenderAsyncActionExecutor.RenderingPriority,
+                                                         owner: Any?,
+                                                         coalescingKey: Any? = null,
+                                                         callable: () -> String): CompletableFuture<String> =
+  runAsyncActionWithTimeout(1, TimeUnit.SECONDS, 1, TimeUnit.SECONDS, priority, owner, coalescingKey, Callable { callable() })
+
 class RenderExecutorTest {
   @Test
   fun testTimeout() {
@@ -121,6 +127,80 @@ class RenderExecutorTest {
     assertEquals(99, lastToExecute.get())
   }
 
+  @Test
+  fun testPriorityAndFairness() {
+    val actionExecutor = OnDemandExecutorService()
+    val timeoutExecutorProvider = VirtualTimeScheduler()
+    val executor = RenderExecutor.createForTests(executorProvider = { actionExecutor },
+                                                 timeoutExecutorProvider = { timeoutExecutorProvider })
+    val executionOrder = mutableListOf<String>()
+    fun submit(priority: RenderAsyncActionExecutor.RenderingPriority, owner: String, name: String) =
+      executor.runAsyncActionWithTestDefault(priority, owner) {
+        executionOrder.add(name)
+        name
+      }
+
+    // The first owner queues many actions before the second one.
+    repeat(3) { submit(RenderAsyncActionExecutor.RenderingPriority.HIGH, "A", "A$it") }
+    submit(RenderAsyncActionExecutor.RenderingPriority.LOW, "B", "B-low")
+    repeat(2) { submit(RenderAsyncActionExecutor.RenderingPriority.HIGH, "B", "B$it") }
+    actionExecutor.runAll()
+
+    // Owners take turns, and low priority actions run last.
+    assertEquals(listOf("A0", "B0", "A1", "B1", "A2", "B-low"), executionOrder)
+  }
+
+  @Test
+  fun testSupersededActionsAreNotExecuted() {
+    val actionExecutor = OnDemandExecutorService()
+    val timeoutExecutorProvider = VirtualTimeScheduler()
+    val executor = RenderExecutor.createForTests(executorProvider = { actionExecutor },
+                                                 timeoutExecutorProvider = { timeoutExecutorProvider })
+    val counter = AtomicInteger(0)
+
+    val futures = (0 until 3).map {
+      executor.runAsyncActionWithTestDefault(RenderAsyncActionExecutor.RenderingPriority.HIGH, null, "render") {
+        counter.incrementAndGet()
+        "render$it"
+      }
+    }
+    val other = executor.runAsyncActionWithTestDefault(RenderAsyncActionExecutor.RenderingPriority.HIGH, null, "layout") { "layout" }
+    actionExecutor.runAll()
+
+    // Only the latest render ran, and its result is not shared with the renders it superseded.
+    assertEquals(1, counter.get())
+    assertEquals("render2", futures.last().getNow(null))
+    futures.dropLast(1).forEach {
+      try {
+        it.getNow(null)
+        fail("Superseded action should have completed exceptionally")
+      }
+      catch (e: CompletionException) {
+        assertTrue(e.cause is RenderAsyncActionExecutor.SupersededException)
+      }
+    }
+    assertEquals("layout", other.getNow(null))
+  }
+
+  @Test
+  fun testLowPriorityActionsDoNotTimeOutWhileQueued() {
+    val actionExecutor = OnDemandExecutorService()
+    val timeoutExecutorProvider = VirtualTimeScheduler()
+    val executor = RenderExecutor.createForTests(executorProvider = { actionExecutor },
+                                                 timeoutExecutorProvider = { timeoutExecutorProvider })
+
+    val low = executor.runAsyncActionWithTestDefault(RenderAsyncActionExecutor.RenderingPriority.LOW, null) { "low" }
+    val high = executor.runAsyncActionWithTestDefault(RenderAsyncActionExecutor.RenderingPriority.HIGH, null) { "high" }
+    timeoutExecutorProvider.advanceBy(2, TimeUnit.SECONDS)
+
+    // The high priority action timed out waiting, the low priority one is still waiting for its turn.
+    assertTrue(high.isCompletedExceptionally)
+    assertFalse(low.isDone)
+    assertEquals(1, executor.accumulatedTimeouts)
+    actionExecutor.runAll()
+    assertEquals("low", low.getNow(null))
+  }
+
   @Test
   fun testSyncRenderActionTimeout() {
     val actionExecutor = OnDemandExecutorService()
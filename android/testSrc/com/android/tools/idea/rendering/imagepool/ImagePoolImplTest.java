@@ -151,6 +151,53 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testBudgetedPooling() {
+    // Each bucket keeps up to two 50x50 images of 10000 bytes, and the pool up to three.
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500}, (w, h) -> (type) -> 20_000L, 30_000);
+    try {
+      ImagePoolImpl.ImageImpl image1 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image2 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image3 = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      BufferedImage internalPtr3 = image3.myBuffer;
+      ImagePoolImageDisposer.disposeImage(image1);
+      ImagePoolImageDisposer.disposeImage(image2);
+      ImagePoolImageDisposer.disposeImage(image3);
+
+      // The first image does not fit in the bucket budget anymore
+      ImagePool.BucketStats bucketStats = pool.getStats().getBucketStats()[0];
+      assertEquals(1, bucketStats.bucketEvictions());
+      assertEquals(20_000, bucketStats.bytesPooled());
+      assertEquals(20_000, pool.getStats().totalBytesAllocated());
+      assertEquals(0, pool.getStats().totalBytesInUse());
+
+      // The most recently returned image is reused first
+      ImagePoolImpl.ImageImpl reused = pool.create(40, 40, BufferedImage.TYPE_INT_ARGB, null);
+      assertEquals(internalPtr3, reused.myBuffer);
+      assertEquals(1, pool.getStats().totalHits());
+      assertEquals(3, pool.getStats().totalMisses());
+
+      // Images of another type go to another bucket, which fills the pool budget
+      ImagePoolImpl.ImageImpl rgbImage1 = pool.create(40, 40, BufferedImage.TYPE_INT_RGB, null);
+      ImagePoolImpl.ImageImpl rgbImage2 = pool.create(40, 40, BufferedImage.TYPE_INT_RGB, null);
+      ImagePoolImageDisposer.disposeImage(rgbImage1);
+      ImagePoolImageDisposer.disposeImage(rgbImage2);
+      assertEquals(1, pool.getStats().totalEvictions());
+      assertEquals(40_000, pool.getStats().totalBytesAllocated());
+
+      // Returning one more image evicts one from the bucket used the least recently, the second one
+      ImagePoolImageDisposer.disposeImage(reused);
+      assertEquals(1, bucketStats.bucketEvictions());
+      assertEquals(20_000, bucketStats.bytesPooled());
+      assertEquals(2, pool.getStats().totalEvictions());
+      assertEquals(30_000, pool.getStats().totalBytesAllocated());
+      assertEquals(0, pool.getStats().totalBytesInUse());
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
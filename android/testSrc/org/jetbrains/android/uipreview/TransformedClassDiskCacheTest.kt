@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.nio.file.Files
+import kotlin.streams.toList
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class TransformedClassDiskCacheTest {
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private fun ByteArray?.asString() = this?.toString(Charsets.UTF_8)
+
+  @Test
+  fun testPutAndGet() {
+    val directory = folder.root.toPath().resolve("cache")
+    val cache = TransformedClassDiskCache(directory, 1000)
+    cache.put("A".toByteArray(), "t1", "A1".toByteArray())
+    cache.put("A".toByteArray(), "t2", "A2".toByteArray())
+    cache.put("B".toByteArray(), "t1", "B1".toByteArray())
+
+    assertEquals("A1", cache.get("A".toByteArray(), "t1").asString())
+    assertEquals("A2", cache.get("A".toByteArray(), "t2").asString())
+    assertEquals("B1", cache.get("B".toByteArray(), "t1").asString())
+    assertNull(cache.get("B".toByteArray(), "t2"))
+
+    // The entries are still available to a new instance, like after a restart.
+    val newCache = TransformedClassDiskCache(directory, 1000)
+    assertEquals("A1", newCache.get("A".toByteArray(), "t1").asString())
+    assertEquals("B1", newCache.get("B".toByteArray(), "t1").asString())
+  }
+
+  @Test
+  fun testLeastRecentlyUsedEntriesAreEvicted() {
+    val directory = folder.root.toPath().resolve("cache")
+    // Each entry takes 12 bytes of header and 5 bytes of data, so only two of them fit.
+    val cache = TransformedClassDiskCache(directory, 40)
+    cache.put("A".toByteArray(), "t", "AAAAA".toByteArray())
+    cache.put("B".toByteArray(), "t", "BBBBB".toByteArray())
+    assertEquals("AAAAA", cache.get("A".toByteArray(), "t").asString())
+    cache.put("C".toByteArray(), "t", "CCCCC".toByteArray())
+
+    assertEquals("AAAAA", cache.get("A".toByteArray(), "t").asString())
+    assertNull(cache.get("B".toByteArray(), "t"))
+    assertEquals("CCCCC", cache.get("C".toByteArray(), "t").asString())
+    assertEquals(2, Files.list(directory).use { it.count() })
+  }
+
+  @Test
+  fun testCorruptEntriesAreDiscarded() {
+    val directory = folder.root.toPath().resolve("cache")
+    val cache = TransformedClassDiskCache(directory, 1000)
+    cache.put("A".toByteArray(), "t", "AAAAA".toByteArray())
+    val entry = Files.list(directory).use { it.toList() }.single()
+    val bytes = Files.readAllBytes(entry)
+    bytes[bytes.size - 1] = 'X'.toByte()
+    Files.write(entry, bytes)
+
+    assertNull(cache.get("A".toByteArray(), "t"))
+    assertEquals(0, Files.list(directory).use { it.count() })
+
+    // Temporary files left by incomplete writes are deleted.
+    Files.write(directory.resolve("incomplete.bin.tmp"), bytes)
+    TransformedClassDiskCache(directory, 1000).get("A".toByteArray(), "t")
+    assertEquals(0, Files.list(directory).use { it.count() })
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.android.tools.apk.analyzer.dex.DexReferences;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+/**
+ * Keeps the dex files parsed by the APK Analyzer, and the references computed between them, keyed by the content of the dex files.
+ * Opening the same APK again, or another editor on the same dex files, reuses them instead of computing them again. Each cache keeps at
+ * most {@link #MAX_CACHED_DEX_BYTES} of dex files, the size of the files being a rough measure of the memory used by what is computed
+ * from them.
+ */
+final class DexFileCache {
+  @VisibleForTesting
+  static final long MAX_CACHED_DEX_BYTES = 256 * 1024 * 1024;
+
+  private static final Cache<HashCode, CachedDexFile> ourDexFiles = CacheBuilder.newBuilder()
+    .expireAfterAccess(10, TimeUnit.MINUTES)
+    .maximumWeight(MAX_CACHED_DEX_BYTES)
+    .weigher((HashCode hash, CachedDexFile dexFile) -> dexFile.getSize())
+    .softValues()
+    .build();
+  private static final Cache<List<HashCode>, CachedReferences> ourReferences = CacheBuilder.newBuilder()
+    .expireAfterAccess(10, TimeUnit.MINUTES)
+    .maximumWeight(MAX_CACHED_DEX_BYTES)
+    .weigher((List<HashCode> hashes, CachedReferences references) -> references.mySize)
+    .softValues()
+    .build();
+
+  private DexFileCache() {
+  }
+
+  /**
+   * A dex file along with the hash of its content.
+   */
+  static final class CachedDexFile {
+    @NotNull private final HashCode myHash;
+    @NotNull private final DexBackedDexFile myDexFile;
+    private final int mySize;
+
+    private CachedDexFile(@NotNull HashCode hash, @NotNull DexBackedDexFile dexFile, int size) {
+      myHash = hash;
+      myDexFile = dexFile;
+      mySize = size;
+    }
+
+    @NotNull
+    HashCode getHash() {
+      return myHash;
+    }
+
+    @NotNull
+    DexBackedDexFile getDexFile() {
+      return myDexFile;
+    }
+
+    /**
+     * @return the size of the dex file in bytes.
+     */
+    int getSize() {
+      return mySize;
+    }
+  }
+
+  private static final class CachedReferences {
+    @NotNull private final DexReferences myReferences;
+    private final int mySize;
+
+    private CachedReferences(@NotNull DexReferences references, int size) {
+      myReferences = references;
+      mySize = size;
+    }
+  }
+
+  /**
+   * Reads the dex file at the given path, reusing the parsed dex file if one with the same content was read before.
+   */
+  @NotNull
+  static CachedDexFile getDexFile(@NotNull Path path) throws IOException {
+    byte[] contents = Files.readAllBytes(path);
+    HashCode hash = Hashing.sha256().hashBytes(contents);
+    return get(ourDexFiles, hash, () -> new CachedDexFile(hash, DexFiles.getDexFile(contents), contents.length));
+  }
+
+  /**
+   * Reads the dex files at the given paths, each one in its own task run by the given executor.
+   *
+   * @return the dex files, in the same order as the paths whatever the order in which they are read
+   */
+  @NotNull
+  static ListenableFuture<List<CachedDexFile>> getDexFiles(@NotNull Path[] paths, @NotNull Executor executor) {
+    List<ListenableFuture<CachedDexFile>> futures = new ArrayList<>(paths.length);
+    for (Path path : paths) {
+      ListenableFutureTask<CachedDexFile> task = ListenableFutureTask.create(() -> getDexFile(path));
+      executor.execute(task);
+      futures.add(task);
+    }
+    return Futures.allAsList(futures);
+  }
+
+  /**
+   * Returns the references between the given dex files, computing them only if they were not computed before for the same files.
+   */
+  @NotNull
+  static DexReferences getReferences(@NotNull List<CachedDexFile> dexFiles) {
+    List<HashCode> key = dexFiles.stream().map(CachedDexFile::getHash).collect(Collectors.toList());
+    long size = dexFiles.stream().mapToLong(CachedDexFile::getSize).sum();
+    return get(ourReferences, key, () -> new CachedReferences(
+      new DexReferences(dexFiles.stream().map(CachedDexFile::getDexFile).toArray(DexBackedDexFile[]::new)),
+      (int)Math.min(size, Integer.MAX_VALUE))).myReferences;
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    ourDexFiles.invalidateAll();
+    ourReferences.invalidateAll();
+  }
+
+  @NotNull
+  private static <K, V> V get(@NotNull Cache<K, V> cache, @NotNull K key, @NotNull Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
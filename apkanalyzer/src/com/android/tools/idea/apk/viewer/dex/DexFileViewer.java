@@ -19,7 +19,6 @@ import com.android.tools.adtui.common.ColumnTreeBuilder;
 import com.android.tools.adtui.util.HumanReadableUtil;
 import com.android.tools.apk.analyzer.FilteredTreeModel;
 import com.android.tools.apk.analyzer.dex.DexFileStats;
-import com.android.tools.apk.analyzer.dex.DexFiles;
 import com.android.tools.apk.analyzer.dex.DexReferences;
 import com.android.tools.apk.analyzer.dex.DexViewFilters;
 import com.android.tools.apk.analyzer.dex.PackageTreeCreator;
@@ -116,6 +115,7 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
+  private ListenableFuture<List<DexFileCache.CachedDexFile>> myCachedDexFiles;
   private ListenableFuture<DexReferences> myDexReferences;
 
   @NotNull public static final NotificationGroup LOGGING_NOTIFICATION =
@@ -313,13 +313,19 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture =
+      Futures.transform(getCachedDexFiles(), new Function<>() {
+        @NotNull
+        @Override
+        public Map<Path, DexBackedDexFile> apply(@Nullable List<DexFileCache.CachedDexFile> input) {
+          assert input != null;
+          Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
+          for (int i = 0; i < myDexFiles.length; i++) {
+            dexFiles.put(myDexFiles[i], input.get(i).getDexFile());
+          }
+          return dexFiles;
+        }
+      }, MoreExecutors.directExecutor());
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<>() {
@@ -484,18 +490,11 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
   ListenableFuture<DexReferences> getDexReferences() {
     if (myDexReferences == null) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<>() {
+      myDexReferences = Futures.transform(getCachedDexFiles(), new Function<>() {
         @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
+        public DexReferences apply(@Nullable List<DexFileCache.CachedDexFile> inputs) {
           assert inputs != null;
-          return new DexReferences(inputs);
+          return DexFileCache.getReferences(inputs);
         }
       }, pooledThreadExecutor);
     }
@@ -503,6 +502,18 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
     return myDexReferences;
   }
 
+  /**
+   * Reads the dex files once for this viewer, each one in its own pooled thread.
+   */
+  @NotNull
+  private ListenableFuture<List<DexFileCache.CachedDexFile>> getCachedDexFiles() {
+    if (myCachedDexFiles == null) {
+      myCachedDexFiles = DexFileCache.getDexFiles(myDexFiles, PooledThreadExecutor.INSTANCE);
+    }
+
+    return myCachedDexFiles;
+  }
+
   private static class DexTreeNodeRenderer extends ColoredTreeCellRenderer {
 
     @Nullable private ProguardMappings myMappings;
@@ -16,7 +16,6 @@
 package com.android.tools.idea.apk.viewer.dex;
 
 import com.android.tools.apk.analyzer.dex.DexDisassembler;
-import com.android.tools.apk.analyzer.dex.DexFiles;
 import com.android.tools.apk.analyzer.dex.tree.DexClassNode;
 import com.android.tools.apk.analyzer.dex.tree.DexElementNode;
 import com.android.tools.apk.analyzer.dex.tree.DexMethodNode;
@@ -110,7 +109,7 @@ public class ShowDisassemblyAction extends AnAction implements DumbAware {
     assert project != null;
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
     Path dexPath = (Path)node.getUserObject();
-    ListenableFuture<DexBackedDexFile> dexFileFuture = pooledThreadExecutor.submit(() -> DexFiles.getDexFile(dexPath));
+    ListenableFuture<DexBackedDexFile> dexFileFuture = pooledThreadExecutor.submit(() -> DexFileCache.getDexFile(dexPath).getDexFile());
     Futures.addCallback(dexFileFuture, new FutureCallback<>() {
       @Override
       public void onSuccess(@Nullable DexBackedDexFile dexBackedDexFile) {
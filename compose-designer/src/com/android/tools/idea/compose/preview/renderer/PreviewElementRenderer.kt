@@ -23,6 +23,7 @@ import com.android.tools.idea.compose.preview.util.PreviewElement
 import com.android.tools.idea.compose.preview.util.PreviewElementInstance
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.rendering.RenderAsyncActionExecutor
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
@@ -61,6 +62,8 @@ fun createRenderTaskFuture(facet: AndroidFacet,
       }
     }
     .withRenderingMode(SessionParams.RenderingMode.SHRINK)
+    // Single renders, like documentation previews, must not hold back the previews shown in the editors
+    .withPriority(RenderAsyncActionExecutor.RenderingPriority.LOW)
     // Compose Preview has its own out-of-date reporting mechanism
     .doNotReportOutOfDateUserClasses()
     .build()
@@ -370,6 +370,8 @@ public class Scene implements SelectionListener, Disposable {
     if (myRoot != null) {
       markSelection(myRoot, model);
     }
+    // The targets of the components depend on their selection
+    needsRebuildList();
   }
 
   /**
@@ -814,7 +816,7 @@ public class Scene implements SelectionListener, Disposable {
     mNeedsLayout = NO_LAYOUT;
     myLastMouseX = x;
     myLastMouseY = y;
-    myFilterType = FilterType.NONE;
+    setFilterType(FilterType.NONE);
     if (myRoot == null) {
       return;
     }
@@ -983,7 +985,7 @@ public class Scene implements SelectionListener, Disposable {
         delegateMouseReleaseToSelection(x, y, myHitListener.getClosestTarget(modifiersEx), myHitTarget.getComponent());
       }
     }
-    myFilterType = FilterType.NONE;
+    setFilterType(FilterType.NONE);
     myNewSelectedComponentsOnRelease.clear();
     if (myHitComponent != null && closestComponent == myHitComponent) {
       myNewSelectedComponentsOnRelease.add(myHitComponent);
@@ -1031,7 +1033,7 @@ public class Scene implements SelectionListener, Disposable {
       }
     }
 
-    myFilterType = FilterType.NONE;
+    setFilterType(FilterType.NONE);
     myNewSelectedComponentsOnRelease.clear();
     myHitTarget = null;
     requestLayoutIfNeeded();
@@ -1164,7 +1166,11 @@ public class Scene implements SelectionListener, Disposable {
   }
 
   public void setFilterType(@NotNull FilterType filterType) {
-    myFilterType = filterType;
+    if (myFilterType != filterType) {
+      myFilterType = filterType;
+      // The filter type changes which anchors can be hit.
+      needsRebuildList();
+    }
   }
 
   @Nullable
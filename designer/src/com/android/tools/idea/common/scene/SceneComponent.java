@@ -553,8 +553,9 @@ public class SceneComponent {
   }
 
   public void setDragging(boolean dragging) {
-    if (!getNlComponent().isRoot()) {
+    if (!getNlComponent().isRoot() && myDragging != dragging) {
       myDragging = dragging;
+      myScene.needsRebuildList();
     }
   }
 
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.model.SelectionModel;
@@ -34,7 +35,15 @@ import org.jetbrains.annotations.Nullable;
  */
 class SceneHitListener {
   @NotNull private SelectionModel mySelectionModel;
-  private ScenePicker myPicker = new ScenePicker();
+  final ScenePicker myPicker = new ScenePicker();
+  // What the picker was populated with. It is reused by the searches until the scene display list, the transform or the modifiers change.
+  @Nullable private SceneComponent myPickerRoot;
+  @Nullable private SceneContext myPickerTransform;
+  private long myPickerDisplayListVersion;
+  private double myPickerScale;
+  @SwingCoordinate private int myPickerSwingX;
+  @SwingCoordinate private int myPickerSwingY;
+  private int myPickerModifiersEx;
   double myClosestComponentDistance = Double.MAX_VALUE;
   double myClosestTargetDistance = Double.MAX_VALUE;
   ArrayList<SceneComponent> myHitComponents = new ArrayList<>();
@@ -59,11 +68,35 @@ class SceneHitListener {
     myHitTargets.clear();
     myClosestComponentDistance = Double.MAX_VALUE;
     myClosestTargetDistance = Double.MAX_VALUE;
-    myPicker.reset();
-    root.addHit(transform, myPicker, modifiersEx);
+    if (!isPickerValid(transform, root, modifiersEx)) {
+      myPicker.reset();
+      root.addHit(transform, myPicker, modifiersEx);
+      myPickerRoot = root;
+      myPickerTransform = transform;
+      myPickerDisplayListVersion = root.getScene().getDisplayListVersion();
+      myPickerScale = transform.getScale();
+      myPickerSwingX = transform.getSwingXDip(0);
+      myPickerSwingY = transform.getSwingYDip(0);
+      myPickerModifiersEx = modifiersEx;
+    }
     myPicker.find(transform.getSwingXDip(x), transform.getSwingYDip(y));
   }
 
+  /**
+   * Returns whether the picker still holds the hit regions of the given root. Changes to the geometry of the scene components or to their
+   * targets rebuild the scene display list, so its version tells whether the regions moved.
+   */
+  @SuppressWarnings("FloatingPointEquality")  // The scale is compared to the value it was read from.
+  private boolean isPickerValid(@NotNull SceneContext transform, @NotNull SceneComponent root, int modifiersEx) {
+    return myPickerRoot == root &&
+           myPickerTransform == transform &&
+           myPickerDisplayListVersion == root.getScene().getDisplayListVersion() &&
+           myPickerScale == transform.getScale() &&
+           myPickerSwingX == transform.getSwingXDip(0) &&
+           myPickerSwingY == transform.getSwingYDip(0) &&
+           myPickerModifiersEx == modifiersEx;
+  }
+
   @SuppressWarnings("FloatingPointEquality")  // The values are directly assigned with no math, so this should be fine.
   public void over(Object over, double dist) {
     if (over instanceof Target) {
@@ -20,11 +20,23 @@ import java.util.function.Consumer;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * A uniform grid over the bounds of the objects is built on the first search so that each search only evaluates the objects near the
+ * searched location. Objects added after the grid is built are added to it incrementally, so a picker should be kept populated and only
+ * be reset when the objects change.
  */
 public class ScenePicker {
-  private final static int MAX_DATA_SIZE = 10;
+  private final static int MAX_DATA_SIZE = 11;
   private final static int INITAL_OBJECT_STORE = 30;
   private final static double EPSILON = 0.00001;
+  // Below this number of objects, evaluating all of them is cheaper than building the grid
+  private final static int MIN_INDEXED_OBJECTS = 32;
+  private final static int MAX_GRID_SIZE = 32;
+  // Objects spanning more cells than this are kept out of the grid and evaluated on every search
+  private final static int MAX_OBJECT_CELLS = 16;
+  // Curves are approximated by line segments deviating from them by at most this distance, using at most MAX_CURVE_SEGMENTS segments
+  private final static double CURVE_FLATNESS = 0.25;
+  private final static int MAX_CURVE_SEGMENTS = 32;
   private double[] mObjectData = new double[100];
   private int mObjectDataUsed = 0;
   private int[] mObjectOffset = new int[INITAL_OBJECT_STORE];
@@ -33,6 +45,19 @@ public class ScenePicker {
   private Object[] mObjects = new Object[INITAL_OBJECT_STORE];
   HitElementListener mHitElementListener;
 
+  // Spatial index of the objects, see buildIndex()
+  boolean mIndexValid = false;
+  int mIndexBuildCount = 0;
+  private int mGridX;
+  private int mGridY;
+  private int mCellSize;
+  private int mGridColumns;
+  private int mGridRows;
+  private int[][] mCells = new int[0][];
+  private int[] mCellCounts = new int[0];
+  private int[] mLargeObjects = new int[INITAL_OBJECT_STORE];
+  private int mLargeObjectCount = 0;
+
   private int mObjectCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_CURVE = 1;
@@ -67,17 +92,134 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (mObjectCount >= MIN_INDEXED_OBJECTS) {
+      if (!mIndexValid) {
+        buildIndex();
+      }
+      findInIndex(x, y);
+      return;
+    }
+    for (int i = 0; i < mObjectCount; i++) {
+      find(i, x, y);
+    }
+  }
+
+  private void find(int object, int x, int y) {
+    int p = object * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[object]];
+      if (selector.inRange(object, x, y)) {
+        mHitElementListener.over(mObjects[object], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Evaluates the objects in the grid cell of the given location, and the objects too large to be in the grid.
+   * The objects are evaluated in the order they were added, like when they are not indexed.
+   */
+  private void findInIndex(int x, int y) {
+    int column = Math.floorDiv(x - mGridX, mCellSize);
+    int row = Math.floorDiv(y - mGridY, mCellSize);
+    if (column < 0 || row < 0 || column >= mGridColumns || row >= mGridRows) {
+      // The grid covers all the objects
+      return;
+    }
+    int cell = row * mGridColumns + column;
+    int[] cellObjects = mCells[cell];
+    int cellCount = mCellCounts[cell];
+    int i = 0;
+    int j = 0;
+    while (i < cellCount || j < mLargeObjectCount) {
+      if (j == mLargeObjectCount || (i < cellCount && cellObjects[i] < mLargeObjects[j])) {
+        find(cellObjects[i++], x, y);
+      }
+      else {
+        find(mLargeObjects[j++], x, y);
+      }
+    }
+  }
+
+  /**
+   * Builds a grid over the bounds of all the objects, with about one object per cell.
+   */
+  private void buildIndex() {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+      minX = Math.min(minX, mRect[p]);
+      minY = Math.min(minY, mRect[p + 1]);
+      maxX = Math.max(maxX, mRect[p + 2]);
+      maxY = Math.max(maxY, mRect[p + 3]);
+    }
+    long width = (long)maxX - minX + 1;
+    long height = (long)maxY - minY + 1;
+    int gridSize = Math.min(MAX_GRID_SIZE, (int)Math.ceil(Math.sqrt(mObjectCount)));
+    long cellSize = Math.max(1, Math.max((width + gridSize - 1) / gridSize, (height + gridSize - 1) / gridSize));
+
+    mGridX = minX;
+    mGridY = minY;
+    mCellSize = (int)Math.min(Integer.MAX_VALUE, cellSize);
+    mGridColumns = (int)((width + mCellSize - 1) / mCellSize);
+    mGridRows = (int)((height + mCellSize - 1) / mCellSize);
+    int cells = mGridColumns * mGridRows;
+    if (mCells.length < cells) {
+      mCells = Arrays.copyOf(mCells, cells);
+      mCellCounts = new int[cells];
+    }
+    else {
+      Arrays.fill(mCellCounts, 0);
+    }
+    mLargeObjectCount = 0;
+    mIndexValid = true;
+    mIndexBuildCount++;
+    for (int i = 0; i < mObjectCount; i++) {
+      addToIndex(i);
+    }
+  }
+
+  /**
+   * Adds an object to the grid, or invalidates the grid if the object is outside of it.
+   */
+  private void addToIndex(int object) {
+    int p = object * 4;
+    long x1 = (long)mRect[p++] - mGridX;
+    long y1 = (long)mRect[p++] - mGridY;
+    long x2 = (long)mRect[p++] - mGridX;
+    long y2 = (long)mRect[p] - mGridY;
+    if (x1 < 0 || y1 < 0 || x2 >= (long)mGridColumns * mCellSize || y2 >= (long)mGridRows * mCellSize) {
+      mIndexValid = false;
+      return;
+    }
+    int column1 = (int)(x1 / mCellSize);
+    int row1 = (int)(y1 / mCellSize);
+    int column2 = (int)(x2 / mCellSize);
+    int row2 = (int)(y2 / mCellSize);
+    if ((column2 - column1 + 1) * (row2 - row1 + 1) > MAX_OBJECT_CELLS) {
+      if (mLargeObjectCount == mLargeObjects.length) {
+        mLargeObjects = Arrays.copyOf(mLargeObjects, mLargeObjects.length * 2);
+      }
+      mLargeObjects[mLargeObjectCount++] = object;
+      return;
+    }
+    for (int row = row1; row <= row2; row++) {
+      for (int column = column1; column <= column2; column++) {
+        int cell = row * mGridColumns + column;
+        int[] cellObjects = mCells[cell];
+        if (cellObjects == null) {
+          cellObjects = mCells[cell] = new int[4];
+        }
+        else if (mCellCounts[cell] == cellObjects.length) {
+          cellObjects = mCells[cell] = Arrays.copyOf(cellObjects, cellObjects.length * 2);
         }
+        cellObjects[mCellCounts[cell]++] = object;
       }
     }
   }
@@ -121,6 +263,7 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mIndexValid = false;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -215,6 +358,9 @@ public class ScenePicker {
       mRect[off++] = y1;
       mRect[off++] = x2;
       mRect[off] = y2;
+      if (mIndexValid) {
+        addToIndex(mObjectCount);
+      }
     }
 
     boolean inRange(int object, int x, int y) {
@@ -486,6 +632,7 @@ public class ScenePicker {
       mObjectData[mObjectDataUsed++] = cy2;
       mObjectData[mObjectDataUsed++] = cy3;
       mObjectData[mObjectDataUsed++] = width;
+      mObjectData[mObjectDataUsed++] = segments();
       mObjects[mObjectCount] = select;
       mTypes[mObjectCount] = OBJECT_CURVE;
       bounds(range + width);
@@ -504,12 +651,14 @@ public class ScenePicker {
       cy2 = mObjectData[mDataOffset + 7];
       cy3 = mObjectData[mDataOffset + 8];
       w = mObjectData[mDataOffset + 9];
+      int segments = (int)mObjectData[mDataOffset + 10];
 
       double minDistanceSqr = Integer.MAX_VALUE;
       double widthSqr = w * w;
       double prevX = cx0;
       double prevY = cy0;
-      for (double t = .03; t < 1; t += .03) {
+      for (int i = 1; i <= segments; i++) {
+        double t = (double)i / segments;
         double t2 = t * t;
         double t3 = t * t2;
         double x = cx0 + cx1 * t + cx2 * t2 + cx3 * t3;
@@ -537,6 +686,16 @@ public class ScenePicker {
       return true;
     }
 
+    /**
+     * Number of line segments approximating the curve within {@link #CURVE_FLATNESS}. Splitting a curve in n segments deviates from it by
+     * at most max|B''(t)| / (8 n^2), and B'' is linear so its maximum is at t = 0 or t = 1.
+     */
+    private int segments() {
+      double maxSecondDerivative = Math.max(Math.hypot(2 * cx2, 2 * cy2), Math.hypot(2 * cx2 + 6 * cx3, 2 * cy2 + 6 * cy3));
+      int segments = (int)Math.ceil(Math.sqrt(maxSecondDerivative / (8 * CURVE_FLATNESS)));
+      return Math.max(1, Math.min(MAX_CURVE_SEGMENTS, segments));
+    }
+
     public final double evalX(double t) {
       double t2 = t * t;
       double t3 = t * t2;
@@ -669,7 +669,7 @@ public class ConstraintAnchorTarget extends AnchorTarget {
 
     if (!myIsDragging) {
       myIsDragging = true;
-      DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, true);
+      setTryingToConnectState(myComponent.getNlComponent(), true);
     }
 
     if (targetAnchor != null) {
@@ -828,7 +828,7 @@ public class ConstraintAnchorTarget extends AnchorTarget {
 
           // Finish previous dragging setup.
           myIsDragging = false;
-          DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), myType, false);
+          setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), false);
 
           List<NlComponent> allItemsNlComponents =
             allItems.stream().map(item -> item.getAuthoritativeNlComponent()).collect(Collectors.toCollection(ArrayList::new));
@@ -836,13 +836,13 @@ public class ConstraintAnchorTarget extends AnchorTarget {
             @Override
             public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
               super.popupMenuWillBecomeVisible(e);
-              DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, myType, true);
+              setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, true);
             }
 
             @Override
             public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
               super.popupMenuWillBecomeInvisible(e);
-              DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, myType, false);
+              setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, false);
               myComponent.getScene().setFilterType(Scene.FilterType.NONE);
             }
           });
@@ -855,8 +855,7 @@ public class ConstraintAnchorTarget extends AnchorTarget {
     finally {
       if (myIsDragging) {
         myIsDragging = false;
-        DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, false);
-        myComponent.getScene().needsRebuildList();
+        setTryingToConnectState(myComponent.getNlComponent(), false);
       }
     }
   }
@@ -884,10 +883,26 @@ public class ConstraintAnchorTarget extends AnchorTarget {
   @Override
   public void mouseCancel() {
     super.mouseCancel();
-    DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, false);
+    setTryingToConnectState(myComponent.getNlComponent(), false);
     revertToPreviousState();
   }
 
+  /**
+   * Sets or clears the "trying to connect" state of the sisters of the given component, which changes the anchors that can be hit.
+   */
+  private void setTryingToConnectState(@NotNull NlComponent component, boolean on) {
+    DecoratorUtilities.setTryingToConnectState(component, myType, on);
+    myComponent.getScene().needsRebuildList();
+  }
+
+  /**
+   * Sets or clears the "trying to connect" state of the given components, which changes the anchors that can be hit.
+   */
+  private void setTryingToConnectState(@NotNull NlComponent component, @NotNull List<NlComponent> dstComponents, boolean on) {
+    DecoratorUtilities.setTryingToConnectState(component, dstComponents, myType, on);
+    myComponent.getScene().needsRebuildList();
+  }
+
   @Override
   public void addHit(@NotNull SceneContext transform,
                      @NotNull ScenePicker picker,
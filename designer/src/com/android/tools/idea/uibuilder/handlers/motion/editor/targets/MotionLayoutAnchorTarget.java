@@ -807,7 +807,7 @@ public class MotionLayoutAnchorTarget extends AnchorTarget {
 
     if (!myIsDragging) {
       myIsDragging = true;
-      DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, true);
+      setTryingToConnectState(myComponent.getNlComponent(), true);
     }
 
     if (targetAnchor != null) {
@@ -965,7 +965,7 @@ public class MotionLayoutAnchorTarget extends AnchorTarget {
 
           // Finish previous dragging setup.
           myIsDragging = false;
-          DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), myType, false);
+          setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), false);
 
           List<NlComponent> allItemsNlComponents =
             allItems.stream().map(item -> item.getAuthoritativeNlComponent()).collect(Collectors.toCollection(ArrayList::new));
@@ -973,13 +973,13 @@ public class MotionLayoutAnchorTarget extends AnchorTarget {
             @Override
             public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
               super.popupMenuWillBecomeVisible(e);
-              DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, myType, true);
+              setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, true);
             }
 
             @Override
             public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
               super.popupMenuWillBecomeInvisible(e);
-              DecoratorUtilities.setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, myType, false);
+              setTryingToConnectState(myComponent.getAuthoritativeNlComponent(), allItemsNlComponents, false);
               myComponent.getScene().setFilterType(Scene.FilterType.NONE);
             }
           });
@@ -992,8 +992,7 @@ public class MotionLayoutAnchorTarget extends AnchorTarget {
     finally {
       if (myIsDragging) {
         myIsDragging = false;
-        DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, false);
-        myComponent.getScene().needsRebuildList();
+        setTryingToConnectState(myComponent.getNlComponent(), false);
       }
     }
   }
@@ -1001,10 +1000,26 @@ public class MotionLayoutAnchorTarget extends AnchorTarget {
   @Override
   public void mouseCancel() {
     super.mouseCancel();
-    DecoratorUtilities.setTryingToConnectState(myComponent.getNlComponent(), myType, false);
+    setTryingToConnectState(myComponent.getNlComponent(), false);
     revertToPreviousState();
   }
 
+  /**
+   * Sets or clears the "trying to connect" state of the sisters of the given component, which changes the anchors that can be hit.
+   */
+  private void setTryingToConnectState(@NotNull NlComponent component, boolean on) {
+    DecoratorUtilities.setTryingToConnectState(component, myType, on);
+    myComponent.getScene().needsRebuildList();
+  }
+
+  /**
+   * Sets or clears the "trying to connect" state of the given components, which changes the anchors that can be hit.
+   */
+  private void setTryingToConnectState(@NotNull NlComponent component, @NotNull List<NlComponent> dstComponents, boolean on) {
+    DecoratorUtilities.setTryingToConnectState(component, dstComponents, myType, on);
+    myComponent.getScene().needsRebuildList();
+  }
+
   @Override
   public void addHit(@NotNull SceneContext transform,
                      @NotNull ScenePicker picker,
@@ -24,6 +24,7 @@ import com.android.tools.idea.common.model.Coordinates
 import com.android.tools.idea.common.surface.DesignSurface
 import com.android.tools.idea.common.surface.SceneView
 import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.rendering.RenderAsyncActionExecutor
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
@@ -156,6 +157,7 @@ class PreviewProvider(
     val logger = renderService.createLogger(facet)
     return renderService.taskBuilder(facet, configuration)
       .withLogger(logger)
+      .withPriority(RenderAsyncActionExecutor.RenderingPriority.LOW)
       .build()
   }
 
@@ -69,8 +69,12 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
     val bucketStats = poolStats?.bucketStats?.joinToString("\n") {
       " (${it.minWidth}x${it.minHeight} s=${it.maxSize()}) " +
       "lastAccess=${TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - it.lastAccessTimeMs)}s ago " +
-      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()}"
+      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()} " +
+      "evicted=${it.bucketEvictions()} pooled=${it.bytesPooled() / MB}MB"
     } ?: ""
+    val hits = poolStats?.totalHits() ?: 0
+    val misses = poolStats?.totalMisses() ?: 0
+    val hitRatePct = if (hits + misses > 0) hits.toDouble() / (hits + misses) * 100 else 0.0
 
     return """
       |General
@@ -82,6 +86,8 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1)  / MB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MB}MB
+      | Hit rate      ${PCT_FORMAT.format(hitRatePct)}%
+      | Evictions     ${poolStats?.totalEvictions() ?: -1}
       |
       |Buckets
       |${bucketStats}
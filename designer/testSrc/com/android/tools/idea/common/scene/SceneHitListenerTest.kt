@@ -44,6 +44,24 @@ class SceneHitListenerTest : SceneTest() {
     assertEquals(dragTarget, myScene.interactingTarget)
   }
 
+  fun testRepeatedFindReusesThePicker() {
+    val listener = SceneHitListener(myModel.surface.selectionModel)
+    val transform = SceneContext.get()
+    val root = myScene.root!!
+
+    listener.find(transform, root, 155, 155, 0)
+    assertEquals(myScene.getSceneComponent("textView"), listener.closestComponent)
+
+    // Nothing changed in the scene, so the picker is searched without being populated again
+    listener.myPicker.reset()
+    listener.find(transform, root, 155, 155, 0)
+    assertNull(listener.closestComponent)
+
+    myScene.needsRebuildList()
+    listener.find(transform, root, 155, 155, 0)
+    assertEquals(myScene.getSceneComponent("textView"), listener.closestComponent)
+  }
+
   override fun createModel(): ModelBuilder {
     return model("model.xml", component(SdkConstants.CONSTRAINT_LAYOUT.defaultName())
       .id("@+id/root")
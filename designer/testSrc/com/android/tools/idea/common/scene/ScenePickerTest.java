@@ -22,6 +22,9 @@ import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -349,4 +352,119 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testIndexedFind() {
+    Random random = new Random(42);
+    List<int[]> shapes = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      shapes.add(randomShape(random, i, 1000));
+    }
+    // A shape covering most of the scene, which is too large to be in the grid
+    shapes.add(new int[]{200, 2, 5, 10, 10, 900, 900});
+
+    ScenePicker scenePicker = new ScenePicker();
+    List<String> hits = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> hits.add(obj + ":" + dist));
+    shapes.forEach(shape -> addShape(scenePicker, shape));
+
+    assertFalse(scenePicker.mIndexValid);
+    assertIndexedFindMatchesFind(scenePicker, hits, shapes, random);
+    assertTrue(scenePicker.mIndexValid);
+
+    // Shapes added within the grid are added to it
+    for (int i = 0; i < 20; i++) {
+      int[] shape = randomShape(random, shapes.size(), 900);
+      shapes.add(shape);
+      addShape(scenePicker, shape);
+    }
+    assertTrue(scenePicker.mIndexValid);
+    assertIndexedFindMatchesFind(scenePicker, hits, shapes, random);
+
+    // Shapes added outside of the grid require building it again
+    int[] outside = new int[]{shapes.size(), 2, 0, 2000, 2000, 2100, 2100};
+    shapes.add(outside);
+    addShape(scenePicker, outside);
+    assertFalse(scenePicker.mIndexValid);
+    assertIndexedFindMatchesFind(scenePicker, hits, shapes, random);
+    assertTrue(scenePicker.mIndexValid);
+    hits.clear();
+    scenePicker.find(2050, 2050);
+    assertEquals(1, hits.size());
+    assertTrue(hits.get(0).startsWith(outside[0] + ":"));
+  }
+
+  public void testRepeatedFindReusesIndex() {
+    Random random = new Random(42);
+    ScenePicker scenePicker = new ScenePicker();
+    List<String> hits = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> hits.add(obj + ":" + dist));
+    for (int i = 0; i < 200; i++) {
+      addShape(scenePicker, randomShape(random, i, 1000));
+    }
+
+    for (int i = 0; i < 100; i++) {
+      scenePicker.find(random.nextInt(1000), random.nextInt(1000));
+    }
+    assertEquals(1, scenePicker.mIndexBuildCount);
+
+    // Populating the picker again builds a new index on the next search only
+    scenePicker.reset();
+    for (int i = 0; i < 200; i++) {
+      addShape(scenePicker, randomShape(random, i, 1000));
+    }
+    assertEquals(1, scenePicker.mIndexBuildCount);
+    for (int i = 0; i < 100; i++) {
+      scenePicker.find(random.nextInt(1000), random.nextInt(1000));
+    }
+    assertEquals(2, scenePicker.mIndexBuildCount);
+  }
+
+  /**
+   * Checks that searching an indexed picker finds the same objects, in the same order, as searching each object on its own.
+   */
+  private static void assertIndexedFindMatchesFind(ScenePicker scenePicker, List<String> hits, List<int[]> shapes, Random random) {
+    ScenePicker singleObjectPicker = new ScenePicker();
+    List<String> expectedHits = new ArrayList<>();
+    singleObjectPicker.setSelectListener((obj, dist) -> expectedHits.add(obj + ":" + dist));
+    for (int i = 0; i < 500; i++) {
+      int x = random.nextInt(1200) - 100;
+      int y = random.nextInt(1200) - 100;
+      expectedHits.clear();
+      for (int[] shape : shapes) {
+        singleObjectPicker.reset();
+        addShape(singleObjectPicker, shape);
+        singleObjectPicker.find(x, y);
+      }
+
+      hits.clear();
+      scenePicker.find(x, y);
+      assertEquals(x + "," + y, expectedHits, hits);
+    }
+  }
+
+  private static int[] randomShape(Random random, int id, int size) {
+    int x = random.nextInt(size);
+    int y = random.nextInt(size);
+    return new int[]{id, random.nextInt(4), random.nextInt(10), x, y, x + random.nextInt(100) - 50, y + random.nextInt(100) - 50};
+  }
+
+  /**
+   * Adds a shape described as {id, type, range, x1, y1, x2, y2} to the picker.
+   */
+  private static void addShape(ScenePicker scenePicker, int[] shape) {
+    switch (shape[1]) {
+      case 0:
+        scenePicker.addLine(shape[0], shape[2], shape[3], shape[4], shape[5], shape[6], 2);
+        break;
+      case 1:
+        scenePicker.addCircle(shape[0], shape[2], shape[3], shape[4], Math.abs(shape[5] - shape[3]));
+        break;
+      case 2:
+        scenePicker.addRect(shape[0], shape[2], shape[3], shape[4], shape[5], shape[6]);
+        break;
+      default:
+        scenePicker.addCurveTo(shape[0], shape[2], shape[3], shape[4], shape[3], shape[6], shape[5], shape[4], shape[5], shape[6], 1);
+        break;
+    }
+  }
 }
@@ -21,16 +21,28 @@ import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
+import java.lang.ref.Reference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -38,6 +50,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class ProjectBuildModelImpl implements ProjectBuildModel {
+  private static final Logger LOG = Logger.getInstance(ProjectBuildModelImpl.class);
+  private static final ExecutorService ourPsiLoadingExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("ProjectBuildModel PSI Loading", Runtime.getRuntime().availableProcessors());
+
   @NotNull private final BuildModelContext myBuildModelContext;
   @Nullable private final GradleBuildFile myProjectBuildFile;
 
@@ -172,24 +188,86 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     Set<String> modulePaths = settingsModel.modulePaths();
     Integer nModelsToConsider = nModelsSeen[0] + modulePaths.size();
 
-    allModels.addAll(modulePaths.stream().map((modulePath) -> {
-      GradleBuildModel model = null;
+    List<VirtualFile> moduleFiles = new ArrayList<>();
+    for (String modulePath : modulePaths) {
+      VirtualFile file = null;
       // This should have already been added above
       if (!modulePath.equals(":")) {
         File moduleDir = settingsModel.moduleDirectory(modulePath);
         if (moduleDir != null) {
-          VirtualFile file = myBuildModelContext.getGradleBuildFile(moduleDir);
-          if (file != null) {
-            model = getModuleBuildModel(file);
-          }
+          file = myBuildModelContext.getGradleBuildFile(moduleDir);
         }
       }
+      moduleFiles.add(file);
+    }
+
+    // Keep the preloaded syntax trees reachable until the files have been parsed.
+    List<ASTNode> preloadedTrees = preloadPsi(moduleFiles.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+    for (VirtualFile file : moduleFiles) {
+      if (file != null) {
+        allModels.add(getModuleBuildModel(file));
+      }
       func.accept(++nModelsSeen[0], nModelsToConsider);
-      return model;
-    }).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+    Reference.reachabilityFence(preloadedTrees);
     return allModels;
   }
 
+  /**
+   * Loads the PSI of the given files concurrently. Parsing the files into {@link GradleDslFile}s has to happen sequentially as the files
+   * depend on each other, but most of the time of parsing a file is spent reading it and building its syntax tree, which can be done in
+   * parallel beforehand.
+   * <p>
+   * This is best effort: a file is skipped when a write action interrupts its loading, and is then loaded when it is parsed.
+   *
+   * @return the syntax trees of the files, which need to be kept reachable until the files are parsed as the platform can otherwise
+   * collect them.
+   */
+  @NotNull
+  private List<ASTNode> preloadPsi(@NotNull List<VirtualFile> files) {
+    if (files.size() < 2) {
+      return Collections.emptyList();
+    }
+    Project project = myBuildModelContext.getProject();
+    List<Future<ASTNode>> futures = new ArrayList<>();
+    for (VirtualFile file : files) {
+      futures.add(ourPsiLoadingExecutor.submit(() -> {
+        Ref<ASTNode> tree = new Ref<>();
+        ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+          if (project.isDisposed() || !file.isValid()) {
+            return;
+          }
+          PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+          if (psiFile != null) {
+            // Getting the children builds the syntax tree of the file.
+            psiFile.getFirstChild();
+            tree.set(psiFile.getNode());
+          }
+        });
+        return tree.get();
+      }));
+    }
+
+    List<ASTNode> trees = new ArrayList<>();
+    for (Future<ASTNode> future : futures) {
+      try {
+        ASTNode tree = future.get();
+        if (tree != null) {
+          trees.add(tree);
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        futures.forEach(it -> it.cancel(false));
+        break;
+      }
+      catch (ExecutionException e) {
+        LOG.warn("Failed to load a Gradle build file", e.getCause());
+      }
+    }
+    return trees;
+  }
+
   private void runOverProjectTree(@NotNull Consumer<GradleDslFile> func) {
     myBuildModelContext.getAllRequestedFiles().forEach(func);
   }
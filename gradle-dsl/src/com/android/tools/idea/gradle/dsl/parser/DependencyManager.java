@@ -71,6 +71,11 @@ public final class DependencyManager {
    * @param element the element that has triggered the attempted resolve.
    */
   public void resolveWith(@NotNull GradleDslElement element) {
+    // With no unresolved references there is nothing to do, and this avoids walking every file below the element's file.
+    if (myUnresolvedReferences.isEmpty()) {
+      return;
+    }
+
     Queue<GradleDslFile> queue = new HashSetQueue<>();
     Set<GradleDslFile> seen = new HashSet<>();
     GradleDslElement thisFile = element.getDslFile();
@@ -96,7 +101,8 @@ public final class DependencyManager {
     //  this element, for correctness we have to check all those files.  At the moment this is a loop over all the files to check
     //  whether they apply the file containing the element, which scales badly; information about which files are applied where could
     //  probably be cached and updated at parse-time.
-    for (GradleDslFile unresolvedFile : myUnresolvedReferences.keySet()) {
+    // Resolving the references of a file can remove it from the map.
+    for (GradleDslFile unresolvedFile : new ArrayList<>(myUnresolvedReferences.keySet())) {
       if (unresolvedFile instanceof GradleScriptFile) {
         GradleScriptFile scriptFile = (GradleScriptFile)unresolvedFile;
         if (!seen.contains(scriptFile)) {
@@ -136,7 +142,8 @@ public final class DependencyManager {
    * Attempt to resolve all of the current unresolved dependencies.
    */
   public void resolveAll() {
-    for (GradleDslFile dslFile : myUnresolvedReferences.keySet()) {
+    // Resolving the references of a file can remove it from the map.
+    for (GradleDslFile dslFile : new ArrayList<>(myUnresolvedReferences.keySet())) {
       resolveAllIn(dslFile, false);
     }
   }
@@ -0,0 +1 @@
+val rootProp by extra("root")
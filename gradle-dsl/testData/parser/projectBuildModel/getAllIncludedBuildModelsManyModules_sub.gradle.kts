@@ -0,0 +1 @@
+val moduleProp by extra(rootProject.extra["rootProp"])
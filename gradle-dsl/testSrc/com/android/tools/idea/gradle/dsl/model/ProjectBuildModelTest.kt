@@ -22,8 +22,12 @@ import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.STRING_TYPE
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.BOOLEAN
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.INTEGER
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.INTERPOLATED
+import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.NONE
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.STRING
 import com.android.tools.idea.gradle.dsl.api.ext.PropertyType.REGULAR
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslLiteral
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleNameElement
+import com.android.tools.idea.gradle.dsl.parser.ext.ExtDslElement
 import com.android.tools.idea.gradle.dsl.parser.semantics.AndroidGradlePluginVersion
 import org.hamcrest.CoreMatchers.hasItems
 import org.hamcrest.MatcherAssert.assertThat
@@ -342,6 +346,52 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     assertEquals(listOf(1 to null, 2 to null, 3 to 4, 4 to 4), args)
   }
 
+  @Test
+  fun testGetAllIncludedBuildModelsMatchesModuleBuildModels() {
+    writeToBuildFile(TestFile.GET_ALL_INCLUDED_BUILD_MODELS_MANY_MODULES)
+    val modules = (1..6).map { writeToNewSubModule("lib$it", TestFile.GET_ALL_INCLUDED_BUILD_MODELS_MANY_MODULES_SUB, "") }
+    writeToSettingsFile((1..6).joinToString("") { getSubModuleSettingsText("lib$it") })
+
+    // The module build files are loaded together here, and one by one from a second project model.
+    val allModels = projectBuildModel.allIncludedBuildModels
+    val sequentialProjectModel = projectBuildModel
+    val sequentialModels = modules.map { sequentialProjectModel.getModuleBuildModel(it)!! }
+
+    assertThat(allModels.map { it.virtualFile }, hasItems(*sequentialModels.map { it.virtualFile }.toTypedArray()))
+    for (model in allModels) {
+      val sequentialModel = sequentialProjectModel.getModuleBuildModel(model.virtualFile)
+      assertEquals(sequentialModel.ext().properties.map { it.name to it.resolve().getValue(STRING_TYPE) },
+                   model.ext().properties.map { it.name to it.resolve().getValue(STRING_TYPE) })
+    }
+    for (model in sequentialModels) {
+      verifyPropertyModel(model.ext().findProperty("moduleProp").resolve(), STRING_TYPE, "root", STRING, REGULAR, 1, "moduleProp")
+    }
+  }
+
+  @Test
+  fun testResolveAllResolvesReferencesOfManyFiles() {
+    writeToBuildFile(TestFile.GET_ALL_INCLUDED_BUILD_MODELS_MANY_MODULES)
+    (1..3).forEach { writeToNewSubModule("lib$it", TestFile.RESOLVE_ALL_RESOLVES_MANY_FILES_SUB, "") }
+    writeToSettingsFile((1..3).joinToString("") { getSubModuleSettingsText("lib$it") })
+
+    val pbm = projectBuildModel
+    val models = pbm.allIncludedBuildModels.filter { it.ext().findProperty("moduleProp").valueType != NONE }
+    assertSize(3, models)
+
+    // Define the property every module refers to without notifying the dependency manager, so that the references of all the modules
+    // are resolved, and removed from the unresolved ones, while resolveAll iterates over them.
+    val rootFile = pbm.context.allRequestedFiles.first { it.file == myBuildFile }
+    val ext = rootFile.getPropertyElement(ExtDslElement.EXT)!!
+    val sharedProp = GradleDslLiteral(ext, GradleNameElement.create("sharedProp"))
+    sharedProp.setValue("shared")
+    ext.setParsedElement(sharedProp)
+    pbm.context.dependencyManager.resolveAll()
+
+    for (model in models) {
+      verifyPropertyModel(model.ext().findProperty("moduleProp").resolve(), STRING_TYPE, "shared", STRING, REGULAR, 1, "moduleProp")
+    }
+  }
+
   @Test
   fun testGetContext() {
     val pbm = projectBuildModel
@@ -427,6 +477,9 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     BUILD_SRC_ANDROID_GRADLE_PLUGIN_DEPENDENCY("buildSrcAndroidGradlePluginDependency"),
     BUILD_SRC_ANDROID_GRADLE_PLUGIN_DEPENDENCY_EXPECTED("buildSrcAndroidGradlePluginDependencyExpected"),
     CONTEXT_AGP_VERSION("contextAgpVersion"),
+    GET_ALL_INCLUDED_BUILD_MODELS_MANY_MODULES("getAllIncludedBuildModelsManyModules"),
+    GET_ALL_INCLUDED_BUILD_MODELS_MANY_MODULES_SUB("getAllIncludedBuildModelsManyModules_sub"),
+    RESOLVE_ALL_RESOLVES_MANY_FILES_SUB("resolveAllResolvesManyFiles_sub"),
     ;
 
     override fun toFile(basePath: @SystemDependent String, extension: String): File {
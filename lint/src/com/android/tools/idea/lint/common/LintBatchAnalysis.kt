@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.client.api.LintDriver
+import com.android.tools.lint.detector.api.Issue
+import com.android.tools.lint.detector.api.Scope
+import com.google.common.hash.Hasher
+import com.google.common.hash.Hashing
+import com.intellij.analysis.AnalysisScope
+import com.intellij.concurrency.SensitiveProgressWrapper
+import com.intellij.openapi.application.ApplicationInfo
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.LibraryOrderEntry
+import com.intellij.openapi.roots.ModuleRootManager
+import com.intellij.openapi.roots.OrderRootType
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.UserDataHolderEx
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.annotations.VisibleForTesting
+import java.io.File
+import java.util.EnumSet
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Future
+
+/**
+ * Runs batch lint over a set of modules.
+ *
+ * Each module which no other module to analyze depends on gets its own [LintDriver], which reads the module and all of its dependencies.
+ * The dependencies shared by several drivers are read by all of them, but their problems are only reported by one, so that the drivers
+ * are independent and analyzed concurrently. When [useCache] is true, the results of each driver are kept with a fingerprint of the IDE
+ * build, the issues checked, the modification stamps of the files of the modules read and the roots of their libraries, and are reused by
+ * the next analysis of the same modules if the fingerprint has not changed.
+ */
+class LintBatchAnalysis(
+  private val project: Project,
+  private val scope: AnalysisScope,
+  private val issues: Set<Issue>,
+  private val lintScope: EnumSet<Scope>?,
+  private val useCache: Boolean
+) {
+  /**
+   * The modules analyzed by a single [LintDriver]: [root] and its dependency [closure], of which only the [reportedModules] have their
+   * problems reported.
+   */
+  @VisibleForTesting
+  class ModuleGroup<T>(val root: T, val closure: Set<T>, val reportedModules: Set<T>)
+
+  private class CachedResults(val fingerprint: String, val problemMap: Map<Issue, Map<File, List<LintProblemData>>>)
+
+  private class GroupResults(val problemMap: Map<Issue, Map<File, List<LintProblemData>>>, val driver: LintDriver?, val moduleCount: Int)
+
+  /**
+   * Analyzes the given modules and adds the problems found to [problemMap].
+   *
+   * @return the driver which analyzed the most modules, or null if the results of all the modules were cached and no driver ran
+   */
+  fun analyze(modules: List<Module>, problemMap: MutableMap<Issue, Map<File, List<LintProblemData>>>): LintDriver? {
+    val groups = ReadAction.compute<List<ModuleGroup<Module>>, RuntimeException> { partition(modules, ::getDependencyClosure) }
+    val results = if (groups.size == 1) {
+      listOf(analyze(groups[0]))
+    }
+    else {
+      val indicator = ProgressManager.getInstance().progressIndicator
+      val futures = groups.map { group ->
+        EXECUTOR.submit<GroupResults> {
+          var results: GroupResults? = null
+          ProgressManager.getInstance().runProcess({ results = analyze(group) }, indicator?.let { SensitiveProgressWrapper(it) })
+          results
+        }
+      }
+      awaitAll(futures)
+    }
+
+    for (groupResults in results) {
+      for ((issue, fileProblems) in groupResults.problemMap) {
+        val target = HashMap(problemMap[issue] ?: emptyMap())
+        for ((file, problems) in fileProblems) {
+          target[file] = (target[file] ?: emptyList()) + problems
+        }
+        problemMap[issue] = target
+      }
+    }
+    return results.filter { it.driver != null }.maxByOrNull { it.moduleCount }?.driver
+  }
+
+  private fun analyze(group: ModuleGroup<Module>): GroupResults {
+    val cache = if (useCache) getCache(project) else null
+    val cacheKey = listOf(group.root.name) + group.reportedModules.map { it.name }.sorted()
+    val fingerprint = cache?.let { computeFingerprint(group) }
+    val cached = cache?.get(cacheKey)
+    if (cached != null && cached.fingerprint == fingerprint) {
+      // Reporting a problem registers the inspection of its issue when lint found it with a third party check, which doesn't happen for
+      // cached problems.
+      cached.problemMap.keys.forEach { AndroidLintInspectionBase.getInspectionShortNameByIssue(project, it) }
+      return GroupResults(cached.problemMap, null, group.closure.size)
+    }
+
+    val groupProblemMap = HashMap<Issue, Map<File, List<LintProblemData>>>()
+    val ideSupport = LintIdeSupport.get()
+    val client = ideSupport.createBatchClient(LintBatchResult(project, groupProblemMap, scope, issues, group.reportedModules))
+    val request = LintIdeRequest(client, project, null, listOf(group.root), false)
+    request.setScope(lintScope)
+    val driver = client.createDriver(request)
+    driver.analyze()
+
+    if (cache != null && fingerprint != null) {
+      cache[cacheKey] = CachedResults(fingerprint, groupProblemMap)
+    }
+    return GroupResults(groupProblemMap, driver, group.closure.size)
+  }
+
+  /**
+   * Computes a fingerprint of everything the results of lint depend on for the given group, except for the state of the IDE project
+   * model itself: the build of the IDE, which lint is part of, the issues checked and their severity, the modification stamps of all the
+   * files of the modules lint reads, including the ones of the open documents, and the roots of their libraries.
+   */
+  private fun computeFingerprint(group: ModuleGroup<Module>): String {
+    val hasher = Hashing.sha256().newHasher()
+    hasher.putString(ApplicationInfo.getInstance().build.asString(), Charsets.UTF_8)
+    for (issue in issues.sortedBy { it.id }) {
+      hasher.putString(issue.id, Charsets.UTF_8).putString(issue.defaultSeverity.name, Charsets.UTF_8).putBoolean(issue.isEnabledByDefault())
+    }
+    hasher.putString(lintScope?.sorted()?.joinToString() ?: "", Charsets.UTF_8)
+
+    val ideSupport = LintIdeSupport.get()
+    for (module in group.closure.sortedBy { it.name }) {
+      ReadAction.run<RuntimeException> {
+        hasher.putString(module.name, Charsets.UTF_8)
+        ideSupport.getSeverityOverrides(module)?.toSortedMap()?.forEach { (id, severity) ->
+          hasher.putString(id, Charsets.UTF_8).putInt(severity)
+        }
+        val rootManager = ModuleRootManager.getInstance(module)
+        for (entry in rootManager.orderEntries) {
+          hasher.putString(entry.presentableName, Charsets.UTF_8)
+          if (entry is LibraryOrderEntry) {
+            for (root in entry.getRootFiles(OrderRootType.CLASSES)) {
+              // The root of a jar is the inside of the jar, whose stamp doesn't change when the jar is replaced.
+              putStamp(hasher, VfsUtilCore.getVirtualFileForJar(root) ?: root)
+            }
+          }
+        }
+        val files = mutableListOf<VirtualFile>()
+        rootManager.fileIndex.iterateContent { file ->
+          if (!file.isDirectory) {
+            files.add(file)
+          }
+          true
+        }
+        for (file in files.sortedBy { it.path }) {
+          ProgressManager.checkCanceled()
+          putStamp(hasher, file)
+          // Lint reads the files from their documents when they are open, which change before the files are saved.
+          hasher.putLong(FileDocumentManager.getInstance().getCachedDocument(file)?.modificationStamp ?: -1)
+        }
+      }
+    }
+    return hasher.hash().toString()
+  }
+
+  private fun putStamp(hasher: Hasher, file: VirtualFile) {
+    hasher.putString(file.path, Charsets.UTF_8).putLong(file.modificationStamp)
+  }
+
+  private fun getDependencyClosure(module: Module): Set<Module> {
+    val closure = LinkedHashSet<Module>()
+    val queue = ArrayDeque(listOf(module))
+    while (queue.isNotEmpty()) {
+      val next = queue.removeFirst()
+      if (closure.add(next)) {
+        queue.addAll(ModuleRootManager.getInstance(next).getDependencies(true))
+      }
+    }
+    return closure
+  }
+
+  private fun awaitAll(futures: List<Future<GroupResults>>): List<GroupResults> {
+    var completed = false
+    try {
+      val results = futures.map { ProgressIndicatorUtils.awaitWithCheckCanceled(it) }
+      completed = true
+      return results
+    }
+    finally {
+      if (!completed) {
+        // Don't start the groups which are still waiting, the others stop when the progress indicator is cancelled.
+        futures.forEach { it.cancel(false) }
+      }
+    }
+  }
+
+  companion object {
+    private val EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "Lint Batch Analysis", (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(1))
+
+    private val CACHE_KEY = Key.create<ConcurrentHashMap<List<String>, CachedResults>>("LintBatchAnalysisCache")
+
+    private fun getCache(project: Project): ConcurrentHashMap<List<String>, CachedResults> =
+      (project as UserDataHolderEx).putUserDataIfAbsent(CACHE_KEY, ConcurrentHashMap())
+
+    /**
+     * Splits the given modules into the groups analyzed by separate drivers, given the dependency closure of each module, which contains
+     * the module itself.
+     *
+     * A module in the closure of another module is read by the driver of that module anyway, as one of its libraries, so only the modules
+     * which no other module depends on get a driver. The largest closures come first, so that of modules depending on each other only the
+     * first one gets a driver, and so that the longest analyses start first. Each module is reported by the group with the smallest
+     * closure containing it, which spreads the modules shared by several groups over them.
+     */
+    @VisibleForTesting
+    fun <T> partition(modules: List<T>, closureOf: (T) -> Set<T>): List<ModuleGroup<T>> {
+      val closures = modules.associateWith(closureOf)
+      val roots = mutableListOf<T>()
+      for (module in modules.sortedByDescending { closures.getValue(it).size }) {
+        if (roots.none { module in closures.getValue(it) }) {
+          roots.add(module)
+        }
+      }
+      val reportedModules = roots.associateWith { LinkedHashSet<T>() }
+      for (module in modules) {
+        val owner = roots.filter { module in closures.getValue(it) }.minByOrNull { closures.getValue(it).size }!!
+        reportedModules.getValue(owner).add(module)
+      }
+      return roots.map { ModuleGroup(it, closures.getValue(it), reportedModules.getValue(it)) }
+    }
+  }
+}
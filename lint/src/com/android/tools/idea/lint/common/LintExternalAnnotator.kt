@@ -25,6 +25,7 @@ import com.android.tools.lint.checks.GradleDetector
 import com.android.tools.lint.checks.WrongIdDetector
 import com.android.tools.lint.client.api.LintClient
 import com.android.tools.lint.client.api.LintRequest
+import com.android.tools.lint.client.api.LintXmlConfiguration
 import com.android.tools.lint.detector.api.Issue
 import com.android.tools.lint.detector.api.Scope
 import com.android.tools.lint.detector.api.TextFormat.HTML
@@ -48,15 +49,20 @@ import com.intellij.lang.annotation.AnnotationHolder
 import com.intellij.lang.annotation.ExternalAnnotator
 import com.intellij.lang.annotation.HighlightSeverity
 import com.intellij.lang.properties.PropertiesFileType
+import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.module.ModuleUtilCore
 import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ModuleRootManager
 import com.intellij.openapi.util.Computable
 import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.util.Iconable
 import com.intellij.openapi.util.Iconable.IconFlags
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
@@ -65,6 +71,7 @@ import com.intellij.xml.util.XmlStringUtil
 import org.jetbrains.kotlin.idea.KotlinFileType
 import org.jetbrains.plugins.gradle.config.GradleFileType
 import java.util.EnumSet
+import java.util.concurrent.atomic.AtomicLong
 import javax.swing.Icon
 
 class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResult>() {
@@ -73,6 +80,16 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
     const val LINK_PREFIX = "#lint/" // Should match the codeInsight.linkHandler prefix specified in lint-plugin.xml.
     const val INCLUDE_IDEA_SUPPRESS_ACTIONS = false
 
+    private val LOG = Logger.getInstance(LintExternalAnnotator::class.java)
+    private val CACHED_PROBLEMS_KEY = Key.create<CachedProblems>("LintExternalAnnotator.cachedProblems")
+    private val cacheHits = AtomicLong()
+    private val cacheMisses = AtomicLong()
+
+    /**
+     * Returns how many times the problems found in a file were reused, and how many times lint had to run instead.
+     */
+    fun getCacheStats(): Pair<Long, Long> = Pair(cacheHits.get(), cacheMisses.get())
+
     init {
       LintClient.clientName = LintClient.CLIENT_STUDIO
     }
@@ -142,10 +159,54 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       return null
     }
     val issues = getIssuesFromInspections(file.project, file)
-    return LintEditorResult(module, vFile, file.text, issues)
+    val lintResult = LintEditorResult(module, vFile, file.text, issues)
+    val state = LintEditorState(file.modificationStamp, getConfigurationStamp(module),
+                                LintIdeSupport.get().getEditorLintModificationTracker(module).modificationCount, issues)
+    lintResult.state = state
+
+    val cached = vFile.getUserData(CACHED_PROBLEMS_KEY)
+    if (cached != null && cached.state == state) {
+      lintResult.problems.addAll(cached.problems)
+      lintResult.isReused = true
+      cacheHits.incrementAndGet()
+    }
+    else {
+      cacheMisses.incrementAndGet()
+    }
+    if (LOG.isDebugEnabled) {
+      val hits = cacheHits.get()
+      val total = hits + cacheMisses.get()
+      if (total % 100 == 0L) {
+        LOG.debug("Lint editor results reused $hits times out of $total (${hits * 100 / total}%)")
+      }
+    }
+    return lintResult
+  }
+
+  /**
+   * Returns a stamp which changes with the lint.xml configuration files which apply to the module.
+   */
+  private fun getConfigurationStamp(module: Module): Long {
+    val documentManager = FileDocumentManager.getInstance()
+    val visited = HashSet<VirtualFile>()
+    var stamp = 0L
+    for (root in ModuleRootManager.getInstance(module).contentRoots) {
+      var dir: VirtualFile? = root
+      while (dir != null && visited.add(dir)) {
+        val configuration = dir.findChild(LintXmlConfiguration.CONFIG_FILE_NAME)
+        if (configuration != null) {
+          stamp += documentManager.getCachedDocument(configuration)?.modificationStamp ?: configuration.modificationStamp
+        }
+        dir = dir.parent
+      }
+    }
+    return stamp
   }
 
   override fun doAnnotate(lintResult: LintEditorResult): LintEditorResult {
+    if (lintResult.isReused) {
+      return lintResult
+    }
     val startTime = System.currentTimeMillis()
     val client = LintIdeSupport.get().createEditorClient(lintResult)
     try {
@@ -192,6 +253,11 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       lint.analyze()
       lint.analysisStartTime = startTime
       LintIdeSupport.get().logSession(lint, lintResult)
+
+      val state = lintResult.state
+      if (state != null && !lintResult.isDirty) {
+        mainFile.putUserData(CACHED_PROBLEMS_KEY, CachedProblems(state, ArrayList(lintResult.problems)))
+      }
     } finally {
       Disposer.dispose(client)
     }
@@ -292,6 +358,11 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
     }
   }
 
+  /**
+   * The problems found by lint in a file in the given [state].
+   */
+  private class CachedProblems(val state: LintEditorState, val problems: List<LintProblemData>)
+
   private class MyDisableInspectionFix(key: HighlightDisplayKey) : IntentionAction, Iconable {
     private val myDisableInspectionToolAction = DisableInspectionToolAction(key)
 
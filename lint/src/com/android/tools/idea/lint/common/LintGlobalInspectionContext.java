@@ -247,7 +247,7 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
 
     LintRequest request = new LintIdeRequest(client, project, files, modules, false);
     request.setScope(lintScope);
-    final LintDriver lint = client.createDriver(request);
+    LintDriver lint = client.createDriver(request);
 
     // Baseline analysis?
     myBaseline = null;
@@ -279,7 +279,16 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    if (myBaseline == null && files == null) {
+      // Independent groups of modules can be analyzed concurrently. The baseline is shared by all the modules, so it needs a single driver.
+      // Only the results of whole project runs are cached, since they don't depend on the files in scope.
+      LintBatchAnalysis analysis = new LintBatchAnalysis(project, scope, issues, lintScope, scopeType == AnalysisScope.PROJECT);
+      // When the results of all the modules were cached, no lint session ran, and there's nothing to log.
+      lint = analysis.analyze(modules, problemMap);
+    }
+    else {
+      lint.analyze();
+    }
 
     // Running all detectors? Then add dynamically registered detectors too.
     if (!runningSingleInspection) {
@@ -317,8 +326,10 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
     }
 
     AndroidLintLintBaselineInspection.clearNextRunState();
-    lint.setAnalysisStartTime(startTime);
-    ideSupport.logSession(lint, severityModule, lintResult);
+    if (lint != null) {
+      lint.setAnalysisStartTime(startTime);
+      ideSupport.logSession(lint, severityModule, lintResult);
+    }
     myResults = problemMap;
   }
 
@@ -408,6 +408,16 @@ public class LintIdeClient extends LintClient implements Disposable {
       }
     }
 
+    // Modules shared by several analyses are only reported by one of them.
+    Set<Module> reportedModules = state.getReportedModules();
+    if (inScope && reportedModules != null) {
+      Module module = ModuleUtilCore.findModuleForFile(vFile, myProject);
+      if (module == null) {
+        module = findModuleForLintProject(myProject, context.getProject());
+      }
+      inScope = module == null || reportedModules.contains(module);
+    }
+
     if (inScope) {
       file = new File(FileUtil.toCanonicalPath(file.getPath()));
 
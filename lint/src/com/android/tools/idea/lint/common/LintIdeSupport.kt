@@ -32,10 +32,13 @@ import com.intellij.openapi.application.ApplicationManager.getApplication
 import com.intellij.openapi.fileTypes.FileTypes
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootManager
+import com.intellij.openapi.util.ModificationTracker
 import com.intellij.openapi.util.Pair
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
+import com.intellij.psi.util.PsiModificationTracker
 import com.intellij.psi.xml.XmlFile
 import org.jetbrains.kotlin.idea.KotlinFileType
 import org.jetbrains.plugins.gradle.config.isGradleFile
@@ -96,6 +99,17 @@ abstract class LintIdeSupport {
     return false
   }
 
+  /**
+   * Returns a tracker of the changes outside of a file which may change the problems lint finds in it in the editor, such as changes to
+   * other source files, resources, manifests or build files. The problems found in a file are reused as long as neither the file nor this
+   * tracker changes.
+   */
+  open fun getEditorLintModificationTracker(module: Module): ModificationTracker {
+    val psiTracker = PsiModificationTracker.getInstance(module.project)
+    val rootTracker = ProjectRootManager.getInstance(module.project)
+    return ModificationTracker { psiTracker.modificationCount + rootTracker.modificationCount }
+  }
+
   /** Whether or not the given project should be analyzed in batch mode */
   open fun canAnalyze(project: Project): Boolean {
     return true
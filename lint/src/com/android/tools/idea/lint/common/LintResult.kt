@@ -36,10 +36,15 @@ class LintIgnoredResult() : LintResult() {
   override fun getIssues(): Set<Issue> = emptySet()
 }
 
-data class LintBatchResult(val project: Project,
-                           val problemMap: Map<Issue, Map<File, List<LintProblemData>>>,
-                           val scope: AnalysisScope,
-                           private val issues: Set<Issue>) : LintResult() {
+/**
+ * Result of a batch analysis. When [reportedModules] is not null, only the problems found in the files of these modules are recorded, the
+ * other modules in [scope] being read by lint but reported by another analysis.
+ */
+data class LintBatchResult @JvmOverloads constructor(val project: Project,
+                                                     val problemMap: Map<Issue, Map<File, List<LintProblemData>>>,
+                                                     val scope: AnalysisScope,
+                                                     private val issues: Set<Issue>,
+                                                     val reportedModules: Set<Module>? = null) : LintResult() {
   override fun getIssues(): Set<Issue> {
     return issues
   }
@@ -48,7 +53,16 @@ class LintEditorResult constructor(private val myModule: Module,
                                             val mainFile: VirtualFile,
                                             val mainFileContent: String,
                                             private val myIssues: Set<Issue>) : LintResult() {
-  val problems: List<LintProblemData> = ArrayList()
+  val problems: MutableList<LintProblemData> = ArrayList()
+
+  /**
+   * The state of the main file and of the project that [problems] are found in, or null if they should not be reused for later analyses
+   * in the same state.
+   */
+  var state: LintEditorState? = null
+
+  /** True if [problems] were reused from an earlier analysis in the same [state] instead of being found by lint. */
+  var isReused = false
 
   @Volatile
   var isDirty = false
@@ -65,4 +79,15 @@ class LintEditorResult constructor(private val myModule: Module,
   override fun getIssues(): Set<Issue> {
     return myIssues
   }
-}
\ No newline at end of file
+}
+
+/**
+ * The state that the problems found by lint in a file in the editor depend on: the content of the file, the issues checked, the lint
+ * configuration files, and everything else lint reads as tracked by [LintIdeSupport.getEditorLintModificationTracker].
+ */
+data class LintEditorState(
+  val fileModificationStamp: Long,
+  val configurationStamp: Long,
+  val modificationCount: Long,
+  val issues: Set<Issue>
+)
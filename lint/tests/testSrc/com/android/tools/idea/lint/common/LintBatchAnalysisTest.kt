@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class LintBatchAnalysisTest {
+  private fun partition(modules: List<String>, dependencies: Map<String, List<String>>): List<LintBatchAnalysis.ModuleGroup<String>> =
+    LintBatchAnalysis.partition(modules) { module ->
+      val closure = LinkedHashSet<String>()
+      val queue = ArrayDeque(listOf(module))
+      while (queue.isNotEmpty()) {
+        val next = queue.removeFirst()
+        if (closure.add(next)) {
+          queue.addAll(dependencies[next] ?: emptyList())
+        }
+      }
+      closure
+    }
+
+  @Test
+  fun independentModulesGetTheirOwnDriver() {
+    val groups = partition(listOf("a", "b"), emptyMap())
+    assertThat(groups.map { it.root }).containsExactly("a", "b")
+    assertThat(groups.map { it.reportedModules }).containsExactly(setOf("a"), setOf("b"))
+  }
+
+  @Test
+  fun appDependingOnAllLibrariesIsAnalyzedWithThem() {
+    val dependencies = mapOf("app" to listOf("lib1", "lib2"), "lib2" to listOf("lib1"))
+    val groups = partition(listOf("lib1", "lib2", "app"), dependencies)
+    assertThat(groups).hasSize(1)
+    assertThat(groups[0].root).isEqualTo("app")
+    assertThat(groups[0].closure).containsExactly("app", "lib1", "lib2")
+    assertThat(groups[0].reportedModules).containsExactly("lib1", "lib2", "app")
+  }
+
+  @Test
+  fun sharedLibraryIsReadByAllDriversButReportedByOne() {
+    val dependencies = mapOf("app" to listOf("feature", "common"), "feature" to listOf("common"), "wear" to listOf("common"))
+    val groups = partition(listOf("app", "feature", "wear", "common"), dependencies)
+
+    // The app and the wear app don't depend on each other, so they get separate drivers even though they share a library.
+    assertThat(groups.map { it.root }).containsExactly("app", "wear").inOrder()
+    assertThat(groups[0].closure).containsExactly("app", "feature", "common")
+    assertThat(groups[1].closure).containsExactly("wear", "common")
+
+    // Every module is reported exactly once, the shared one by the driver reading the fewest modules.
+    assertThat(groups[0].reportedModules).containsExactly("app", "feature")
+    assertThat(groups[1].reportedModules).containsExactly("wear", "common")
+  }
+
+  @Test
+  fun modulesDependingOnEachOtherShareADriver() {
+    val groups = partition(listOf("a", "b"), mapOf("a" to listOf("b"), "b" to listOf("a")))
+    assertThat(groups).hasSize(1)
+    assertThat(groups[0].reportedModules).containsExactly("a", "b")
+  }
+
+  @Test
+  fun dependenciesOutsideOfTheModulesToAnalyzeAreReadButNotReported() {
+    val groups = partition(listOf("app"), mapOf("app" to listOf("lib")))
+    assertThat(groups).hasSize(1)
+    assertThat(groups[0].closure).containsExactly("app", "lib")
+    assertThat(groups[0].reportedModules).containsExactly("app")
+  }
+}
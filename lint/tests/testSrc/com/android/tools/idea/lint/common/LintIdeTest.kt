@@ -19,6 +19,7 @@ import com.android.testutils.TestUtils.getWorkspaceRoot
 import com.android.tools.idea.util.StudioPathManager
 import com.android.tools.lint.checks.CommentDetector
 import com.android.tools.lint.client.api.LintClient
+import com.android.tools.lint.detector.api.Issue
 import com.google.common.base.Verify
 import com.google.common.collect.Lists
 import com.google.common.collect.Sets
@@ -40,8 +41,10 @@ import com.intellij.openapi.module.ModuleTypeId
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VfsUtil
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.newvfs.impl.VfsRootAccess
+import com.intellij.psi.PsiDocumentManager
 import com.intellij.psi.PsiFile
 import com.intellij.testFramework.InspectionTestUtil
 import com.intellij.testFramework.UsefulTestCase
@@ -129,6 +132,27 @@ class LintIdeTest : UsefulTestCase() {
                   "Replace with valueOf()", "/src/test/pkg/UseValueOf.java", "java")
   }
 
+  fun testEditorResultsReused() {
+    myFixture.enableInspections(AndroidLintUseValueOfInspection())
+    val file = myFixture.copyFileToProject(BASE_PATH + "useValueOf.java", "/src/test/pkg/UseValueOf.java")
+    myFixture.configureFromExistingVirtualFile(file)
+    val lintDescriptions = { myFixture.doHighlighting().mapNotNull { it.description }.filter { it.contains("valueOf") } }
+    val expected = lintDescriptions()
+    assertThat(expected).isNotEmpty()
+
+    // Nothing changed, so the problems found by the first pass are reused.
+    val (hits, misses) = LintExternalAnnotator.getCacheStats()
+    assertThat(lintDescriptions()).isEqualTo(expected)
+    assertThat(LintExternalAnnotator.getCacheStats().first).isGreaterThan(hits)
+    assertThat(LintExternalAnnotator.getCacheStats().second).isEqualTo(misses)
+
+    // Editing the file runs lint again.
+    WriteCommandAction.runWriteCommandAction(project) { myFixture.editor.document.insertString(0, "// Edited\n") }
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+    assertThat(lintDescriptions()).isEqualTo(expected)
+    assertThat(LintExternalAnnotator.getCacheStats().second).isGreaterThan(misses)
+  }
+
   fun testUseValueOfSuppress() {
     doTestWithFix(AndroidLintUseValueOfInspection(),
                   "Suppress: Add @SuppressLint(\"UseValueOf\") annotation", "/src/test/pkg/UseValueOf.java", "java")
@@ -228,6 +252,39 @@ class LintIdeTest : UsefulTestCase() {
     doGlobalInspectionTest(AndroidLintUseValueOfInspection())
   }
 
+  fun testBatchAnalysisResultsCached() {
+    myFixture.enableInspections(AndroidLintUseValueOfInspection())
+    val file = myFixture.copyFileToProject("${BASE_PATH_GLOBAL}lintInJavaFile/MyActivity.java", "src/p1/p2/MyActivity.java")
+    val issue = AndroidLintUseValueOfInspection().issue
+    val analyze = {
+      val problemMap = HashMap<Issue, Map<File, List<LintProblemData>>>()
+      val driver = LintBatchAnalysis(project, AnalysisScope(project), setOf(issue), null, true).analyze(listOf(myModule), problemMap)
+      Pair(driver, problemMap[issue]?.values?.flatten()?.map { it.message })
+    }
+    val (driver, problems) = analyze()
+    assertThat(driver).isNotNull()
+    assertThat(problems).isNotEmpty()
+
+    // Nothing changed, so the problems found by the first analysis are reused without running lint.
+    val (cachedDriver, cachedProblems) = analyze()
+    assertThat(cachedDriver).isNull()
+    assertThat(cachedProblems).isEqualTo(problems)
+
+    // Editing a file of the module runs lint again.
+    WriteCommandAction.runWriteCommandAction(project) {
+      VfsUtil.saveText(file, VfsUtilCore.loadText(file).replace("new Integer(3)", "new Integer(4)"))
+    }
+    val (editedDriver, editedProblems) = analyze()
+    assertThat(editedDriver).isNotNull()
+    assertThat(editedProblems).hasSize(problems!!.size)
+
+    // So does editing it without saving it, since lint reads the open documents.
+    myFixture.configureFromExistingVirtualFile(file)
+    WriteCommandAction.runWriteCommandAction(project) { myFixture.editor.document.insertString(0, "// Edited\n") }
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+    assertThat(analyze().first).isNotNull()
+  }
+
   fun testLintNonAndroid() {
     // Make sure that we include the lint implementation checks themselves outside of Android contexts
     val issues = LintIdeIssueRegistry()
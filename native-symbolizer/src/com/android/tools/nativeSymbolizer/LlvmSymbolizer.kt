@@ -25,8 +25,17 @@ import java.util.concurrent.Callable
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.min
+
+private const val DEFAULT_MAX_PROCESS_COUNT = 4
+// A process is only started for every this many requests, as a new process needs to load the symbol files again.
+private const val MIN_REQUESTS_PER_PROCESS = 32
+// Responses longer than this come from something else than llvm-symbolizer.
+private const val MAX_RESPONSE_LINES = 1000
 
 /**
  * Implementation of NativeSymbolizer that uses llvm-symbolizer.
@@ -42,14 +51,24 @@ import java.util.concurrent.TimeoutException
  * TestSimpleMethodCall(_JNIEnv*, _jobject*)
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
+ * Requests are pipelined: they are all written while the responses are read, instead of waiting for each response before sending the
+ * next request. Large batches of requests are spread across up to [maxProcessCount] llvm-symbolizer processes. Offsets already looked up
+ * in a symbol file are answered from the [cache] when one is given.
+ *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
-                     private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+                     private val timeoutMsc: Long = 5000,
+                     private val maxProcessCount: Int = DEFAULT_MAX_PROCESS_COUNT,
+                     private val cache: SymbolCache? = null) : NativeSymbolizer {
+
+  private val procHolders = arrayOfNulls<ProcessHolder>(maxProcessCount)
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  /**
+   * Runs the writers and readers of the requests sent to the processes. It is shut down with them by [stop].
+   */
+  private var executor: ExecutorService? = null
 
   /**
    * @param abiArch - The cpu architecture of the symbol.
@@ -57,53 +76,156 @@ class LlvmSymbolizer(private val symbolizerExe: String,
    * @param offset - The starting byte address in the module of the symbol.
    */
   override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? {
+    val location = ModuleOffset(module, offset)
+    return symbolize(abiArch, listOf(location))[location]
+  }
+
+  @Synchronized
+  override fun symbolize(abiArch: String, locations: Collection<ModuleOffset>): Map<ModuleOffset, Symbol> {
+    val symbols = HashMap<ModuleOffset, Symbol>()
     val symFiles = symLocator.getFiles(abiArch)
+    val candidates = locations.distinct().associateWith { location ->
+      symFiles.filter { it.nameWithoutExtension == location.module.nameWithoutExtension }
+    }
 
-    for (symFile in symFiles.filter { it.nameWithoutExtension == module.nameWithoutExtension }) {
-      val request = formatRequest(symFile, offset)
-
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
-
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine.isNullOrEmpty()) {
-            break
-          }
-          response.add(responseLine)
+    // Each location is looked up in its first candidate symbol file, and then in the next one as long as it is not found.
+    var candidateIndex = 0
+    var pending = candidates.keys.filter { candidates.getValue(it).isNotEmpty() }
+    try {
+      while (pending.isNotEmpty()) {
+        // Locations of modules with the same name at the same offset are the same lookup.
+        val lookups = pending.groupBy { Pair(candidates.getValue(it)[candidateIndex], it.offset) }
+        val found = lookup(lookups.keys.toList())
+        for ((key, keyLocations) in lookups) {
+          val symbol = found[key] ?: continue
+          keyLocations.forEach { symbols[it] = symbol.copy(module = it.module.absolutePath) }
+        }
+        candidateIndex++
+        pending = pending.filter { !symbols.containsKey(it) && candidates.getValue(it).size > candidateIndex }
+      }
+    }
+    finally {
+      cache?.flush()
+    }
+    return symbols
+  }
+
+  /**
+   * Looks up each pair of symbol file and offset, first in the [cache] and then with llvm-symbolizer. The module of the returned symbols is
+   * not set.
+   */
+  private fun lookup(lookups: List<Pair<File, Long>>): Map<Pair<File, Long>, Symbol> {
+    val symbols = HashMap<Pair<File, Long>, Symbol>()
+    val uncached = mutableListOf<Pair<File, Long>>()
+    for (lookup in lookups) {
+      val cached = cache?.get(lookup.first, lookup.second)
+      when {
+        cached == null -> uncached.add(lookup)
+        cached.symbol != null -> symbols[lookup] = cached.symbol
+      }
+    }
+    if (uncached.isEmpty()) {
+      return symbols
+    }
+
+    val responses = sendRequests(uncached.map { formatRequest(it.first, it.second) })
+    uncached.forEachIndexed { i, lookup ->
+      // No response means the symbolizer failed, which is not cached so it can be retried later.
+      val response = responses[i] ?: return@forEachIndexed
+      val symbol = parseResponse(response)
+      cache?.put(lookup.first, lookup.second, symbol)
+      if (symbol != null) {
+        symbols[lookup] = symbol
+      }
+    }
+    return symbols
+  }
+
+  /**
+   * Sends the requests to llvm-symbolizer and returns the response to each of them, or null for the ones not answered because a process
+   * failed or timed out. A process is considered timed out when it does not answer any request for [timeoutMsc].
+   */
+  private fun sendRequests(requests: List<String>): Array<List<String>?> {
+    val responses = arrayOfNulls<List<String>>(requests.size)
+    val processCount = min(maxProcessCount, (requests.size + MIN_REQUESTS_PER_PROCESS - 1) / MIN_REQUESTS_PER_PROCESS)
+    val executor = executor ?: Executors.newCachedThreadPool().also { executor = it }
+    val readers = (0 until processCount).map { processIndex ->
+      val holder = getProcHolder(processIndex)
+      val indices = requests.indices.filter { it % processCount == processIndex }
+      val progress = AtomicInteger()
+      // The requests are written while the responses are read, otherwise the symbolizer would eventually block writing responses nobody
+      // reads, and stop reading requests.
+      executor.submit {
+        try {
+          indices.forEach { holder.stdin.write(requests[it]) }
+          holder.stdin.flush()
+        }
+        catch (e: IOException) {
+          // The process is gone, the reader sees it as well.
+        }
+      }
+      val reader = executor.submit(Callable {
+        for (i in indices) {
+          responses[i] = readResponse(holder) ?: break
+          progress.incrementAndGet()
         }
-        response
       })
-      val response : List<String>
+      Triple(processIndex, reader, progress)
+    }
+
+    for ((processIndex, reader, progress) in readers) {
+      if (!waitForResponses(reader, progress)) {
+        stop(processIndex)
+      }
+    }
+    return responses
+  }
+
+  /**
+   * Waits for a reader to read all its responses, as long as it keeps reading some. Returns false if it did not complete.
+   */
+  private fun waitForResponses(reader: Future<*>, progress: AtomicInteger): Boolean {
+    var lastProgress = 0
+    while (true) {
       try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
+        reader.get(timeoutMsc, TimeUnit.MILLISECONDS)
+        return true
       } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
+        val currentProgress = progress.get()
+        if (currentProgress == lastProgress) {
+          getLogger().warn("llvm-symbolizer timed out", e)
+          return false
+        }
+        lastProgress = currentProgress
       } catch (e: ExecutionException) {
         getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
+        return false
       }
-
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
     }
+  }
 
-    return null
+  /**
+   * Reads the lines of a response up to the empty line that ends it. Returns null if the process has exited.
+   */
+  private fun readResponse(holder: ProcessHolder): List<String>? {
+    val response: MutableList<String> = mutableListOf()
+    while (true) {
+      val responseLine = holder.stdout.readLine() ?: return null
+      if (responseLine.isEmpty()) {
+        return response
+      }
+      if (response.size >= MAX_RESPONSE_LINES) {
+        throw IOException("Unexpected response from $symbolizerExe")
+      }
+      response.add(responseLine)
+    }
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
+  private fun getProcHolder(index: Int) : ProcessHolder {
+    var holder = procHolders[index]
     if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+      start(index)
+      holder = procHolders[index]!! // procHolders[index] must't be null after start()
     }
     return holder
   }
@@ -113,7 +235,7 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return java.lang.String.format("\"%s\" 0x%x\n", escapedPath, offset)
   }
 
-  private fun parseResponse(response: List<String>, module: File): Symbol? {
+  private fun parseResponse(response: List<String>): Symbol? {
     if (response.isEmpty())
       return null
 
@@ -122,27 +244,27 @@ class LlvmSymbolizer(private val symbolizerExe: String,
       return null
     }
     if (response.size < 2)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, "")
 
     // Location line looks like this: <path to source file>:<line number>:<column number>
     val locationLine = response[1].trim()
     val indexBeforeColumn = locationLine.lastIndexOf(':')
     if (indexBeforeColumn < 2)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, "")
 
     val indexBeforeLine = locationLine.lastIndexOf(':', indexBeforeColumn - 1)
     if (indexBeforeColumn < 1)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, "")
 
     val sourceFile = locationLine.substring(0, indexBeforeLine)
     val lineNumber = locationLine.substring(indexBeforeLine + 1, indexBeforeColumn).toIntOrNull() ?: 0
 
-    return Symbol(name, module.absolutePath, sourceFile, lineNumber)
+    return Symbol(name, "", sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
+  private fun start(index: Int) {
+    if (procHolders[index] != null)
+      stop(index)
 
     val builder = ProcessBuilder(symbolizerExe)
     val process = builder.start()
@@ -152,12 +274,20 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
     val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
     val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
+    procHolders[index] = ProcessHolder(process, stdout, stdin)
   }
 
+  @Synchronized
   override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    procHolders.indices.forEach { stop(it) }
+    // The readers and writers complete once their process is destroyed.
+    executor?.shutdown()
+    executor = null
+  }
+
+  private fun stop(index: Int) {
+    procHolders[index]?.dispose()
+    procHolders[index] = null
   }
 
   private class ProcessHolder(val process: Process,
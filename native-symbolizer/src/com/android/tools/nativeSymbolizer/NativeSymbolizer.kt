@@ -31,6 +31,12 @@ import java.nio.file.Paths
  */
 data class Symbol(val name: String, val module: String, val sourceFile: String = "", val lineNumber: Int = 0)
 
+/**
+ * @param module - The file path to a native module.
+ * @param offset - The offset in [module].
+ */
+data class ModuleOffset(val module: File, val offset: Long)
+
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
@@ -45,13 +51,23 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: File, offset: Long): Symbol?
+
+  /**
+   * Obtains information about the functions (symbols) located at many offsets at once, which is faster than one at a time.
+   * @param abiArch - CPU architecture of the given modules (e.g x86, arm, arm64 and so on)
+   * @param locations - native modules and offsets in them that need to be symbolized
+   * @return the symbols info of the locations where it can be found
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, locations: Collection<ModuleOffset>): Map<ModuleOffset, Symbol>
+
   fun stop()
 }
 
 fun createNativeSymbolizer(locator:SymbolFilesLocator): NativeSymbolizer {
   val symbolizerPath = getLlvmSymbolizerPath()
   getLogger().info("Creating a native symbolizer. Executable path: $symbolizerPath")
-  return LlvmSymbolizer(symbolizerPath, locator)
+  return LlvmSymbolizer(symbolizerPath, locator, cache = SymbolCache.getInstance())
 }
 
 /**
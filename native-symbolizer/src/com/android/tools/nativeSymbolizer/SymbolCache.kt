@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.google.common.io.MoreFiles
+import com.intellij.openapi.application.PathManager
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.TimeUnit
+import kotlin.streams.toList
+
+private const val CACHE_DIRECTORY = "native-symbols"
+private const val ENTRIES_SUFFIX = ".txt"
+private val MAX_ENTRIES_AGE_MS = TimeUnit.DAYS.toMillis(30)
+
+/**
+ * The result of looking up an offset in a symbol file. [symbol] is null when there is no symbol at the offset, and its module is not set.
+ */
+data class CachedSymbol(val symbol: Symbol?)
+
+/**
+ * A cache of the symbols found in symbol files, kept on disk across IDE restarts.
+ *
+ * The symbols are keyed by the GNU build id of the symbol file and by the symbols it has, so they stay valid for as long as the file is the
+ * same binary, even when it is rebuilt or moved, and a stripped copy of a binary does not share the symbols of the unstripped one. Files
+ * without a build id are keyed by a hash of their contents instead, which is computed once per path, size and modification time. The
+ * symbols of each symbol file are stored in their own file, one line per offset, which is only appended to. The files not used for
+ * [MAX_ENTRIES_AGE_MS] are deleted.
+ */
+class SymbolCache @VisibleForTesting constructor(private val directory: Path) {
+  // All the state is guarded by this instance.
+  private data class SymbolFileKey(val path: String, val length: Long, val lastModified: Long)
+
+  private val ids = HashMap<SymbolFileKey, String>()
+
+  /**
+   * Symbols by offset, for each symbol file id whose entries have been read.
+   */
+  private val symbols = HashMap<String, HashMap<Long, CachedSymbol>>()
+
+  /**
+   * Lines to be appended to the entries of each symbol file id by [flush].
+   */
+  private val pendingLines = HashMap<String, StringBuilder>()
+
+  private var isCleanedUp = false
+
+  @Synchronized
+  fun get(symFile: File, offset: Long): CachedSymbol? = getSymbols(getId(symFile))[offset]
+
+  @Synchronized
+  fun put(symFile: File, offset: Long, symbol: Symbol?) {
+    if (symbol != null && listOf(symbol.name, symbol.sourceFile).any { it.contains('\t') || it.contains('\n') }) {
+      // It would not be possible to read the entry back.
+      return
+    }
+    val id = getId(symFile)
+    getSymbols(id)[offset] = CachedSymbol(symbol?.copy(module = ""))
+    pendingLines.getOrPut(id) { StringBuilder() }.append(formatEntry(offset, symbol))
+  }
+
+  /**
+   * Writes the symbols added since the last call to disk.
+   */
+  @Synchronized
+  fun flush() {
+    for ((id, lines) in pendingLines) {
+      try {
+        Files.createDirectories(directory)
+        Files.write(getEntriesPath(id), lines.toString().toByteArray(Charsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+      }
+      catch (e: IOException) {
+        getLogger().debug("Unable to write the native symbol cache entries of $id", e)
+      }
+    }
+    pendingLines.clear()
+  }
+
+  private fun getId(symFile: File): String {
+    val key = SymbolFileKey(symFile.absolutePath, symFile.length(), symFile.lastModified())
+    return ids.getOrPut(key) {
+      val elfInfo = readElfInfo(symFile)
+      when {
+        elfInfo?.buildId == null -> "file-" + hashContents(symFile, key)
+        elfInfo.hasDebugInfo -> elfInfo.buildId + "-debug"
+        elfInfo.hasSymbolTable -> elfInfo.buildId + "-symtab"
+        else -> elfInfo.buildId + "-stripped"
+      }
+    }
+  }
+
+  private fun hashContents(symFile: File, key: SymbolFileKey): String =
+    try {
+      MoreFiles.asByteSource(symFile.toPath()).hash(Hashing.sha256()).toString()
+    }
+    catch (e: IOException) {
+      // The symbolizer can't read the file either, so the entries only need to be kept apart from other files.
+      getLogger().debug("Unable to hash the contents of $symFile", e)
+      Hashing.sha256().hashString(key.toString(), Charsets.UTF_8).toString()
+    }
+
+  private fun getSymbols(id: String): HashMap<Long, CachedSymbol> = symbols.getOrPut(id) {
+    if (!isCleanedUp) {
+      isCleanedUp = true
+      deleteOldEntries()
+    }
+    readEntries(getEntriesPath(id))
+  }
+
+  private fun getEntriesPath(id: String) = directory.resolve(id + ENTRIES_SUFFIX)
+
+  private fun deleteOldEntries() {
+    if (!Files.isDirectory(directory)) return
+    val minLastModified = System.currentTimeMillis() - MAX_ENTRIES_AGE_MS
+    try {
+      Files.list(directory).use { it.toList() }
+        .filter { Files.getLastModifiedTime(it).toMillis() < minLastModified }
+        .forEach { Files.deleteIfExists(it) }
+    }
+    catch (e: IOException) {
+      getLogger().debug("Unable to delete old native symbol cache entries", e)
+    }
+  }
+
+  companion object {
+    private val instance: SymbolCache by lazy { SymbolCache(Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY)) }
+
+    @JvmStatic
+    fun getInstance(): SymbolCache = instance
+
+    private fun formatEntry(offset: Long, symbol: Symbol?): String =
+      if (symbol == null) "%x\n".format(offset)
+      else "%x\t%s\t%s\t%d\n".format(offset, symbol.name, symbol.sourceFile, symbol.lineNumber)
+
+    private fun readEntries(path: Path): HashMap<Long, CachedSymbol> {
+      val result = HashMap<Long, CachedSymbol>()
+      if (!Files.exists(path)) return result
+      try {
+        // The last line is incomplete if the IDE stopped while it was being written, so it is ignored.
+        val lines = String(Files.readAllBytes(path), Charsets.UTF_8).split('\n').dropLast(1)
+        for (line in lines) {
+          val fields = line.split('\t')
+          val offset = fields[0].toLongOrNull(16) ?: continue
+          when (fields.size) {
+            1 -> result[offset] = CachedSymbol(null)
+            4 -> result[offset] = CachedSymbol(Symbol(fields[1], "", fields[2], fields[3].toIntOrNull() ?: continue))
+          }
+        }
+        // Keep the entries that are used from being deleted as old.
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()))
+      }
+      catch (e: IOException) {
+        getLogger().debug("Unable to read the native symbol cache entries in $path", e)
+      }
+      return result
+    }
+  }
+}
+
+private const val SHT_SYMTAB = 2
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+
+/**
+ * What [SymbolCache] needs to know of an ELF file: its GNU build id as a hex string, if any, and whether it has a symbol table and debug
+ * information, which stripping removes without changing the build id.
+ */
+@VisibleForTesting
+data class ElfInfo(val buildId: String?, val hasSymbolTable: Boolean, val hasDebugInfo: Boolean)
+
+/**
+ * Returns the GNU build id of the given ELF file as a hex string, or null if the file is not an ELF file or has no build id.
+ */
+@VisibleForTesting
+fun readBuildId(file: File): String? = readElfInfo(file)?.buildId
+
+/**
+ * Returns the [ElfInfo] of the given file, or null if it is not an ELF file.
+ */
+@VisibleForTesting
+fun readElfInfo(file: File): ElfInfo? {
+  try {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+      val header = readAt(channel, 0, 64) ?: return null
+      if (header.getInt(0) != 0x7f454c46) return null // "\u007fELF"
+      val is64Bit = when (header.get(4).toInt()) {
+        1 -> false
+        2 -> true
+        else -> return null
+      }
+      header.order(if (header.get(5).toInt() == 2) ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN)
+      val sectionHeadersOffset = if (is64Bit) header.getLong(0x28) else (header.getInt(0x20).toLong() and 0xffffffffL)
+      val sectionHeaderSize = header.getShort(if (is64Bit) 0x3A else 0x2E).toInt() and 0xffff
+      val sectionCount = header.getShort(if (is64Bit) 0x3C else 0x30).toInt() and 0xffff
+      val sectionNamesIndex = header.getShort(if (is64Bit) 0x3E else 0x32).toInt() and 0xffff
+
+      fun readSection(index: Int): ByteBuffer? =
+        readAt(channel, sectionHeadersOffset + index.toLong() * sectionHeaderSize, sectionHeaderSize)?.order(header.order())
+      fun ByteBuffer.sectionOffset() = if (is64Bit) getLong(0x18) else (getInt(0x10).toLong() and 0xffffffffL)
+      fun ByteBuffer.sectionSize() = if (is64Bit) getLong(0x20) else (getInt(0x14).toLong() and 0xffffffffL)
+      fun ByteBuffer.sectionData() = if (sectionSize() > Int.MAX_VALUE) null else readAt(channel, sectionOffset(), sectionSize().toInt())
+
+      val sectionNames = if (sectionNamesIndex < sectionCount) readSection(sectionNamesIndex)?.sectionData() else null
+      var buildId: String? = null
+      var hasSymbolTable = false
+      var hasDebugInfo = false
+      for (i in 0 until sectionCount) {
+        val section = readSection(i) ?: return null
+        when (section.getInt(4)) {
+          SHT_SYMTAB -> hasSymbolTable = true
+          SHT_NOTE -> if (buildId == null) {
+            buildId = section.sectionData()?.order(header.order())?.let { findBuildIdNote(it) }
+          }
+        }
+        if (sectionNames != null && readName(sectionNames, section.getInt(0)) == ".debug_info") {
+          hasDebugInfo = true
+        }
+      }
+      return ElfInfo(buildId, hasSymbolTable, hasDebugInfo)
+    }
+  }
+  catch (e: IOException) {
+    getLogger().debug("Unable to read the sections of $file", e)
+  }
+  return null
+}
+
+/**
+ * Reads the null-terminated string at the given offset of a string table section.
+ */
+private fun readName(strings: ByteBuffer, offset: Int): String? {
+  if (offset < 0 || offset >= strings.limit()) return null
+  var end = offset
+  while (end < strings.limit() && strings.get(end) != 0.toByte()) end++
+  return String(ByteArray(end - offset) { strings.get(offset + it) }, Charsets.US_ASCII)
+}
+
+/**
+ * Looks for the build id in a section of notes, each made of the size of its name and descriptor, its type, and then its name and
+ * descriptor both padded to 4 bytes.
+ */
+private fun findBuildIdNote(notes: ByteBuffer): String? {
+  while (notes.remaining() >= 12) {
+    val nameSize = notes.int
+    val descriptorSize = notes.int
+    val type = notes.int
+    val paddedNameSize = (nameSize + 3) and 3.inv()
+    val paddedDescriptorSize = (descriptorSize + 3) and 3.inv()
+    if (nameSize < 0 || descriptorSize < 0 || paddedNameSize + paddedDescriptorSize > notes.remaining()) return null
+    val name = ByteArray(nameSize).also { notes.get(it) }
+    notes.position(notes.position() + paddedNameSize - nameSize)
+    if (type == NT_GNU_BUILD_ID && String(name, Charsets.US_ASCII).trimEnd('\u0000') == "GNU") {
+      val descriptor = ByteArray(descriptorSize).also { notes.get(it) }
+      return descriptor.joinToString("") { "%02x".format(it) }
+    }
+    notes.position(notes.position() + paddedDescriptorSize)
+  }
+  return null
+}
+
+private fun readAt(channel: FileChannel, position: Long, size: Int): ByteBuffer? {
+  if (position < 0 || position + size > channel.size()) return null
+  val buffer = ByteBuffer.allocate(size)
+  while (buffer.hasRemaining()) {
+    if (channel.read(buffer, position + buffer.position()) < 0) return null
+  }
+  buffer.flip()
+  return buffer
+}
@@ -122,6 +122,46 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeMany() {
+    val symbolizer = createSymbolizer()
+    for (arch in architectures) {
+      val expectedSymbolsFile = getTestPath(arch, EXPECTED_SYMBOLS_FILE_NAME)
+      val expectedNames = expectedSymbolsFile.readLines().map { line ->
+        val symParts = line.split('|')
+        // +1 to get an address within the function, rather than function start address
+        ModuleOffset(modulePath, symParts[0].toLong(16) + 1) to symParts[1]
+      }.toMap()
+      val missingLocation = ModuleOffset(File("/p/libnotexists.so"), 12345)
+
+      // Each location is looked up once, even when it is given twice.
+      val symbols = symbolizer.symbolize(arch, expectedNames.keys.toList() + expectedNames.keys + missingLocation)
+      Assert.assertEquals(expectedNames.keys, symbols.keys)
+      for ((location, name) in expectedNames) {
+        Assert.assertEquals(name, symbols.getValue(location).name)
+        Assert.assertEquals(modulePath.absolutePath, symbols.getValue(location).module)
+      }
+    }
+  }
+
+  @Test
+  fun testCachedSymbols() {
+    Assume.assumeFalse(SystemInfo.isWindows) // Windows doesn't have 'yes'
+    val cache = SymbolCache(FileUtil.createTempDirectory("llvm-symbolizer", "cache", true).toPath())
+    val symbolFile = getTestPath("x86", libFileName.name)
+    cache.put(symbolFile, 11, Symbol("cachedFunction", "", "native-lib.cpp", 12))
+    cache.put(symbolFile, 12, null)
+
+    // The cached symbols are returned without asking the symbolizer, which would not answer.
+    val symbolizer = LlvmSymbolizer("yes", SymbolFilesLocator(createSymbolSource()), 50, cache = cache)
+    val symbol = symbolizer.symbolize("x86", libFileName, 11)!!
+    Assert.assertEquals("cachedFunction", symbol.name)
+    Assert.assertEquals(libFileName.absolutePath, symbol.module)
+    Assert.assertEquals("native-lib.cpp", symbol.sourceFile)
+    Assert.assertEquals(12, symbol.lineNumber)
+    Assert.assertNull(symbolizer.symbolize("x86", libFileName, 12))
+  }
+
   @Test
   fun testExeRestart() {
     val symbolizer = createSymbolizer()
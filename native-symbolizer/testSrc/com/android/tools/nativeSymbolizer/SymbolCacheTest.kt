@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.android.testutils.TestUtils.resolveWorkspacePath
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import kotlin.streams.toList
+
+class SymbolCacheTest {
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  @Test
+  fun testPutAndGet() {
+    val directory = folder.root.toPath().resolve("cache")
+    val symFile = folder.newFile("libnative-lib.so")
+    val cache = SymbolCache(directory)
+    cache.put(symFile, 0x100, Symbol("foo()", "/data/app/libnative-lib.so", "native-lib.cpp", 10))
+    cache.put(symFile, 0x200, null)
+
+    Assert.assertEquals(CachedSymbol(Symbol("foo()", "", "native-lib.cpp", 10)), cache.get(symFile, 0x100))
+    Assert.assertEquals(CachedSymbol(null), cache.get(symFile, 0x200))
+    Assert.assertNull(cache.get(symFile, 0x300))
+
+    // Only the flushed entries are available to a new instance, like after a restart.
+    Assert.assertNull(SymbolCache(directory).get(symFile, 0x100))
+    cache.flush()
+    val newCache = SymbolCache(directory)
+    Assert.assertEquals(CachedSymbol(Symbol("foo()", "", "native-lib.cpp", 10)), newCache.get(symFile, 0x100))
+    Assert.assertEquals(CachedSymbol(null), newCache.get(symFile, 0x200))
+    Assert.assertNull(newCache.get(symFile, 0x300))
+  }
+
+  @Test
+  fun testChangedFileWithoutBuildId() {
+    val directory = folder.root.toPath().resolve("cache")
+    val symFile = folder.newFile("libnative-lib.so")
+    val cache = SymbolCache(directory)
+    cache.put(symFile, 0x100, Symbol("foo()", "", "native-lib.cpp", 10))
+    cache.flush()
+
+    symFile.writeText("rebuilt")
+    Assert.assertNull(SymbolCache(directory).get(symFile, 0x100))
+  }
+
+  @Test
+  fun testMovedFileWithoutBuildId() {
+    val directory = folder.root.toPath().resolve("cache")
+    val symFile = folder.newFile("libnative-lib.so").apply { writeText("built") }
+    val cache = SymbolCache(directory)
+    cache.put(symFile, 0x100, Symbol("foo()", "", "native-lib.cpp", 10))
+    cache.flush()
+
+    // A copy with the same contents, elsewhere and modified at another time, has the same symbols.
+    val movedSymFile = File(folder.newFolder("moved"), symFile.name).apply { writeText("built") }
+    movedSymFile.setLastModified(symFile.lastModified() - 60_000)
+    Assert.assertEquals(CachedSymbol(Symbol("foo()", "", "native-lib.cpp", 10)), SymbolCache(directory).get(movedSymFile, 0x100))
+  }
+
+  @Test
+  fun testIncompleteEntryIsIgnored() {
+    val directory = folder.root.toPath().resolve("cache")
+    val symFile = folder.newFile("libnative-lib.so")
+    val cache = SymbolCache(directory)
+    cache.put(symFile, 0x100, Symbol("foo()", "", "native-lib.cpp", 10))
+    cache.flush()
+    val entries = Files.list(directory).use { it.toList() }.single()
+    Files.write(entries, "200\tbar()\tnative-lib.cpp".toByteArray(), StandardOpenOption.APPEND)
+
+    val newCache = SymbolCache(directory)
+    Assert.assertEquals(CachedSymbol(Symbol("foo()", "", "native-lib.cpp", 10)), newCache.get(symFile, 0x100))
+    Assert.assertNull(newCache.get(symFile, 0x200))
+  }
+
+  @Test
+  fun testReadBuildId() {
+    Assert.assertEquals("9b3ea9b018209bd554c02186a62cf2c7cca3e915", readBuildId(getTestPath("arm64", "libnative-lib.so")))
+    Assert.assertEquals("463de9a467d1bc1453c0e1f494308df8a8616b48", readBuildId(getTestPath("arm", "libnative-lib.so")))
+    Assert.assertEquals("77d9de6b9746662e7da8225fedd7533b57ded517", readBuildId(getTestPath("x86", "libnative-lib.so")))
+    Assert.assertEquals("415446799bd7b2495e1056857fc6dfc724ffc002", readBuildId(getTestPath("x86_64", "libnative-lib.so")))
+    Assert.assertNull(readBuildId(getTestPath("no_libraries", "not_a_library.txt")))
+  }
+
+  @Test
+  fun testReadElfInfo() {
+    val symFile = getTestPath("arm64", "libnative-lib.so")
+    Assert.assertEquals(ElfInfo("9b3ea9b018209bd554c02186a62cf2c7cca3e915", true, true), readElfInfo(symFile))
+    Assert.assertEquals(ElfInfo("9b3ea9b018209bd554c02186a62cf2c7cca3e915", false, false), readElfInfo(strip(symFile)))
+    Assert.assertNull(readElfInfo(getTestPath("no_libraries", "not_a_library.txt")))
+  }
+
+  @Test
+  fun testStrippedFileDoesNotShareSymbols() {
+    val directory = folder.root.toPath().resolve("cache")
+    val symFile = getTestPath("arm64", "libnative-lib.so")
+    val strippedSymFile = strip(symFile)
+    val cache = SymbolCache(directory)
+    cache.put(symFile, 0x100, Symbol("foo()", "", "native-lib.cpp", 10))
+    cache.put(strippedSymFile, 0x200, null)
+
+    Assert.assertNull(cache.get(strippedSymFile, 0x100))
+    Assert.assertNull(cache.get(symFile, 0x200))
+    Assert.assertEquals(CachedSymbol(Symbol("foo()", "", "native-lib.cpp", 10)), cache.get(symFile, 0x100))
+  }
+
+  /**
+   * Returns a copy of the given ELF file which looks stripped: the same build id, but no symbol table or debug information sections.
+   */
+  private fun strip(file: File): File {
+    val bytes = file.readBytes()
+    // Renaming the debug information section and turning the symbol table into a section of an unknown type is enough for the reader.
+    val nameOffset = String(bytes, Charsets.ISO_8859_1).indexOf(".debug_info\u0000")
+    Assert.assertTrue(nameOffset >= 0)
+    bytes[nameOffset + 1] = 'x'.toByte()
+    val buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+    val sectionHeadersOffset = buffer.getLong(0x28).toInt()
+    val sectionHeaderSize = buffer.getShort(0x3A).toInt()
+    for (i in 0 until buffer.getShort(0x3C).toInt()) {
+      val typeOffset = sectionHeadersOffset + i * sectionHeaderSize + 4
+      if (buffer.getInt(typeOffset) == 2) {
+        buffer.putInt(typeOffset, 0x60000000)
+      }
+    }
+    return folder.newFile("stripped-" + file.name).apply { writeBytes(bytes) }
+  }
+
+  private fun getTestPath(vararg part: String): File {
+    var testDataDir = resolveWorkspacePath("tools/adt/idea/native-symbolizer/testData/bin/")
+    for (p in part) {
+      testDataDir = testDataDir.resolve(p)
+    }
+    return testDataDir.toAbsolutePath().toFile()
+  }
+}
@@ -383,6 +383,16 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
    */
   @VisibleForTesting
   public static class FeatureConfigProd implements FeatureConfig {
+    @Override
+    public boolean isAsyncDataFetchEnabled() {
+      return StudioFlags.PROFILER_ASYNC_DATA_FETCH.get();
+    }
+
+    @Override
+    public boolean isCpuCaptureCacheEnabled() {
+      return StudioFlags.PROFILER_CPU_CAPTURE_CACHE.get();
+    }
+
     @Override
     public boolean isCpuCaptureStageEnabled() {
       return StudioFlags.PROFILER_CPU_CAPTURE_STAGE.get();
@@ -413,6 +423,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
       return StudioFlags.PROFILER_MEMORY_CSV_EXPORT.get();
     }
 
+    @Override
+    public boolean isMemoryHeapDumpNavigatorEnabled() {
+      return StudioFlags.PROFILER_MEMORY_HEAP_DUMP_NAVIGATOR.get();
+    }
+
     @Override
     public boolean isPerformanceMonitoringEnabled() {
       return StudioFlags.PROFILER_PERFORMANCE_MONITORING.get();
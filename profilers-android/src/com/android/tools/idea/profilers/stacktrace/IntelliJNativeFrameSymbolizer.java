@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.profilers.stacktrace;
 
+import com.android.tools.nativeSymbolizer.ModuleOffset;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
@@ -22,7 +23,13 @@ import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -55,7 +62,35 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return toSymbolizedFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
 
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolize(String abi, List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    List<ModuleOffset> locations = unsymbolizedFrames.stream()
+      .map(frame -> new ModuleOffset(new File(frame.getModuleName()), getOffsetOfPreviousInstruction(frame.getModuleOffset())))
+      .collect(Collectors.toList());
+    Map<ModuleOffset, Symbol> symbols = Collections.emptyMap();
+    try {
+      symbols = mySymbolizer.symbolize(abi, locations);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn(e);
+    }
+
+    List<NativeCallStack.NativeFrame> symbolizedFrames = new ArrayList<>();
+    for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+      ModuleOffset location = locations.get(i);
+      symbolizedFrames.add(toSymbolizedFrame(unsymbolizedFrames.get(i), location.getOffset(), symbols.get(location)));
+    }
+    return symbolizedFrames;
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame toSymbolizedFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                               long instructionOffset,
+                                                               @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
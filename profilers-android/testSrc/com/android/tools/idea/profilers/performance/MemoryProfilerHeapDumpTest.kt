@@ -20,7 +20,7 @@ import com.android.tools.adtui.model.FakeTimer
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.transport.faketransport.FakeGrpcChannel
 import com.android.tools.idea.transport.faketransport.FakeTransportService
-import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer
 import com.android.tools.perflogger.Benchmark
 import com.android.tools.profilers.FakeIdeProfilerServices
 import com.android.tools.profilers.FakeProfilerService
@@ -77,7 +77,7 @@ class MemoryProfilerHeapDumpTest {
       HeapDumpCaptureObject(profilers.client, profilers.session, dumpInfo, null, ideServices.featureTracker, ideServices)
 
     val beforeMem = getMemoryUsed()
-    val elapsedMillis = measureTimeMillis { capture.load(InMemoryBuffer(file.readBytes())) }
+    val elapsedMillis = measureTimeMillis { capture.load(MemoryMappedFileBuffer(file)) }
     val afterMem = getMemoryUsed()
     timingBenchmark.log("$name-Load-Capture", elapsedMillis)
     memoryBenchmark.log("$name-Load-Capture-Used", (afterMem - beforeMem) / (1024 * 1024))
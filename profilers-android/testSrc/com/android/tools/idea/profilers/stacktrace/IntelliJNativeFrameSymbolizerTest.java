@@ -18,11 +18,17 @@ package com.android.tools.idea.profilers.stacktrace;
 import static com.android.tools.idea.profilers.stacktrace.IntelliJNativeFrameSymbolizer.PREVIOUS_INSTRUCTION_OFFSET;
 import static com.google.common.truth.Truth.assertThat;
 
+import com.android.tools.nativeSymbolizer.ModuleOffset;
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -60,6 +66,24 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeMany() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+    NativeCallStack.NativeFrame frame1 = NativeCallStack.NativeFrame.newBuilder().setAddress(1).setModuleName("test").setModuleOffset(100).build();
+    NativeCallStack.NativeFrame frame2 = NativeCallStack.NativeFrame.newBuilder().setAddress(2).setModuleName("test").setModuleOffset(200).build();
+    // The same module offset mapped at another address
+    NativeCallStack.NativeFrame frame3 = NativeCallStack.NativeFrame.newBuilder().setAddress(3).setModuleName("test").setModuleOffset(100).build();
+
+    List<NativeCallStack.NativeFrame> symbolizedFrames = frameSymbolizer.symbolize("arm", Arrays.asList(frame1, frame2, frame3));
+    assertThat(symbolizedFrames).containsExactly(frameSymbolizer.symbolize("arm", frame1),
+                                                 frameSymbolizer.symbolize("arm", frame2),
+                                                 frameSymbolizer.symbolize("arm", frame3)).inOrder();
+    assertThat(symbolizedFrames.get(2).getAddress()).isEqualTo(3);
+
+    assertThat(frameSymbolizer.symbolize("arm64", Arrays.asList(frame1, frame2)))
+      .containsExactly(frameSymbolizer.symbolize("arm64", frame1), frameSymbolizer.symbolize("arm64", frame2)).inOrder();
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     private final HashSet<String> supportedArch = new HashSet<>();
 
@@ -83,6 +107,19 @@ public class IntelliJNativeFrameSymbolizerTest {
                         1000 + (int)offset);
     }
 
+    @NotNull
+    @Override
+    public Map<ModuleOffset, Symbol> symbolize(@NotNull String abiArch, @NotNull Collection<ModuleOffset> locations) {
+      Map<ModuleOffset, Symbol> symbols = new HashMap<>();
+      for (ModuleOffset location : locations) {
+        Symbol symbol = symbolize(abiArch, location.getModule(), location.getOffset());
+        if (symbol != null) {
+          symbols.put(location, symbol);
+        }
+      }
+      return symbols;
+    }
+
     @Override
     public void stop() {
     }
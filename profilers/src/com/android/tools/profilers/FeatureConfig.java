@@ -20,6 +20,8 @@ package com.android.tools.profilers;
  * to allow the IDE to communicate to the profilers that a feature should be on or off.
  */
 public interface FeatureConfig {
+  boolean isAsyncDataFetchEnabled();
+  boolean isCpuCaptureCacheEnabled();
   boolean isCpuCaptureStageEnabled();
   boolean isCpuNewRecordingWorkflowEnabled();
   boolean isCustomEventVisualizationEnabled();
@@ -27,6 +29,7 @@ public interface FeatureConfig {
   boolean isJankDetectionUiEnabled();
   boolean isJniReferenceTrackingEnabled();
   boolean isMemoryCSVExportEnabled();
+  boolean isMemoryHeapDumpNavigatorEnabled();
   boolean isPerformanceMonitoringEnabled();
   boolean isProfileableEnabled();
   boolean isProfileableInQrEnabled();
@@ -17,7 +17,10 @@ package com.android.tools.profilers;
 
 import com.android.sdklib.AndroidVersion;
 import com.android.tools.adtui.model.AspectModel;
+import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.DataSeriesFetcher;
 import com.android.tools.adtui.model.FpsTimer;
+import com.android.tools.adtui.model.PrefetchingDataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.StopwatchTimer;
 import com.android.tools.adtui.model.StreamingTimeline;
@@ -173,6 +176,8 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   private Updater myUpdater;
 
+  @NotNull private final DataSeriesFetcher myDataSeriesFetcher;
+
   private AxisComponentModel myViewAxis;
 
   private long myRefreshDevices;
@@ -211,6 +216,7 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     myStage.enter();
 
     myUpdater = new Updater(timer);
+    myDataSeriesFetcher = new DataSeriesFetcher(ideServices.getPoolExecutor(), ideServices.getMainExecutor());
 
     // Order in which events are added to profilersBuilder will be order they appear in monitor stage
     ImmutableList.Builder<StudioProfiler> profilersBuilder = new ImmutableList.Builder<>();
@@ -934,6 +940,19 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     return myUpdater;
   }
 
+  /**
+   * @param key identifies the data of {@code series} by value, e.g. the session and the kind of data it queries, so that the data fetched
+   *            for it is shared by every chart of the profilers showing the same data.
+   * @return a data series fetching the data of {@code series} in the background, if {@link FeatureConfig#isAsyncDataFetchEnabled()}.
+   * {@code series} itself otherwise. Dispose its {@link com.android.tools.adtui.model.RangedSeries} once the chart is not shown anymore.
+   */
+  @NotNull
+  public <E> DataSeries<E> prefetchDataSeries(@NotNull Object key, @NotNull DataSeries<E> series) {
+    return myIdeServices.getFeatureConfig().isAsyncDataFetchEnabled()
+           ? new PrefetchingDataSeries<>(key, series, myDataSeriesFetcher)
+           : series;
+  }
+
   public AxisComponentModel getViewAxis() {
     return myViewAxis;
   }
@@ -0,0 +1,639 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profiler.proto.Cpu.CpuTraceType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel;
+import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
+import com.android.tools.profilers.cpu.nodemodel.NoSymbolModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import com.android.tools.profilers.cpu.nodemodel.SyscallModel;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * On-disk cache of parsed call tree captures, so reopening a trace doesn't require parsing the raw trace file again.
+ * <p>
+ * A capture is stored in its own file, named after a hash of the content of its trace file, in a columnar format: a string table, then
+ * the attributes of every distinct {@link CaptureNodeModel} and of every {@link CaptureNode} as primitive arrays, with the nodes of each
+ * thread in pre-order. Reading a capture back memory-maps the file and bulk-copies each column. Keying entries on the content rather than
+ * on the trace file means a trace that is imported or reopened, which always gets written to a new temp file, still finds its entry. The
+ * header records the type of the trace and the version of the parser which produced the capture, so entries are ignored once that parser
+ * changes.
+ * <p>
+ * Only {@link BaseCpuCapture}s made of the node models below are cached, i.e. ART and simpleperf captures. System trace captures carry
+ * much more than call trees and are always parsed from the trace file.
+ */
+public class CpuCaptureCache {
+  private static final int MAGIC = 0x43505543; // "CPUC"
+  private static final int FORMAT_VERSION = 2;
+
+  /**
+   * Version of the parser of each cacheable trace type. Bump it when a parser changes the captures it produces, so stale entries are
+   * parsed again.
+   */
+  private static final Map<CpuTraceType, Integer> PARSER_VERSIONS = new HashMap<>();
+
+  static {
+    PARSER_VERSIONS.put(CpuTraceType.ART, 1);
+    PARSER_VERSIONS.put(CpuTraceType.SIMPLEPERF, 1);
+  }
+
+  /**
+   * Least recently used entries are deleted when the cache grows larger than this.
+   */
+  @VisibleForTesting
+  static final long DEFAULT_MAX_SIZE_BYTES = 2L * 1024 * 1024 * 1024;
+
+  private static final String FILE_EXTENSION = ".capture";
+
+  private static final byte NO_MODEL = 0;
+  private static final byte SINGLE_NAME_MODEL = 1;
+  private static final byte JAVA_METHOD_MODEL = 2;
+  private static final byte CPP_FUNCTION_MODEL = 3;
+  private static final byte SYSCALL_MODEL = 4;
+  private static final byte NO_SYMBOL_MODEL = 5;
+
+  private static final int NULL_STRING = -1;
+
+  /**
+   * Number of trace files whose content hash is remembered, so that checking and then reading or writing the entry of a trace only hashes
+   * it once.
+   */
+  private static final int MAX_REMEMBERED_KEYS = 16;
+
+  @NotNull private final File myDirectory;
+  private final long myMaxSizeBytes;
+
+  // Content hash of recently used trace files, by path, size and modification time.
+  private final Map<List<Object>, String> myTraceKeys = new LinkedHashMap<List<Object>, String>(MAX_REMEMBERED_KEYS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+      return size() > MAX_REMEMBERED_KEYS;
+    }
+  };
+
+  private static Logger getLogger() {
+    return Logger.getInstance(CpuCaptureCache.class);
+  }
+
+  public CpuCaptureCache() {
+    this(new File(PathManager.getSystemPath(), "profilers" + File.separator + "cpu-captures"), DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  @VisibleForTesting
+  CpuCaptureCache(@NotNull File directory, long maxSizeBytes) {
+    myDirectory = directory;
+    myMaxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * @return whether captures of the given type of trace can be cached.
+   */
+  public static boolean isCacheable(@NotNull CpuTraceType type) {
+    return PARSER_VERSIONS.containsKey(type);
+  }
+
+  /**
+   * @return whether a capture parsed from the trace file is cached. The entry may still fail to be read.
+   */
+  public boolean contains(@NotNull File traceFile) {
+    File cacheFile = getCacheFile(traceFile);
+    if (cacheFile == null || !cacheFile.isFile()) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(Header.SIZE_BYTES);
+      channel.read(header, 0);
+      header.flip();
+      Header parsed = Header.read(header);
+      return parsed != null && parsed.isCurrent();
+    }
+    catch (IOException | BufferUnderflowException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the capture cached for the content of the trace file, with the given trace id, or null if there is none or it is stale.
+   */
+  @Nullable
+  public CpuCapture read(long traceId, @NotNull File traceFile) {
+    File cacheFile = getCacheFile(traceFile);
+    if (cacheFile == null || !cacheFile.isFile()) {
+      return null;
+    }
+    try {
+      MappedByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      Header header = Header.read(buffer);
+      if (header == null || !header.isCurrent()) {
+        return null;
+      }
+      CpuCapture capture = readCapture(buffer, header, traceId);
+      // Keep recently used entries from being evicted.
+      cacheFile.setLastModified(System.currentTimeMillis());
+      return capture;
+    }
+    catch (IOException | RuntimeException ex) {
+      // A truncated or corrupted entry only costs a parse of the trace file.
+      getLogger().warn("Unable to read cached capture " + cacheFile, ex);
+      FileUtil.delete(cacheFile);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the capture parsed from the trace file to the cache, if its type and contents can be cached.
+   *
+   * @return whether the capture was written.
+   */
+  public boolean write(@NotNull CpuCapture capture, @NotNull File traceFile) {
+    if (capture.getClass() != BaseCpuCapture.class || !isCacheable(capture.getType())) {
+      return false;
+    }
+    Columns columns = new Columns();
+    for (CpuThreadInfo thread : capture.getThreads()) {
+      CaptureNode root = capture.getCaptureNode(thread.getId());
+      if (root == null || !columns.addThread(thread, root)) {
+        return false;
+      }
+    }
+    List<String> tags = new ArrayList<>(capture.getTags());
+    tags.forEach(columns::intern);
+    String dualClockMessage = capture.getDualClockDisabledMessage();
+    columns.intern(dualClockMessage);
+
+    File cacheFile = getCacheFile(traceFile);
+    if (cacheFile == null) {
+      return false;
+    }
+    File tempFile = new File(myDirectory, cacheFile.getName() + ".tmp");
+    try {
+      FileUtil.createParentDirs(tempFile);
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+        Range range = capture.getTimeline().getDataRange();
+        new Header(capture.getType(), PARSER_VERSIONS.get(capture.getType())).write(output);
+        output.writeBoolean(capture.isDualClock());
+        output.writeDouble(range.getMin());
+        output.writeDouble(range.getMax());
+        columns.write(output, tags, dualClockMessage);
+      }
+      // Readers only ever see complete entries.
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException ex) {
+      getLogger().warn("Unable to cache capture " + capture.getTraceId(), ex);
+      FileUtil.delete(tempFile);
+      return false;
+    }
+    evictLeastRecentlyUsed();
+    return true;
+  }
+
+  /**
+   * @return the file of the entry for the content of the trace file, or null if the trace file can't be read.
+   */
+  @Nullable
+  private File getCacheFile(@NotNull File traceFile) {
+    List<Object> fileKey = Arrays.asList(traceFile.getAbsolutePath(), traceFile.length(), traceFile.lastModified());
+    String traceKey;
+    synchronized (myTraceKeys) {
+      traceKey = myTraceKeys.get(fileKey);
+    }
+    if (traceKey == null) {
+      try {
+        traceKey = com.google.common.io.Files.asByteSource(traceFile).hash(Hashing.sha256()).toString();
+      }
+      catch (IOException ex) {
+        getLogger().warn("Unable to hash trace file " + traceFile, ex);
+        return null;
+      }
+      synchronized (myTraceKeys) {
+        myTraceKeys.put(fileKey, traceKey);
+      }
+    }
+    return new File(myDirectory, traceKey + FILE_EXTENSION);
+  }
+
+  private void evictLeastRecentlyUsed() {
+    File[] files = myDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    long totalSize = Arrays.stream(files).mapToLong(File::length).sum();
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < files.length - 1 && totalSize > myMaxSizeBytes; i++) {
+      totalSize -= files[i].length();
+      FileUtil.delete(files[i]);
+    }
+  }
+
+  @NotNull
+  private static CpuCapture readCapture(@NotNull ByteBuffer buffer, @NotNull Header header, long traceId) {
+    CpuTraceType type = header.myTraceType;
+    boolean dualClock = buffer.get() != 0;
+    Range range = new Range(buffer.getDouble(), buffer.getDouble());
+
+    String[] strings = new String[buffer.getInt()];
+    byte[] scratch = new byte[256];
+    for (int i = 0; i < strings.length; i++) {
+      int length = buffer.getInt();
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      buffer.get(scratch, 0, length);
+      strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+    Set<String> tags = new LinkedHashSet<>();
+    for (int index : readInts(buffer, buffer.getInt())) {
+      tags.add(strings[index]);
+    }
+    String dualClockMessage = getString(strings, buffer.getInt());
+
+    int modelCount = buffer.getInt();
+    byte[] modelKinds = readBytes(buffer, modelCount);
+    int[] names = readInts(buffer, modelCount);
+    int[] firstDetails = readInts(buffer, modelCount);
+    int[] secondDetails = readInts(buffer, modelCount);
+    int[] fileNames = readInts(buffer, modelCount);
+    int[] modelTags = readInts(buffer, modelCount);
+    long[] vAddresses = readLongs(buffer, modelCount);
+    byte[] isUserCode = readBytes(buffer, modelCount);
+    CaptureNodeModel[] models = new CaptureNodeModel[modelCount];
+    for (int i = 0; i < modelCount; i++) {
+      String name = strings[names[i]];
+      switch (modelKinds[i]) {
+        case SINGLE_NAME_MODEL:
+          models[i] = new SingleNameModel(name);
+          break;
+        case JAVA_METHOD_MODEL:
+          models[i] = new JavaMethodModel(name, strings[firstDetails[i]], strings[secondDetails[i]]);
+          break;
+        case CPP_FUNCTION_MODEL:
+          models[i] = new CppFunctionModel.Builder(name)
+            .setClassOrNamespace(strings[firstDetails[i]])
+            .setParameters(strings[secondDetails[i]])
+            .setFileName(getString(strings, fileNames[i]))
+            .setVAddress(vAddresses[i])
+            .setIsUserCode(isUserCode[i] != 0)
+            .setTag(getString(strings, modelTags[i]))
+            .build();
+          break;
+        case SYSCALL_MODEL:
+          models[i] = new SyscallModel(getString(strings, modelTags[i]), name);
+          break;
+        case NO_SYMBOL_MODEL:
+          models[i] = new NoSymbolModel(strings[modelTags[i]], name);
+          break;
+        default:
+          throw new IllegalStateException("Unknown node model kind " + modelKinds[i]);
+      }
+    }
+
+    int threadCount = buffer.getInt();
+    int[] threadIds = readInts(buffer, threadCount);
+    int[] threadNames = readInts(buffer, threadCount);
+    byte[] isMainThread = readBytes(buffer, threadCount);
+    byte[] clockTypes = readBytes(buffer, threadCount);
+    int[] threadNodeCounts = readInts(buffer, threadCount);
+
+    int nodeCount = buffer.getInt();
+    int[] nodeModels = readInts(buffer, nodeCount);
+    int[] childCounts = readInts(buffer, nodeCount);
+    int[] depths = readInts(buffer, nodeCount);
+    long[] startGlobal = readLongs(buffer, nodeCount);
+    long[] endGlobal = readLongs(buffer, nodeCount);
+    long[] startThread = readLongs(buffer, nodeCount);
+    long[] endThread = readLongs(buffer, nodeCount);
+
+    Map<CpuThreadInfo, CaptureNode> captureTrees = new LinkedHashMap<>();
+    int node = 0;
+    for (int thread = 0; thread < threadCount; thread++) {
+      ClockType clockType = ClockType.values()[clockTypes[thread]];
+      int end = node + threadNodeCounts[thread];
+      // Nodes are in pre-order, so the parent of each node is the closest node before it which still expects children.
+      CaptureNode[] parents = new CaptureNode[threadNodeCounts[thread]];
+      int[] remainingChildren = new int[threadNodeCounts[thread]];
+      int top = -1;
+      CaptureNode root = null;
+      for (; node < end; node++) {
+        CaptureNode captureNode = new CaptureNode(models[nodeModels[node]], clockType);
+        captureNode.setStartGlobal(startGlobal[node]);
+        captureNode.setEndGlobal(endGlobal[node]);
+        captureNode.setStartThread(startThread[node]);
+        captureNode.setEndThread(endThread[node]);
+        captureNode.setDepth(depths[node]);
+        if (top < 0) {
+          root = captureNode;
+        }
+        else {
+          parents[top].addChild(captureNode);
+          if (--remainingChildren[top] == 0) {
+            top--;
+          }
+        }
+        if (childCounts[node] > 0) {
+          parents[++top] = captureNode;
+          remainingChildren[top] = childCounts[node];
+        }
+      }
+      if (root == null || top >= 0) {
+        throw new IllegalStateException("Malformed capture tree.");
+      }
+      captureTrees.put(new CpuThreadInfo(threadIds[thread], strings[threadNames[thread]], isMainThread[thread] != 0), root);
+    }
+    return new BaseCpuCapture(traceId, type, dualClock, dualClockMessage, range, captureTrees, tags);
+  }
+
+  @Nullable
+  private static String getString(@NotNull String[] strings, int index) {
+    return index == NULL_STRING ? null : strings[index];
+  }
+
+  @NotNull
+  private static byte[] readBytes(@NotNull ByteBuffer buffer, int count) {
+    byte[] values = new byte[count];
+    buffer.get(values);
+    return values;
+  }
+
+  @NotNull
+  private static int[] readInts(@NotNull ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  @NotNull
+  private static long[] readLongs(@NotNull ByteBuffer buffer, int count) {
+    long[] values = new long[count];
+    buffer.asLongBuffer().get(values);
+    buffer.position(buffer.position() + count * Long.BYTES);
+    return values;
+  }
+
+  private static final class Header {
+    static final int SIZE_BYTES = 4 * Integer.BYTES;
+
+    @NotNull private final CpuTraceType myTraceType;
+    private final int myParserVersion;
+
+    Header(@NotNull CpuTraceType traceType, int parserVersion) {
+      myTraceType = traceType;
+      myParserVersion = parserVersion;
+    }
+
+    /**
+     * @return the header at the start of the buffer, or null if the buffer is not a cache entry of the current format.
+     */
+    @Nullable
+    static Header read(@NotNull ByteBuffer buffer) {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return null;
+      }
+      CpuTraceType traceType = CpuTraceType.forNumber(buffer.getInt());
+      int parserVersion = buffer.getInt();
+      return traceType == null ? null : new Header(traceType, parserVersion);
+    }
+
+    void write(@NotNull DataOutputStream output) throws IOException {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(myTraceType.getNumber());
+      output.writeInt(myParserVersion);
+    }
+
+    /**
+     * @return whether the entry was written by the current parser of its trace type.
+     */
+    boolean isCurrent() {
+      return Integer.valueOf(myParserVersion).equals(PARSER_VERSIONS.get(myTraceType));
+    }
+  }
+
+  /**
+   * Flattens capture trees into the columns of a cache entry. Models shared by several nodes are written once.
+   */
+  private static final class Columns {
+    private final Map<String, Integer> myStringIndices = new LinkedHashMap<>();
+    private final Map<CaptureNodeModel, Integer> myModelIndices = new IdentityHashMap<>();
+    private final List<CaptureNodeModel> myModels = new ArrayList<>();
+    private final List<CpuThreadInfo> myThreads = new ArrayList<>();
+    private final List<ClockType> myClockTypes = new ArrayList<>();
+    private final List<Integer> myThreadNodeCounts = new ArrayList<>();
+    private final List<CaptureNode> myNodes = new ArrayList<>();
+
+    int intern(@Nullable String string) {
+      return string == null ? NULL_STRING : myStringIndices.computeIfAbsent(string, s -> myStringIndices.size());
+    }
+
+    /**
+     * @return false if the tree contains a node that can't be cached.
+     */
+    boolean addThread(@NotNull CpuThreadInfo thread, @NotNull CaptureNode root) {
+      int firstNode = myNodes.size();
+      List<CaptureNode> stack = new ArrayList<>();
+      stack.add(root);
+      while (!stack.isEmpty()) {
+        CaptureNode node = stack.remove(stack.size() - 1);
+        if (node.getClass() != CaptureNode.class || getModelKind(node.getData()) == NO_MODEL) {
+          return false;
+        }
+        myNodes.add(node);
+        if (!myModelIndices.containsKey(node.getData())) {
+          myModelIndices.put(node.getData(), myModels.size());
+          myModels.add(node.getData());
+        }
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+          stack.add(node.getChildAt(i));
+        }
+      }
+      intern(thread.getName());
+      myThreads.add(thread);
+      myClockTypes.add(root.getClockType());
+      myThreadNodeCounts.add(myNodes.size() - firstNode);
+      return true;
+    }
+
+    void write(@NotNull DataOutputStream output, @NotNull List<String> tags, @Nullable String dualClockMessage) throws IOException {
+      // Strings referenced by the models need to be interned before the string table is written.
+      int modelCount = myModels.size();
+      byte[] kinds = new byte[modelCount];
+      int[] names = new int[modelCount];
+      int[] firstDetails = new int[modelCount];
+      int[] secondDetails = new int[modelCount];
+      int[] fileNames = new int[modelCount];
+      int[] modelTags = new int[modelCount];
+      long[] vAddresses = new long[modelCount];
+      byte[] isUserCode = new byte[modelCount];
+      for (int i = 0; i < modelCount; i++) {
+        CaptureNodeModel model = myModels.get(i);
+        kinds[i] = getModelKind(model);
+        names[i] = intern(model.getName());
+        firstDetails[i] = NULL_STRING;
+        secondDetails[i] = NULL_STRING;
+        fileNames[i] = NULL_STRING;
+        modelTags[i] = intern(model.getTag());
+        if (model instanceof JavaMethodModel) {
+          firstDetails[i] = intern(((JavaMethodModel)model).getClassName());
+          secondDetails[i] = intern(((JavaMethodModel)model).getSignature());
+        }
+        else if (model instanceof CppFunctionModel) {
+          CppFunctionModel function = (CppFunctionModel)model;
+          firstDetails[i] = intern(function.getClassOrNamespace());
+          // The builder splits the parameters back on the same separator.
+          secondDetails[i] = intern(String.join(", ", function.getParameters()));
+          fileNames[i] = intern(function.getFileName());
+          vAddresses[i] = function.getVAddress();
+          isUserCode[i] = (byte)(function.isUserCode() ? 1 : 0);
+        }
+      }
+
+      output.writeInt(myStringIndices.size());
+      for (String string : myStringIndices.keySet()) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+      }
+      output.writeInt(tags.size());
+      for (String tag : tags) {
+        output.writeInt(intern(tag));
+      }
+      output.writeInt(intern(dualClockMessage));
+
+      output.writeInt(modelCount);
+      output.write(kinds);
+      writeInts(output, names);
+      writeInts(output, firstDetails);
+      writeInts(output, secondDetails);
+      writeInts(output, fileNames);
+      writeInts(output, modelTags);
+      writeLongs(output, vAddresses);
+      output.write(isUserCode);
+
+      int threadCount = myThreads.size();
+      output.writeInt(threadCount);
+      for (CpuThreadInfo thread : myThreads) {
+        output.writeInt(thread.getId());
+      }
+      for (CpuThreadInfo thread : myThreads) {
+        output.writeInt(intern(thread.getName()));
+      }
+      for (CpuThreadInfo thread : myThreads) {
+        output.writeByte(thread.isMainThread() ? 1 : 0);
+      }
+      for (ClockType clockType : myClockTypes) {
+        output.writeByte(clockType.ordinal());
+      }
+      for (int count : myThreadNodeCounts) {
+        output.writeInt(count);
+      }
+
+      output.writeInt(myNodes.size());
+      for (CaptureNode node : myNodes) {
+        output.writeInt(myModelIndices.get(node.getData()));
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeInt(node.getChildCount());
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeInt(node.getDepth());
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeLong(node.getStartGlobal());
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeLong(node.getEndGlobal());
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeLong(node.getStartThread());
+      }
+      for (CaptureNode node : myNodes) {
+        output.writeLong(node.getEndThread());
+      }
+    }
+
+    private static void writeInts(@NotNull DataOutputStream output, @NotNull int[] values) throws IOException {
+      for (int value : values) {
+        output.writeInt(value);
+      }
+    }
+
+    private static void writeLongs(@NotNull DataOutputStream output, @NotNull long[] values) throws IOException {
+      for (long value : values) {
+        output.writeLong(value);
+      }
+    }
+  }
+
+  /**
+   * Models are matched by exact class, as subclasses may hold state the cache doesn't know about.
+   */
+  private static byte getModelKind(@NotNull CaptureNodeModel model) {
+    Class<?> modelClass = model.getClass();
+    if (modelClass == SingleNameModel.class) {
+      return SINGLE_NAME_MODEL;
+    }
+    if (modelClass == JavaMethodModel.class) {
+      return JAVA_METHOD_MODEL;
+    }
+    if (modelClass == CppFunctionModel.class) {
+      return CPP_FUNCTION_MODEL;
+    }
+    if (modelClass == SyscallModel.class) {
+      return SYSCALL_MODEL;
+    }
+    if (modelClass == NoSymbolModel.class) {
+      return NO_SYMBOL_MODEL;
+    }
+    return NO_MODEL;
+  }
+}
@@ -43,6 +43,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -61,6 +62,9 @@ public class CpuCaptureParser {
   @VisibleForTesting
   static final int MAX_SUPPORTED_TRACE_SIZE = 1024 * 1024 * 100; // 100MB
 
+  // Tag of the repeated packet field of a perfetto trace, i.e. field 1 with the length-delimited wire type.
+  private static final int PERFETTO_PACKET_TAG = 0x0A;
+
   /**
    * Maps a trace id to a corresponding {@link CompletableFuture<CpuCapture>}.
    */
@@ -100,9 +104,21 @@ public class CpuCaptureParser {
 
   private static final Logger LOGGER = Logger.getInstance(CpuCaptureParser.class);
 
+  /**
+   * Cache of parsed captures, used to reopen a trace without parsing it again. Null if the cache is disabled.
+   */
+  @Nullable
+  private final CpuCaptureCache myCaptureCache;
+
   public CpuCaptureParser(@NotNull IdeProfilerServices services) {
+    this(services, services.getFeatureConfig().isCpuCaptureCacheEnabled() ? new CpuCaptureCache() : null);
+  }
+
+  @VisibleForTesting
+  CpuCaptureParser(@NotNull IdeProfilerServices services, @Nullable CpuCaptureCache captureCache) {
     myServices = services;
     myCaptures = new HashMap<>();
+    myCaptureCache = captureCache;
   }
 
   public AspectModel<CpuProfilerAspect> getAspect() {
@@ -192,15 +208,49 @@ public class CpuCaptureParser {
 
     CompletableFuture<CpuCapture> cpuCapture =
       CompletableFuture.runAsync(new TraceFileValidationAction(traceFile), myServices.getPoolExecutor())
-        .thenRunAsync(new ParsingStartAction(traceFile), myServices.getMainExecutor())
+        // Looking for a cached capture hashes the trace file, so it is done before getting on the main thread.
+        .thenApplyAsync(aVoid -> isCached(traceFile, preferredProfilerType), myServices.getPoolExecutor())
+        .thenAcceptAsync(new ParsingStartAction(traceFile), myServices.getMainExecutor())
         .thenApplyAsync(
-          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices),
+          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices, myCaptureCache),
           myServices.getPoolExecutor())
         .whenCompleteAsync(new TraceResultHandler(traceFile, traceId, isImportedTrace), myServices.getMainExecutor());
     myCaptures.put(traceId, cpuCapture);
     return cpuCapture;
   }
 
+  /**
+   * @return whether a capture parsed from the trace file is cached. Only large trace files are looked up, since they are the only ones
+   * for which it matters before parsing.
+   */
+  private boolean isCached(@NotNull File traceFile, @NotNull CpuTraceType preferredProfilerType) {
+    return traceFile.length() > MAX_SUPPORTED_TRACE_SIZE &&
+           myCaptureCache != null &&
+           mayBeCached(traceFile, preferredProfilerType) &&
+           myCaptureCache.contains(traceFile);
+  }
+
+  /**
+   * @return false if the trace file is of a type whose captures are never cached, in which case it doesn't need to be hashed to look for
+   * its entry. Only the first bytes of the file are read to detect system traces among imported traces.
+   */
+  private static boolean mayBeCached(@NotNull File traceFile, @NotNull CpuTraceType preferredProfilerType) {
+    if (!CpuTraceType.UNSPECIFIED_TYPE.equals(preferredProfilerType)) {
+      return CpuCaptureCache.isCacheable(preferredProfilerType);
+    }
+    if (AtraceProducer.verifyFileHasAtraceHeader(traceFile)) {
+      return false;
+    }
+    // A perfetto trace starts with the tag of its repeated packet field, which is what PerfettoProducer checks first. Parsing a whole
+    // packet here would log an error for every other trace.
+    try (InputStream input = new FileInputStream(traceFile)) {
+      return input.read() != PERFETTO_PACKET_TAG;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
   /**
    * Represents an error during a cpu capture parsing, that can't be worked around and results in
    * a failed parse attempt.
@@ -300,7 +350,7 @@ public class CpuCaptureParser {
    * This step updates the overall parser status to parsing while also asking the user for
    * confirmation if the file is very big.
    */
-  private final class ParsingStartAction implements Runnable {
+  private final class ParsingStartAction implements Consumer<Boolean> {
     @NotNull
     private final File traceFile;
 
@@ -308,12 +358,16 @@ public class CpuCaptureParser {
       this.traceFile = traceFile;
     }
 
+    /**
+     * @param isCached whether a capture parsed from the trace file is cached.
+     */
     @Override
-    public void run() {
+    public void accept(Boolean isCached) {
       updateParsingStateWhenStarting();
 
       long traceLengthBytes = traceFile.length();
-      if (traceFile.length() > MAX_SUPPORTED_TRACE_SIZE) {
+      // Cached captures are read without parsing the trace file, so their size doesn't matter.
+      if (traceLengthBytes > MAX_SUPPORTED_TRACE_SIZE && !isCached) {
         // If the user decided to proceed, we have nothing to do.
         Runnable yesCallback = () -> {
         };
@@ -363,6 +417,9 @@ public class CpuCaptureParser {
     @NotNull
     private final IdeProfilerServices services;
 
+    @Nullable
+    private final CpuCaptureCache captureCache;
+
     // Parsers used by parseToCapture
     private static final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser();
     private static final Supplier<TraceParser> SIMPLEPERF_PARSER_SUPPLIER = () -> new SimpleperfTraceParser();
@@ -376,7 +433,8 @@ public class CpuCaptureParser {
 
     private ProcessTraceAction(
       @NotNull File traceFile, long traceId, @NotNull CpuTraceType preferredProfilerType,
-      int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services) {
+      int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services,
+      @Nullable CpuCaptureCache captureCache) {
 
       this.traceFile = traceFile;
       this.traceId = traceId;
@@ -384,11 +442,23 @@ public class CpuCaptureParser {
       this.processIdHint = processIdHint;
       this.processNameHint = processNameHint != null ? processNameHint : "";
       this.services = services;
+      this.captureCache = captureCache;
     }
 
     @Override
     public CpuCapture apply(Void aVoid) {
-      return parseToCapture(traceFile, traceId, preferredProfilerType);
+      if (captureCache == null || !mayBeCached(traceFile, preferredProfilerType)) {
+        return parseToCapture(traceFile, traceId, preferredProfilerType);
+      }
+      CpuCapture cachedCapture = captureCache.read(traceId, traceFile);
+      if (cachedCapture != null) {
+        return cachedCapture;
+      }
+      CpuCapture capture = parseToCapture(traceFile, traceId, preferredProfilerType);
+      if (capture != null) {
+        captureCache.write(capture, traceFile);
+      }
+      return capture;
     }
 
     @Nullable
@@ -352,6 +352,7 @@ public class CpuProfilerStage extends StreamingStage implements CodeNavigator.Li
     myCaptureParser.abortParsing();
     myRangeSelectionModel.clearListeners();
     myUpdatableManager.releaseAll();
+    myThreadsStates.dispose();
   }
 
   @Override
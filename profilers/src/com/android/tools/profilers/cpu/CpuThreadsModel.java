@@ -32,8 +32,10 @@ import com.android.tools.profiler.proto.Transport.GetEventGroupsResponse;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.cpu.systemtrace.SystemTraceCpuCapture;
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
@@ -175,6 +177,13 @@ public class CpuThreadsModel extends DragAndDropListModel<CpuThreadsModel.Ranged
     myThreadIdToCpuThread.forEach((key, value) -> value.applyCapture(key, capture));
   }
 
+  /**
+   * Releases the data fetched in the background for the state charts of the threads, once they are not shown anymore.
+   */
+  void dispose() {
+    myThreadIdToCpuThread.values().forEach(thread -> thread.myRangedSeries.forEach(RangedSeries::dispose));
+  }
+
   private void contentsChanged() {
     fireContentsChanged(this, 0, size());
   }
@@ -205,6 +214,10 @@ public class CpuThreadsModel extends DragAndDropListModel<CpuThreadsModel.Ranged
      * {@link SystemTraceCpuCapture}, populated when an atrace capture is parsed.
      */
     private DataSeries<ThreadState> mySeries;
+    /**
+     * The series of {@link #myModel}, one per capture applied.
+     */
+    private final List<RangedSeries<ThreadState>> myRangedSeries = new ArrayList<>();
 
     public RangedCpuThread(Range range, int threadId, String name) {
       this(range, threadId, name, null);
@@ -243,7 +256,10 @@ public class CpuThreadsModel extends DragAndDropListModel<CpuThreadsModel.Ranged
       // For non-imported traces, the main thread ID is equal to the process ID of the current session
       isMainThread = threadId == mySession.getPid();
       // TODO(b/122964201) Pass data range as 3rd param to RangedSeries to only show data from current session
-      myModel.addSeries(new RangedSeries<>(myRange, mySeries));
+      Object key = Arrays.asList(mySession, ThreadState.class, threadId, capture);
+      RangedSeries<ThreadState> rangedSeries = new RangedSeries<>(myRange, myProfilers.prefetchDataSeries(key, mySeries));
+      myRangedSeries.add(rangedSeries);
+      myModel.addSeries(rangedSeries);
       return isMainThread;
     }
 
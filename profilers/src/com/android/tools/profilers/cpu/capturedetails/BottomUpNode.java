@@ -20,78 +20,136 @@ import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import gnu.trove.TIntObjectHashMap;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * A node of the bottom-up tree of a capture: the root's children are the methods of the capture, and the children of a node are the
+ * callers of its parent through the path to that node.
+ * <p>
+ * Method ids are interned to ints once, when the root is built, and the nodes of the tree are grouped by those ints. The subtrees of the
+ * top-level nodes of the capture are walked in parallel. Each node indexes the intervals of its {@link CaptureNode}s with
+ * {@link IntervalSums} the first time it is updated, so updating it for another range doesn't walk its capture nodes again.
+ */
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   private final List<CaptureNode> myPathNodes = new ArrayList<>();
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
 
-  private BottomUpNode(String id) {
+  /**
+   * Interned method ids of every node of the capture subtree the bottom-up tree is built from, shared by all the nodes of the tree.
+   */
+  @NotNull private final MethodIds myMethodIds;
+
+  /**
+   * Interval indices of {@link #myNodes}, per {@link ClockType}. Built on first use.
+   */
+  @Nullable private volatile Intervals[] myIntervals;
+
+  private BottomUpNode(String id, @NotNull MethodIds methodIds) {
     super(id);
     myIsRoot = false;
     myChildrenBuilt = false;
+    myMethodIds = methodIds;
   }
 
   public BottomUpNode(@NotNull CaptureNode node) {
     super("Root");
     myIsRoot = true;
     myChildrenBuilt = true;
+    myMethodIds = new MethodIds();
 
-    // We use a separate map for unmatched children, because we can not merge unmatched with matched,
+    // The children of the root are the methods of the subtree, in order of their first occurrence in a pre-order traversal. The node
+    // itself comes first, then the subtree of each of its children, which are grouped by method in parallel.
+    List<MethodOccurrences> groups = new ArrayList<>(groupByMethod(node, false));
+    node.getChildren().parallelStream().map(child -> groupByMethod(child, true)).collect(Collectors.toList()).forEach(groups::addAll);
+
+    // We use separate keys for unmatched children, because we can not merge unmatched with matched,
     // i.e all merged children should have the same {@link CaptureNode.FilterType};
-    Map<String, BottomUpNode> children = new HashMap<>();
-    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+    Map<String, BottomUpNode> children = new LinkedHashMap<>();
+    Map<String, BottomUpNode> unmatchedChildren = new LinkedHashMap<>();
+    for (MethodOccurrences group : groups) {
+      Map<String, BottomUpNode> sameFilterChildren = group.myIsUnmatched ? unmatchedChildren : children;
+      BottomUpNode child = sameFilterChildren.get(group.myId);
+      if (child == null) {
+        child = new BottomUpNode(group.myId, myMethodIds);
+        sameFilterChildren.put(group.myId, child);
+        addChild(child);
+      }
+      child.myPathNodes.addAll(group.myNodes);
+      child.addNodes(group.myNodes);
+    }
 
-    // Pre-order traversal with Stack.
-    // The traversal will sort nodes by CaptureNode#getStart(), if they'll be equal then ancestor will come first.
-    Stack<CaptureNode> stack = new Stack<>();
-    stack.add(node);
+    // Intern every method id the tree can refer to: the callers of a node are either in the subtree or ancestors of its root.
+    for (CaptureNode ancestor = node; ancestor != null; ancestor = ancestor.getParent()) {
+      myMethodIds.get(ancestor.getData().getId());
+    }
+    groups.forEach(group -> myMethodIds.get(group.myId));
+
+    addNode(node);
+
+    getChildren().parallelStream().forEach(BottomUpNode::buildChildren);
+  }
+
+  /**
+   * Groups the nodes of a subtree by method and filter type, in pre-order.
+   * The traversal will sort nodes by CaptureNode#getStart(), if they'll be equal then ancestor will come first.
+   *
+   * @param includeDescendants whether to group the whole subtree, or only its root.
+   * @return the groups in order of their first node.
+   */
+  @NotNull
+  private static List<MethodOccurrences> groupByMethod(@NotNull CaptureNode subtreeRoot, boolean includeDescendants) {
+    Map<String, MethodOccurrences> groups = new LinkedHashMap<>();
+    Map<String, MethodOccurrences> unmatchedGroups = new LinkedHashMap<>();
+    List<CaptureNode> stack = new ArrayList<>();
+    stack.add(subtreeRoot);
+    int order = 0;
     while (!stack.isEmpty()) {
-      CaptureNode curNode = stack.pop();
-      // Adding in reverse order so that the first child is processed first
-      for (int i = curNode.getChildren().size() - 1; i >= 0; --i) {
-        stack.add(curNode.getChildren().get(i));
+      CaptureNode curNode = stack.remove(stack.size() - 1);
+      if (includeDescendants) {
+        // Adding in reverse order so that the first child is processed first
+        for (int i = curNode.getChildren().size() - 1; i >= 0; --i) {
+          stack.add(curNode.getChildren().get(i));
+        }
       }
 
       // If we don't have an Id then we exclude this node from being added as a child to the parent.
       // The only known occurrence of this is the empty root node used to aggregate multiple selected objects.
-      if (curNode.getData().getId().isEmpty()) {
+      String curId = curNode.getData().getId();
+      if (curId.isEmpty()) {
         continue;
       }
 
-      String curId = curNode.getData().getId();
-
-      BottomUpNode child = curNode.isUnmatched() ? unmatchedChildren.get(curId) : children.get(curId);
-      if (child == null) {
-        child = new BottomUpNode(curId);
-        if (curNode.isUnmatched()) {
-          unmatchedChildren.put(curId, child);
-        }
-        else {
-          children.put(curId, child);
-        }
-        addChild(child);
+      Map<String, MethodOccurrences> sameFilterGroups = curNode.isUnmatched() ? unmatchedGroups : groups;
+      MethodOccurrences group = sameFilterGroups.get(curId);
+      if (group == null) {
+        group = new MethodOccurrences(curId, curNode.isUnmatched(), order++);
+        sameFilterGroups.put(curId, group);
       }
-      child.addPathNode(curNode);
-      child.addNode(curNode);
-    }
-
-    addNode(node);
-
-    for (BottomUpNode child : getChildren()) {
-      child.buildChildren();
+      group.myNodes.add(curNode);
     }
+    List<MethodOccurrences> sortedGroups = new ArrayList<>(groups.values());
+    sortedGroups.addAll(unmatchedGroups.values());
+    sortedGroups.sort(Comparator.comparingInt(group -> group.myFirstOccurrence));
+    return sortedGroups;
   }
 
-  private void addPathNode(@NotNull CaptureNode node) {
-    myPathNodes.add(node);
+  @Override
+  protected void addNode(@NotNull CaptureNode node) {
+    super.addNode(node);
+    myIntervals = null;
   }
 
   public boolean buildChildren() {
@@ -99,10 +157,10 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
       return false;
     }
 
-    // We use a separate map for unmatched children, because we can not merge unmatched with matched,
-    // i.e all merged children should have the same {@link CaptureNode.FilterType};
-    Map<String, BottomUpNode> children = new HashMap<>();
-    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+    // Children are keyed by the interned id of their method, shifted to make room for whether they are unmatched. We use separate keys
+    // for unmatched children, because we can not merge unmatched with matched, i.e all merged children should have the same
+    // {@link CaptureNode.FilterType};
+    TIntObjectHashMap<BottomUpNode> children = new TIntObjectHashMap<>();
 
     assert myPathNodes.size() == getNodes().size();
     for (int i = 0; i < myPathNodes.size(); ++i) {
@@ -111,18 +169,14 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
         continue;
       }
       String parentId = parent.getData().getId();
-      BottomUpNode child = parent.isUnmatched() ? unmatchedChildren.get(parentId) : children.get(parentId);
+      int key = (myMethodIds.get(parentId) << 1) | (parent.isUnmatched() ? 1 : 0);
+      BottomUpNode child = children.get(key);
       if (child == null) {
-        child = new BottomUpNode(parentId);
-        if (parent.isUnmatched()) {
-          unmatchedChildren.put(parentId, child);
-        }
-        else {
-          children.put(parentId, child);
-        }
+        child = new BottomUpNode(parentId, myMethodIds);
+        children.put(key, child);
         addChild(child);
       }
-      child.addPathNode(parent);
+      child.myPathNodes.add(parent);
       child.addNode(getNodes().get(i));
     }
 
@@ -132,50 +186,38 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   @Override
   public void update(@NotNull ClockType clockType, @NotNull Range range) {
+    Intervals intervals = getIntervals(clockType);
     // how much time was spent in this call stack path, and in the functions it called
-    myGlobalTotal = 0;
-    myThreadTotal = 0;
+    double total = intervals.myOutermost.getIntersectionLength(range.getMin(), range.getMax());
     // how much time was spent doing work directly in this call stack path
-    double self = 0;
-
-    // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-    // then the second method can't be outerSoFarByParent.
-    // It's used to exclude nodes which aren't at the top of the
-    // call stack from the total time calculation.
-    // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
-    // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
-    HashMap<CaptureNode, CaptureNode> outerSoFarByParent = new HashMap<>();
-
-    // myNodes is sorted by CaptureNode#getStart() in increasing order,
-    // if they are equal then ancestor comes first
-    for (CaptureNode node : myNodes) {
-      // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
-      // up calculation independently for each tree then sum them after the fact.
-      // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
-      CaptureNode root = node.findRootNode();
-      CaptureNode outerSoFar = outerSoFarByParent.getOrDefault(root, null);
-      if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
-        if (outerSoFar != null) {
-          // |outerSoFarByParent| is at the top of the call stack
-          myGlobalTotal += getIntersection(range, outerSoFar, clockType);
-          myThreadTotal += getIntersection(range, outerSoFar, clockType);
-        }
-        outerSoFarByParent.put(root, node);
-      }
+    double self = intervals.myNodes.getIntersectionLength(range.getMin(), range.getMax()) -
+                  intervals.myChildren.getIntersectionLength(range.getMin(), range.getMax());
+    myGlobalTotal = total;
+    myThreadTotal = total;
+    myGlobalChildrenTotal = myGlobalTotal - self;
+    myThreadChildrenTotal = myThreadTotal - self;
+  }
 
-      self += getIntersection(range, node, clockType);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child, clockType);
-      }
+  @Override
+  public boolean inRange(Range range) {
+    if (myNodes.isEmpty() || !(range.getMin() < range.getMax())) {
+      return super.inRange(range);
     }
+    // Every node lies within an outermost node, so checking those is enough.
+    return getIntervals(myNodes.get(0).getClockType()).myOutermost.intersects(range.getMin(), range.getMax());
+  }
 
-    for(CaptureNode outerSoFar : outerSoFarByParent.values()) {
-      // |outerSoFarByParent| is at the top of the call stack
-      myGlobalTotal += getIntersection(range, outerSoFar, clockType);
-      myThreadTotal += getIntersection(range, outerSoFar, clockType);
+  @NotNull
+  private Intervals getIntervals(@NotNull ClockType clockType) {
+    Intervals[] intervals = myIntervals;
+    if (intervals == null) {
+      intervals = new Intervals[ClockType.values().length];
+      myIntervals = intervals;
     }
-    myGlobalChildrenTotal = myGlobalTotal - self;
-    myThreadChildrenTotal = myThreadTotal - self;
+    if (intervals[clockType.ordinal()] == null) {
+      intervals[clockType.ordinal()] = new Intervals(myNodes, clockType);
+    }
+    return intervals[clockType.ordinal()];
   }
 
   @NotNull
@@ -195,4 +237,102 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     }
     return myPathNodes.get(0).getFilterType();
   }
+
+  /**
+   * The nodes of a method, and filter type, within a subtree.
+   */
+  private static final class MethodOccurrences {
+    @NotNull private final String myId;
+    private final boolean myIsUnmatched;
+    private final int myFirstOccurrence;
+    private final List<CaptureNode> myNodes = new ArrayList<>();
+
+    MethodOccurrences(@NotNull String id, boolean isUnmatched, int firstOccurrence) {
+      myId = id;
+      myIsUnmatched = isUnmatched;
+      myFirstOccurrence = firstOccurrence;
+    }
+  }
+
+  /**
+   * Intervals of the nodes of a {@link BottomUpNode} with a given clock.
+   */
+  private static final class Intervals {
+    /**
+     * Nodes at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20], then only the first one is at the
+     * top. Time spent in this call stack path is the time spent in these nodes.
+     */
+    @NotNull private final IntervalSums myOutermost;
+    @NotNull private final IntervalSums myNodes;
+    @NotNull private final IntervalSums myChildren;
+
+    Intervals(@NotNull List<CaptureNode> nodes, @NotNull ClockType clockType) {
+      long[] starts = new long[nodes.size()];
+      long[] ends = new long[nodes.size()];
+      int childCount = 0;
+      for (int i = 0; i < nodes.size(); i++) {
+        starts[i] = getStart(nodes.get(i), clockType);
+        ends[i] = getEnd(nodes.get(i), clockType);
+        childCount += nodes.get(i).getChildCount();
+      }
+      myNodes = new IntervalSums(starts.clone(), ends.clone(), nodes.size());
+
+      long[] childStarts = new long[childCount];
+      long[] childEnds = new long[childCount];
+      int child = 0;
+      for (CaptureNode node : nodes) {
+        for (CaptureNode nodeChild : node.getChildren()) {
+          childStarts[child] = getStart(nodeChild, clockType);
+          childEnds[child] = getEnd(nodeChild, clockType);
+          child++;
+        }
+      }
+      myChildren = new IntervalSums(childStarts, childEnds, childCount);
+
+      // Nodes are sorted by CaptureNode#getStart() in increasing order, if they are equal then ancestor comes first. A node is at the top
+      // of the call stack if it ends after the previous one at the top. When multiple threads with the same ID are selected, the nodes
+      // are merged and may be interlaced between each of the threads, so the nodes at the top are tracked per tree.
+      Map<CaptureNode, Integer> outerSoFarByRoot = new IdentityHashMap<>();
+      boolean[] isOutermost = new boolean[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        CaptureNode root = nodes.get(i).findRootNode();
+        Integer outerSoFar = outerSoFarByRoot.get(root);
+        if (outerSoFar == null || ends[i] > ends[outerSoFar]) {
+          isOutermost[i] = true;
+          outerSoFarByRoot.put(root, i);
+        }
+      }
+      int outermostCount = 0;
+      for (int i = 0; i < nodes.size(); i++) {
+        if (isOutermost[i]) {
+          starts[outermostCount] = starts[i];
+          ends[outermostCount] = ends[i];
+          outermostCount++;
+        }
+      }
+      myOutermost = new IntervalSums(starts, ends, outermostCount);
+    }
+
+    private static long getStart(@NotNull CaptureNode node, @NotNull ClockType clockType) {
+      return clockType == ClockType.GLOBAL ? node.getStartGlobal() : node.getStartThread();
+    }
+
+    private static long getEnd(@NotNull CaptureNode node, @NotNull ClockType clockType) {
+      return clockType == ClockType.GLOBAL ? node.getEndGlobal() : node.getEndThread();
+    }
+  }
+
+  /**
+   * Method ids interned to ints. Ids are all interned when the root is built, unless the capture tree changed since, so children built
+   * concurrently may still intern new ones.
+   */
+  private static final class MethodIds {
+    private final ConcurrentHashMap<String, Integer> myIds = new ConcurrentHashMap<>();
+    private final AtomicInteger myNextId = new AtomicInteger();
+
+    int get(@NotNull String id) {
+      Integer interned = myIds.get(id);
+      return interned != null ? interned : myIds.computeIfAbsent(id, unused -> myNextId.getAndIncrement());
+    }
+  }
 }
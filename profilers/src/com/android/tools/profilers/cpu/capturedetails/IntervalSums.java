@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Answers "how much of these intervals falls within [min, max]" in O(log n), for a fixed set of possibly overlapping intervals.
+ * <p>
+ * The length of an interval [a, b] before t is clamp(t - a, 0, b - a), which is (t - a) for every start before t minus (t - b) for every
+ * end before t. Keeping the starts and the ends sorted, along with their prefix sums, turns the total length before t into two binary
+ * searches, and the length within [min, max] into the difference of the lengths before max and before min.
+ * <p>
+ * Sums are kept as longs relative to the smallest start, so integral ranges get exact results.
+ */
+final class IntervalSums {
+  private final long myBase;
+  @NotNull private final long[] myStarts;
+  @NotNull private final long[] myEnds;
+  // myStartSums[i] is the sum of (myStarts[j] - myBase) for j < i. Same for myEndSums.
+  @NotNull private final long[] myStartSums;
+  @NotNull private final long[] myEndSums;
+
+  /**
+   * @param starts start of each interval, can be modified.
+   * @param ends   end of each interval, can be modified. Intervals ending before they start are ignored.
+   */
+  IntervalSums(@NotNull long[] starts, @NotNull long[] ends, int count) {
+    int validCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (starts[i] <= ends[i]) {
+        starts[validCount] = starts[i];
+        ends[validCount] = ends[i];
+        validCount++;
+      }
+    }
+    myStarts = Arrays.copyOf(starts, validCount);
+    myEnds = Arrays.copyOf(ends, validCount);
+    Arrays.sort(myStarts);
+    Arrays.sort(myEnds);
+    myBase = validCount == 0 ? 0 : myStarts[0];
+    myStartSums = prefixSums(myStarts, myBase);
+    myEndSums = prefixSums(myEnds, myBase);
+  }
+
+  /**
+   * @return the sum of the length of the intersection of every interval with [min, max].
+   */
+  double getIntersectionLength(double min, double max) {
+    if (myStarts.length == 0 || !(min < max)) {
+      return 0;
+    }
+    return getLengthBefore(max) - getLengthBefore(min);
+  }
+
+  /**
+   * @return whether any interval overlaps the open range (min, max).
+   */
+  boolean intersects(double min, double max) {
+    // Every interval ending at or before min also starts before max, so the difference counts the intervals overlapping (min, max).
+    return min < max && countBelow(myStarts, max) - countAtOrBelow(myEnds, min) > 0;
+  }
+
+  private double getLengthBefore(double t) {
+    int startCount = countBelow(myStarts, t);
+    int endCount = countBelow(myEnds, t);
+    // Split t into an integral and a fractional part, so that the sums over the longs stay exact.
+    long whole = (long)Math.floor(t);
+    long relative = whole - myBase;
+    long wholeLength = (startCount * relative - myStartSums[startCount]) - (endCount * relative - myEndSums[endCount]);
+    return wholeLength + (startCount - endCount) * (t - whole);
+  }
+
+  /**
+   * @return the number of values strictly lower than t.
+   */
+  private static int countBelow(@NotNull long[] sorted, double t) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] < t) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the number of values lower than or equal to t.
+   */
+  private static int countAtOrBelow(@NotNull long[] sorted, double t) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= t) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @NotNull
+  private static long[] prefixSums(@NotNull long[] sorted, long base) {
+    long[] sums = new long[sorted.length + 1];
+    for (int i = 0; i < sorted.length; i++) {
+      sums[i + 1] = sums[i] + (sorted[i] - base);
+    }
+    return sums;
+  }
+}
@@ -28,7 +28,6 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.NoSymbolModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.FileInputStream;
@@ -39,15 +38,18 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
@@ -103,9 +105,25 @@ public class SimpleperfTraceParser implements TraceParser {
   private final Map<Integer, SimpleperfReport.Thread> myThreads;
 
   /**
-   * List of samples containing method trace data.
+   * Maps a thread id to the call tree built from its samples so far. Samples are merged into these trees as they are decoded, so they
+   * don't need to be kept around until the whole trace is read.
    */
-  @VisibleForTesting final List<SimpleperfReport.Sample> mySamples;
+  private final Map<Integer, ThreadTreeBuilder> myThreadTreeBuilders;
+
+  /**
+   * Samples read before the {@link SimpleperfReport.MetaInfo} record, which is needed to know which samples advance thread time.
+   * Normally empty, as simpleperf writes the meta info first.
+   */
+  private final List<SimpleperfReport.Sample> myPendingSamples;
+
+  /**
+   * Number of sample records decoded from the trace file.
+   */
+  private long myDecodedSampleCount;
+
+  private long myFirstSampleTimeNs;
+
+  private long myLastSampleTimeNs;
 
   /**
    * Maps a {@link CpuThreadInfo} to its correspondent method call tree.
@@ -148,11 +166,12 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private String myAppDataFolderPrefix;
 
-  private Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
+  private final Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
 
   public SimpleperfTraceParser() {
     myFiles = new HashMap<>();
-    mySamples = new ArrayList<>();
+    myThreadTreeBuilders = new HashMap<>();
+    myPendingSamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
     myThreads = new HashMap<>();
   }
@@ -165,20 +184,6 @@ public class SimpleperfTraceParser implements TraceParser {
     return splitPath[splitPath.length - 1];
   }
 
-  private static boolean equals(SimpleperfReport.Sample.CallChainEntry c1, SimpleperfReport.Sample.CallChainEntry c2) {
-    boolean isSameFileAndSymbolId = c1.getFileId() == c2.getFileId() && c1.getSymbolId() == c2.getSymbolId();
-    if (!isSameFileAndSymbolId) {
-      // Call chain entries need to be obtained from the same file and have the same symbol id in order to be equal.
-      return false;
-    }
-    if (c1.getSymbolId() == -1) {
-      // Symbol is invalid, fallback to vaddress
-      return c1.getVaddrInFile() == c2.getVaddrInFile();
-    }
-    // Both file and symbol id match, and symbol is valid
-    return true;
-  }
-
   private static Logger getLog() {
     return Logger.getInstance(SimpleperfTraceParser.class);
   }
@@ -241,7 +246,7 @@ public class SimpleperfTraceParser implements TraceParser {
    * message Record(record_N) (having record_size_N bytes)
    * LittleEndian32(0)
    * <p>
-   * Parsed data is stored in {@link #myFiles} and {@link #mySamples}.
+   * Parsed data is stored in {@link #myFiles}, and each sample is merged into the tree of its thread in {@link #myThreadTreeBuilders}.
    */
   @VisibleForTesting
   void parseTraceFile(File trace) throws IOException {
@@ -271,8 +276,7 @@ public class SimpleperfTraceParser implements TraceParser {
           myLostSampleCount = situation.getLostCount();
           break;
         case SAMPLE:
-          SimpleperfReport.Sample sample = record.getSample();
-          mySamples.add(sample);
+          addSample(record.getSample());
           break;
         case THREAD:
           SimpleperfReport.Thread thread = record.getThread();
@@ -283,6 +287,9 @@ public class SimpleperfTraceParser implements TraceParser {
           myEventTypes = info.getEventTypeList();
           myAppPackageName = info.getAppPackageName();
           myAppDataFolderPrefix = String.format("%s/%s", DATA_APP_DIR, myAppPackageName);
+          myCpuClockEventTypeId = myEventTypes.indexOf(CPU_CLOCK_EVENT);
+          myPendingSamples.forEach(this::mergeSample);
+          myPendingSamples.clear();
           break;
         default:
           getLog().warn("Unexpected record data type " + record.getRecordDataCase());
@@ -292,12 +299,32 @@ public class SimpleperfTraceParser implements TraceParser {
       recordSize = buffer.getInt();
     }
 
-    if (mySamples.size() != mySampleCount) {
+    if (myDecodedSampleCount != mySampleCount) {
       // TODO: create a trace file to test this exception is thrown when it should.
       throw new IllegalStateException("Samples count doesn't match the number of samples read.");
     }
 
-    myCpuClockEventTypeId = myEventTypes.indexOf(CPU_CLOCK_EVENT);
+    if (myEventTypes == null) {
+      throw new IllegalStateException("Malformed trace file: meta info not found.");
+    }
+  }
+
+  private void addSample(@NotNull SimpleperfReport.Sample sample) {
+    if (myDecodedSampleCount == 0) {
+      myFirstSampleTimeNs = sample.getTime();
+    }
+    myLastSampleTimeNs = sample.getTime();
+    myDecodedSampleCount++;
+    if (myEventTypes == null) {
+      myPendingSamples.add(sample);
+    }
+    else {
+      mergeSample(sample);
+    }
+  }
+
+  private void mergeSample(@NotNull SimpleperfReport.Sample sample) {
+    myThreadTreeBuilders.computeIfAbsent(sample.getThreadId(), ThreadTreeBuilder::new).addSample(sample);
   }
 
   /**
@@ -320,40 +347,32 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the data from {@link #mySamples} into a map of tid -> {@link CaptureNode}.
+   * Converts the trees built from the samples of each thread into {@link CaptureNode} trees. The threads are converted in parallel,
+   * on the common fork-join pool, sharing the {@link CaptureNodeModel} of each distinct call site.
    */
   private void parseSampleData() {
-    if (mySamples.isEmpty()) {
+    if (myDecodedSampleCount == 0) {
       myCaptureRange.clear();
       return;
     }
     // Set the capture range
-    long startTimestamp = mySamples.get(0).getTime();
-    long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
-    myCaptureRange.set(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
-
-    // Split the samples per thread.
-    Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
+    myCaptureRange.set(TimeUnit.NANOSECONDS.toMicros(myFirstSampleTimeNs), TimeUnit.NANOSECONDS.toMicros(myLastSampleTimeNs));
 
-    // Process the samples for each thread
-    for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
+    for (int threadId : myThreadTreeBuilders.keySet()) {
+      if (!myThreads.containsKey(threadId)) {
+        throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
+      }
     }
-  }
 
-  /**
-   * Group the samples collected by thread.
-   */
-  private Map<Integer, List<SimpleperfReport.Sample>> splitSamplesPerThread() {
-    Map<Integer, List<SimpleperfReport.Sample>> threadSamples = new HashMap<>();
-    for (SimpleperfReport.Sample sample : mySamples) {
-      int threadId = sample.getThreadId();
-      if (!threadSamples.containsKey(threadId)) {
-        threadSamples.put(threadId, new ArrayList<>());
-      }
-      threadSamples.get(threadId).add(sample);
+    Map<ModelKey, CaptureNodeModel> models = new ConcurrentHashMap<>();
+    List<ThreadTreeBuilder> builders = new ArrayList<>(myThreadTreeBuilders.values());
+    List<CaptureNode> trees = builders.parallelStream().map(builder -> builder.build(models)).collect(Collectors.toList());
+    for (int i = 0; i < builders.size(); i++) {
+      int threadId = builders.get(i).myThreadId;
+      SimpleperfReport.Thread thread = myThreads.get(threadId);
+      myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), trees.get(i));
     }
-    return threadSamples;
+    myThreadTreeBuilders.clear();
   }
 
   private static void setNodeStartTime(CaptureNode node, long startGlobalNs, long startThreadNs) {
@@ -366,150 +385,253 @@ public class SimpleperfTraceParser implements TraceParser {
     node.setEndThread(TimeUnit.NANOSECONDS.toMicros(endThreadNs));
   }
 
+  @NotNull
+  private CaptureNodeModel getModel(@NotNull Map<ModelKey, CaptureNodeModel> models, @NotNull CallNode node) {
+    ModelKey key = new ModelKey(node.myFileId, node.mySymbolId,
+                                node.mySymbolId == INVALID_SYMBOL_ID ? node.myVAddress : 0,
+                                node.mySymbolId == INVALID_SYMBOL_ID ? 0 : node.myParentVAddress);
+    return models.computeIfAbsent(key, k -> methodModelFromCallchainEntry(node.myFileId, node.mySymbolId, node.myVAddress,
+                                                                          node.myParentVAddress));
+  }
+
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Identifies the {@link CaptureNodeModel} of a call chain entry. Entries without a symbol are named after their address, the other ones
+   * after their symbol and the address they were called from.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
-    if (threadSamples.isEmpty()) {
-      getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
-    }
-
-    if (!myThreads.containsKey(threadId)) {
-      throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
+  private static final class ModelKey {
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myVAddress;
+    private final long myParentVAddress;
+
+    ModelKey(int fileId, int symbolId, long vAddress, long parentVAddress) {
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myVAddress = vAddress;
+      myParentVAddress = parentVAddress;
     }
 
-    // Add a root node to represent the thread itself.
-    long firstTimestamp = threadSamples.get(0).getTime();
-    // Align the start of each thread's thread time to the start of wall-clock start time, to comply with the logic
-    // that synchronizes the two clocks in CpuAnalysisChartModel, similar to adjustNodesTimeAndDepth() in
-    // ArtTraceHandler.
-    long threadTimeNs = firstTimestamp;
-    SimpleperfReport.Thread thread = myThreads.get(threadId);
-    CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp, threadTimeNs);
-    root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
-
-    // Parse the first call chain so we have a value for lastCallchain
-    List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
-    // Node used to traverse the tree. In the first traversal we pass an empty list as previous call chain and root as last visited node.
-    CaptureNode lastVisitedNode = parseCallChain(previousCallChain, Collections.emptyList(), firstTimestamp,
-                                                 threadTimeNs, root);
-
-    // Now parse all the rest of the samples collected for this thread
-    for (int i = 1; i < threadSamples.size(); i++) {
-      SimpleperfReport.Sample sample = threadSamples.get(i);
-      // Reverse the call chain order because simpleperf returns the call chains ordered from leaf to root,
-      // so reversing it makes the traversal easier.
-      List<SimpleperfReport.Sample.CallChainEntry> callChain = Lists.reverse(sample.getCallchainList());
-      // A sample may be triggered by the when the thread is scheduled off the CPU, if --trace-offcpu is used
-      // while collecting the trace.
-      if (isThreadTimeSupported() && sample.getEventTypeId() == myCpuClockEventTypeId) {
-        threadTimeNs += sample.getEventCount();
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ModelKey)) {
+        return false;
       }
-      // TODO: when --trace-offcpu is supported, we will need to call updateAncestorsEndTime if sample has a "schedule" out event.
-      lastVisitedNode = parseCallChain(callChain, previousCallChain, sample.getTime(), threadTimeNs, lastVisitedNode);
-      previousCallChain = callChain;
+      ModelKey other = (ModelKey)obj;
+      return myFileId == other.myFileId && mySymbolId == other.mySymbolId && myVAddress == other.myVAddress &&
+             myParentVAddress == other.myParentVAddress;
     }
 
-    // Finally, update the end timestamp of the nodes in the last sample of the thread, which should be the last sample's timestamp.
-    // TODO: when --trace-offcpu is supported, we need to check if the last sample has a "schedule" out event before updating the end time.
-    long lastTimestamp = mySamples.get(mySamples.size() - 1).getTime();
-    updateAncestorsEndTime(lastTimestamp, threadTimeNs, lastVisitedNode);
-    // update the root timestamp
-    setNodeEndTime(root, lastTimestamp, threadTimeNs);
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFileId, mySymbolId, myVAddress, myParentVAddress);
+    }
   }
 
   /**
-   * Updates the end timestamp of a node and all its ancestors except the root.
+   * A node of the call tree of a thread, holding only what is needed to create its {@link CaptureNode} once all the symbol files have
+   * been read.
    */
-  private static void updateAncestorsEndTime(long globalTimeNs, long threadTimeNs, CaptureNode lastVisited) {
-    CaptureNode node = lastVisited;
-    while (node.getParent() != null && node.getEnd() == 0) {
-      setNodeEndTime(node, globalTimeNs, threadTimeNs);
-      node = node.getParent();
-      assert node != null;
+  private static final class CallNode {
+    @Nullable private final CallNode myParent;
+    @Nullable private List<CallNode> myChildren;
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myVAddress;
+    private final long myParentVAddress;
+    private final long myStartGlobalNs;
+    private final long myStartThreadNs;
+    private long myEndGlobalNs;
+    private long myEndThreadNs;
+    private boolean myIsEnded;
+
+    CallNode(@Nullable CallNode parent, int fileId, int symbolId, long vAddress, long parentVAddress, long startGlobalNs, long startThreadNs) {
+      myParent = parent;
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myVAddress = vAddress;
+      myParentVAddress = parentVAddress;
+      myStartGlobalNs = startGlobalNs;
+      myStartThreadNs = startThreadNs;
+      if (parent != null) {
+        if (parent.myChildren == null) {
+          parent.myChildren = new ArrayList<>();
+        }
+        parent.myChildren.add(this);
+      }
+    }
+
+    void end(long endGlobalNs, long endThreadNs) {
+      myEndGlobalNs = endGlobalNs;
+      myEndThreadNs = endThreadNs;
+      myIsEnded = true;
     }
   }
 
   /**
-   * Given a {@link SimpleperfReport.Sample.CallChainEntry} and the previous one, add the new method calls as nodes to
-   * the tree and set their start time to the given timestamps (GLOBAL and THREAD). Also, check which methods are not
-   * on the call chain anymore and update their end time. Receives a {@link CaptureNode} as a starting point to
-   * traverse the tree when adding new nodes or visiting existing ones. Returns the last visited node.
+   * Incrementally builds the call tree of a thread as its samples are decoded. Only the call chain of the previous sample is kept, to find
+   * where the next one diverges from it.
    */
-  private CaptureNode parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                                     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain,
-                                     long globalTimeNs, long threadTimeNs, CaptureNode lastVisitedNode) {
-    // Node used to traverse the tree when adding new nodes or going up to find the divergent node ancestor.
-    CaptureNode traversalNode = lastVisitedNode;
-
-    // Find the node where the current call chain diverge from the previous one
-    int divergenceIndex = 0;
-    while (divergenceIndex < callChain.size() && divergenceIndex < previousCallChain.size() &&
-           equals(previousCallChain.get(divergenceIndex), callChain.get(divergenceIndex))) {
-      divergenceIndex++;
+  private final class ThreadTreeBuilder {
+    private final int myThreadId;
+    private final CallNode myRoot;
+    // Node used to traverse the tree, it is the leaf of the previous call chain.
+    private CallNode myLastVisitedNode;
+    private long myFirstTimeNs;
+    private long myThreadTimeNs;
+    // Call chain of the previous sample, ordered from root to leaf.
+    private int myPreviousChainSize;
+    private int[] myPreviousFileIds = new int[0];
+    private int[] myPreviousSymbolIds = new int[0];
+    private long[] myPreviousVAddresses = new long[0];
+    private int[] myFileIds = new int[0];
+    private int[] mySymbolIds = new int[0];
+    private long[] myVAddresses = new long[0];
+    private boolean myHasSamples;
+
+    ThreadTreeBuilder(int threadId) {
+      myThreadId = threadId;
+      myRoot = new CallNode(null, 0, INVALID_SYMBOL_ID, 0, -1, 0, 0);
+      myLastVisitedNode = myRoot;
     }
 
-    // If there is a divergence, we update the end time of the traversal node and go up in the tree until we find the divergent node parent.
-    if (divergenceIndex < previousCallChain.size()) {
-      int divergenceCount = previousCallChain.size() - divergenceIndex;
-      traversalNode = findDivergenceAndUpdateEndTime(divergenceCount, globalTimeNs, threadTimeNs, traversalNode);
-    }
+    /**
+     * Given a sample and the call chain of the previous one, add the new method calls as nodes to the tree and set their start time to the
+     * sample timestamps (GLOBAL and THREAD). Also, check which methods are not on the call chain anymore and update their end time.
+     */
+    void addSample(@NotNull SimpleperfReport.Sample sample) {
+      long globalTimeNs = sample.getTime();
+      if (!myHasSamples) {
+        // Align the start of each thread's thread time to the start of wall-clock start time, to comply with the logic
+        // that synchronizes the two clocks in CpuAnalysisChartModel, similar to adjustNodesTimeAndDepth() in
+        // ArtTraceHandler.
+        myFirstTimeNs = globalTimeNs;
+        myThreadTimeNs = globalTimeNs;
+        myHasSamples = true;
+      }
+      // A sample may be triggered by the when the thread is scheduled off the CPU, if --trace-offcpu is used
+      // while collecting the trace.
+      else if (isThreadTimeSupported() && sample.getEventTypeId() == myCpuClockEventTypeId) {
+        myThreadTimeNs += sample.getEventCount();
+      }
+      // TODO: when --trace-offcpu is supported, we will need to call updateAncestorsEndTime if sample has a "schedule" out event.
 
-    // We add the new nodes (if any) present in the new call chain as descendants of the parent of the first divergent node.
-    if (divergenceIndex < callChain.size()) {
-      traversalNode = addNewNodes(callChain, traversalNode, divergenceIndex, globalTimeNs, threadTimeNs);
-    }
+      // Reverse the call chain order because simpleperf returns the call chains ordered from leaf to root,
+      // so reversing it makes the traversal easier.
+      int size = sample.getCallchainCount();
+      if (myFileIds.length < size) {
+        myFileIds = new int[size];
+        mySymbolIds = new int[size];
+        myVAddresses = new long[size];
+      }
+      for (int i = 0; i < size; i++) {
+        SimpleperfReport.Sample.CallChainEntry entry = sample.getCallchain(size - 1 - i);
+        myFileIds[i] = entry.getFileId();
+        mySymbolIds[i] = entry.getSymbolId();
+        myVAddresses[i] = entry.getVaddrInFile();
+      }
 
-    // Finally, return the traversal node.
-    return traversalNode;
-  }
+      // Find the node where the current call chain diverge from the previous one
+      int divergenceIndex = 0;
+      while (divergenceIndex < size && divergenceIndex < myPreviousChainSize && isSameEntry(divergenceIndex)) {
+        divergenceIndex++;
+      }
 
-  /**
-   * Updates the end timestamp of a given node and go up in the tree N times, where N is the divergence count passed as an argument.
-   * Returns the parent of the last visited node, meaning nodes that we have changed the end time.
-   */
-  private static CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, long endGlobalNs, long endThreadNs,
-                                                            CaptureNode node) {
-    for (int i = 0; i < divergenceCount; i++) {
-      assert node != null;
-      setNodeEndTime(node, endGlobalNs, endThreadNs);
-      node = node.getParent();
+      // If there is a divergence, we update the end time of the traversal node and go up in the tree until we find the divergent node
+      // parent.
+      CallNode node = myLastVisitedNode;
+      for (int i = divergenceIndex; i < myPreviousChainSize; i++) {
+        assert node != null;
+        node.end(globalTimeNs, myThreadTimeNs);
+        node = node.myParent;
+      }
+
+      // We add the new nodes (if any) present in the new call chain as descendants of the parent of the first divergent node.
+      for (int i = divergenceIndex; i < size; i++) {
+        // Get the parent function vAddress. That corresponds to the line of the parent function where the current function is called.
+        long parentVAddress = i > 0 ? myVAddresses[i - 1] : -1;
+        node = new CallNode(node, myFileIds[i], mySymbolIds[i], myVAddresses[i], parentVAddress, globalTimeNs, myThreadTimeNs);
+      }
+      myLastVisitedNode = node;
+
+      // The current chain becomes the previous one, and the previous arrays are reused for the next sample.
+      int[] fileIds = myPreviousFileIds;
+      int[] symbolIds = myPreviousSymbolIds;
+      long[] vAddresses = myPreviousVAddresses;
+      myPreviousFileIds = myFileIds;
+      myPreviousSymbolIds = mySymbolIds;
+      myPreviousVAddresses = myVAddresses;
+      myPreviousChainSize = size;
+      myFileIds = fileIds;
+      mySymbolIds = symbolIds;
+      myVAddresses = vAddresses;
     }
 
-    return node;
-  }
+    private boolean isSameEntry(int index) {
+      // Call chain entries need to be obtained from the same file and have the same symbol id in order to be equal.
+      if (myFileIds[index] != myPreviousFileIds[index] || mySymbolIds[index] != myPreviousSymbolIds[index]) {
+        return false;
+      }
+      // If the symbol is invalid, fallback to vaddress
+      return mySymbolIds[index] != INVALID_SYMBOL_ID || myVAddresses[index] == myPreviousVAddresses[index];
+    }
 
-  /**
-   * Given a list of call chain entries and a start index, convert them to {@link CaptureNode} and add them as descendants of a given node.
-   * Returns the last visited (added) node.
-   */
-  private CaptureNode addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                                  CaptureNode node, int startIndex, long startGlobalNs, long startThreadNs) {
-    assert node != null;
-    for (int i = startIndex; i < callChain.size(); i++) {
-      // Get the parent function vAddress. That corresponds to the line of the parent function where the current function is called.
-      long parentVAddress = i > 0 ? callChain.get(i - 1).getVaddrInFile() : -1;
-      CaptureNode child = createCaptureNode(methodModelFromCallchainEntry(callChain.get(i), parentVAddress),
-                                            startGlobalNs, startThreadNs);
-      node.addChild(child);
-      child.setDepth(node.getDepth() + 1);
-      node = child;
+    /**
+     * Converts the tree into {@link CaptureNode}s. Nodes still on the call chain of the last sample of the thread end at the last sample
+     * of the trace.
+     */
+    @NotNull
+    CaptureNode build(@NotNull Map<ModelKey, CaptureNodeModel> models) {
+      // TODO: when --trace-offcpu is supported, we need to check if the last sample has a "schedule" out event before updating the end time.
+      SimpleperfReport.Thread thread = myThreads.get(myThreadId);
+      // Add a root node to represent the thread itself.
+      CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), myFirstTimeNs, myFirstTimeNs);
+      setNodeEndTime(root, myLastSampleTimeNs, myThreadTimeNs);
+
+      List<CallNode> pendingNodes = new ArrayList<>();
+      List<CaptureNode> pendingParents = new ArrayList<>();
+      addChildren(myRoot, root, pendingNodes, pendingParents);
+      while (!pendingNodes.isEmpty()) {
+        CallNode callNode = pendingNodes.remove(pendingNodes.size() - 1);
+        CaptureNode parent = pendingParents.remove(pendingParents.size() - 1);
+        CaptureNode node = createCaptureNode(getModel(models, callNode), callNode.myStartGlobalNs, callNode.myStartThreadNs);
+        if (callNode.myIsEnded) {
+          setNodeEndTime(node, callNode.myEndGlobalNs, callNode.myEndThreadNs);
+        }
+        else {
+          setNodeEndTime(node, myLastSampleTimeNs, myThreadTimeNs);
+        }
+        parent.addChild(node);
+        node.setDepth(parent.getDepth() + 1);
+        addChildren(callNode, node, pendingNodes, pendingParents);
+      }
+      return root;
+    }
+
+    /**
+     * Queues the children of a node in reverse order, so they are popped and added to their parent in order.
+     */
+    private void addChildren(@NotNull CallNode callNode,
+                             @NotNull CaptureNode node,
+                             @NotNull List<CallNode> pendingNodes,
+                             @NotNull List<CaptureNode> pendingParents) {
+      if (callNode.myChildren == null) {
+        return;
+      }
+      for (int i = callNode.myChildren.size() - 1; i >= 0; i--) {
+        pendingNodes.add(callNode.myChildren.get(i));
+        pendingParents.add(node);
+      }
     }
-    // Return the last added node, as it's the visited one
-    return node;
   }
 
-  private CaptureNodeModel methodModelFromCallchainEntry(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
-    int symbolId = callChainEntry.getSymbolId();
-    SimpleperfReport.File symbolFile = myFiles.get(callChainEntry.getFileId());
+  private CaptureNodeModel methodModelFromCallchainEntry(int fileId, int symbolId, long vAddress, long parentVAddress) {
+    SimpleperfReport.File symbolFile = myFiles.get(fileId);
     if (symbolFile == null) {
-      throw new IllegalStateException("Symbol file with id \"" + callChainEntry.getFileId() + "\" not found.");
+      throw new IllegalStateException("Symbol file with id \"" + fileId + "\" not found.");
     }
     if (symbolId == INVALID_SYMBOL_ID) {
       // if symbol_id is -1, we report the method as fileName+vAddress (e.g. program.so+0x3039)
-      String hexAddress = "0x" + Long.toHexString(callChainEntry.getVaddrInFile());
+      String hexAddress = "0x" + Long.toHexString(vAddress);
       String methodName = fileNameFromPath(symbolFile.getPath()) + "+" + hexAddress;
       return nodeWithTagAdded(new NoSymbolModel(symbolFile.getPath(), methodName));
     }
@@ -522,7 +644,10 @@ public class SimpleperfTraceParser implements TraceParser {
 
   private CaptureNodeModel nodeWithTagAdded(CaptureNodeModel node) {
     if (node.getTag() != null) {
-      myTags.add(node.getTag());
+      // Models are created by the threads building the capture trees in parallel.
+      synchronized (myTags) {
+        myTags.add(node.getTag());
+      }
     }
     return node;
   }
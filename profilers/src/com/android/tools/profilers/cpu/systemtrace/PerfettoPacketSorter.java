@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sorts the Atrace lines generated from {@link PerfettoTrace.FtraceEventBundle}s by timestamp using an external merge sort.
+ * Bundles come in out of order, as well as the lines within a bundle, so every line has to be seen before the first one can be returned.
+ * <p>
+ * Lines are accumulated in a fixed size in-memory run. When the run is full it is sorted and spilled to a temporary file as
+ * (timestamp, length, utf-8 bytes) records. Once all lines have been added {@link #resetForIterator()} opens every run and the
+ * iterator performs a k-way merge over them, so parse time grows linearly with the capture length and heap usage is bounded by the run
+ * size. Lines with equal timestamps are returned in insertion order. Each run file is closed and deleted as soon as it is exhausted.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  /**
+   * Number of lines kept in memory before a run is spilled to disk. Atrace lines are ~100 bytes, so this keeps the in-memory run around
+   * 10mb.
+   */
+  private static final int DEFAULT_RUN_SIZE = 1 << 16;
+
+  private static final Comparator<RunCursor> CURSOR_ORDER =
+    Comparator.<RunCursor>comparingLong(cursor -> cursor.myTimestamp).thenComparingInt(cursor -> cursor.myRunIndex);
+
+  private final int myRunSize;
+  private final List<File> myRunFiles = new ArrayList<>();
+  private long[] myTimestamps;
+  private String[] myLines;
+  private int myLineCount;
+  @Nullable private PriorityQueue<RunCursor> myMergeQueue;
+  private boolean myClosed;
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PerfettoPacketSorter.class);
+  }
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_RUN_SIZE);
+  }
+
+  @VisibleForTesting
+  public PerfettoPacketSorter(int runSize) {
+    assert runSize > 0;
+    myRunSize = runSize;
+    myTimestamps = new long[runSize];
+    myLines = new String[runSize];
+  }
+
+  /**
+   * As a trace file is loaded each formatted event line should be added to the sorter along with the timestamp of the event.
+   */
+  public void addLine(long timestamp, @NotNull String line) {
+    // If the sorter was closed or is already being iterated in the middle of a capture return instead of spamming the output.
+    if (myClosed || myMergeQueue != null) {
+      return;
+    }
+    if (myLineCount == myRunSize) {
+      spillRun();
+    }
+    myTimestamps[myLineCount] = timestamp;
+    myLines[myLineCount] = line;
+    myLineCount++;
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   * The remaining in-memory lines are sorted and every spilled run is opened to be merged.
+   */
+  public void resetForIterator() {
+    if (myClosed) {
+      return;
+    }
+    myMergeQueue = new PriorityQueue<>(Math.max(1, myRunFiles.size() + 1), CURSOR_ORDER);
+    int runIndex = 0;
+    for (File runFile : myRunFiles) {
+      try {
+        offer(new FileRunCursor(runIndex++, runFile));
+      }
+      catch (IOException ex) {
+        getLogger().error(ex);
+      }
+    }
+    // The last run never needs to hit the disk, so it is merged straight from memory.
+    offer(new MemoryRunCursor(runIndex, sortedOrder()));
+  }
+
+  /**
+   * Delete the temporary run files and free resources.
+   */
+  public void close() {
+    myClosed = true;
+    if (myMergeQueue != null) {
+      myMergeQueue.forEach(RunCursor::close);
+      myMergeQueue = null;
+    }
+    myTimestamps = new long[0];
+    myLines = new String[0];
+    myLineCount = 0;
+    for (File runFile : myRunFiles) {
+      FileUtil.delete(runFile);
+    }
+    myRunFiles.clear();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return myMergeQueue != null && !myMergeQueue.isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    RunCursor cursor = myMergeQueue.poll();
+    String line = cursor.myLine;
+    offer(cursor);
+    return line;
+  }
+
+  @VisibleForTesting
+  public int getSpilledRunCount() {
+    return myRunFiles.size();
+  }
+
+  @VisibleForTesting
+  @NotNull
+  public List<File> getSpilledRunFiles() {
+    return new ArrayList<>(myRunFiles);
+  }
+
+  /**
+   * Advances the cursor and, if it still has lines, puts it back in the merge queue. Otherwise the cursor is closed.
+   */
+  private void offer(@NotNull RunCursor cursor) {
+    try {
+      if (cursor.advance()) {
+        myMergeQueue.add(cursor);
+        return;
+      }
+    }
+    catch (RuntimeException ex) {
+      // A truncated or corrupted run file shouldn't take down the whole parse, we just lose the remainder of that run.
+      getLogger().error(ex);
+    }
+    cursor.close();
+  }
+
+  /**
+   * @return indices of the in-memory lines ordered by timestamp. The sort is stable so equal timestamps keep their insertion order.
+   */
+  @NotNull
+  private int[] sortedOrder() {
+    int[] order = new int[myLineCount];
+    Arrays.setAll(order, i -> i);
+    long[] timestamps = myTimestamps;
+    IntArrays.mergeSort(order, 0, myLineCount, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+    return order;
+  }
+
+  private void spillRun() {
+    int[] order = sortedOrder();
+    try {
+      File runFile = FileUtil.createTempFile("perfetto", ".run", true);
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 1 << 16))) {
+        for (int index : order) {
+          byte[] bytes = myLines[index].getBytes(StandardCharsets.UTF_8);
+          output.writeLong(myTimestamps[index]);
+          output.writeInt(bytes.length);
+          output.write(bytes);
+        }
+      }
+      myRunFiles.add(runFile);
+    }
+    catch (IOException ex) {
+      getLogger().error(ex);
+    }
+    Arrays.fill(myLines, 0, myLineCount, null);
+    myLineCount = 0;
+  }
+
+  /**
+   * Cursor over one sorted run. Holds the line the run is currently positioned at.
+   */
+  private static abstract class RunCursor {
+    private final int myRunIndex;
+    long myTimestamp;
+    String myLine;
+
+    RunCursor(int runIndex) {
+      myRunIndex = runIndex;
+    }
+
+    /**
+     * Moves to the next line of the run.
+     *
+     * @return false if the run is exhausted.
+     */
+    abstract boolean advance();
+
+    /**
+     * Releases the resources of the run, once it is exhausted or the sorter is closed.
+     */
+    void close() {
+    }
+  }
+
+  private final class MemoryRunCursor extends RunCursor {
+    @NotNull private final int[] myOrder;
+    private int myPosition;
+
+    MemoryRunCursor(int runIndex, @NotNull int[] order) {
+      super(runIndex);
+      myOrder = order;
+    }
+
+    @Override
+    boolean advance() {
+      if (myPosition == myOrder.length) {
+        return false;
+      }
+      int index = myOrder[myPosition++];
+      myTimestamp = myTimestamps[index];
+      myLine = myLines[index];
+      // Drop the reference as we go so already returned lines can be collected.
+      myLines[index] = null;
+      return true;
+    }
+  }
+
+  private static final class FileRunCursor extends RunCursor {
+    @NotNull private final File myRunFile;
+    @NotNull private final DataInputStream myInput;
+    private long myRemaining;
+    private byte[] myScratch = new byte[256];
+
+    FileRunCursor(int runIndex, @NotNull File runFile) throws IOException {
+      super(runIndex);
+      myRunFile = runFile;
+      myInput = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 1 << 16));
+      myRemaining = runFile.length();
+    }
+
+    @Override
+    boolean advance() {
+      if (myRemaining == 0) {
+        return false;
+      }
+      try {
+        myTimestamp = myInput.readLong();
+        int length = myInput.readInt();
+        if (myScratch.length < length) {
+          myScratch = new byte[Math.max(length, myScratch.length * 2)];
+        }
+        myInput.readFully(myScratch, 0, length);
+        myLine = new String(myScratch, 0, length, StandardCharsets.UTF_8);
+        myRemaining -= Long.BYTES + Integer.BYTES + length;
+        return true;
+      }
+      catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    @Override
+    void close() {
+      try {
+        myInput.close();
+      }
+      catch (IOException ex) {
+        getLogger().warn(ex);
+      }
+      // The run is only read once, so its file can go before the other runs are merged.
+      FileUtil.delete(myRunFile);
+    }
+  }
+}
@@ -165,6 +165,7 @@ abstract class BaseStreamingMemoryProfilerStage(profilers: StudioProfilers,
     loader.stop()
     studioProfilers.ideServices.codeNavigator.removeListener(this)
     rangeSelectionModel.clearListeners()
+    detailedMemoryUsage.dispose()
   }
 
   /**
@@ -68,6 +68,7 @@ public class MemoryMonitor extends ProfilerMonitor {
     myProfilers.getUpdater().unregister(myMemoryUsage);
     myProfilers.getUpdater().unregister(myMemoryAxis);
     myProfilers.removeDependencies(this);
+    myMemoryUsage.dispose();
   }
 
   @Override
@@ -25,6 +25,7 @@ import com.android.tools.profiler.proto.MemoryServiceGrpc;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.android.tools.profilers.StudioProfilers;
 import com.android.tools.profilers.UnifiedEventDataSeries;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -50,7 +51,10 @@ public class MemoryUsage extends LineChartModel {
                                                             @NotNull Function<MemorySample, Long> getter) {
     MemoryServiceGrpc.MemoryServiceBlockingStub client = profilers.getClient().getMemoryClient();
     MemoryDataSeries series = new MemoryDataSeries(client, profilers.getSession(), getter);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    // The name of a series identifies the field of the samples it shows.
+    Object key = Arrays.asList(profilers.getSession(), MemorySample.class, name);
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, profilers.prefetchDataSeries(key, series),
+                                      profilers.getTimeline().getDataRange());
   }
 
   protected RangedContinuousSeries createRangedSeries(@NotNull StudioProfilers profilers,
@@ -65,7 +69,10 @@ public class MemoryUsage extends LineChartModel {
                                                                        Common.Event.Kind.MEMORY_USAGE,
                                                                        groupId,
                                                                        dataExtractor);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    // The name of a series identifies the field of the events it shows.
+    Object key = Arrays.asList(profilers.getSession(), Common.Event.Kind.MEMORY_USAGE, groupId, name);
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, profilers.prefetchDataSeries(key, series),
+                                      profilers.getTimeline().getDataRange());
   }
 
   @NotNull
@@ -78,6 +85,13 @@ public class MemoryUsage extends LineChartModel {
     return myTotalMemorySeries;
   }
 
+  /**
+   * Releases the data fetched in the background for the series of this chart, once it is not shown anymore.
+   */
+  public void dispose() {
+    getSeries().forEach(RangedContinuousSeries::dispose);
+  }
+
   protected String getTotalSeriesLabel() {
     return "";
   }
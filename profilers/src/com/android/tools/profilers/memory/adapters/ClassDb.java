@@ -16,28 +16,44 @@
 package com.android.tools.profilers.memory.adapters;
 
 import com.intellij.util.ArrayUtil;
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TLongObjectHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * A class that shares class name {@link String}s, and provides facilities for splitting the class name to its constituent parts.
+ * <p>
+ * Once all classes are registered, the class hierarchy is numbered in depth-first pre-order. The descendants of a class then occupy a
+ * contiguous range of that order, which makes subclass tests constant time and descendant queries proportional to the result.
  */
 public final class ClassDb {
   public static final int INVALID_CLASS_ID = -1;
   public static final String JAVA_LANG_STRING = "java.lang.String";
   public static final String JAVA_LANG_CLASS = "java.lang.Class";
 
+  private static final ClassEntry[] EMPTY_ENTRY_ARRAY = new ClassEntry[0];
+
   // class id to class mapping.
-  private final Map<Long, ClassEntry> myClassEntries = new HashMap<>();
-  private boolean myResolvedSubclasses = false;
+  private final TLongObjectHashMap<ClassEntry> myClassEntries = new TLongObjectHashMap<>();
+  // class name to the classes of that name, there can be several with different class loaders.
+  private final Map<String, List<ClassEntry>> myEntriesByName = new HashMap<>();
+  // Every class in pre-order of the class hierarchy. Only valid when myResolvedHierarchy is true.
+  @NotNull private ClassEntry[] myPreOrderEntries = EMPTY_ENTRY_ARRAY;
+  private boolean myResolvedHierarchy = false;
 
   public void clear() {
     myClassEntries.clear();
-    myResolvedSubclasses = false;
+    myEntriesByName.clear();
+    myPreOrderEntries = EMPTY_ENTRY_ARRAY;
+    myResolvedHierarchy = false;
   }
 
   @NotNull
@@ -54,8 +70,13 @@ public final class ClassDb {
         //   But right now, asserting that would break an existing unrealistic test where
         //   `java.lang.Class` is absent (`HeapDumpCaptureObjectTest.testHeapDumpObjectsGeneration`)
         || superClassId != entry.mySuperClassId || !className.equals(entry.myClassName)) {
+      if (entry != null) {
+        removeFromNameIndex(entry);
+      }
       entry = new ClassEntry(classId, superClassId, className);
       myClassEntries.put(classId, entry);
+      myEntriesByName.computeIfAbsent(className, name -> new ArrayList<>(1)).add(entry);
+      myResolvedHierarchy = false;
     }
     return entry;
   }
@@ -66,66 +87,129 @@ public final class ClassDb {
     return myClassEntries.get(classId);
   }
 
+  /**
+   * @return every registered class with the given fully qualified name.
+   */
   @NotNull
-  public Set<ClassEntry> getEntriesByName(@NotNull String className) {
-    Set<ClassEntry> entries = new HashSet<>();
-
-    for (ClassEntry entry : myClassEntries.values()) {
-      if (entry.getClassName().equals(className)) {
-        entries.add(entry);
-      }
-    }
-
-    return entries;
+  public List<ClassEntry> getEntriesByName(@NotNull String className) {
+    List<ClassEntry> entries = myEntriesByName.get(className);
+    return entries == null ? Collections.emptyList() : Collections.unmodifiableList(entries);
   }
 
   /**
    * @return All subclasses that has class with id equals |classId| on their inheritance paths. (inclusive)
    */
   public Set<ClassEntry> getDescendantClasses(long classId) {
-    resolveSubClasses();
+    resolveHierarchy();
 
     ClassEntry klass = getEntry(classId);
-    Set<ClassEntry> descendants = new HashSet<>();
-    Stack<ClassEntry> searchStack = new Stack<>();
-    searchStack.push(klass);
-    while (!searchStack.isEmpty()) {
-      ClassEntry searchEntry = searchStack.pop();
-      descendants.add(searchEntry);
-      for (long subClassId : searchEntry.getSubClassIds()) {
-        searchStack.push(getEntry(subClassId));
+    return new HashSet<>(Arrays.asList(myPreOrderEntries).subList(klass.myPreOrder, klass.mySubtreeEnd));
+  }
+
+  /**
+   * @return true if the class with id |ancestorClassId| is on the inheritance path of the class with id |classId|. (inclusive)
+   */
+  public boolean isDescendantClass(long classId, long ancestorClassId) {
+    ClassEntry klass = myClassEntries.get(classId);
+    ClassEntry ancestor = myClassEntries.get(ancestorClassId);
+    if (klass == null || ancestor == null) {
+      return false;
+    }
+    resolveHierarchy();
+    return ancestor.myPreOrder <= klass.myPreOrder && klass.myPreOrder < ancestor.mySubtreeEnd;
+  }
+
+  private void removeFromNameIndex(@NotNull ClassEntry entry) {
+    List<ClassEntry> entries = myEntriesByName.get(entry.myClassName);
+    if (entries != null) {
+      // ClassEntry equality is by name, so look for this very instance.
+      entries.removeIf(e -> e == entry);
+      if (entries.isEmpty()) {
+        myEntriesByName.remove(entry.myClassName);
       }
     }
-    return descendants;
   }
 
   /**
-   * Registered classes contain a one-way path to its super class. This helper method fills in the reverse relationship (parent class to
-   * children classes), and it should be called only after all the classes have been registered.
-   * @return false if the subclass information is already resolved previously, true otherwise.
+   * Registered classes contain a one-way path to its super class. This helper method numbers the class hierarchy in depth-first
+   * pre-order, so that the descendants of each class span the range [myPreOrder, mySubtreeEnd) of {@link #myPreOrderEntries}. It should
+   * be called only after all the classes have been registered, registering a new class invalidates it.
    */
-  private boolean resolveSubClasses() {
-    if (myResolvedSubclasses) {
-      return false;
+  private void resolveHierarchy() {
+    if (myResolvedHierarchy) {
+      return;
+    }
+
+    int count = myClassEntries.size();
+    ClassEntry[] entries = myClassEntries.getValues(new ClassEntry[count]);
+    TLongIntHashMap indices = new TLongIntHashMap(count);
+    for (int i = 0; i < count; i++) {
+      indices.put(entries[i].myClassId, i);
+    }
+
+    // Children of each class in CSR form, classes whose super class isn't registered are roots.
+    int[] parents = new int[count];
+    int[] childOffsets = new int[count + 1];
+    for (int i = 0; i < count; i++) {
+      long superClassId = entries[i].mySuperClassId;
+      parents[i] = superClassId != INVALID_CLASS_ID && indices.containsKey(superClassId) ? indices.get(superClassId) : -1;
+      if (parents[i] >= 0) {
+        childOffsets[parents[i] + 1]++;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      childOffsets[i + 1] += childOffsets[i];
+    }
+    int[] children = new int[childOffsets[count]];
+    int[] fill = Arrays.copyOf(childOffsets, count);
+    for (int i = 0; i < count; i++) {
+      if (parents[i] >= 0) {
+        children[fill[parents[i]]++] = i;
+      }
     }
 
-    for (ClassEntry entry : myClassEntries.values()) {
-      long superClassId = entry.getSuperClassId();
-      if (superClassId != -1) {
-        getEntry(superClassId).getSubClassIds().add(entry.getClassId());
+    ClassEntry[] preOrderEntries = new ClassEntry[count];
+    int[] stack = new int[count];
+    int[] nextChild = new int[count];
+    int order = 0;
+    for (int root = 0; root < count; root++) {
+      if (parents[root] >= 0) {
+        continue;
+      }
+      int top = 0;
+      stack[top++] = root;
+      nextChild[root] = childOffsets[root];
+      entries[root].myPreOrder = order;
+      preOrderEntries[order++] = entries[root];
+      while (top > 0) {
+        int current = stack[top - 1];
+        if (nextChild[current] < childOffsets[current + 1]) {
+          int child = children[nextChild[current]++];
+          nextChild[child] = childOffsets[child];
+          entries[child].myPreOrder = order;
+          preOrderEntries[order++] = entries[child];
+          stack[top++] = child;
+        }
+        else {
+          entries[current].mySubtreeEnd = order;
+          top--;
+        }
       }
     }
-    myResolvedSubclasses = true;
-    return true;
+    assert order == count : "Class hierarchy contains a cycle";
+
+    myPreOrderEntries = preOrderEntries;
+    myResolvedHierarchy = true;
   }
 
   public static class ClassEntry {
-    @NotNull private final Set<Long> mySubClassIds = new HashSet<>();
-
     @NotNull private final long myClassId;
     @NotNull private final long mySuperClassId;
     @NotNull private final String myClassName;
     @NotNull private final String[] mySplitPackageName;
+    // Position of the class in the pre-order of the class hierarchy, and the end of the range of its descendants. Set by the ClassDb.
+    private int myPreOrder;
+    private int mySubtreeEnd;
 
     /**=
      * @param classId       unique identifier for the class.
@@ -151,13 +235,6 @@ public final class ClassDb {
       return mySuperClassId;
     }
 
-    /**
-     * @return Ids of the immediate children classes. Note that the set is only valid after {@link ClassDb#resolveSubClasses()} is called.
-     */
-    public Set<Long> getSubClassIds() {
-      return mySubClassIds;
-    }
-
     @NotNull
     public String getClassName() {
       return myClassName;
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Dominator tree, retained sizes and root distances of a graph given as int-indexed, CSR (compressed sparse row) adjacency arrays.
+ * Node 0 is the root of the graph. For a heap dump it is a synthetic node pointing at every GC root.
+ * <p>
+ * Dominators are computed with the iterative algorithm from Cooper, Harvey and Kennedy, "A Simple, Fast Dominance Algorithm". Each sweep over
+ * the nodes in reverse post-order, after the first one, is split across a fork-join pool. Threads may read an immediate dominator that
+ * another thread is still updating. That is safe because an update only ever moves a node further up the tree. The computation stops
+ * after a sweep that changes nothing, so it ends on the same fixed point as the sequential algorithm.
+ */
+public final class DominatorTree {
+  public static final int UNREACHABLE = -1;
+  public static final int ROOT = 0;
+
+  // Below this many nodes a sweep is not worth splitting across threads.
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+  private static final int CHUNK_SIZE = 1 << 12;
+
+  @NotNull private final int[] myImmediateDominators;
+  @NotNull private final long[] myRetainedSizes;
+  @NotNull private final int[] myDepths;
+
+  private DominatorTree(@NotNull int[] immediateDominators, @NotNull long[] retainedSizes, @NotNull int[] depths) {
+    myImmediateDominators = immediateDominators;
+    myRetainedSizes = retainedSizes;
+    myDepths = depths;
+  }
+
+  /**
+   * @return the immediate dominator of the node, {@link #ROOT} for the root itself or {@link #UNREACHABLE}.
+   */
+  public int getImmediateDominator(int node) {
+    return myImmediateDominators[node];
+  }
+
+  /**
+   * @return the sum of the sizes of every node dominated by this node, including itself. 0 for unreachable nodes.
+   */
+  public long getRetainedSize(int node) {
+    return myRetainedSizes[node];
+  }
+
+  /**
+   * @return the number of edges on the shortest path from a direct successor of the root, or {@link Integer#MAX_VALUE} if the node is
+   * unreachable. Successors of the root have depth 0.
+   */
+  public int getDepth(int node) {
+    return myDepths[node];
+  }
+
+  /**
+   * @param predecessorOffsets CSR offsets: the predecessors of node {@code i} are {@code predecessors[predecessorOffsets[i]]} to
+   *                           {@code predecessors[predecessorOffsets[i + 1] - 1]}. Has {@code nodeCount + 1} entries.
+   * @param sizes              shallow size of each node.
+   * @param progress           receives the completed fraction of the computation, between 0 and 1.
+   * @param isCancelled        polled between steps, a {@link CancellationException} is thrown once it returns true.
+   */
+  @NotNull
+  public static DominatorTree compute(int nodeCount,
+                                      @NotNull int[] predecessorOffsets,
+                                      @NotNull int[] predecessors,
+                                      @NotNull long[] sizes,
+                                      @NotNull ForkJoinPool pool,
+                                      @NotNull DoubleConsumer progress,
+                                      @NotNull BooleanSupplier isCancelled) {
+    assert predecessorOffsets.length == nodeCount + 1 && sizes.length == nodeCount;
+    int[] successorOffsets = new int[nodeCount + 1];
+    int[] successors = invert(nodeCount, predecessorOffsets, predecessors, successorOffsets);
+    checkCancelled(isCancelled);
+    progress.accept(0.1);
+
+    // Post-order numbers, and the nodes in reverse post-order.
+    int[] postOrder = new int[nodeCount];
+    int[] reversePostOrder = computeReversePostOrder(nodeCount, successorOffsets, successors, postOrder);
+    int reachableCount = reversePostOrder.length;
+    checkCancelled(isCancelled);
+    progress.accept(0.2);
+
+    int[] idoms = new int[nodeCount];
+    Arrays.fill(idoms, UNREACHABLE);
+    idoms[ROOT] = ROOT;
+    AtomicBoolean changed = new AtomicBoolean(true);
+    int sweep = 0;
+    while (changed.get()) {
+      changed.set(false);
+      // The first sweep has to be sequential: it is the one that sets the immediate dominator of every node, and it only works out
+      // because each node's DFS parent has already been visited. After it, every update keeps a node's immediate dominator above it in
+      // post-order, so the parallel sweeps always terminate.
+      if (sweep == 0 || reachableCount < PARALLEL_THRESHOLD) {
+        if (sweepRange(1, reachableCount, reversePostOrder, predecessorOffsets, predecessors, postOrder, idoms)) {
+          changed.set(true);
+        }
+      }
+      else {
+        int chunks = (reachableCount - 1 + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+          int from = 1 + chunk * CHUNK_SIZE;
+          int to = Math.min(reachableCount, from + CHUNK_SIZE);
+          if (sweepRange(from, to, reversePostOrder, predecessorOffsets, predecessors, postOrder, idoms)) {
+            changed.set(true);
+          }
+        })).join();
+      }
+      checkCancelled(isCancelled);
+      // Dominator sweeps usually converge in a handful of iterations, so each one gets a decreasing share of the progress.
+      sweep++;
+      progress.accept(0.2 + 0.6 * (1 - Math.pow(0.5, sweep)));
+    }
+
+    // Children always have a lower post-order number than their immediate dominator, so accumulating in post-order adds every subtree
+    // to its dominator once it is complete.
+    long[] retainedSizes = new long[nodeCount];
+    for (int i = reachableCount - 1; i >= 0; i--) {
+      int node = reversePostOrder[i];
+      retainedSizes[node] += sizes[node];
+      if (node != ROOT) {
+        retainedSizes[idoms[node]] += retainedSizes[node];
+      }
+    }
+    checkCancelled(isCancelled);
+    progress.accept(0.9);
+
+    int[] depths = computeDepths(nodeCount, successorOffsets, successors);
+    progress.accept(1);
+    return new DominatorTree(idoms, retainedSizes, depths);
+  }
+
+  private static void checkCancelled(@NotNull BooleanSupplier isCancelled) {
+    if (isCancelled.getAsBoolean()) {
+      throw new CancellationException();
+    }
+  }
+
+  /**
+   * Recomputes the immediate dominator of the nodes {@code reversePostOrder[from, to)}.
+   *
+   * @return true if any of them changed.
+   */
+  private static boolean sweepRange(int from,
+                                    int to,
+                                    @NotNull int[] reversePostOrder,
+                                    @NotNull int[] predecessorOffsets,
+                                    @NotNull int[] predecessors,
+                                    @NotNull int[] postOrder,
+                                    @NotNull int[] idoms) {
+    boolean changed = false;
+    for (int i = from; i < to; i++) {
+      int node = reversePostOrder[i];
+      int newIdom = UNREACHABLE;
+      for (int p = predecessorOffsets[node]; p < predecessorOffsets[node + 1]; p++) {
+        int predecessor = predecessors[p];
+        if (idoms[predecessor] == UNREACHABLE) {
+          continue;
+        }
+        newIdom = newIdom == UNREACHABLE ? predecessor : intersect(predecessor, newIdom, postOrder, idoms);
+      }
+      if (newIdom != idoms[node]) {
+        idoms[node] = newIdom;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private static int intersect(int finger1, int finger2, @NotNull int[] postOrder, @NotNull int[] idoms) {
+    while (finger1 != finger2) {
+      while (postOrder[finger1] < postOrder[finger2]) {
+        finger1 = idoms[finger1];
+      }
+      while (postOrder[finger2] < postOrder[finger1]) {
+        finger2 = idoms[finger2];
+      }
+    }
+    return finger1;
+  }
+
+  @NotNull
+  private static int[] invert(int nodeCount, @NotNull int[] offsets, @NotNull int[] edges, @NotNull int[] invertedOffsets) {
+    for (int i = 0; i < offsets[nodeCount]; i++) {
+      invertedOffsets[edges[i] + 1]++;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      invertedOffsets[i + 1] += invertedOffsets[i];
+    }
+    int[] inverted = new int[offsets[nodeCount]];
+    int[] fill = Arrays.copyOf(invertedOffsets, nodeCount);
+    for (int node = 0; node < nodeCount; node++) {
+      for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+        inverted[fill[edges[e]]++] = node;
+      }
+    }
+    return inverted;
+  }
+
+  /**
+   * Iterative depth-first search from the root.
+   *
+   * @param postOrder filled with the post-order number of every node, {@link #UNREACHABLE} for nodes not reachable from the root.
+   * @return the reachable nodes in reverse post-order, starting with the root.
+   */
+  @NotNull
+  private static int[] computeReversePostOrder(int nodeCount,
+                                               @NotNull int[] successorOffsets,
+                                               @NotNull int[] successors,
+                                               @NotNull int[] postOrder) {
+    Arrays.fill(postOrder, UNREACHABLE);
+    boolean[] visited = new boolean[nodeCount];
+    int[] stack = new int[nodeCount];
+    // Next successor edge to explore for each node on the stack.
+    int[] nextEdge = new int[nodeCount];
+    int[] order = new int[nodeCount];
+    int count = 0;
+    int top = 0;
+    stack[top++] = ROOT;
+    visited[ROOT] = true;
+    nextEdge[ROOT] = successorOffsets[ROOT];
+    while (top > 0) {
+      int node = stack[top - 1];
+      if (nextEdge[node] < successorOffsets[node + 1]) {
+        int successor = successors[nextEdge[node]++];
+        if (!visited[successor]) {
+          visited[successor] = true;
+          nextEdge[successor] = successorOffsets[successor];
+          stack[top++] = successor;
+        }
+      }
+      else {
+        top--;
+        postOrder[node] = count;
+        order[count++] = node;
+      }
+    }
+    int[] reversePostOrder = new int[count];
+    for (int i = 0; i < count; i++) {
+      reversePostOrder[i] = order[count - 1 - i];
+    }
+    return reversePostOrder;
+  }
+
+  /**
+   * Breadth-first search from the successors of the root.
+   */
+  @NotNull
+  private static int[] computeDepths(int nodeCount, @NotNull int[] successorOffsets, @NotNull int[] successors) {
+    int[] depths = new int[nodeCount];
+    Arrays.fill(depths, Integer.MAX_VALUE);
+    int[] queue = new int[nodeCount];
+    int head = 0;
+    int tail = 0;
+    for (int e = successorOffsets[ROOT]; e < successorOffsets[ROOT + 1]; e++) {
+      int node = successors[e];
+      if (node != ROOT && depths[node] == Integer.MAX_VALUE) {
+        depths[node] = 0;
+        queue[tail++] = node;
+      }
+    }
+    while (head < tail) {
+      int node = queue[head++];
+      for (int e = successorOffsets[node]; e < successorOffsets[node + 1]; e++) {
+        int successor = successors[e];
+        if (successor != ROOT && depths[successor] == Integer.MAX_VALUE) {
+          depths[successor] = depths[node] + 1;
+          queue[tail++] = successor;
+        }
+      }
+    }
+    return depths;
+  }
+}
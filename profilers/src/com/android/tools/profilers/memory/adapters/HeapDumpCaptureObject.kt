@@ -16,12 +16,14 @@
 package com.android.tools.profilers.memory.adapters
 
 import com.android.tools.adtui.model.Range
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
 import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.perflib.heap.ClassObj
 import com.android.tools.perflib.heap.Instance
 import com.android.tools.perflib.heap.Snapshot
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor
-import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.perflib.heap.io.HprofBuffer
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo
 import com.android.tools.profiler.proto.Transport
@@ -46,8 +48,15 @@ import com.google.common.annotations.VisibleForTesting
 import com.google.common.util.concurrent.ListenableFuture
 import com.google.common.util.concurrent.MoreExecutors
 import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.io.FileUtil
 import gnu.trove.TLongObjectHashMap
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
 import java.io.OutputStream
+import java.util.Locale
+import java.util.concurrent.CancellationException
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 import java.util.stream.Collectors
@@ -70,6 +79,36 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   @Volatile
   private var isLoadingError = false
+
+  // Backing file and mapping of the heap dump, kept while loaded because perflib reads instance values from the mapping on demand.
+  @Volatile
+  private var heapDumpFile: File? = null
+
+  @Volatile
+  private var heapDumpBuffer: ReleasableHprofBuffer? = null
+
+  @Volatile
+  private var isUnloaded = false
+
+  // Guards releasing the heap dump against a load that is still reading from it, in which case the load releases it when it stops.
+  private val heapDumpLock = Any()
+  private var isLoading = false
+
+  // Retained sizes and depths of the loaded snapshot. Null until loaded, in which case perflib's own values are used.
+  private var dominators: HeapDumpDominators? = null
+
+  // The heap dump when loaded into memory-mapped files rather than a perflib Snapshot, kept open until unloaded, and the class entries of
+  // its classes.
+  @Volatile
+  private var navigatorHeapDump: NavigatorHeapDump? = null
+  private val navigatorClassEntries = HashMap<ClassDefinition, ClassDb.ClassEntry>()
+
+  /**
+   * Completed fraction of the dominator computation, which is the slowest step of loading a heap dump.
+   */
+  @Volatile
+  var dominatorProgress = 0.0
+    private set
   var hasNativeAllocations = false
     private set
   private val activityFragmentLeakFilter = ActivityFragmentLeakInstanceFilter(classDb)
@@ -99,16 +138,125 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun getClassDatabase() = classDb
   override fun getSession() = _session
 
-  override fun load(queryRange: Range?, queryJoiner: Executor?) = doGetBytesRequest().let { response ->
-    if (response.contents === ByteString.EMPTY) false.also { isLoadingError = true }
-    else true.also { load(InMemoryBuffer(response.contents.asReadOnlyByteBuffer())) }
+  override fun load(queryRange: Range?, queryJoiner: Executor?): Boolean {
+    synchronized(heapDumpLock) {
+      if (isUnloaded) {
+        isLoadingError = true
+        return false
+      }
+      isLoading = true
+    }
+    try {
+      val file = writeHeapDumpToTempFile()
+      if (file == null) {
+        isLoadingError = true
+        return false
+      }
+      heapDumpFile = file
+      if (ideProfilerServices.featureConfig.isMemoryHeapDumpNavigatorEnabled) {
+        val heapDump = NavigatorHeapDump.load(file, progress = { dominatorProgress = it }) { isUnloaded }
+        if (heapDump != null) {
+          navigatorHeapDump = heapDump
+          load(heapDump)
+          return hasLoaded
+        }
+        logger.info("Heap dump has too many objects to be loaded into memory-mapped files, loading it with perflib")
+      }
+      // Parse from a memory-mapped file instead of an in-memory buffer over the downloaded bytes, so that the raw dump can be dropped
+      // from the IDE heap once it is written. The perflib Snapshot is still built in full, only the instance values stay in the mapping.
+      val buffer = ReleasableHprofBuffer(MemoryMappedFileBuffer(file))
+      heapDumpBuffer = buffer
+      load(buffer)
+    }
+    catch (e: IOException) {
+      logger.warn("Unable to map the heap dump file ${heapDumpFile?.path}", e)
+      isLoadingError = true
+    }
+    catch (e: CancellationException) {
+      isLoadingError = true
+    }
+    finally {
+      synchronized(heapDumpLock) {
+        isLoading = false
+        if (isUnloaded || !hasLoaded) {
+          releaseHeapDump()
+        }
+        else if (heapDumpBuffer == null) {
+          // Only a perflib Snapshot keeps reading from the file once loaded, a NavigatorHeapDump has its own files.
+          heapDumpFile?.let { FileUtil.delete(it) }
+          heapDumpFile = null
+        }
+      }
+    }
+    return hasLoaded
+  }
+
+  /**
+   * Writes the heap dump downloaded from the datastore to a temporary file.
+   *
+   * @return the file, or null if there is no heap dump or it could not be written.
+   */
+  private fun writeHeapDumpToTempFile(): File? {
+    val contents = doGetBytesRequest().contents
+    if (contents === ByteString.EMPTY) {
+      return null
+    }
+    var file: File? = null
+    return try {
+      file = FileUtil.createTempFile(String.format(Locale.US, "heap_dump_%d", heapDumpInfo.startTime), ".$exportableExtension", true)
+      // The transport returns the heap dump in a single response, so write it out in views of the response that are not copied, and stop
+      // early if the capture is unloaded meanwhile.
+      FileOutputStream(file).use { out ->
+        var offset = 0
+        while (offset < contents.size()) {
+          if (isUnloaded) {
+            throw CancellationException()
+          }
+          val end = minOf(offset + WRITE_CHUNK_SIZE, contents.size())
+          contents.substring(offset, end).writeTo(out)
+          offset = end
+        }
+      }
+      file
+    }
+    catch (e: IOException) {
+      logger.warn("Unable to write the heap dump to a temporary file", e)
+      file?.let { FileUtil.delete(it) }
+      null
+    }
+    catch (e: CancellationException) {
+      file?.let { FileUtil.delete(it) }
+      null
+    }
+  }
+
+  /**
+   * Releases the mapping of the heap dump, or closes the [NavigatorHeapDump] it was loaded into, and deletes the temporary files. Must be
+   * called while holding [heapDumpLock] and not loading.
+   */
+  private fun releaseHeapDump() {
+    // Once loaded, instances may still be read from other threads, so the mapping is left to the garbage collector to unmap when the
+    // snapshot is unreachable and those reads fail instead. Before that, the loader was its only reader.
+    heapDumpBuffer?.release(unmap = !hasLoaded)
+    heapDumpBuffer = null
+    navigatorHeapDump?.close()
+    navigatorHeapDump = null
+    // On platforms that can't delete a file that is still mapped, the file is removed on exit instead.
+    heapDumpFile?.let { FileUtil.delete(it) }
+    heapDumpFile = null
   }
 
   @VisibleForTesting
-  fun load(buffer: InMemoryBuffer) {
+  fun load(buffer: HprofBuffer) {
     val nativeRegistryPostProcessor = NativeRegistryPostProcessor()
-    val snapshot = Snapshot.createSnapshot(buffer!!, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
-    snapshot.computeDominators()
+    val snapshot = Snapshot.createSnapshot(buffer, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
+    dominators = try {
+      HeapDumpDominators.compute(snapshot, progress = { dominatorProgress = it }, isCancelled = { isUnloaded })
+    }
+    catch (e: CancellationException) {
+      isLoadingError = true
+      return
+    }
     hasNativeAllocations = nativeRegistryPostProcessor.hasNativeAllocations
     hasLoaded = true
     val javaLangClassObject = snapshot.heaps.stream()
@@ -135,6 +283,49 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
     }
   }
 
+  /**
+   * Creates the heap sets and instance objects of a heap dump loaded into memory-mapped files by [NavigatorHeapDump].
+   */
+  private fun load(heapDump: NavigatorHeapDump) {
+    val heapSets = heapDump.heaps.map { HeapSet(this, it.name, it.id) }
+    val instanceCounts = IntArray(heapSets.size)
+    val superHeap = AllHeapSet(this, heapSets.toTypedArray())
+    superHeap.clearClassifierSets() // forces sub-classifier creation
+    _heapSets[superHeap.id] = superHeap
+    // The objects are found by their index in the heap dump rather than by id, so they are not added to the instance index.
+    for (index in 1..heapDump.objectCount) {
+      heapDump.getClassDefinition(index)?.let { navigatorClassEntry(it) }
+      instanceCounts[heapDump.heaps.indexOf(heapDump.getHeap(index))]++
+      superHeap.addDeltaInstanceObject(getNavigatorInstanceObject(index))
+    }
+    heapSets.forEachIndexed { i, heapSet ->
+      if ("default" != heapSet.name || heapSets.size == 1 || instanceCounts[i] > 0) {
+        _heapSets[heapSet.id] = heapSet
+      }
+    }
+    hasLoaded = true
+  }
+
+  /**
+   * @return the object numbered [index] in the [NavigatorHeapDump] this capture was loaded into.
+   */
+  internal fun getNavigatorInstanceObject(index: Int): InstanceObject {
+    val heapDump = navigatorHeapDump ?: throw IllegalStateException("The heap dump was unloaded")
+    val classEntry = when (heapDump.getClassDefinition(index)) {
+      null -> navigatorClassEntry(heapDump.getObjectClass(index))
+      else -> navigatorClassEntry(heapDump.classStore.classClass)
+    }
+    return NavigatorInstanceObject(this, heapDump, index, classEntry)
+  }
+
+  private fun navigatorClassEntry(classDefinition: ClassDefinition) = synchronized(navigatorClassEntries) {
+    navigatorClassEntries.getOrPut(classDefinition) {
+      val name = ClassDefinition.computePrettyName(classDefinition.undecoratedName)
+      if (classDefinition.superClassId != 0L) classDb.registerClass(classDefinition.id, classDefinition.superClassId, name)
+      else classDb.registerClass(classDefinition.id, name)
+    }
+  }
+
   private fun addInstance(heapSet: HeapSet, id: Long, instObj: InstanceObject) {
     assert(!instanceIndex.containsKey(id))
     instanceIndex.put(id, instObj)
@@ -144,12 +335,19 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun isDoneLoading() = hasLoaded || isLoadingError
   override fun isError() = isLoadingError
   override fun unload() {
+    isUnloaded = true
     executorService.shutdownNow()
+    synchronized(heapDumpLock) {
+      if (!isLoading) {
+        releaseHeapDump()
+      }
+    }
   }
 
-  override fun getClassifierAttributes() =
-    if (hasNativeAllocations) listOf(LABEL, ALLOCATIONS, NATIVE_SIZE, SHALLOW_SIZE, RETAINED_SIZE)
-    else listOf(LABEL, ALLOCATIONS, SHALLOW_SIZE, RETAINED_SIZE)
+  override fun getClassifierAttributes() = when {
+    hasNativeAllocations -> listOf(LABEL, ALLOCATIONS, NATIVE_SIZE, SHALLOW_SIZE, RETAINED_SIZE)
+    else -> listOf(LABEL, ALLOCATIONS, SHALLOW_SIZE, RETAINED_SIZE)
+  }
 
   override fun getInstanceAttributes() =
     if (hasNativeAllocations) listOf(
@@ -158,6 +356,10 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
     else listOf(InstanceAttribute.LABEL, InstanceAttribute.DEPTH, InstanceAttribute.SHALLOW_SIZE, InstanceAttribute.RETAINED_SIZE)
   open fun findInstanceObject(instance: Instance) = if (hasLoaded) instanceIndex[instance.id] else null
 
+  fun getRetainedSize(instance: Instance) = dominators?.getRetainedSize(instance) ?: instance.totalRetainedSize
+
+  fun getDepth(instance: Instance) = dominators?.getDepth(instance) ?: instance.distanceToGcRoot
+
   fun createClassObjectInstance(javaLangClass: InstanceObject?, classObj: ClassObj): InstanceObject {
     val classEntry = classObj.makeEntry(if (javaLangClass == null) ClassDb.JAVA_LANG_CLASS else classObj.className)
     // Handle java.lang.Class which is a special case. All its instances are other classes, so wee need to create an InstanceObject for it
@@ -224,4 +426,46 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   private fun ClassObj.makeEntry(name: String = this.className) =
     if (superClassObj != null) classDb.registerClass(id, superClassObj.id, name)
     else classDb.registerClass(id, name)
-}
\ No newline at end of file
+
+  /**
+   * [HprofBuffer] over the memory-mapped heap dump that fails reads with an [IllegalStateException] once released, rather than reading
+   * from a file that is being deleted or from memory that is no longer mapped.
+   */
+  private class ReleasableHprofBuffer(private val delegate: MemoryMappedFileBuffer) : HprofBuffer {
+    @Volatile
+    private var isReleased = false
+
+    fun release(unmap: Boolean) {
+      isReleased = true
+      if (unmap) {
+        delegate.dispose()
+      }
+    }
+
+    private inline fun <T> checked(block: MemoryMappedFileBuffer.() -> T): T {
+      check(!isReleased) { "The heap dump was unloaded" }
+      return delegate.block()
+    }
+
+    override fun readByte() = checked { readByte() }
+    override fun read(b: ByteArray) = checked { read(b) }
+    override fun readSubSequence(b: ByteArray, sourceStart: Int, length: Int) = checked { readSubSequence(b, sourceStart, length) }
+    override fun readChar() = checked { readChar() }
+    override fun readShort() = checked { readShort() }
+    override fun readInt() = checked { readInt() }
+    override fun readLong() = checked { readLong() }
+    override fun readFloat() = checked { readFloat() }
+    override fun readDouble() = checked { readDouble() }
+    override fun setPosition(position: Long) = checked { setPosition(position) }
+    override fun position() = checked { position() }
+    override fun hasRemaining() = checked { hasRemaining() }
+    override fun remaining() = checked { remaining() }
+  }
+
+  companion object {
+    private const val WRITE_CHUNK_SIZE = 1 shl 20
+
+    private val logger: Logger
+      get() = Logger.getInstance(HeapDumpCaptureObject::class.java)
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.android.tools.perflib.heap.Instance
+import com.android.tools.perflib.heap.Snapshot
+import gnu.trove.TLongIntHashMap
+import java.util.concurrent.ForkJoinPool
+import java.util.function.BooleanSupplier
+import java.util.function.DoubleConsumer
+import java.util.stream.IntStream
+
+/**
+ * Retained sizes and GC root distances of every instance of a [Snapshot], computed by [DominatorTree] over the hard references of the
+ * heap dump instead of perflib's single-threaded dominator pass.
+ */
+internal class HeapDumpDominators private constructor(private val indices: TLongIntHashMap, private val tree: DominatorTree) {
+
+  /**
+   * @return the retained size of the instance, or null if it is not part of the snapshot the dominators were computed for.
+   */
+  fun getRetainedSize(instance: Instance) = indexOf(instance)?.let { tree.getRetainedSize(it) }
+
+  /**
+   * @return the distance of the instance to the closest GC root, or null if it is not part of the snapshot.
+   */
+  fun getDepth(instance: Instance) = indexOf(instance)?.let { tree.getDepth(it) }
+
+  private fun indexOf(instance: Instance) = if (indices.containsKey(instance.id)) indices[instance.id] else null
+
+  companion object {
+    /**
+     * @param progress receives the completed fraction of the computation.
+     * @param isCancelled polled during the computation, which throws a [java.util.concurrent.CancellationException] once it returns true.
+     */
+    @JvmStatic
+    fun compute(snapshot: Snapshot,
+                pool: ForkJoinPool = ForkJoinPool.commonPool(),
+                progress: (Double) -> Unit = {},
+                isCancelled: () -> Boolean = { false }): HeapDumpDominators {
+      // Node 0 is the synthetic root of the graph. Classes are nodes too, their static fields hold references.
+      val nodes = arrayListOf<Instance?>(null)
+      snapshot.heaps.forEach { heap ->
+        nodes.addAll(heap.classes)
+        heap.forEachInstance { instance -> true.also { nodes.add(instance) } }
+      }
+      val indices = TLongIntHashMap(nodes.size)
+      for (i in 1 until nodes.size) {
+        indices.put(nodes[i]!!.id, i)
+      }
+      val rootIndices = snapshot.gcRoots.mapNotNull { root -> root.referredInstance?.id?.takeIf(indices::containsKey)?.let(indices::get) }
+      val isGcRoot = BooleanArray(nodes.size).also { rootIndices.forEach { i -> it[i] = true } }
+
+      // The predecessors of a node are its hard referrers, plus the synthetic root if it is a GC root. Referrers are read in parallel as
+      // this walks every instance of the heap dump.
+      val offsets = IntArray(nodes.size + 1)
+      pool.submit(Runnable {
+        IntStream.range(1, nodes.size).parallel().forEach { i ->
+          offsets[i + 1] = nodes[i]!!.hardReverseReferences.count { indices.containsKey(it.id) } + if (isGcRoot[i]) 1 else 0
+        }
+      }).join()
+      for (i in 0 until nodes.size) {
+        offsets[i + 1] += offsets[i]
+      }
+      val predecessors = IntArray(offsets[nodes.size])
+      pool.submit(Runnable {
+        IntStream.range(1, nodes.size).parallel().forEach { i ->
+          var next = offsets[i]
+          if (isGcRoot[i]) {
+            predecessors[next++] = DominatorTree.ROOT
+          }
+          nodes[i]!!.hardReverseReferences.forEach { referrer ->
+            if (indices.containsKey(referrer.id)) {
+              predecessors[next++] = indices[referrer.id]
+            }
+          }
+        }
+      }).join()
+      val sizes = LongArray(nodes.size) { i -> nodes[i]?.size?.toLong() ?: 0L }
+
+      val tree = DominatorTree.compute(nodes.size, offsets, predecessors, sizes, pool, DoubleConsumer { progress(it) },
+                                         BooleanSupplier { isCancelled() })
+      return HeapDumpDominators(indices, tree)
+    }
+  }
+}
@@ -70,10 +70,10 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
 
   override fun getHeapId() = instance.heap.id
   override fun getClassEntry() = classEntry
-  override fun getDepth() = instance.distanceToGcRoot
+  override fun getDepth() = captureObject.getDepth(instance)
   override fun getNativeSize() = instance.nativeSize
   override fun getShallowSize() = instance.size
-  override fun getRetainedSize() = instance.totalRetainedSize
+  override fun getRetainedSize() = captureObject.getRetainedSize(instance)
 
   override fun getFieldCount() = when (instance) {
     is ClassInstance -> instance.values.size
@@ -140,7 +140,7 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
 
   @VisibleForTesting
   fun extractReferences(): List<ReferenceObject> {
-    val order = compareBy(Instance::getDistanceToGcRoot, Instance::getId) // to enforce more deterministic order
+    val order = compareBy(captureObject::getDepth, Instance::getId) // to enforce more deterministic order
     // Hard referrers first, soft second
     val sortedReferences = instance.hardReverseReferences.sortedWith(order) +
                            (instance.softReverseReferences?.sortedWith(order) ?: listOf())
@@ -354,6 +354,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
 
   private fun queryJniReferencesSnapshot(snapshotTimeNs: Long, snapshotList: MutableList<InstanceObject>) {
     if (enableJniRefsTracking) {
+      // Backtraces of the references alive at the snapshot time, by reference value.
+      val backtraces = HashMap<Long, NativeBacktrace>()
       querySnapshot(snapshotTimeNs, snapshotList, jniReferenceEventAdapter) { event, instanceMap ->
         when (event.eventType) {
           JNIGlobalReferenceEvent.Type.CREATE_GLOBAL_REF -> {
@@ -363,9 +365,13 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
             event.getOrCreateJniRefObject()?.let { refObject ->
               refObject.setAllocEvent(event)
               instanceMap[refObject.refValue] = refObject
+              if (event.hasBacktrace()) {
+                backtraces[event.refValue] = event.backtrace
+              }
             }
           }
           JNIGlobalReferenceEvent.Type.DELETE_GLOBAL_REF -> instanceMap.remove(event.refValue)?.let { refObject ->
+            backtraces.remove(event.refValue)
             // If the referencing instance object is still around, remove the added JNI ref.
             if (this.instanceMap.containsKey(event.objectTag)) {
               this.instanceMap[event.objectTag].removeJniRef(refObject as JniReferenceInstanceObject)
@@ -374,6 +380,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
           else -> {}
         }
       }
+      // The allocation backtraces are resolved as soon as the references are classified, so look them up in one batch.
+      symbolizeNativeBacktraces(backtraces.values)
     }
   }
 
@@ -434,6 +442,7 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
                                       deallocationList: MutableList<InstanceObject>,
                                       resetInstance: Boolean) {
     if (enableJniRefsTracking) {
+      val backtraces = mutableListOf<NativeBacktrace>()
       queryDelta(startTimeNs, endTimeNs, jniReferenceEventAdapter) { event ->
         // If JNI reference object can't be constructed, it is most likely because allocation for underlying java object was not
         // reported. We don't have anything to show and ignore this reference.
@@ -445,6 +454,9 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
               }
               else {
                 refObject.setAllocEvent(event)
+                if (event.hasBacktrace()) {
+                  backtraces.add(event.backtrace)
+                }
               }
               allocationList.add(refObject)
             }
@@ -465,6 +477,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
           }
         }
       }
+      // The allocation backtraces are resolved as soon as the references are classified, so look them up in one batch.
+      symbolizeNativeBacktraces(backtraces)
     }
   }
 
@@ -491,20 +505,33 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
 
   fun resolveNativeBacktrace(backtrace: NativeBacktrace?): NativeCallStack = when {
     backtrace == null || backtrace.addressesCount == 0 -> NativeCallStack.getDefaultInstance()
-    else -> NativeCallStack.newBuilder().let { builder ->
-      for (address in backtrace.addressesList) {
-        if (!nativeFrameMap.containsKey(address)) {
-          val (module, offset) = getRegionByAddress(address)?.let {
-            Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
-          } ?: Pair("", 0L)
-          val unsymbolizedFrame = NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
-          val symbolizedFrame = stage.studioProfilers.ideServices.nativeFrameSymbolizer
-            .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrame)
-          nativeFrameMap.put(address, symbolizedFrame)
-        }
-        builder.addFrames(nativeFrameMap[address])
+    else -> {
+      symbolizeNativeBacktraces(listOf(backtrace))
+      NativeCallStack.newBuilder().let { builder ->
+        backtrace.addressesList.forEach { builder.addFrames(nativeFrameMap[it]) }
+        builder.build()
+      }
+    }
+  }
+
+  /**
+   * Symbolizes all the new frames of the backtraces at once, so that the symbolizer gets a batch large enough to look them up in parallel
+   * instead of one small request per backtrace.
+   */
+  private fun symbolizeNativeBacktraces(backtraces: Collection<NativeBacktrace>) {
+    val unsymbolizedFrames = backtraces.asSequence().flatMap { it.addressesList.asSequence() }.distinct()
+      .filter { !nativeFrameMap.containsKey(it) }
+      .map { address ->
+        val (module, offset) = getRegionByAddress(address)?.let {
+          Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
+        } ?: Pair("", 0L)
+        NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
       }
-      builder.build()
+      .toList()
+    if (unsymbolizedFrames.isNotEmpty()) {
+      stage.studioProfilers.ideServices.nativeFrameSymbolizer
+        .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrames)
+        .forEach { nativeFrameMap.put(it.address, it) }
     }
   }
 
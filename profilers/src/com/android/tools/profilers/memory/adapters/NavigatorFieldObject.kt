@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+/**
+ * A reference field of an object of a [NavigatorHeapDump], whose value is [instance] or null.
+ */
+internal class NavigatorFieldObject(private val fieldName: String, private val instance: InstanceObject?) : FieldObject {
+  override fun equals(other: Any?) = other is NavigatorFieldObject && fieldName == other.fieldName && instance == other.instance
+  override fun hashCode() = fieldName.hashCode() * 31 + (instance?.hashCode() ?: 0)
+
+  override fun getName() = fieldName
+  override fun getFieldName() = fieldName
+  override fun getAsInstance() = instance
+  override fun getValue() = instance
+  override fun getValueType() = instance?.valueType ?: ValueObject.ValueType.NULL
+  override fun getValueText() = instance?.let { "{${it.classEntry.simpleClassName}}" } ?: "null"
+  override fun getDepth() = instance?.depth ?: Int.MAX_VALUE
+  override fun getShallowSize() = instance?.shallowSize ?: 0
+  override fun getRetainedSize() = instance?.retainedSize ?: 0L
+}
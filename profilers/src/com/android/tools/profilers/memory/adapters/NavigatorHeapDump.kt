@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassStore
+import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
+import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
+import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator.ReferenceResolution
+import com.android.tools.idea.diagnostics.hprof.parser.ConstantPoolEntry
+import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
+import com.android.tools.idea.diagnostics.hprof.parser.HProfVisitor
+import com.android.tools.idea.diagnostics.hprof.parser.HeapDumpRecordType
+import com.android.tools.idea.diagnostics.hprof.parser.InstanceFieldEntry
+import com.android.tools.idea.diagnostics.hprof.parser.RecordType
+import com.android.tools.idea.diagnostics.hprof.parser.StaticFieldEntry
+import com.android.tools.idea.diagnostics.hprof.parser.Type
+import com.android.tools.idea.diagnostics.hprof.util.HProfTempFiles
+import com.intellij.openapi.util.io.FileUtil
+import gnu.trove.TByteArrayList
+import gnu.trove.TIntArrayList
+import gnu.trove.TLongArrayList
+import gnu.trove.TLongObjectHashMap
+import java.io.Closeable
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.BitSet
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ForkJoinPool
+import java.util.function.BooleanSupplier
+import java.util.function.DoubleConsumer
+
+/**
+ * The objects of a heap dump, loaded with the event-based HPROF parser instead of a perflib Snapshot.
+ *
+ * The reference graph is built by [ObjectNavigator.createOnAuxiliaryFiles] in memory-mapped temporary files, which are kept until [close]
+ * along with the original id, heap, class, shallow size, depth, retained size and strong referrers of each object, indexed by the number
+ * the navigator gave the object, from 1 to [objectCount]. Fields and referrers are read from these files on demand. Only the reference
+ * fields of an object are known, primitive values are not kept in the auxiliary files.
+ */
+internal class NavigatorHeapDump private constructor(private val tempFiles: HProfTempFiles,
+                                                     private val navigator: ObjectNavigator,
+                                                     val heaps: List<Heap>,
+                                                     val objectCount: Int,
+                                                     private val objectIds: ByteBuffer,
+                                                     private val heapIndices: ByteBuffer,
+                                                     private val flags: ByteBuffer,
+                                                     private val classIds: ByteBuffer,
+                                                     private val shallowSizes: ByteBuffer,
+                                                     private val depths: ByteBuffer,
+                                                     private val retainedSizes: ByteBuffer,
+                                                     private val referrerOffsets: ByteBuffer,
+                                                     private val referrers: ByteBuffer) : Closeable {
+
+  class Heap(val id: Int, val name: String)
+
+  /**
+   * A reference field of an object, whose value is the object numbered [index], or null if 0.
+   */
+  class Field(val name: String, val index: Int)
+
+  /**
+   * An object numbered [index] that references another through [fieldNames], which are empty for arrays.
+   */
+  class Referrer(val index: Int, val fieldNames: List<String>)
+
+  private var isClosed = false
+  private val references = TLongArrayList()
+
+  val classStore: ClassStore get() = navigator.classStore
+
+  @Synchronized
+  fun getObjectId(index: Int) = checkOpen().objectIds.getLong(index * 8)
+
+  @Synchronized
+  fun getHeap(index: Int) = heaps[checkOpen().heapIndices.get(index).toInt()]
+
+  @Synchronized
+  fun getShallowSize(index: Int) = checkOpen().shallowSizes.getInt(index * 4)
+
+  @Synchronized
+  fun getDepth(index: Int) = checkOpen().depths.getInt(index * 4)
+
+  @Synchronized
+  fun getRetainedSize(index: Int) = checkOpen().retainedSizes.getLong(index * 8)
+
+  @Synchronized
+  fun isRoot(index: Int) = checkOpen().flags.get(index).toInt() and ROOT_FLAG != 0
+
+  /**
+   * @return the class of the object, which is java.lang.Class for classes.
+   */
+  @Synchronized
+  fun getObjectClass(index: Int): ClassDefinition = classStore[checkOpen().classIds.getInt(index * 4)]
+
+  /**
+   * @return the class the object is, or null if the object is not a class.
+   */
+  @Synchronized
+  fun getClassDefinition(index: Int): ClassDefinition? =
+    if (checkOpen().flags.get(index).toInt() and CLASS_FLAG != 0) classStore[index] else null
+
+  /**
+   * @return the reference fields of the object, including the ones of its super classes, or the static fields of a class. The elements
+   * of an object array are only listed when not null, so they are named by their position among those.
+   */
+  @Synchronized
+  fun getFields(index: Int): List<Field> {
+    checkOpen()
+    val classDefinition = getClassDefinition(index)
+    navigator.goTo(index.toLong(), ReferenceResolution.ALL_REFERENCES)
+    navigator.copyReferencesTo(references)
+    return when {
+      // Constant pool entries come first, then the static fields.
+      classDefinition != null -> classDefinition.staticFields.mapIndexed { i, field ->
+        Field(field.name, references[classDefinition.constantFields.size + i].toInt())
+      }
+      navigator.getClass().isArray() -> (0 until references.size()).map { i -> Field(i.toString(), references[i].toInt()) }
+      else -> navigator.getClass().allRefFieldNames(classStore).mapIndexed { i, name -> Field(name, references[i].toInt()) }
+    }
+  }
+
+  /**
+   * @return the objects holding a strong reference to the object, ordered by depth then id.
+   */
+  @Synchronized
+  fun getReferrers(index: Int): List<Referrer> {
+    checkOpen()
+    val referrerIndices = (referrerOffsets.getInt(index * 4) until referrerOffsets.getInt((index + 1) * 4))
+      .map { referrers.getInt(it * 4) }
+      .filter { it != DominatorTree.ROOT }
+      .distinct()
+      .sortedWith(compareBy({ getDepth(it) }, { getObjectId(it) }))
+    return referrerIndices.map { referrer ->
+      val fieldNames = getFields(referrer).filter { it.index == index }.map { it.name }
+      Referrer(referrer, if (navigator.getClass().isArray()) emptyList() else fieldNames)
+    }
+  }
+
+  /**
+   * Deletes the temporary files. The objects can't be read anymore, an [IllegalStateException] is thrown instead.
+   */
+  @Synchronized
+  override fun close() {
+    isClosed = true
+    tempFiles.close()
+  }
+
+  private fun checkOpen() = apply { check(!isClosed) { "The heap dump was unloaded" } }
+
+  companion object {
+    private const val DEFAULT_HEAP_NAME = "default"
+    private const val CLASS_FLAG = 1
+    private const val ROOT_FLAG = 2
+
+    // The object ids and retained sizes take 8 bytes per object, in files mapped in a single buffer.
+    private const val MAX_OBJECT_COUNT = Int.MAX_VALUE / 8
+
+    /**
+     * Loads the heap dump of [file], which is only read while loading.
+     *
+     * @param progress receives the completed fraction of the dominator computation, which is the slowest step of loading.
+     * @return the heap dump, or null if it has too many objects for [ObjectNavigator] or for the files it keeps.
+     * @throws CancellationException if [isCancelled] returned true while loading.
+     */
+    fun load(file: File, progress: (Double) -> Unit = {}, isCancelled: () -> Boolean): NavigatorHeapDump? {
+      FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+        HProfEventBasedParser(channel).use { parser ->
+          val metadata = HProfMetadata.create(parser)
+          val objects = ListObjectsVisitor()
+          parser.accept(objects, "list objects")
+          val objectCount = objects.objectIds.size()
+          if (!ObjectNavigator.isSupported(objectCount.toLong()) || objectCount >= MAX_OBJECT_COUNT) {
+            return null
+          }
+          checkCanceled(isCancelled)
+
+          val tempFiles = HProfTempFiles { type -> FileUtil.createTempFile("heap_dump_$type", ".tmp", true).toPath() }
+          try {
+            return load(parser, metadata, objects, tempFiles, progress, isCancelled)
+          }
+          catch (t: Throwable) {
+            tempFiles.close()
+            throw t
+          }
+        }
+      }
+    }
+
+    private fun load(parser: HProfEventBasedParser,
+                     metadata: HProfMetadata,
+                     objects: ListObjectsVisitor,
+                     tempFiles: HProfTempFiles,
+                     progress: (Double) -> Unit,
+                     isCancelled: () -> Boolean): NavigatorHeapDump {
+      val objectCount = objects.objectIds.size()
+      // Numbers the objects from 1 in the order the visitor above listed them.
+      val navigator = ObjectNavigator.createOnAuxiliaryFiles(parser, metadata, objectCount.toLong(), tempFiles)
+      val objectIds = tempFiles.mapColumn("object-ids", 8, objectCount)
+      val heapIndices = tempFiles.mapColumn("heaps", 1, objectCount)
+      val flags = tempFiles.mapColumn("flags", 1, objectCount)
+      val classIds = tempFiles.mapColumn("classes", 4, objectCount)
+      val shallowSizes = tempFiles.mapColumn("shallow-sizes", 4, objectCount)
+      val sizes = LongArray(objectCount + 1)
+      for (index in 1..objectCount) {
+        if (index % CANCELLATION_CHECK_INTERVAL == 0) {
+          checkCanceled(isCancelled)
+        }
+        navigator.goTo(index.toLong(), ReferenceResolution.NO_REFERENCES)
+        objectIds.putLong(index * 8, objects.objectIds[index - 1])
+        heapIndices.put(index, objects.heapIndices[index - 1])
+        classIds.putInt(index * 4, navigator.getClass().id.toInt())
+        shallowSizes.putInt(index * 4, navigator.getObjectSize())
+        sizes[index] = navigator.getObjectSize().toLong()
+        var objectFlags = if (objects.isClass[index - 1]) CLASS_FLAG else 0
+        if (metadata.roots.containsKey(index.toLong())) {
+          objectFlags = objectFlags or ROOT_FLAG
+        }
+        flags.put(index, objectFlags.toByte())
+      }
+
+      // The strong referrers of each object are the predecessors of the dominator computation, and are kept to be listed later.
+      val (offsets, predecessors) = computePredecessors(navigator, metadata, objectCount, isCancelled)
+      val tree = DominatorTree.compute(objectCount + 1, offsets, predecessors, sizes, ForkJoinPool.commonPool(),
+                                       DoubleConsumer { progress(it) }, BooleanSupplier { isCancelled() })
+      val depths = tempFiles.mapColumn("depths", 4, objectCount)
+      val retainedSizes = tempFiles.mapColumn("retained-sizes", 8, objectCount)
+      for (index in 1..objectCount) {
+        depths.putInt(index * 4, tree.getDepth(index))
+        retainedSizes.putLong(index * 8, tree.getRetainedSize(index))
+      }
+      val referrerOffsets = tempFiles.mapColumn("referrer-offsets", 4, objectCount + 1)
+      offsets.forEachIndexed { i, offset -> referrerOffsets.putInt(i * 4, offset) }
+      val referrers = tempFiles.mapColumn("referrers", 4, predecessors.size - 1)
+      predecessors.forEachIndexed { i, predecessor -> referrers.putInt(i * 4, predecessor) }
+
+      return NavigatorHeapDump(tempFiles, navigator, objects.heaps, objectCount, objectIds, heapIndices, flags, classIds, shallowSizes,
+                               depths, retainedSizes, referrerOffsets, referrers)
+    }
+
+    /**
+     * @return the CSR offsets and predecessors of the strong reference graph, where node 0 is a synthetic root pointing at each GC root.
+     */
+    private fun computePredecessors(navigator: ObjectNavigator,
+                                    metadata: HProfMetadata,
+                                    objectCount: Int,
+                                    isCancelled: () -> Boolean): Pair<IntArray, IntArray> {
+      val offsets = IntArray(objectCount + 2)
+      val roots = TIntArrayList()
+      metadata.roots.forEachKey { root -> true.also { if (root in 1..objectCount) roots.add(root.toInt()) } }
+      roots.forEach { root -> true.also { offsets[root + 1]++ } }
+      forEachStrongReference(navigator, objectCount, isCancelled) { _, reference -> offsets[reference + 1]++ }
+      for (i in 0..objectCount) {
+        offsets[i + 1] += offsets[i]
+      }
+      val predecessors = IntArray(offsets[objectCount + 1])
+      val next = offsets.copyOf()
+      roots.forEach { root -> true.also { predecessors[next[root]++] = DominatorTree.ROOT } }
+      forEachStrongReference(navigator, objectCount, isCancelled) { index, reference -> predecessors[next[reference]++] = index }
+      return offsets to predecessors
+    }
+
+    private inline fun forEachStrongReference(navigator: ObjectNavigator,
+                                              objectCount: Int,
+                                              isCancelled: () -> Boolean,
+                                              consumer: (Int, Int) -> Unit) {
+      val references = TLongArrayList()
+      for (index in 1..objectCount) {
+        if (index % CANCELLATION_CHECK_INTERVAL == 0) {
+          checkCanceled(isCancelled)
+        }
+        navigator.goTo(index.toLong(), ReferenceResolution.ONLY_STRONG_REFERENCES)
+        navigator.copyReferencesTo(references)
+        for (i in 0 until references.size()) {
+          val reference = references[i].toInt()
+          if (reference in 1..objectCount) {
+            consumer(index, reference)
+          }
+        }
+      }
+    }
+
+    /**
+     * Maps a new temporary file holding [bytesPerObject] bytes for each object, indexed from 1 to [objectCount].
+     */
+    private fun HProfTempFiles.mapColumn(type: String, bytesPerObject: Int, objectCount: Int): ByteBuffer =
+      openEmptyFileChannel(type).map(FileChannel.MapMode.READ_WRITE, 0, bytesPerObject.toLong() * (objectCount + 1))
+
+    private fun checkCanceled(isCancelled: () -> Boolean) {
+      if (isCancelled()) {
+        throw CancellationException()
+      }
+    }
+
+    private const val CANCELLATION_CHECK_INTERVAL = 1 shl 16
+  }
+
+  /**
+   * Lists the original id and the heap of each object, in the order [ObjectNavigator.createOnAuxiliaryFiles] numbers them.
+   */
+  private class ListObjectsVisitor : HProfVisitor() {
+    val objectIds = TLongArrayList()
+    val heapIndices = TByteArrayList()
+    val isClass = BitSet()
+    val heaps = mutableListOf(Heap(0, DEFAULT_HEAP_NAME))
+
+    private val strings = TLongObjectHashMap<String>()
+    private var currentHeapIndex = 0
+
+    override fun preVisit() {
+      disableAll()
+      enable(RecordType.StringInUTF8)
+      enable(HeapDumpRecordType.HeapDumpInfo)
+      enable(HeapDumpRecordType.ClassDump)
+      enable(HeapDumpRecordType.InstanceDump)
+      enable(HeapDumpRecordType.PrimitiveArrayDump)
+      enable(HeapDumpRecordType.ObjectArrayDump)
+    }
+
+    override fun postVisit() {
+      strings.clear()
+    }
+
+    override fun visitStringInUTF8(id: Long, s: String) {
+      strings.put(id, s)
+    }
+
+    override fun visitHeapDumpInfo(heapId: Long, heapNameStringId: Long) {
+      currentHeapIndex = heaps.indexOfFirst { it.id.toLong() == heapId }
+      if (currentHeapIndex < 0) {
+        currentHeapIndex = heaps.size
+        heaps.add(Heap(heapId.toInt(), strings[heapNameStringId] ?: DEFAULT_HEAP_NAME))
+      }
+    }
+
+    override fun visitClassDump(classId: Long,
+                                stackTraceSerialNumber: Long,
+                                superClassId: Long,
+                                classloaderClassId: Long,
+                                instanceSize: Long,
+                                constants: Array<ConstantPoolEntry>,
+                                staticFields: Array<StaticFieldEntry>,
+                                instanceFields: Array<InstanceFieldEntry>) {
+      isClass.set(objectIds.size())
+      addObject(classId)
+    }
+
+    override fun visitInstanceDump(objectId: Long, stackTraceSerialNumber: Long, classObjectId: Long, bytes: ByteBuffer) {
+      addObject(objectId)
+    }
+
+    override fun visitPrimitiveArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, numberOfElements: Long, elementType: Type) {
+      addObject(arrayObjectId)
+    }
+
+    override fun visitObjectArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, arrayClassObjectId: Long, objects: LongArray) {
+      addObject(arrayObjectId)
+    }
+
+    private fun addObject(id: Long) {
+      objectIds.add(id)
+      heapIndices.add(currentHeapIndex.toByte())
+    }
+  }
+}
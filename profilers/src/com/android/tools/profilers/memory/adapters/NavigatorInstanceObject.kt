@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import java.util.Locale
+
+/**
+ * A UI representation of an object of a [NavigatorHeapDump]. Everything but the class is read from the heap dump when asked for.
+ */
+internal class NavigatorInstanceObject(private val captureObject: HeapDumpCaptureObject,
+                                       private val heapDump: NavigatorHeapDump,
+                                       private val index: Int,
+                                       private val classEntry: ClassDb.ClassEntry) : InstanceObject {
+  override fun equals(other: Any?) = other is NavigatorInstanceObject && heapDump === other.heapDump && index == other.index
+  override fun hashCode() = index
+
+  override fun getName() = ""
+
+  override fun getValueText(): String = heapDump.getObjectId(index).let { id ->
+    String.format(Locale.US, NAME_FORMATTER, classEntry.simpleClassName, id, id)
+  }
+
+  override fun getHeapId() = heapDump.getHeap(index).id
+  override fun getClassEntry() = classEntry
+  override fun getValueType() = when {
+    classEntry.className == ClassDb.JAVA_LANG_CLASS -> ValueObject.ValueType.CLASS
+    classEntry.className == ClassDb.JAVA_LANG_STRING -> ValueObject.ValueType.STRING
+    classEntry.className.endsWith("[]") -> ValueObject.ValueType.ARRAY
+    else -> ValueObject.ValueType.OBJECT
+  }
+  override fun getDepth() = heapDump.getDepth(index)
+  override fun getShallowSize() = heapDump.getShallowSize(index)
+  override fun getRetainedSize() = heapDump.getRetainedSize(index)
+  override fun getIsRoot() = heapDump.isRoot(index)
+
+  override fun getFieldCount() = fields.size
+
+  override fun getFields(): List<FieldObject> = heapDump.getFields(index).map { field ->
+    NavigatorFieldObject(field.name, if (field.index == 0) null else captureObject.getNavigatorInstanceObject(field.index))
+  }
+
+  override fun getReferences(): List<ReferenceObject> =
+    if (isRoot) listOf()
+    else heapDump.getReferrers(index).map { ReferenceObject(it.fieldNames, captureObject.getNavigatorInstanceObject(it.index)) }
+
+  companion object {
+    private const val NAME_FORMATTER = "%s@%d (0x%x)"
+  }
+}
@@ -59,17 +59,12 @@ class ActivityFragmentLeakInstanceFilter(classDatabase: ClassDb)
                                                ANDROIDX_FRAGMENT_CLASS_NAME)
 
     private fun makeLeakTest(classDatabase: ClassDb): (InstanceObject) -> Boolean {
-      val allActivitySubclasses by lazy {
-        classDatabase.getEntriesByName(ACTIVTY_CLASS_NAME)
-          .flatMapTo(HashSet()) { classEntry -> classDatabase.getDescendantClasses(classEntry.classId) }
-      }
-      val allFragmentSubclasses by lazy {
-        FRAGMENT_CLASS_NAMES
-          .flatMap { className -> classDatabase.getEntriesByName(className) }
-          .flatMapTo(HashSet()) { classEntry -> classDatabase.getDescendantClasses(classEntry.classId) }
-      }
-      return { it.classEntry in allActivitySubclasses && isPotentialActivityLeak(it) ||
-               it.classEntry in allFragmentSubclasses && isPotentialFragmentLeak(it) }
+      val activityClassIds by lazy { classDatabase.getEntriesByName(ACTIVTY_CLASS_NAME).map { it.classId } }
+      val fragmentClassIds by lazy { FRAGMENT_CLASS_NAMES.flatMap { classDatabase.getEntriesByName(it) }.map { it.classId } }
+      fun ClassDb.ClassEntry.isDescendantOfAny(ancestorIds: List<Long>) =
+        ancestorIds.any { classDatabase.isDescendantClass(classId, it) }
+      return { it.classEntry.isDescendantOfAny(activityClassIds) && isPotentialActivityLeak(it) ||
+               it.classEntry.isDescendantOfAny(fragmentClassIds) && isPotentialFragmentLeak(it) }
     }
 
     /**
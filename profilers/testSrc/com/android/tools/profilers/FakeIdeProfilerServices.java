@@ -128,6 +128,21 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myCpuNewRecordingWorkflowEnabled = false;
 
+  /**
+   * Toggle for faking {@link FeatureConfig#isCpuCaptureCacheEnabled()} in tests.
+   */
+  private boolean myCpuCaptureCacheEnabled = false;
+
+  /**
+   * Toggle for faking {@link FeatureConfig#isAsyncDataFetchEnabled()} in tests.
+   */
+  private boolean myAsyncDataFetchEnabled = false;
+
+  /**
+   * Toggle for faking {@link FeatureConfig#isMemoryHeapDumpNavigatorEnabled()} in tests.
+   */
+  private boolean myMemoryHeapDumpNavigatorEnabled = false;
+
   /**
    * Toggle for cpu capture stage switching vs cpu profiler stage when handling captures.
    */
@@ -243,6 +258,12 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
   @Override
   public FeatureConfig getFeatureConfig() {
     return new FeatureConfig() {
+      @Override
+      public boolean isAsyncDataFetchEnabled() { return myAsyncDataFetchEnabled; }
+
+      @Override
+      public boolean isCpuCaptureCacheEnabled() { return myCpuCaptureCacheEnabled; }
+
       @Override
       public boolean isCpuCaptureStageEnabled() { return myIsCaptureStageEnabled; }
 
@@ -269,6 +290,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return false;
       }
 
+      @Override
+      public boolean isMemoryHeapDumpNavigatorEnabled() {
+        return myMemoryHeapDumpNavigatorEnabled;
+      }
+
       @Override
       public boolean isPerformanceMonitoringEnabled() {
         return false;
@@ -481,6 +507,12 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
     myCpuNewRecordingWorkflowEnabled = enabled;
   }
 
+  public void enableAsyncDataFetch(boolean enabled) { myAsyncDataFetchEnabled = enabled; }
+
+  public void enableCpuCaptureCache(boolean enabled) { myCpuCaptureCacheEnabled = enabled; }
+
+  public void enableMemoryHeapDumpNavigator(boolean enabled) { myMemoryHeapDumpNavigatorEnabled = enabled; }
+
   public void enableCpuCaptureStage(boolean enabled) { myIsCaptureStageEnabled = enabled; }
 
   public void enableCustomEventVisualization(boolean enabled) { myCustomEventVisualizationEnabled = enabled; }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.profiler.proto.Cpu
+import com.android.tools.profilers.FakeIdeProfilerServices
+import com.android.tools.profilers.ProfilersTestData
+import com.android.tools.profilers.cpu.art.ArtTraceParser
+import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import kotlin.streams.toList
+
+class CpuCaptureCacheTest {
+
+  @JvmField
+  @Rule
+  val temporaryFolder = TemporaryFolder()
+
+  @Test
+  fun artCaptureIsReadBack() {
+    val trace = copyTrace("valid_trace.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    val capture = ArtTraceParser().parse(trace, TRACE_ID)
+
+    assertThat(cache.contains(trace)).isFalse()
+    assertThat(cache.write(capture, trace)).isTrue()
+    assertThat(cache.contains(trace)).isTrue()
+    assertSameCapture(cache.read(TRACE_ID, trace)!!, capture)
+  }
+
+  @Test
+  fun simpleperfCaptureIsReadBack() {
+    val trace = copyTrace("simpleperf.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    val capture = SimpleperfTraceParser().parse(trace, TRACE_ID)
+
+    assertThat(cache.write(capture, trace)).isTrue()
+    val cachedCapture = cache.read(TRACE_ID, trace)!!
+    assertSameCapture(cachedCapture, capture)
+    assertThat(cachedCapture.isDualClock).isEqualTo(capture.isDualClock)
+    assertThat(cachedCapture.dualClockDisabledMessage).isEqualTo(capture.dualClockDisabledMessage)
+    assertThat(cachedCapture.tags).containsExactlyElementsIn(capture.tags).inOrder()
+
+    val function = cachedCapture.captureNodes.flatMap { it.descendantsStream.toList() }.map { it.data }
+      .filterIsInstance<CppFunctionModel>().first()
+    val originalFunction = capture.captureNodes.flatMap { it.descendantsStream.toList() }.map { it.data }
+      .filterIsInstance<CppFunctionModel>().first { it.id == function.id }
+    assertThat(function.fileName).isEqualTo(originalFunction.fileName)
+    assertThat(function.vAddress).isEqualTo(originalFunction.vAddress)
+    assertThat(function.isUserCode).isEqualTo(originalFunction.isUserCode)
+    assertThat(function.tag).isEqualTo(originalFunction.tag)
+  }
+
+  @Test
+  fun entryIsIgnoredOnceTheTraceChanges() {
+    val trace = copyTrace("valid_trace.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    cache.write(ArtTraceParser().parse(trace, TRACE_ID), trace)
+
+    trace.appendBytes(ByteArray(1))
+    assertThat(cache.contains(trace)).isFalse()
+    assertThat(cache.read(TRACE_ID, trace)).isNull()
+  }
+
+  @Test
+  fun entryIsSharedByTracesWithTheSameContent() {
+    val trace = copyTrace("valid_trace.trace")
+    val reopenedTrace = copyTrace("valid_trace.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    val capture = ArtTraceParser().parse(trace, TRACE_ID)
+    cache.write(capture, trace)
+
+    assertThat(cache.contains(reopenedTrace)).isTrue()
+    val cachedCapture = cache.read(TRACE_ID + 1, reopenedTrace)!!
+    assertThat(cachedCapture.traceId).isEqualTo(TRACE_ID + 1)
+    assertSameTree(cachedCapture.getCaptureNode(capture.mainThreadId)!!, capture.getCaptureNode(capture.mainThreadId)!!)
+  }
+
+  @Test
+  fun corruptedEntryIsDeleted() {
+    val trace = copyTrace("valid_trace.trace")
+    val directory = temporaryFolder.newFolder()
+    val cache = CpuCaptureCache(directory, CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    cache.write(ArtTraceParser().parse(trace, TRACE_ID), trace)
+    val entry = directory.listFiles()!!.single()
+    entry.writeBytes(entry.readBytes().copyOf(entry.length().toInt() / 2))
+
+    assertThat(cache.read(TRACE_ID, trace)).isNull()
+    assertThat(entry.exists()).isFalse()
+  }
+
+  @Test
+  fun unsupportedCapturesAreNotWritten() {
+    val trace = copyTrace("valid_trace.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    val root = CaptureNode(StubCaptureNodeModel())
+    val capture = BaseCpuCapture(TRACE_ID, Cpu.CpuTraceType.ART, Range(0.0, 1.0), mapOf(CpuThreadInfo(1, "main", true) to root))
+
+    assertThat(cache.write(capture, trace)).isFalse()
+    assertThat(cache.contains(trace)).isFalse()
+  }
+
+  @Test
+  fun leastRecentlyUsedEntriesAreEvicted() {
+    val traces = (1..3).map { index -> temporaryFolder.newFile().also { it.writeBytes(byteArrayOf(index.toByte())) } }
+    val directory = temporaryFolder.newFolder()
+    // Only leaves room for a single entry.
+    val cache = CpuCaptureCache(directory, 1)
+    val root = CaptureNode(SingleNameModel("main"))
+    for (trace in traces) {
+      cache.write(BaseCpuCapture(TRACE_ID, Cpu.CpuTraceType.ART, Range(0.0, 1.0), mapOf(CpuThreadInfo(1, "main", true) to root)), trace)
+      directory.listFiles()!!.forEach { it.setLastModified(it.lastModified() - 1000) }
+    }
+
+    assertThat(cache.contains(traces[0])).isFalse()
+    assertThat(cache.contains(traces[1])).isFalse()
+    assertThat(cache.contains(traces[2])).isTrue()
+  }
+
+  @Test
+  fun parserReadsCachedCaptures() {
+    val trace = copyTrace("valid_trace.trace")
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    val parsedCapture = CpuCaptureParser(FakeIdeProfilerServices(), cache)
+      .parse(trace, TRACE_ID, Cpu.CpuTraceType.ART, 1, "").get()
+    assertThat(cache.contains(trace)).isTrue()
+
+    val cachedCapture = CpuCaptureParser(FakeIdeProfilerServices(), cache)
+      .parse(trace, TRACE_ID, Cpu.CpuTraceType.ART, 1, "").get()
+    assertThat(cachedCapture).isNotSameAs(parsedCapture)
+    assertSameCapture(cachedCapture, parsedCapture)
+  }
+
+  @Test
+  fun parserReadsCaptureCachedForAnotherCopyOfTheTrace() {
+    val cache = CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES)
+    CpuCaptureParser(FakeIdeProfilerServices(), cache)
+      .parse(copyTrace("valid_trace.trace"), TRACE_ID, Cpu.CpuTraceType.ART, 1, "").get()
+
+    val importedTrace = copyTrace("valid_trace.trace")
+    assertThat(cache.contains(importedTrace)).isTrue()
+    val importedCapture = CpuCaptureParser(FakeIdeProfilerServices(), cache)
+      .parse(importedTrace, TRACE_ID + 1, Cpu.CpuTraceType.ART, 1, "").get()
+    assertThat(importedCapture.traceId).isEqualTo(TRACE_ID + 1)
+  }
+
+  @Test
+  fun parserDoesNotLookUpSystemTraces() {
+    val cache = object : CpuCaptureCache(temporaryFolder.newFolder(), CpuCaptureCache.DEFAULT_MAX_SIZE_BYTES) {
+      override fun contains(traceFile: File): Boolean = throw AssertionError("System traces are never cached")
+      override fun read(traceId: Long, traceFile: File): CpuCapture? = throw AssertionError("System traces are never cached")
+    }
+    val capture = CpuCaptureParser(FakeIdeProfilerServices(), cache)
+      .parse(CpuProfilerTestUtils.getTraceFile("atrace.ctrace"), TRACE_ID, Cpu.CpuTraceType.UNSPECIFIED_TYPE,
+             ProfilersTestData.SESSION_DATA.pid, "").get()
+    assertThat(capture.type).isEqualTo(Cpu.CpuTraceType.ATRACE)
+  }
+
+  private fun copyTrace(name: String) = temporaryFolder.newFile().also { CpuProfilerTestUtils.getTraceFile(name).copyTo(it, true) }
+
+  private fun assertSameCapture(actual: CpuCapture, expected: CpuCapture) {
+    assertThat(actual.traceId).isEqualTo(expected.traceId)
+    assertThat(actual.type).isEqualTo(expected.type)
+    assertThat(actual.range.min).isEqualTo(expected.range.min)
+    assertThat(actual.range.max).isEqualTo(expected.range.max)
+    assertThat(actual.mainThreadId).isEqualTo(expected.mainThreadId)
+    assertThat(actual.threads.map { it.toString() }).containsExactlyElementsIn(expected.threads.map { it.toString() })
+    for (thread in expected.threads) {
+      assertSameTree(actual.getCaptureNode(thread.id)!!, expected.getCaptureNode(thread.id)!!)
+    }
+  }
+
+  private fun assertSameTree(actual: CaptureNode, expected: CaptureNode) {
+    val actualNodes = actual.descendantsStream.toList()
+    val expectedNodes = expected.descendantsStream.toList()
+    assertThat(actualNodes).hasSize(expectedNodes.size)
+    actualNodes.zip(expectedNodes).forEach { (actualNode, expectedNode) ->
+      assertThat(actualNode.data.javaClass).isEqualTo(expectedNode.data.javaClass)
+      assertThat(actualNode.data.id).isEqualTo(expectedNode.data.id)
+      assertThat(actualNode.data.fullName).isEqualTo(expectedNode.data.fullName)
+      assertThat(actualNode.childCount).isEqualTo(expectedNode.childCount)
+      assertThat(actualNode.depth).isEqualTo(expectedNode.depth)
+      assertThat(actualNode.startGlobal).isEqualTo(expectedNode.startGlobal)
+      assertThat(actualNode.endGlobal).isEqualTo(expectedNode.endGlobal)
+      assertThat(actualNode.startThread).isEqualTo(expectedNode.startThread)
+      assertThat(actualNode.endThread).isEqualTo(expectedNode.endThread)
+      assertThat(actualNode.clockType).isEqualTo(expectedNode.clockType)
+    }
+  }
+
+  private companion object {
+    const val TRACE_ID = 3039L
+  }
+}
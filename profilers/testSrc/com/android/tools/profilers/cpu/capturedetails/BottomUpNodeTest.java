@@ -16,11 +16,13 @@
 package com.android.tools.profilers.cpu.capturedetails;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.android.tools.adtui.model.Range;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.VisualNodeCaptureNode;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -337,6 +339,38 @@ public class BottomUpNodeTest {
     traverseAndCheck(root, expectedNodes);
   }
 
+  /**
+   * Two threads selected together, under an aggregation node which is not their parent:
+   * thread1 [0..100] -> A [10..60] -> B [20..40]
+   * thread2 [0..100] -> A [30..90] -> A [50..70]
+   */
+  @Test
+  public void testMultipleThreadsAreUpdatedIndependently() {
+    CaptureNode thread1 = newNode("thread1", 0, 100);
+    addChainSubtree(thread1, newNode("A", 10, 60), newNode("B", 20, 40));
+    CaptureNode thread2 = newNode("thread2", 0, 100);
+    addChainSubtree(thread2, newNode("A", 30, 90), newNode("A", 50, 70));
+    VisualNodeCaptureNode visual = new VisualNodeCaptureNode(new SingleNameModel(""), ClockType.GLOBAL);
+    visual.addChild(thread1);
+    visual.addChild(thread2);
+
+    BottomUpNode node = new BottomUpNode(visual);
+    BottomUpNode nodeA = node.getChildren().stream().filter(n -> n.getId().equals("A")).findAny().orElseThrow(AssertionError::new);
+    assertEquals(3, nodeA.getNodes().size());
+
+    nodeA.update(ClockType.GLOBAL, new Range(0, 100));
+    // A is at the top of the call stack for 50 units in thread1 and 60 units in thread2.
+    assertEquals(110, nodeA.getGlobalTotal(), EPS);
+    assertEquals(20, nodeA.getGlobalChildrenTotal(), EPS);
+
+    nodeA.update(ClockType.GLOBAL, new Range(35.5, 55.25));
+    assertEquals(39.5, nodeA.getGlobalTotal(), EPS);
+    assertEquals(4.5, nodeA.getGlobalChildrenTotal(), EPS);
+
+    assertTrue(nodeA.inRange(new Range(89, 95)));
+    assertFalse(nodeA.inRange(new Range(90, 95)));
+  }
+
   private static void traverseAndCheck(CaptureNode root, List<ExpectedNode> expectedNodes) {
     List<BottomUpNode> traverseOrder = new ArrayList<>();
     traverse(new BottomUpNode(root), traverseOrder);
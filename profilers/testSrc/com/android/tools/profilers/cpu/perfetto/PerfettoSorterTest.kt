@@ -15,15 +15,16 @@
  */
 package com.android.tools.profilers.cpu.perfetto
 
-import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.systemtrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
+import kotlin.random.Random
 
 class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -33,7 +34,7 @@ class PerfettoSorterTest {
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -42,4 +43,56 @@ class PerfettoSorterTest {
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some Line")
   }
+
+  @Test
+  fun linesAreReturnedInTimestampOrder() {
+    val sorter = PerfettoPacketSorter()
+    sorter.addLine(30, "Third")
+    sorter.addLine(10, "First")
+    sorter.addLine(20, "Second")
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("First", "Second", "Third").inOrder()
+    sorter.close()
+  }
+
+  @Test
+  fun spilledRunsAreMergedInTimestampOrder() {
+    val sorter = PerfettoPacketSorter(4)
+    val timestamps = (0 until 50L).shuffled(Random(0))
+    timestamps.forEach { sorter.addLine(it, "Line $it \u00e9") }
+    assertThat(sorter.spilledRunCount).isEqualTo(12)
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactlyElementsIn((0 until 50L).map { "Line $it \u00e9" }).inOrder()
+    assertThat(sorter.hasNext()).isFalse()
+    sorter.close()
+  }
+
+  @Test
+  fun runFilesAreDeletedOnceExhausted() {
+    val sorter = PerfettoPacketSorter(2)
+    listOf(1L, 4L, 2L, 3L, 5L).forEach { sorter.addLine(it, "Line $it") }
+    val runFiles = sorter.spilledRunFiles
+    assertThat(runFiles).hasSize(2)
+    sorter.resetForIterator()
+    // The first run holds lines 1 and 4, the second one lines 2 and 3.
+    assertThat(sorter.next()).isEqualTo("Line 1")
+    assertThat(sorter.next()).isEqualTo("Line 2")
+    assertThat(sorter.next()).isEqualTo("Line 3")
+    assertThat(runFiles.map { it.exists() }).containsExactly(true, false).inOrder()
+    sorter.close()
+    assertThat(runFiles.any { it.exists() }).isFalse()
+  }
+
+  @Test
+  fun equalTimestampsKeepInsertionOrder() {
+    val sorter = PerfettoPacketSorter(2)
+    sorter.addLine(5, "A")
+    sorter.addLine(1, "B")
+    sorter.addLine(5, "C")
+    sorter.addLine(5, "D")
+    sorter.addLine(1, "E")
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("B", "E", "A", "C", "D").inOrder()
+    sorter.close()
+  }
 }
@@ -36,6 +36,8 @@ import com.intellij.openapi.util.io.FileUtil;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -158,7 +160,7 @@ public class SimpleperfTraceParserTest {
 
     int mainThread = 7056;
     SimpleperfReport.Sample mainFirstSample =
-      myParser.mySamples.stream().filter((sample -> sample.getThreadId() == mainThread)).findFirst().orElse(null);
+      readSamples(trace).stream().filter((sample -> sample.getThreadId() == mainThread)).findFirst().orElse(null);
     assertNotNull(mainFirstSample);
 
     CaptureNode mainThreadTree = capture.getCaptureNode(mainFirstSample.getThreadId());
@@ -220,8 +222,9 @@ public class SimpleperfTraceParserTest {
   @Test
   public void rangeShouldBeFromFirstToLastTimestamp() throws IOException {
     CpuCapture capture = myParser.parse(myTraceFile, 0);
-    long startTimeUs = TimeUnit.NANOSECONDS.toMicros(myParser.mySamples.get(0).getTime());
-    long endTimeUs = TimeUnit.NANOSECONDS.toMicros(myParser.mySamples.get(myParser.mySamples.size() - 1).getTime());
+    List<SimpleperfReport.Sample> samples = readSamples(myTraceFile);
+    long startTimeUs = TimeUnit.NANOSECONDS.toMicros(samples.get(0).getTime());
+    long endTimeUs = TimeUnit.NANOSECONDS.toMicros(samples.get(samples.size() - 1).getTime());
     Range expected = new Range(startTimeUs, endTimeUs);
     assertEquals(expected.getMin(), capture.getRange().getMin(), 0);
     assertEquals(expected.getMax(), capture.getRange().getMax(), 0);
@@ -248,6 +251,44 @@ public class SimpleperfTraceParserTest {
     assertThat(tags).isEqualTo(Arrays.asList("/a/b/c", "/c/d/e", "[java]", "/a/*"));
   }
 
+  @Test
+  public void samplesOfAThreadAreMergedIntoOneTree() throws IOException {
+    CpuCapture capture = myParser.parse(myTraceFile, 0);
+    List<SimpleperfReport.Sample> samples = readSamples(myTraceFile);
+    for (CpuThreadInfo thread : capture.getThreads()) {
+      CaptureNode tree = capture.getCaptureNode(thread.getId());
+      assertNotNull(tree);
+      SimpleperfReport.Sample firstSample = samples.stream().filter(sample -> sample.getThreadId() == thread.getId()).findFirst().get();
+      assertEquals(TimeUnit.NANOSECONDS.toMicros(firstSample.getTime()), tree.getStartGlobal());
+      assertEquals(TimeUnit.NANOSECONDS.toMicros(samples.get(samples.size() - 1).getTime()), tree.getEndGlobal());
+      // Every node ends after it starts and is contained in its parent.
+      tree.getDescendantsStream().filter(node -> node != tree).forEach(node -> {
+        assertTrue(node.getStartGlobal() <= node.getEndGlobal());
+        assertTrue(node.getParent().getStartGlobal() <= node.getStartGlobal());
+        assertTrue(node.getEndGlobal() <= node.getParent().getEndGlobal());
+      });
+    }
+  }
+
+  /**
+   * Reads the samples of a trace file, in the order they appear in it.
+   */
+  private static List<SimpleperfReport.Sample> readSamples(File trace) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(FileUtil.loadFileBytes(trace)).order(ByteOrder.LITTLE_ENDIAN);
+    // Skip the magic number and the version.
+    buffer.position("SIMPLEPERF".length() + 2);
+    List<SimpleperfReport.Sample> samples = new ArrayList<>();
+    for (int recordSize = buffer.getInt(); recordSize != 0; recordSize = buffer.getInt()) {
+      byte[] recordBytes = new byte[recordSize];
+      buffer.get(recordBytes);
+      SimpleperfReport.Record record = SimpleperfReport.Record.parseFrom(recordBytes);
+      if (record.hasSample()) {
+        samples.add(record.getSample());
+      }
+    }
+    return samples;
+  }
+
   /**
    * Checks that a {@link CaptureNode} tree starts with "__start_thread -> __pthread_start", then verifies the node just after then.
    */
@@ -55,4 +55,38 @@ public class ClassDbTest {
     assertThat(db.getDescendantClasses(classId4)).containsExactly(entry4, entry5);
     assertThat(db.getDescendantClasses(classId5)).containsExactly(entry5);
   }
+
+  @Test
+  public void testIsDescendantClass() {
+    ClassDb db = new ClassDb();
+    db.registerClass(1, INVALID_CLASS_ID, "Class1");
+    db.registerClass(2, 1, "Class2");
+    db.registerClass(3, 2, "Class3");
+    db.registerClass(4, INVALID_CLASS_ID, "Class4");
+
+    assertThat(db.isDescendantClass(3, 1)).isTrue();
+    assertThat(db.isDescendantClass(3, 3)).isTrue();
+    assertThat(db.isDescendantClass(1, 3)).isFalse();
+    assertThat(db.isDescendantClass(3, 4)).isFalse();
+    assertThat(db.isDescendantClass(5, 1)).isFalse();
+
+    // Registering a class after a query invalidates the hierarchy.
+    db.registerClass(5, 4, "Class5");
+    assertThat(db.isDescendantClass(5, 4)).isTrue();
+    assertThat(db.isDescendantClass(5, 1)).isFalse();
+  }
+
+  @Test
+  public void testEntriesByName() {
+    ClassDb db = new ClassDb();
+    ClassDb.ClassEntry entry1 = db.registerClass(1, INVALID_CLASS_ID, "Class");
+    ClassDb.ClassEntry entry2 = db.registerClass(2, INVALID_CLASS_ID, "Class");
+    db.registerClass(3, INVALID_CLASS_ID, "OtherClass");
+
+    assertThat(db.getEntriesByName("Class")).containsExactly(entry1, entry2);
+    assertThat(db.getEntriesByName("Missing")).isEmpty();
+
+    db.clear();
+    assertThat(db.getEntriesByName("Class")).isEmpty();
+  }
 }
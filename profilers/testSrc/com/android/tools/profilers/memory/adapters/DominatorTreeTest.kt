@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ForkJoinPool
+import java.util.function.BooleanSupplier
+import java.util.function.DoubleConsumer
+
+class DominatorTreeTest {
+  @Test
+  fun diamondIsDominatedByItsTop() {
+    // 0 -> 1 -> {2, 3} -> 4
+    val tree = compute(5, listOf(0 to 1, 1 to 2, 1 to 3, 2 to 4, 3 to 4), longArrayOf(0, 1, 2, 4, 8))
+    assertThat((1..4).map(tree::getImmediateDominator)).containsExactly(0, 1, 1, 1).inOrder()
+    assertThat(tree.getRetainedSize(1)).isEqualTo(15)
+    assertThat(tree.getRetainedSize(2)).isEqualTo(2)
+    assertThat(tree.getRetainedSize(4)).isEqualTo(8)
+    assertThat((1..4).map(tree::getDepth)).containsExactly(0, 1, 1, 2).inOrder()
+  }
+
+  @Test
+  fun loopsDoNotAffectDominators() {
+    // 0 -> 1 -> 2 -> 3 -> 1, and 0 -> 3
+    val tree = compute(4, listOf(0 to 1, 1 to 2, 2 to 3, 3 to 1, 0 to 3), longArrayOf(0, 1, 2, 4))
+    assertThat((1..3).map(tree::getImmediateDominator)).containsExactly(0, 1, 0).inOrder()
+    assertThat(tree.getRetainedSize(1)).isEqualTo(3)
+    assertThat(tree.getRetainedSize(3)).isEqualTo(4)
+    assertThat(tree.getRetainedSize(0)).isEqualTo(7)
+  }
+
+  @Test
+  fun unreachableNodesRetainNothing() {
+    // 3 -> 2 is not reachable from the root.
+    val tree = compute(4, listOf(0 to 1, 3 to 2), longArrayOf(0, 1, 2, 4))
+    assertThat(tree.getImmediateDominator(2)).isEqualTo(DominatorTree.UNREACHABLE)
+    assertThat(tree.getImmediateDominator(3)).isEqualTo(DominatorTree.UNREACHABLE)
+    assertThat(tree.getRetainedSize(3)).isEqualTo(0)
+    assertThat(tree.getDepth(3)).isEqualTo(Int.MAX_VALUE)
+    assertThat(tree.getRetainedSize(0)).isEqualTo(1)
+  }
+
+  @Test
+  fun largeGraphsAreSweptInParallel() {
+    // A complete binary tree large enough to be split across threads, with every leaf pointing back at the root's child.
+    val nodeCount = 1 shl 16
+    val edges = mutableListOf(0 to 1)
+    for (node in 1 until nodeCount) {
+      listOf(2 * node, 2 * node + 1).filter { it < nodeCount }.forEach { edges.add(node to it) }
+      if (2 * node >= nodeCount) {
+        edges.add(node to 1)
+      }
+    }
+    val progress = mutableListOf<Double>()
+    val tree = compute(nodeCount, edges, LongArray(nodeCount) { if (it == 0) 0 else 1 }, ForkJoinPool(4)) { progress.add(it) }
+    for (node in 2 until nodeCount) {
+      assertThat(tree.getImmediateDominator(node)).isEqualTo(node / 2)
+      assertThat(tree.getDepth(node)).isEqualTo(31 - Integer.numberOfLeadingZeros(node))
+    }
+    assertThat(tree.getRetainedSize(1)).isEqualTo(nodeCount - 1L)
+    assertThat(tree.getRetainedSize(2)).isEqualTo(nodeCount / 2 - 1L)
+    assertThat(progress).isInOrder()
+    assertThat(progress.last()).isEqualTo(1.0)
+  }
+
+  @Test
+  fun cancellationStopsTheComputation() {
+    try {
+      DominatorTree.compute(2, intArrayOf(0, 0, 1), intArrayOf(0), longArrayOf(0, 1), ForkJoinPool.commonPool(),
+                            DoubleConsumer { }, BooleanSupplier { true })
+      fail()
+    }
+    catch (expected: CancellationException) {
+    }
+  }
+
+  private fun compute(nodeCount: Int,
+                      edges: List<Pair<Int, Int>>,
+                      sizes: LongArray,
+                      pool: ForkJoinPool = ForkJoinPool.commonPool(),
+                      progress: (Double) -> Unit = {}): DominatorTree {
+    val referrers = edges.groupBy({ it.second }, { it.first })
+    val predecessors = (0 until nodeCount).map { node -> referrers[node] ?: listOf() }
+    val offsets = IntArray(nodeCount + 1)
+    for (node in 0 until nodeCount) {
+      offsets[node + 1] = offsets[node] + predecessors[node].size
+    }
+    return DominatorTree.compute(nodeCount, offsets, predecessors.flatten().toIntArray(), sizes, pool, DoubleConsumer { progress(it) },
+                                 BooleanSupplier { false })
+  }
+}
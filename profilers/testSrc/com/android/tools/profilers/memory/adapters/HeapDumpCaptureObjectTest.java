@@ -22,6 +22,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.android.tools.adtui.model.FakeTimer;
 import com.android.tools.idea.protobuf.ByteString;
@@ -184,6 +185,33 @@ public class HeapDumpCaptureObjectTest {
     assertNotNull(defaultHeap);
   }
 
+  @Test
+  public void testReadingUnloadedInstanceFails() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    capture.load(null, null);
+    assertTrue(capture.isDoneLoading());
+    InstanceObject instance = capture.getInstances()
+      .filter(it -> "Class0".equals(it.getClassEntry().getClassName()))
+      .findFirst().orElse(null);
+
+    // The fields of the instance are read from the heap dump, which is released once unloaded.
+    capture.unload();
+    try {
+      instance.getFields();
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
@@ -249,6 +277,56 @@ public class HeapDumpCaptureObjectTest {
     Truth.assertThat(capture.getInstances().count()).isEqualTo(allInstanceCount);
   }
 
+  @Test
+  public void testNavigatorHeapDumpMatchesSnapshot() throws Exception {
+    Path hprof = resolveWorkspacePath("tools/adt/idea/profilers/testData/hprofs/displayingbitmaps_leakedActivity.hprof");
+    FileChannel fileChannel = FileChannel.open(hprof, StandardOpenOption.READ);
+    MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+    buffer.load();
+    myTransportService.addFile(Long.toString(0), ByteString.copyFrom(buffer));
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(0).setEndTime(1).build();
+
+    HeapDumpCaptureObject snapshotCapture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+    snapshotCapture.load(null, null);
+    myIdeProfilerServices.enableMemoryHeapDumpNavigator(true);
+    HeapDumpCaptureObject navigatorCapture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+    navigatorCapture.load(null, null);
+
+    assertTrue(navigatorCapture.isDoneLoading());
+    assertFalse(navigatorCapture.isError());
+    Truth.assertThat(navigatorCapture.getClassifierAttributes()).contains(CaptureObject.ClassifierAttribute.RETAINED_SIZE);
+    Truth.assertThat(navigatorCapture.getHeapSets().stream().map(HeapSet::getName).collect(Collectors.toList()))
+      .containsExactlyElementsIn(snapshotCapture.getHeapSets().stream().map(HeapSet::getName).collect(Collectors.toList()));
+    Truth.assertThat(navigatorCapture.getInstances().count()).isEqualTo(snapshotCapture.getInstances().count());
+    Truth.assertThat(navigatorCapture.getInstances().filter(InstanceObject::getIsRoot).allMatch(instance -> instance.getDepth() == 0))
+      .isTrue();
+
+    // Fields and referrers are read from the files of the heap dump, which are kept until it is unloaded.
+    InstanceObject activity = navigatorCapture.getInstances()
+      .filter(instance -> instance.getClassEntry().getSimpleClassName().equals("ImageDetailActivity"))
+      .findFirst().orElse(null);
+    assertNotNull(activity);
+    Truth.assertThat(activity.getRetainedSize()).isAtLeast((long)activity.getShallowSize());
+    Truth.assertThat(activity.getFields()).isNotEmpty();
+    Truth.assertThat(activity.getReferences()).isNotEmpty();
+    for (ReferenceObject reference : activity.getReferences()) {
+      Truth.assertThat(reference.getReferenceInstance().getDepth()).isAtLeast(activity.getDepth() - 1);
+    }
+    navigatorCapture.unload();
+    try {
+      activity.getFields();
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+  }
+
   private static void verifyInstance(@NotNull InstanceObject instance,
                                      @NotNull String valueText,
                                      int depth,
@@ -43,6 +43,7 @@ import com.android.tools.profilers.memory.adapters.classifiers.ClassifierSet;
 import com.android.tools.profilers.memory.adapters.classifiers.HeapSet;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -51,6 +52,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Rule;
@@ -771,6 +773,45 @@ public class LiveAllocationCaptureObjectTest {
     }
 
 
+    @Test
+    public void testNativeFramesSymbolizedInBatches() throws Exception {
+      List<List<Long>> batches = new ArrayList<>();
+      myIdeProfilerServices.setNativeFrameSymbolizer(new NativeFrameSymbolizer() {
+        @NotNull
+        @Override
+        public Memory.NativeCallStack.NativeFrame symbolize(String abi, Memory.NativeCallStack.NativeFrame unsymbolizedFrame) {
+          return FAKE_SYMBOLIZER.symbolize(abi, unsymbolizedFrame);
+        }
+
+        @NotNull
+        @Override
+        public List<Memory.NativeCallStack.NativeFrame> symbolize(String abi, List<Memory.NativeCallStack.NativeFrame> unsymbolizedFrames) {
+          batches.add(unsymbolizedFrames.stream().map(Memory.NativeCallStack.NativeFrame::getAddress).collect(Collectors.toList()));
+          return FAKE_SYMBOLIZER.symbolize(abi, unsymbolizedFrames);
+        }
+
+        @Override
+        public void stop() {
+        }
+      });
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myProfilerClient,
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage);
+      HeapSet heapSet = capture.getHeapSet(JNI_HEAP_ID);
+      heapSet.setClassGrouping(ClassGrouping.ARRANGE_BY_CALLSTACK);
+
+      Range loadRange = new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(4));
+      capture.load(loadRange, LOAD_JOINER);
+
+      // The allocation backtraces of the 4 references are looked up together rather than one at a time, and no frame is looked up twice.
+      assertThat(batches).isNotEmpty();
+      assertThat(batches.size()).isLessThan(4);
+      List<Long> addresses = batches.stream().flatMap(List::stream).collect(Collectors.toList());
+      assertThat(addresses).containsNoDuplicates();
+    }
+
     @Test
     public void testSelectionWithJaveMethodFilter() throws Exception {
       // Flag that gets set on the joiner thread to notify the main thread whether the contents in the ChangeNode are accurate.
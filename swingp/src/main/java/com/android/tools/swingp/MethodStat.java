@@ -59,6 +59,7 @@ public abstract class MethodStat {
    */
   public void endMethod() {
     myEndTime = System.nanoTime();
+    RenderEventRecorder.record(this);
     RenderStatsManager.pop(this);
   }
 
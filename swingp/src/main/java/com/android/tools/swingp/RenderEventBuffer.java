@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A fixed-size ring buffer of the events recorded on a single thread. Only that thread adds events, without any locking, and once the
+ * buffer is full the newest events overwrite the oldest ones. The events are read by {@link RenderEventRecorder#drain()}.
+ *
+ * Each event is a fixed-size record of {@link #RECORD_SIZE} longs: its start time, its end time, and the ids of the types of the
+ * {@link MethodStat} and of its owner, packed in a single long.
+ */
+final class RenderEventBuffer {
+  static final int RECORD_SIZE = 3;
+
+  @NotNull private final long[] myRecords;
+  private final int myCapacity;
+  /**
+   * Index of the next event to be written. It only increases, and is published by the writing thread once the event is complete.
+   */
+  @NotNull private final AtomicLong myWriteIndex = new AtomicLong();
+  /**
+   * Index after the event being written, set by the writing thread before it overwrites any slot, so that the reader knows which of the
+   * events it copied may have been overwritten meanwhile.
+   */
+  @NotNull private final AtomicLong myClaimIndex = new AtomicLong();
+  /**
+   * Index of the next event to be read, only accessed by the reader.
+   */
+  private long myReadIndex;
+
+  @NotNull private final WeakReference<Thread> myThread;
+  private final long myThreadId;
+  @NotNull private final String myThreadName;
+
+  /**
+   * @param capacity the number of events kept, must be a power of two.
+   */
+  RenderEventBuffer(@NotNull Thread thread, int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    myRecords = new long[capacity * RECORD_SIZE];
+    myCapacity = capacity;
+    myThread = new WeakReference<>(thread);
+    myThreadId = thread.getId();
+    myThreadName = thread.getName();
+  }
+
+  @Nullable
+  Thread getThread() {
+    return myThread.get();
+  }
+
+  /**
+   * Adds an event, which must only be done by the thread of this buffer.
+   */
+  void add(long startTime, long endTime, int statTypeId, int ownerTypeId) {
+    long index = myWriteIndex.getPlain();
+    myClaimIndex.setPlain(index + 1);
+    VarHandle.storeStoreFence();
+    int offset = getOffset(index);
+    myRecords[offset] = startTime;
+    myRecords[offset + 1] = endTime;
+    myRecords[offset + 2] = ((long)statTypeId << 32) | (ownerTypeId & 0xFFFFFFFFL);
+    myWriteIndex.setRelease(index + 1);
+  }
+
+  /**
+   * Returns the events added since the last call. The events overwritten before they could be read are counted as dropped.
+   * This must not be called concurrently with itself.
+   */
+  @NotNull
+  RenderEventRecorder.ThreadEvents read() {
+    long end = myWriteIndex.getAcquire();
+    long start = Math.max(myReadIndex, end - myCapacity);
+    long[] records = new long[(int)(end - start) * RECORD_SIZE];
+    for (long index = start; index < end; index++) {
+      System.arraycopy(myRecords, getOffset(index), records, (int)(index - start) * RECORD_SIZE, RECORD_SIZE);
+    }
+
+    // The events may have been overwritten while they were copied. Every event up to the claim index has replaced the one a capacity
+    // before it, so only the events after those are known to be intact.
+    VarHandle.acquireFence();
+    long firstIntact = Math.min(end, Math.max(start, myClaimIndex.getAcquire() - myCapacity));
+    long droppedCount = firstIntact - myReadIndex;
+    myReadIndex = end;
+
+    if (firstIntact > start) {
+      long[] intactRecords = new long[(int)(end - firstIntact) * RECORD_SIZE];
+      System.arraycopy(records, (int)(firstIntact - start) * RECORD_SIZE, intactRecords, 0, intactRecords.length);
+      records = intactRecords;
+    }
+    return new RenderEventRecorder.ThreadEvents(myThreadId, myThreadName, records, droppedCount);
+  }
+
+  private int getOffset(long index) {
+    return (int)(index & (myCapacity - 1)) * RECORD_SIZE;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import com.android.tools.swingp.RenderEventRecorder.ThreadEvents;
+import com.google.gson.stream.JsonWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the events drained from {@link RenderEventRecorder}, either in the Chrome trace event format, which can be opened in
+ * chrome://tracing or Perfetto, or in a compact binary format.
+ */
+public final class RenderEventExporter {
+  /**
+   * "SWPR", at the start of the binary format.
+   */
+  public static final int BINARY_MAGIC = 0x53575052;
+  public static final int BINARY_VERSION = 1;
+
+  private static final String CATEGORY = "swingp";
+
+  private RenderEventExporter() {
+  }
+
+  /**
+   * Writes the given events as a Chrome trace, one complete event per {@link MethodStat} named after its type, and the name of each
+   * thread as metadata along with the number of its events which were dropped.
+   */
+  public static void writeChromeTrace(@NotNull List<ThreadEvents> threadEvents, @NotNull Writer writer) throws IOException {
+    long pid = ProcessHandle.current().pid();
+    JsonWriter json = new JsonWriter(writer);
+    json.beginObject();
+    json.name("traceEvents").beginArray();
+    for (ThreadEvents events : threadEvents) {
+      json.beginObject();
+      json.name("name").value("thread_name");
+      json.name("ph").value("M");
+      json.name("pid").value(pid);
+      json.name("tid").value(events.getThreadId());
+      json.name("args").beginObject();
+      json.name("name").value(events.getThreadName());
+      json.name("droppedEvents").value(events.getDroppedCount());
+      json.endObject();
+      json.endObject();
+
+      for (int i = 0; i < events.getEventCount(); i++) {
+        long startTime = events.getStartTime(i);
+        json.beginObject();
+        json.name("name").value(getSimpleName(RenderEventRecorder.getTypeName(events.getStatTypeId(i))));
+        json.name("cat").value(CATEGORY);
+        json.name("ph").value("X");
+        json.name("ts").value(toMicros(startTime));
+        json.name("dur").value(toMicros(events.getEndTime(i) - startTime));
+        json.name("pid").value(pid);
+        json.name("tid").value(events.getThreadId());
+        json.name("args").beginObject();
+        json.name("owner").value(RenderEventRecorder.getTypeName(events.getOwnerTypeId(i)));
+        json.endObject();
+        json.endObject();
+      }
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  /**
+   * Writes the given events in the binary format: the magic number and version, the table of type names indexed by their ids, and then
+   * for each thread its id, name, dropped count and events. Each event takes 24 bytes, its start and end times in nanoseconds and the ids
+   * of the types of its {@link MethodStat} and owner.
+   */
+  public static void writeBinary(@NotNull List<ThreadEvents> threadEvents, @NotNull OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(BINARY_MAGIC);
+    output.writeInt(BINARY_VERSION);
+
+    List<String> typeNames = RenderEventRecorder.getTypeNames();
+    output.writeInt(typeNames.size());
+    for (String typeName : typeNames) {
+      output.writeUTF(typeName);
+    }
+
+    output.writeInt(threadEvents.size());
+    for (ThreadEvents events : threadEvents) {
+      output.writeLong(events.getThreadId());
+      output.writeUTF(events.getThreadName());
+      output.writeLong(events.getDroppedCount());
+      output.writeInt(events.getEventCount());
+      for (int i = 0; i < events.getEventCount(); i++) {
+        output.writeLong(events.getStartTime(i));
+        output.writeLong(events.getEndTime(i));
+        output.writeInt(events.getStatTypeId(i));
+        output.writeInt(events.getOwnerTypeId(i));
+      }
+    }
+    output.flush();
+  }
+
+  private static double toMicros(long nanos) {
+    return nanos / (double)TimeUnit.MICROSECONDS.toNanos(1);
+  }
+
+  @NotNull
+  private static String getSimpleName(@NotNull String typeName) {
+    return typeName.substring(typeName.lastIndexOf('.') + 1);
+  }
+}
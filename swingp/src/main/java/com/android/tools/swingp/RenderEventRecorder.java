@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A low overhead alternative to {@link RenderStatsManager}, meant to be left on while measuring. Instead of building call trees, each
+ * completed {@link MethodStat} is written as a fixed-size record to a ring buffer owned by its thread, see {@link RenderEventBuffer}.
+ * Recording takes no lock and allocates nothing once the thread has its buffer. The events are periodically collected with
+ * {@link #drain()} and written out with {@link RenderEventExporter}.
+ */
+public final class RenderEventRecorder {
+  /**
+   * Number of events each thread keeps until they are drained.
+   */
+  private static final int BUFFER_CAPACITY = 1 << 14;
+  private static final int UNKNOWN_TYPE_ID = 0;
+
+  private static final Queue<RenderEventBuffer> ourBuffers = new ConcurrentLinkedQueue<>();
+  private static final ThreadLocal<RenderEventBuffer> ourBuffer = new ThreadLocal<>() {
+    @Override
+    protected RenderEventBuffer initialValue() {
+      RenderEventBuffer buffer = new RenderEventBuffer(Thread.currentThread(), BUFFER_CAPACITY);
+      ourBuffers.add(buffer);
+      return buffer;
+    }
+  };
+
+  /**
+   * Names of the recorded types, the index of each being its id.
+   */
+  private static final List<String> ourTypeNames = new CopyOnWriteArrayList<>(new String[]{"<unknown>"});
+  private static final ClassValue<Integer> ourTypeIds = new ClassValue<>() {
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      synchronized (ourTypeNames) {
+        ourTypeNames.add(type.getName());
+        return ourTypeNames.size() - 1;
+      }
+    }
+  };
+
+  private static volatile boolean ourIsEnabled = false;
+
+  /**
+   * Enables/disables the recording of events. This is independent of {@link RenderStatsManager#setIsEnabled(boolean)}.
+   */
+  public static void setIsEnabled(boolean isEnabled) {
+    ourIsEnabled = isEnabled;
+  }
+
+  public static boolean isEnabled() {
+    return ourIsEnabled;
+  }
+
+  static void record(@NotNull MethodStat methodStat) {
+    if (!ourIsEnabled) {
+      return;
+    }
+    Object owner = methodStat.myOwner.get();
+    int ownerTypeId = owner != null ? ourTypeIds.get(owner.getClass()) : UNKNOWN_TYPE_ID;
+    ourBuffer.get().add(methodStat.getStartTime(), methodStat.getEndTime(), ourTypeIds.get(methodStat.getClass()), ownerTypeId);
+  }
+
+  /**
+   * @return the events recorded since the last call, for each thread which recorded any or dropped some.
+   */
+  @NotNull
+  public static synchronized List<ThreadEvents> drain() {
+    List<ThreadEvents> result = new ArrayList<>();
+    for (Iterator<RenderEventBuffer> iterator = ourBuffers.iterator(); iterator.hasNext(); ) {
+      RenderEventBuffer buffer = iterator.next();
+      // Check if the thread is gone before reading, so that no event is added after the last read.
+      Thread thread = buffer.getThread();
+      boolean isStale = thread == null || !thread.isAlive();
+      ThreadEvents events = buffer.read();
+      if (events.getEventCount() > 0 || events.getDroppedCount() > 0) {
+        result.add(events);
+      }
+      if (isStale) {
+        iterator.remove();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the name of the type with the given id, as used by {@link ThreadEvents}.
+   */
+  @NotNull
+  public static String getTypeName(int typeId) {
+    return typeId >= 0 && typeId < ourTypeNames.size() ? ourTypeNames.get(typeId) : ourTypeNames.get(UNKNOWN_TYPE_ID);
+  }
+
+  /**
+   * @return the names of all the types recorded so far, the index of each being its id.
+   */
+  @NotNull
+  public static List<String> getTypeNames() {
+    return new ArrayList<>(ourTypeNames);
+  }
+
+  /**
+   * The events read from the buffer of a thread, in the order they completed.
+   */
+  public static final class ThreadEvents {
+    private final long myThreadId;
+    @NotNull private final String myThreadName;
+    @NotNull private final long[] myRecords;
+    private final long myDroppedCount;
+
+    ThreadEvents(long threadId, @NotNull String threadName, @NotNull long[] records, long droppedCount) {
+      myThreadId = threadId;
+      myThreadName = threadName;
+      myRecords = records;
+      myDroppedCount = droppedCount;
+    }
+
+    public long getThreadId() {
+      return myThreadId;
+    }
+
+    @NotNull
+    public String getThreadName() {
+      return myThreadName;
+    }
+
+    public int getEventCount() {
+      return myRecords.length / RenderEventBuffer.RECORD_SIZE;
+    }
+
+    /**
+     * @return the number of events which were overwritten before they could be read.
+     */
+    public long getDroppedCount() {
+      return myDroppedCount;
+    }
+
+    public long getStartTime(int event) {
+      return myRecords[event * RenderEventBuffer.RECORD_SIZE];
+    }
+
+    public long getEndTime(int event) {
+      return myRecords[event * RenderEventBuffer.RECORD_SIZE + 1];
+    }
+
+    /**
+     * @return the id of the type of the {@link MethodStat} of the event, see {@link #getTypeName(int)}.
+     */
+    public int getStatTypeId(int event) {
+      return (int)(myRecords[event * RenderEventBuffer.RECORD_SIZE + 2] >>> 32);
+    }
+
+    /**
+     * @return the id of the type of the object which owned the {@link MethodStat} of the event, see {@link #getTypeName(int)}.
+     */
+    public int getOwnerTypeId(int event) {
+      return (int)myRecords[event * RenderEventBuffer.RECORD_SIZE + 2];
+    }
+  }
+}
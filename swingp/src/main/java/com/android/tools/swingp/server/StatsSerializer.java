@@ -15,6 +15,8 @@
  */
 package com.android.tools.swingp.server;
 
+import com.android.tools.swingp.RenderEventExporter;
+import com.android.tools.swingp.RenderEventRecorder;
 import com.android.tools.swingp.RenderStatsManager;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -24,6 +26,7 @@ import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -37,6 +40,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
 import org.apache.http.protocol.HttpContext;
@@ -47,6 +51,10 @@ import org.jetbrains.annotations.NotNull;
  * Stats poller and serializer.
  * This class effectively moves blocking queue out of the stats generators such that the generators can run as fast as possible.
  * There is also a busy-wait polling mechanism to allow for streaming reads from a web service.
+ * <p>
+ * When started with {@link #RECORD_EVENTS_PROPERTY} set to true, the paint events are recorded by {@link RenderEventRecorder} instead of
+ * {@link RenderStatsManager}, and each request to {@link #CHROME_TRACE_PATH} or {@link #BINARY_EVENTS_PATH} drains the events recorded
+ * since the previous one and returns them in the corresponding {@link RenderEventExporter} format. The stats aren't polled in that mode.
  */
 public class StatsSerializer {
   private static final String POLLING_THREAD_NAME = "Stats Monitor Collector";
@@ -57,9 +65,17 @@ public class StatsSerializer {
   private static final int SWING_MONITOR_SERVER_PORT = 61642;
   private static final int MAX_BATCH_SIZE = 10;
 
+  /**
+   * System property which, when true, makes {@link #start()} record paint events with {@link RenderEventRecorder}.
+   */
+  public static final String RECORD_EVENTS_PROPERTY = "swingp.record.events";
+  public static final String CHROME_TRACE_PATH = "/events/trace.json";
+  public static final String BINARY_EVENTS_PATH = "/events/events.bin";
+
   @NotNull private final LinkedBlockingQueue<byte[]> mySerializedStats;
   @NotNull private final PollingSerializer myPollingSerializer;
   @NotNull private final HttpServer myHttpServer;
+  private boolean myIsPolling;
 
   public StatsSerializer() {
     mySerializedStats = new LinkedBlockingQueue<>();
@@ -69,6 +85,22 @@ public class StatsSerializer {
       .bootstrap()
       .setListenerPort(SWING_MONITOR_SERVER_PORT)
       .setSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
+      .registerHandler(CHROME_TRACE_PATH, new HttpRequestHandler() {
+        @Override
+        public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+          response.setStatusCode(HttpStatus.SC_OK);
+          response.setHeader("Access-Control-Allow-Origin", "*");
+          response.setEntity(new ByteArrayEntity(getRecordedEvents(false), ContentType.APPLICATION_JSON));
+        }
+      })
+      .registerHandler(BINARY_EVENTS_PATH, new HttpRequestHandler() {
+        @Override
+        public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+          response.setStatusCode(HttpStatus.SC_OK);
+          response.setHeader("Access-Control-Allow-Origin", "*");
+          response.setEntity(new ByteArrayEntity(getRecordedEvents(true), ContentType.APPLICATION_OCTET_STREAM));
+        }
+      })
       .registerHandler("*", new HttpRequestHandler() {
         @Override
         public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
@@ -81,11 +113,26 @@ public class StatsSerializer {
   }
 
   /**
+   * Starts the serializer, recording the paint events as well if {@link #RECORD_EVENTS_PROPERTY} is set to true.
+   *
    * @return true if the serializer started successfully, false otherwise.
    */
   public boolean start() {
-    Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
-    pollingThread.start();
+    return start(Boolean.getBoolean(RECORD_EVENTS_PROPERTY));
+  }
+
+  /**
+   * @param recordEvents whether the paint events should be recorded by {@link RenderEventRecorder} and served by the
+   *                     {@link #CHROME_TRACE_PATH} and {@link #BINARY_EVENTS_PATH} endpoints, rather than collected by
+   *                     {@link RenderStatsManager} and polled
+   * @return true if the serializer started successfully, false otherwise.
+   */
+  public boolean start(boolean recordEvents) {
+    if (!recordEvents) {
+      Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
+      pollingThread.start();
+      myIsPolling = true;
+    }
 
     try {
       myHttpServer.start();
@@ -94,13 +141,22 @@ public class StatsSerializer {
       return false;
     }
 
-    RenderStatsManager.setIsEnabled(true);
+    if (recordEvents) {
+      RenderEventRecorder.setIsEnabled(true);
+    }
+    else {
+      RenderStatsManager.setIsEnabled(true);
+    }
     return true;
   }
 
   public void stop() throws InterruptedException {
     RenderStatsManager.setIsEnabled(false);
-    myPollingSerializer.stop();
+    RenderEventRecorder.setIsEnabled(false);
+    if (myIsPolling) {
+      myPollingSerializer.stop();
+      myIsPolling = false;
+    }
     myHttpServer.shutdown(33, TimeUnit.MILLISECONDS);
   }
 
@@ -156,6 +212,29 @@ public class StatsSerializer {
     }
   }
 
+  /**
+   * @return the events recorded since the last call, as a Chrome trace or in the binary format of {@link RenderEventExporter}.
+   */
+  @NotNull
+  static byte[] getRecordedEvents(boolean binary) {
+    List<RenderEventRecorder.ThreadEvents> events = RenderEventRecorder.drain();
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    try {
+      if (binary) {
+        RenderEventExporter.writeBinary(events, stream);
+      }
+      else {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        RenderEventExporter.writeChromeTrace(events, writer);
+        writer.flush();
+      }
+    }
+    catch (IOException ignored) {
+      // Writing to memory doesn't fail.
+    }
+    return stream.toByteArray();
+  }
+
   private static class PollingSerializer implements Runnable {
     @NotNull private final CountDownLatch myStopLatch = new CountDownLatch(1);
     @NotNull private final CountDownLatch myStoppedLatch = new CountDownLatch(1);
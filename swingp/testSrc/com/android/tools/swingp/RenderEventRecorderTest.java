@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.swingp.RenderEventRecorder.ThreadEvents;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderEventRecorderTest {
+  @Before
+  public void setUp() {
+    RenderEventRecorder.drain();
+    RenderEventRecorder.setIsEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    RenderEventRecorder.setIsEnabled(false);
+    RenderEventRecorder.drain();
+  }
+
+  @Test
+  public void recordsNothingWhenDisabled() {
+    RenderEventRecorder.setIsEnabled(false);
+    new TestMethodStat(this).endMethod();
+    assertThat(RenderEventRecorder.drain()).isEmpty();
+  }
+
+  @Test
+  public void recordsEventsPerThread() throws InterruptedException {
+    new TestMethodStat(this).endMethod();
+    Thread thread = new Thread(() -> {
+      new TestMethodStat(this).endMethod();
+      new TestMethodStat(this).endMethod();
+    }, "Other");
+    thread.start();
+    thread.join();
+
+    List<ThreadEvents> threadEvents = RenderEventRecorder.drain();
+    assertThat(threadEvents).hasSize(2);
+    ThreadEvents current = findEvents(threadEvents, Thread.currentThread().getId());
+    assertThat(current.getEventCount()).isEqualTo(1);
+    assertThat(current.getDroppedCount()).isEqualTo(0);
+    assertThat(RenderEventRecorder.getTypeName(current.getStatTypeId(0))).isEqualTo(TestMethodStat.class.getName());
+    assertThat(RenderEventRecorder.getTypeName(current.getOwnerTypeId(0))).isEqualTo(RenderEventRecorderTest.class.getName());
+    assertThat(current.getEndTime(0)).isAtLeast(current.getStartTime(0));
+
+    ThreadEvents other = findEvents(threadEvents, thread.getId());
+    assertThat(other.getThreadName()).isEqualTo("Other");
+    assertThat(other.getEventCount()).isEqualTo(2);
+
+    // Events are only returned once, and the buffer of the finished thread is released.
+    assertThat(RenderEventRecorder.drain()).isEmpty();
+  }
+
+  @Test
+  public void overwritesOldestEventsWhenFull() {
+    RenderEventBuffer buffer = new RenderEventBuffer(Thread.currentThread(), 4);
+    for (int i = 0; i < 6; i++) {
+      buffer.add(i, i + 1, 1, 2);
+    }
+
+    ThreadEvents events = buffer.read();
+    assertThat(events.getDroppedCount()).isEqualTo(2);
+    assertThat(events.getEventCount()).isEqualTo(4);
+    for (int i = 0; i < 4; i++) {
+      assertThat(events.getStartTime(i)).isEqualTo(i + 2);
+      assertThat(events.getEndTime(i)).isEqualTo(i + 3);
+      assertThat(events.getStatTypeId(i)).isEqualTo(1);
+      assertThat(events.getOwnerTypeId(i)).isEqualTo(2);
+    }
+
+    buffer.add(10, 11, 1, 2);
+    events = buffer.read();
+    assertThat(events.getDroppedCount()).isEqualTo(0);
+    assertThat(events.getEventCount()).isEqualTo(1);
+    assertThat(events.getStartTime(0)).isEqualTo(10);
+  }
+
+  @Test
+  public void writesChromeTrace() throws IOException {
+    new TestMethodStat(this).endMethod();
+    StringWriter writer = new StringWriter();
+    RenderEventExporter.writeChromeTrace(RenderEventRecorder.drain(), writer);
+
+    JsonArray traceEvents = new JsonParser().parse(writer.toString()).getAsJsonObject().getAsJsonArray("traceEvents");
+    List<String> phases = new ArrayList<>();
+    for (JsonElement element : traceEvents) {
+      phases.add(element.getAsJsonObject().get("ph").getAsString());
+    }
+    assertThat(phases).containsExactly("M", "X").inOrder();
+
+    JsonObject metadata = traceEvents.get(0).getAsJsonObject();
+    assertThat(metadata.getAsJsonObject("args").get("name").getAsString()).isEqualTo(Thread.currentThread().getName());
+    JsonObject event = traceEvents.get(1).getAsJsonObject();
+    assertThat(event.get("name").getAsString()).isEqualTo("RenderEventRecorderTest$TestMethodStat");
+    assertThat(event.get("tid").getAsLong()).isEqualTo(Thread.currentThread().getId());
+    assertThat(event.get("dur").getAsDouble()).isAtLeast(0.0);
+    assertThat(event.getAsJsonObject("args").get("owner").getAsString()).isEqualTo(RenderEventRecorderTest.class.getName());
+  }
+
+  @Test
+  public void writesBinary() throws IOException {
+    new TestMethodStat(this).endMethod();
+    List<ThreadEvents> threadEvents = RenderEventRecorder.drain();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    RenderEventExporter.writeBinary(threadEvents, output);
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    assertThat(input.readInt()).isEqualTo(RenderEventExporter.BINARY_MAGIC);
+    assertThat(input.readInt()).isEqualTo(RenderEventExporter.BINARY_VERSION);
+    List<String> typeNames = new ArrayList<>();
+    int typeCount = input.readInt();
+    for (int i = 0; i < typeCount; i++) {
+      typeNames.add(input.readUTF());
+    }
+    assertThat(typeNames).isEqualTo(RenderEventRecorder.getTypeNames());
+    assertThat(input.readInt()).isEqualTo(1);
+    assertThat(input.readLong()).isEqualTo(Thread.currentThread().getId());
+    assertThat(input.readUTF()).isEqualTo(Thread.currentThread().getName());
+    assertThat(input.readLong()).isEqualTo(0);
+    assertThat(input.readInt()).isEqualTo(1);
+    ThreadEvents events = threadEvents.get(0);
+    assertThat(input.readLong()).isEqualTo(events.getStartTime(0));
+    assertThat(input.readLong()).isEqualTo(events.getEndTime(0));
+    assertThat(typeNames.get(input.readInt())).isEqualTo(TestMethodStat.class.getName());
+    assertThat(typeNames.get(input.readInt())).isEqualTo(RenderEventRecorderTest.class.getName());
+    assertThat(input.available()).isEqualTo(0);
+  }
+
+  @NotNull
+  private static ThreadEvents findEvents(@NotNull List<ThreadEvents> threadEvents, long threadId) {
+    return threadEvents.stream().filter(events -> events.getThreadId() == threadId).findFirst().orElseThrow(AssertionError::new);
+  }
+
+  private static final class TestMethodStat extends MethodStat {
+    public TestMethodStat(@NotNull Object owner) {
+      super(owner);
+    }
+  }
+}
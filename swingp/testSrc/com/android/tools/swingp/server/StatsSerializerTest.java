@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp.server;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.swingp.MethodStat;
+import com.android.tools.swingp.RenderEventExporter;
+import com.android.tools.swingp.RenderEventRecorder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatsSerializerTest {
+  @Before
+  public void setUp() {
+    RenderEventRecorder.drain();
+    RenderEventRecorder.setIsEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    RenderEventRecorder.setIsEnabled(false);
+    RenderEventRecorder.drain();
+  }
+
+  @Test
+  public void servesRecordedEventsAsChromeTrace() {
+    new TestMethodStat(this).endMethod();
+
+    String trace = new String(StatsSerializer.getRecordedEvents(false), StandardCharsets.UTF_8);
+    JsonArray traceEvents = new JsonParser().parse(trace).getAsJsonObject().getAsJsonArray("traceEvents");
+    boolean hasEvent = false;
+    for (int i = 0; i < traceEvents.size(); i++) {
+      JsonObject event = traceEvents.get(i).getAsJsonObject();
+      hasEvent |= event.get("ph").getAsString().equals("X") && event.get("name").getAsString().endsWith("TestMethodStat");
+    }
+    assertThat(hasEvent).isTrue();
+  }
+
+  @Test
+  public void servesEachEventOnce() throws IOException {
+    new TestMethodStat(this).endMethod();
+    StatsSerializer.getRecordedEvents(false);
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(StatsSerializer.getRecordedEvents(true)));
+    assertThat(input.readInt()).isEqualTo(RenderEventExporter.BINARY_MAGIC);
+    assertThat(input.readInt()).isEqualTo(RenderEventExporter.BINARY_VERSION);
+    int typeCount = input.readInt();
+    for (int i = 0; i < typeCount; i++) {
+      input.readUTF();
+    }
+    // The event was drained by the first request.
+    assertThat(input.readInt()).isEqualTo(0);
+  }
+
+  private static final class TestMethodStat extends MethodStat {
+    private TestMethodStat(@NotNull Object owner) {
+      super(owner);
+    }
+  }
+}
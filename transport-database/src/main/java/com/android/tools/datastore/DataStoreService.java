@@ -59,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
@@ -77,6 +78,10 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
    */
   private static final long REPORT_INITIAL_DELAY = TimeUnit.MINUTES.toMillis(15);
   private static final long REPORT_PERIOD = TimeUnit.HOURS.toMillis(1);
+  /**
+   * Longest time a write queued by a table with write-behind batching stays in memory, unless the table is read or its queue fills up.
+   */
+  private static final long BATCHED_WRITES_FLUSH_PERIOD = TimeUnit.SECONDS.toMillis(1);
   /**
    * Stream 0 is reserved for datastore metadata. Events stored in this stream are generated by the datastore
    * and can be queried via the events pipeline. Example data pushed into this stream are stream connected / disconnected events.
@@ -132,6 +137,12 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
 
   private final Timer myReportTimer;
 
+  /**
+   * Tables with write-behind batching enabled, see {@link #enableBatchedWrites(DataStoreTable)}.
+   */
+  private final List<DataStoreTable<?>> myBatchedTables = new CopyOnWriteArrayList<>();
+  private final Timer myFlushTimer;
+
   /**
    * @param fetchExecutor A callback which is given a {@link Runnable} for each datastore service.
    *                      The runnable, when run, begins polling the target service. You probably
@@ -169,6 +180,13 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
 
     myReportTimer = new Timer("DataStoreReportTimer");
     myReportTimer.schedule(new ReportTimerTask(), REPORT_INITIAL_DELAY, REPORT_PERIOD);
+    myFlushTimer = new Timer("DataStoreFlushTimer");
+    myFlushTimer.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        myBatchedTables.forEach(DataStoreTable::flushPendingWrites);
+      }
+    }, BATCHED_WRITES_FLUSH_PERIOD, BATCHED_WRITES_FLUSH_PERIOD);
     DataStoreTable.addDataStoreErrorCallback(this);
   }
 
@@ -197,6 +215,7 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
     UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
+    enableBatchedWrites(unifiedTable);
     myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get());
     registerService(myTransportService);
     registerService(new ProfilerService(this, myLogService));
@@ -207,6 +226,17 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
     registerService(new EnergyService(this, myFetchExecutor, myLogService));
   }
 
+  /**
+   * Enables write-behind batching on the given table if {@link StudioFlags#PROFILER_DATASTORE_BATCHED_WRITES} is on. The writes it queues
+   * are then flushed at least every {@link #BATCHED_WRITES_FLUSH_PERIOD} ms, and before the databases are closed by {@link #shutdown()}.
+   */
+  public void enableBatchedWrites(@NotNull DataStoreTable<?> table) {
+    if (StudioFlags.PROFILER_DATASTORE_BATCHED_WRITES.get()) {
+      table.enableBatchedWrites(DataStoreTable.DEFAULT_MAX_PENDING_WRITES);
+      myBatchedTables.add(table);
+    }
+  }
+
   @VisibleForTesting
   @NotNull
   public DataStoreDatabase createDatabase(@NotNull String dbPath,
@@ -268,11 +298,13 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
 
   public void shutdown() {
     myReportTimer.cancel();
+    myFlushTimer.cancel();
     myServer.shutdownNow();
     for (DataStoreClient client : myConnectedClients.values()) {
       client.getChannel().shutdownNow();
     }
     myConnectedClients.clear();
+    myBatchedTables.forEach(DataStoreTable::flushPendingWrites);
     myDatabases.forEach((name, db) -> db.disconnect());
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
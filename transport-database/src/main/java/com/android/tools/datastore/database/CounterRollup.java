@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Incrementally downsamples a series of counter samples into tiers of fixed size time buckets as the samples are ingested, so zoomed-out
+ * range queries don't have to read every raw sample in range.
+ * <p>
+ * Each bucket keeps whole samples rather than aggregated values so a tier can be returned through the same protos as the raw data:
+ * {@link Mode#MIN_MAX} keeps the samples with the smallest and largest value in the bucket, which preserves peaks of gauges such as memory
+ * usage, and {@link Mode#LAST} keeps the last sample of the bucket, which for cumulative counters such as CPU times yields the exact
+ * average over the bucket.
+ * <p>
+ * Buckets are handed to the owning table to be persisted once a later sample closes them, or once their session ends with
+ * {@link #close(long)}. The bucket still being filled is kept in memory and merged into query results by {@link #getSamples}.
+ */
+final class CounterRollup {
+  static final long[] TIER_BUCKET_NS = {TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(60)};
+
+  /**
+   * Tier index meaning the raw samples should be queried.
+   */
+  static final int RAW_TIER = -1;
+
+  /**
+   * Number of samples a tier needs to provide over the queried range for it to be used. This is enough for one sample per pixel column
+   * across the widest timeline we expect to render.
+   */
+  @VisibleForTesting
+  static final int MIN_SAMPLES_PER_QUERY = 2048;
+
+  /**
+   * Columns of the rollup table described by {@link #getTableColumns()}, in the order {@link #readBucket(ResultSet)} expects them.
+   */
+  static final String SELECT_COLUMNS = "MinTimestamp, MinData, MaxTimestamp, MaxData, LastTimestamp, LastData";
+
+  enum Mode {
+    MIN_MAX,
+    LAST
+  }
+
+  @NotNull private final Mode myMode;
+  // Session id -> open bucket of each tier.
+  private final Map<Long, Bucket[]> myOpenBuckets = new HashMap<>();
+
+  CounterRollup(@NotNull Mode mode) {
+    myMode = mode;
+  }
+
+  /**
+   * @return the coarsest tier which still provides at least {@link #MIN_SAMPLES_PER_QUERY} samples over the range, or {@link #RAW_TIER}.
+   * Unbounded queries, such as the ones asking for all the data of a session, always get the raw samples.
+   */
+  static int selectTier(long startTimeNs, long endTimeNs) {
+    if (startTimeNs <= 0 || endTimeNs == Long.MAX_VALUE) {
+      return RAW_TIER;
+    }
+    long durationNs = endTimeNs - startTimeNs;
+    for (int tier = TIER_BUCKET_NS.length - 1; tier >= 0; tier--) {
+      if (durationNs / TIER_BUCKET_NS[tier] >= MIN_SAMPLES_PER_QUERY) {
+        return tier;
+      }
+    }
+    return RAW_TIER;
+  }
+
+  /**
+   * @return the columns of a rollup table, to be passed to {@link DataStoreTable#createTable(String, String...)}.
+   */
+  @NotNull
+  static String[] getTableColumns() {
+    return new String[]{"Session INTEGER NOT NULL", "Tier INTEGER NOT NULL", "BucketStart INTEGER NOT NULL",
+      "MinTimestamp INTEGER", "MinData BLOB", "MaxTimestamp INTEGER", "MaxData BLOB", "LastTimestamp INTEGER", "LastData BLOB",
+      "PRIMARY KEY(Session, Tier, BucketStart)"};
+  }
+
+  /**
+   * Adds a sample to the open bucket of every tier.
+   *
+   * @return the buckets closed by this sample. They will not change anymore and should be persisted with {@link Bucket#toParams()}.
+   */
+  @NotNull
+  synchronized List<Bucket> add(long sessionId, long timestamp, long value, @NotNull byte[] data) {
+    Bucket[] openBuckets = myOpenBuckets.computeIfAbsent(sessionId, id -> new Bucket[TIER_BUCKET_NS.length]);
+    List<Bucket> closedBuckets = Collections.emptyList();
+    for (int tier = 0; tier < TIER_BUCKET_NS.length; tier++) {
+      long bucketStart = timestamp - Math.floorMod(timestamp, TIER_BUCKET_NS[tier]);
+      Bucket bucket = openBuckets[tier];
+      if (bucket != null && bucketStart < bucket.myStart) {
+        // Samples arriving after their bucket was closed are only kept in the raw data.
+        continue;
+      }
+      if (bucket == null || bucketStart > bucket.myStart) {
+        if (bucket != null) {
+          if (closedBuckets.isEmpty()) {
+            closedBuckets = new ArrayList<>();
+          }
+          closedBuckets.add(bucket);
+        }
+        bucket = new Bucket(sessionId, tier, bucketStart);
+        openBuckets[tier] = bucket;
+      }
+      bucket.add(myMode, timestamp, value, data);
+    }
+    return closedBuckets;
+  }
+
+  /**
+   * Closes the open buckets of a session whose samples won't be added anymore, and stops keeping them in memory.
+   *
+   * @return the buckets closed, to be persisted with {@link Bucket#toParams()}.
+   */
+  @NotNull
+  synchronized List<Bucket> close(long sessionId) {
+    Bucket[] openBuckets = myOpenBuckets.remove(sessionId);
+    if (openBuckets == null) {
+      return Collections.emptyList();
+    }
+    List<Bucket> closedBuckets = new ArrayList<>();
+    for (Bucket bucket : openBuckets) {
+      if (bucket != null) {
+        closedBuckets.add(bucket);
+      }
+    }
+    return closedBuckets;
+  }
+
+  /**
+   * Combines the persisted buckets of a tier with the bucket of that tier still in memory.
+   *
+   * @param persistedBuckets buckets read back from the rollup table with {@link #readBucket(ResultSet)}, in ascending order.
+   * @return the data of the samples representing the tier in the range (startTime, endTime], in ascending timestamp order.
+   */
+  @NotNull
+  synchronized List<byte[]> getSamples(long sessionId, int tier, long startTime, long endTime, @NotNull List<Bucket> persistedBuckets) {
+    List<byte[]> samples = new ArrayList<>();
+    long lastTimestamp = Long.MIN_VALUE;
+    for (Bucket bucket : persistedBuckets) {
+      lastTimestamp = bucket.collectSamples(startTime, endTime, lastTimestamp, samples);
+    }
+    Bucket[] openBuckets = myOpenBuckets.get(sessionId);
+    if (openBuckets != null && openBuckets[tier] != null) {
+      openBuckets[tier].collectSamples(startTime, endTime, lastTimestamp, samples);
+    }
+    return samples;
+  }
+
+  /**
+   * @return the (exclusive) lower bound of BucketStart for the buckets of the tier which can hold samples after startTime.
+   */
+  static long getBucketQueryStart(int tier, long startTime) {
+    return startTime - TIER_BUCKET_NS[tier];
+  }
+
+  /**
+   * Reads a bucket selected with {@link #SELECT_COLUMNS}.
+   */
+  @NotNull
+  static Bucket readBucket(@NotNull ResultSet resultSet) throws SQLException {
+    Bucket bucket = new Bucket(0, 0, 0);
+    bucket.myMinTimestamp = resultSet.getLong(1);
+    bucket.myMinData = resultSet.getBytes(2);
+    bucket.myMaxTimestamp = resultSet.getLong(3);
+    bucket.myMaxData = resultSet.getBytes(4);
+    bucket.myLastTimestamp = resultSet.getLong(5);
+    bucket.myLastData = resultSet.getBytes(6);
+    return bucket;
+  }
+
+  static final class Bucket {
+    private final long mySessionId;
+    private final int myTier;
+    private final long myStart;
+    private long myMinTimestamp;
+    private long myMinValue = Long.MAX_VALUE;
+    @Nullable private byte[] myMinData;
+    private long myMaxTimestamp;
+    private long myMaxValue = Long.MIN_VALUE;
+    @Nullable private byte[] myMaxData;
+    private long myLastTimestamp = Long.MIN_VALUE;
+    @Nullable private byte[] myLastData;
+
+    private Bucket(long sessionId, int tier, long start) {
+      mySessionId = sessionId;
+      myTier = tier;
+      myStart = start;
+    }
+
+    private void add(@NotNull Mode mode, long timestamp, long value, @NotNull byte[] data) {
+      switch (mode) {
+        case MIN_MAX:
+          if (value < myMinValue) {
+            myMinValue = value;
+            myMinTimestamp = timestamp;
+            myMinData = data;
+          }
+          if (value > myMaxValue) {
+            myMaxValue = value;
+            myMaxTimestamp = timestamp;
+            myMaxData = data;
+          }
+          break;
+        case LAST:
+          if (timestamp >= myLastTimestamp) {
+            myLastTimestamp = timestamp;
+            myLastData = data;
+          }
+          break;
+      }
+    }
+
+    /**
+     * @return the params of an "INSERT OR REPLACE" into the rollup table, following the column order of {@link #getTableColumns()}.
+     */
+    @NotNull
+    Object[] toParams() {
+      return new Object[]{mySessionId, myTier, myStart, myMinTimestamp, myMinData, myMaxTimestamp, myMaxData, myLastTimestamp, myLastData};
+    }
+
+    private long collectSamples(long startTime, long endTime, long lastTimestamp, @NotNull List<byte[]> samples) {
+      if (myMinData != null && myMaxData != null && myMaxTimestamp < myMinTimestamp) {
+        lastTimestamp = collectSample(myMaxTimestamp, myMaxData, startTime, endTime, lastTimestamp, samples);
+        lastTimestamp = collectSample(myMinTimestamp, myMinData, startTime, endTime, lastTimestamp, samples);
+      }
+      else {
+        lastTimestamp = collectSample(myMinTimestamp, myMinData, startTime, endTime, lastTimestamp, samples);
+        lastTimestamp = collectSample(myMaxTimestamp, myMaxData, startTime, endTime, lastTimestamp, samples);
+      }
+      return collectSample(myLastTimestamp, myLastData, startTime, endTime, lastTimestamp, samples);
+    }
+
+    private static long collectSample(long timestamp,
+                                      @Nullable byte[] data,
+                                      long startTime,
+                                      long endTime,
+                                      long lastTimestamp,
+                                      @NotNull List<byte[]> samples) {
+      // The same sample can be both the min and the max of its bucket.
+      if (data == null || timestamp <= startTime || timestamp > endTime || timestamp == lastTimestamp) {
+        return lastTimestamp;
+      }
+      samples.add(data);
+      return timestamp;
+    }
+  }
+}
@@ -48,12 +48,17 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
    */
   private final Map<Long, Set<Integer>> mySessionThreadIdsCache = Collections.synchronizedMap(new HashMap<>());
 
+  // CPU usage data holds cumulative times, so the last sample of each bucket is enough to get the exact average usage over the bucket.
+  private final CounterRollup myCpuDataRollup = new CounterRollup(CounterRollup.Mode.LAST);
+
   public enum CpuStatements {
     INSERT_THREAD_ACTIVITY,
     QUERY_ALL_DISTINCT_THREADS,
     QUERY_THREAD_ACTIVITIES,
     INSERT_CPU_DATA,
     QUERY_CPU_DATA,
+    INSERT_OR_REPLACE_CPU_DATA_ROLLUP,
+    QUERY_CPU_DATA_ROLLUP,
     QUERY_TRACE_INFO,
     INSERT_TRACE_INFO,
   }
@@ -66,6 +71,7 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
                   "Session INTEGER NOT NULL",
                   "Timestamp INTEGER NOT NULL",
                   "Data BLOB");
+      createTable("Cpu_DataRollups", CounterRollup.getTableColumns());
       createTable("Thread_Activities",
                   "Session INTEGER NOT NULL",
                   "ThreadId INTEGER NOT NULL",
@@ -95,6 +101,12 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
                       "INSERT OR REPLACE INTO Cpu_Data (Session, Timestamp, Data) values (?, ?, ?)");
       createStatement(CpuTable.CpuStatements.QUERY_CPU_DATA,
                       "SELECT Data from Cpu_Data WHERE Session = ? AND Timestamp > ? AND Timestamp <= ? ");
+      createStatement(CpuTable.CpuStatements.INSERT_OR_REPLACE_CPU_DATA_ROLLUP,
+                      "INSERT OR REPLACE INTO Cpu_DataRollups (Session, Tier, BucketStart, MinTimestamp, MinData, MaxTimestamp, MaxData, " +
+                      "LastTimestamp, LastData) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      createStatement(CpuTable.CpuStatements.QUERY_CPU_DATA_ROLLUP,
+                      "SELECT " + CounterRollup.SELECT_COLUMNS + " FROM Cpu_DataRollups " +
+                      "WHERE Session = ? AND Tier = ? AND BucketStart > ? AND BucketStart <= ? ORDER BY BucketStart ASC");
       createStatement(CpuTable.CpuStatements.QUERY_TRACE_INFO,
                       "SELECT TraceInfo from Cpu_Trace_Info WHERE " +
                       "Session = ? AND (StartTime < ? AND (EndTime >= ? OR EndTime = -1));");
@@ -126,19 +138,50 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   }
 
   public void insert(Common.Session session, CpuUsageData data) {
-    execute(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), data.toByteArray());
+    byte[] bytes = data.toByteArray();
+    execute(CpuStatements.INSERT_CPU_DATA, session.getSessionId(), data.getEndTimestamp(), bytes);
+    for (CounterRollup.Bucket bucket : myCpuDataRollup.add(session.getSessionId(), data.getEndTimestamp(), 0, bytes)) {
+      execute(CpuStatements.INSERT_OR_REPLACE_CPU_DATA_ROLLUP, bucket.toParams());
+    }
+  }
+
+  /**
+   * Persists the CPU usage rollup buckets still open for a session which has stopped being monitored, and releases them.
+   */
+  public void closeRollups(long sessionId) {
+    for (CounterRollup.Bucket bucket : myCpuDataRollup.close(sessionId)) {
+      execute(CpuStatements.INSERT_OR_REPLACE_CPU_DATA_ROLLUP, bucket.toParams());
+    }
   }
 
+  /**
+   * Returns the raw CPU usage data in range, or the coarsest rollup tier which still resolves the range when it is long enough.
+   */
   public List<CpuUsageData> getCpuDataByRequest(CpuDataRequest request) {
     List<CpuUsageData> cpuData = new ArrayList<>();
+    long sessionId = request.getSession().getSessionId();
+    long startTimestamp = request.getStartTimestamp();
+    long endTimestamp = request.getEndTimestamp();
+    int tier = CounterRollup.selectTier(startTimestamp, endTimestamp);
     try {
-      ResultSet results =
-        executeQuery(CpuStatements.QUERY_CPU_DATA, request.getSession().getSessionId(), request.getStartTimestamp(),
-                     request.getEndTimestamp());
-      while (results.next()) {
-        CpuUsageData.Builder data = CpuUsageData.newBuilder();
-        data.mergeFrom(results.getBytes(DATA_COLUMN));
-        cpuData.add(data.build());
+      if (tier == CounterRollup.RAW_TIER) {
+        ResultSet results = executeQuery(CpuStatements.QUERY_CPU_DATA, sessionId, startTimestamp, endTimestamp);
+        while (results.next()) {
+          CpuUsageData.Builder data = CpuUsageData.newBuilder();
+          data.mergeFrom(results.getBytes(DATA_COLUMN));
+          cpuData.add(data.build());
+        }
+      }
+      else {
+        List<CounterRollup.Bucket> buckets = new ArrayList<>();
+        ResultSet results = executeQuery(CpuStatements.QUERY_CPU_DATA_ROLLUP, sessionId, tier,
+                                         CounterRollup.getBucketQueryStart(tier, startTimestamp), endTimestamp);
+        while (results.next()) {
+          buckets.add(CounterRollup.readBucket(results));
+        }
+        for (byte[] bytes : myCpuDataRollup.getSamples(sessionId, tier, startTimestamp, endTimestamp, buckets)) {
+          cpuData.add(CpuUsageData.parseFrom(bytes));
+        }
       }
     }
     catch (InvalidProtocolBufferException | SQLException ex) {
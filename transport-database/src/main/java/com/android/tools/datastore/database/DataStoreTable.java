@@ -19,7 +19,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -34,6 +37,11 @@ import org.jetbrains.annotations.NotNull;
  * storing results in a database.
  */
 public abstract class DataStoreTable<T extends Enum> {
+  /**
+   * Default number of writes that can be queued by {@link #executeDeferred(Enum, Object...)} before they get flushed as a batch.
+   */
+  public static final int DEFAULT_MAX_PENDING_WRITES = 1024;
+
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
 
   private Connection myConnection;
@@ -42,6 +50,11 @@ public abstract class DataStoreTable<T extends Enum> {
   // Cache custom queries we have a limited number and we call the same query multiple times.
   private final ThreadLocal<Map<String, PreparedStatement>> myCustomQueryCache = new ThreadLocal<>();
 
+  // Writes queued by executeDeferred, in the order they were issued. Guarded by itself, which is also held while they are flushed.
+  private final ArrayDeque<PendingWrite<T>> myPendingWrites = new ArrayDeque<>();
+  // 0 when write-behind batching is disabled and executeDeferred executes right away.
+  private volatile int myMaxPendingWrites = 0;
+
   public interface DataStoreTableErrorCallback {
     void onDataStoreError(Throwable t);
   }
@@ -61,6 +74,89 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public abstract void prepareStatements();
 
+  /**
+   * Enables write-behind batching of the writes this table issues through {@link #executeDeferred(Enum, Object...)}. Writes are queued
+   * and flushed to the database in batches, either when the queue reaches {@code maxPendingWrites} entries (the writing thread then blocks
+   * until the batch is written, which bounds the queue) or before any other statement or query is executed on this table, so reads always
+   * observe every write issued before them.
+   */
+  public void enableBatchedWrites(int maxPendingWrites) {
+    assert maxPendingWrites > 0;
+    myMaxPendingWrites = maxPendingWrites;
+  }
+
+  /**
+   * Writes all queued writes to the database. Consecutive writes using the same statement are grouped into a single JDBC batch. If a batch
+   * fails, its writes are rolled back and executed again one at a time, so only the failing ones are lost and reported through
+   * {@link #onError(Throwable)}.
+   */
+  public void flushPendingWrites() {
+    synchronized (myPendingWrites) {
+      if (myPendingWrites.isEmpty()) {
+        return;
+      }
+      if (isClosed()) {
+        myPendingWrites.clear();
+        return;
+      }
+      List<PendingWrite<T>> batch = new ArrayList<>();
+      PendingWrite<T> write;
+      while ((write = myPendingWrites.poll()) != null) {
+        if (!batch.isEmpty() && batch.get(0).myStatement != write.myStatement) {
+          executePendingWrites(batch);
+          batch.clear();
+        }
+        batch.add(write);
+      }
+      executePendingWrites(batch);
+    }
+  }
+
+  private void executePendingWrites(@NotNull List<PendingWrite<T>> writes) {
+    PreparedStatement stmt = getStatementMap().get(writes.get(0).myStatement);
+    Savepoint savepoint = null;
+    try {
+      savepoint = myConnection.setSavepoint();
+      for (PendingWrite<T> write : writes) {
+        applyParams(stmt, write.myParams);
+        stmt.addBatch();
+      }
+      executeStatementBatch(stmt);
+      myConnection.releaseSavepoint(savepoint);
+      return;
+    }
+    catch (SQLException ex) {
+      try {
+        stmt.clearBatch();
+        if (savepoint != null) {
+          myConnection.rollback(savepoint);
+        }
+      }
+      catch (SQLException rollbackEx) {
+        // Part of the batch may have been written, retrying would write it twice.
+        onError(ex);
+        return;
+      }
+    }
+
+    for (PendingWrite<T> write : writes) {
+      try {
+        applyParams(stmt, write.myParams);
+        stmt.execute();
+      }
+      catch (SQLException ex) {
+        onError(ex);
+      }
+      finally {
+        try {
+          stmt.clearParameters();
+        }
+        catch (SQLException ignored) {
+        }
+      }
+    }
+  }
+
   public static void addDataStoreErrorCallback(@NotNull DataStoreTableErrorCallback callback) {
     ERROR_CALLBACKS.add(callback);
   }
@@ -149,6 +245,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return;
     }
+    flushPendingWrites();
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       batchParams.forEach((object) -> {
@@ -159,22 +256,49 @@ public abstract class DataStoreTable<T extends Enum> {
           onError(ex);
         }
       });
-      int[] results = stmt.executeBatch();
-      for(int i = 0; i < results.length; i++) {
-        if (results[i] == Statement.EXECUTE_FAILED) {
-          throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
-        }
-      }
+      executeStatementBatch(stmt);
     }
     catch (SQLException ex) {
       onError(ex);
     }
   }
 
+  private static void executeStatementBatch(@NotNull PreparedStatement stmt) throws SQLException {
+    int[] results = stmt.executeBatch();
+    // Clear parameters so cached statements don't keep potentially large objects in memory.
+    stmt.clearParameters();
+    for(int i = 0; i < results.length; i++) {
+      if (results[i] == Statement.EXECUTE_FAILED) {
+        throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #execute(Enum, Object...)} if write-behind batching is disabled. Otherwise queues the write to be executed as part of a
+   * batch, see {@link #enableBatchedWrites(int)}. This should only be used for writes no caller needs to observe before the next query.
+   */
+  protected void executeDeferred(@NotNull T statement, Object... params) {
+    if (myMaxPendingWrites == 0) {
+      execute(statement, params);
+      return;
+    }
+    if (isClosed()) {
+      return;
+    }
+    synchronized (myPendingWrites) {
+      myPendingWrites.add(new PendingWrite<>(statement, params));
+      if (myPendingWrites.size() >= myMaxPendingWrites) {
+        flushPendingWrites();
+      }
+    }
+  }
+
   protected void execute(@NotNull T statement, Object... params) {
     if (isClosed()) {
       return;
     }
+    flushPendingWrites();
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
       applyParams(stmt, params);
@@ -192,6 +316,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return new EmptyResultSet();
     }
+    flushPendingWrites();
     PreparedStatement stmt = getStatementMap().get(statement);
     applyParams(stmt, params);
     return stmt.executeQuery();
@@ -201,6 +326,7 @@ public abstract class DataStoreTable<T extends Enum> {
     if (isClosed()) {
       return new EmptyResultSet();
     }
+    flushPendingWrites();
     if (myCustomQueryCache.get() == null) {
       myCustomQueryCache.set(new HashMap<>());
     }
@@ -241,4 +367,14 @@ public abstract class DataStoreTable<T extends Enum> {
       }
     }
   }
+
+  private static final class PendingWrite<T> {
+    @NotNull private final T myStatement;
+    private final Object[] myParams;
+
+    PendingWrite(@NotNull T statement, Object[] params) {
+      myStatement = statement;
+      myParams = params;
+    }
+  }
 }
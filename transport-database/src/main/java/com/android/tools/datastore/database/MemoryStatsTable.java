@@ -17,6 +17,7 @@ package com.android.tools.datastore.database;
 
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.INSERT_OR_REPLACE_ALLOCATIONS_INFO;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.INSERT_OR_REPLACE_HEAP_INFO;
+import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.INSERT_OR_REPLACE_MEMORY_ROLLUP;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.INSERT_SAMPLE;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_ALLOCATION_INFO_BY_ID;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_ALLOCATION_INFO_BY_TIME;
@@ -24,6 +25,7 @@ import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatem
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_GC_STATS;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_HEAP_INFO_BY_TIME;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_MEMORY;
+import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.QUERY_MEMORY_ROLLUP;
 import static com.android.tools.datastore.database.MemoryStatsTable.MemoryStatements.values;
 
 import com.android.tools.idea.protobuf.GeneratedMessageV3;
@@ -51,6 +53,12 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     QUERY_MEMORY(
       String.format(Locale.US, "SELECT Data FROM Memory_Samples WHERE Session = ? AND Type = %d AND TimeStamp > ? AND TimeStamp <= ?",
                     MemorySamplesType.MEMORY.ordinal())),
+    INSERT_OR_REPLACE_MEMORY_ROLLUP(
+      "INSERT OR REPLACE INTO Memory_SampleRollups (Session, Tier, BucketStart, MinTimestamp, MinData, MaxTimestamp, MaxData, " +
+      "LastTimestamp, LastData) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+    QUERY_MEMORY_ROLLUP(
+      "SELECT " + CounterRollup.SELECT_COLUMNS + " FROM Memory_SampleRollups " +
+      "WHERE Session = ? AND Tier = ? AND BucketStart > ? AND BucketStart <= ? ORDER BY BucketStart ASC"),
     QUERY_ALLOC_STATS(
       String.format(Locale.US, "SELECT Data FROM Memory_Samples WHERE Session = ? AND Type = %d AND TimeStamp > ? AND TimeStamp <= ?",
                     MemorySamplesType.ALLOC_STATS.ordinal())),
@@ -84,6 +92,9 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     }
   }
 
+  // Min/max rollups of the memory samples, keyed on the total memory, used to answer zoomed-out queries.
+  private final CounterRollup myMemoryRollup = new CounterRollup(CounterRollup.Mode.MIN_MAX);
+
   private enum MemorySamplesType {
     MEMORY,
     ALLOC_STATS,
@@ -96,6 +107,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     try {
       createTable("Memory_Samples", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Type INTEGER",
                   "Data BLOB", "PRIMARY KEY(Session, Timestamp, Type)");
+      createTable("Memory_SampleRollups", CounterRollup.getTableColumns());
       createTable("Memory_AllocationInfo", "Session INTEGER NOT NULL", "StartTime INTEGER",
                   "EndTime INTEGER", "InfoData BLOB", "LegacyEventsData BLOB", "PRIMARY KEY(Session, StartTime)");
       createTable("Memory_HeapDump", "Session INTEGER NOT NULL", "StartTime INTEGER",
@@ -123,8 +135,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     long sessionId = request.getSession().getSessionId();
     long startTime = request.getStartTime();
     long endTime = request.getEndTime();
-    List<MemoryData.MemorySample> memorySamples =
-      getResultsInfo(QUERY_MEMORY, sessionId, startTime, endTime, MemoryData.MemorySample.getDefaultInstance());
+    List<MemoryData.MemorySample> memorySamples = getMemorySamples(sessionId, startTime, endTime);
     List<MemoryData.AllocStatsSample> allocStatsSamples =
       getResultsInfo(QUERY_ALLOC_STATS, sessionId, startTime, endTime, MemoryData.AllocStatsSample.getDefaultInstance());
     List<MemoryData.GcStatsSample> gcStatsSamples =
@@ -145,8 +156,12 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
 
   public void insertMemory(@NotNull Common.Session session, @NotNull List<MemoryData.MemorySample> samples) {
     for (MemoryData.MemorySample sample : samples) {
-      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
-              sample.toByteArray());
+      byte[] data = sample.toByteArray();
+      execute(INSERT_SAMPLE, session.getSessionId(), sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(), data);
+      for (CounterRollup.Bucket bucket : myMemoryRollup.add(session.getSessionId(), sample.getTimestamp(),
+                                                            sample.getMemoryUsage().getTotalMem(), data)) {
+        execute(INSERT_OR_REPLACE_MEMORY_ROLLUP, bucket.toParams());
+      }
     }
   }
 
@@ -205,6 +220,43 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     return null;
   }
 
+  /**
+   * Persists the memory rollup buckets still open for a session which has stopped being monitored, and releases them.
+   */
+  public void closeRollups(long sessionId) {
+    for (CounterRollup.Bucket bucket : myMemoryRollup.close(sessionId)) {
+      execute(INSERT_OR_REPLACE_MEMORY_ROLLUP, bucket.toParams());
+    }
+  }
+
+  /**
+   * Returns the raw memory samples in range, or the coarsest rollup tier which still resolves the range when it is long enough.
+   */
+  @NotNull
+  private List<MemoryData.MemorySample> getMemorySamples(long sessionId, long startTime, long endTime) {
+    int tier = CounterRollup.selectTier(startTime, endTime);
+    if (tier == CounterRollup.RAW_TIER) {
+      return getResultsInfo(QUERY_MEMORY, sessionId, startTime, endTime, MemoryData.MemorySample.getDefaultInstance());
+    }
+
+    List<MemoryData.MemorySample> samples = new ArrayList<>();
+    try {
+      List<CounterRollup.Bucket> buckets = new ArrayList<>();
+      ResultSet resultSet =
+        executeQuery(QUERY_MEMORY_ROLLUP, sessionId, tier, CounterRollup.getBucketQueryStart(tier, startTime), endTime);
+      while (resultSet.next()) {
+        buckets.add(CounterRollup.readBucket(resultSet));
+      }
+      for (byte[] data : myMemoryRollup.getSamples(sessionId, tier, startTime, endTime, buckets)) {
+        samples.add(MemoryData.MemorySample.parseFrom(data));
+      }
+    }
+    catch (InvalidProtocolBufferException | SQLException ex) {
+      onError(ex);
+    }
+    return samples;
+  }
+
   /**
    * A helper method for querying samples for MemorySample, AllocStatsSample, GcStatsSample, HeapDumpInfo and AllocationsInfo
    */
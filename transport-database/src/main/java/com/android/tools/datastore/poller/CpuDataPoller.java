@@ -57,7 +57,7 @@ public class CpuDataPoller extends PollRunner {
                        @NotNull CpuTable table,
                        @NotNull CpuServiceGrpc.CpuServiceBlockingStub pollingService,
                        @NotNull LogService logService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MIN_POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myCpuTable = table;
     myPollingService = pollingService;
     mySession = session;
@@ -71,6 +71,7 @@ public class CpuDataPoller extends PollRunner {
     CpuProfiler.CpuDataRequest.Builder request = CpuProfiler.CpuDataRequest
       .newBuilder().setSession(mySession).setStartTimestamp(getDataStartNs).setEndTimestamp(Long.MAX_VALUE);
     CpuProfiler.CpuDataResponse response = myPollingService.getData(request.build());
+    recordPolledData(response.getDataCount());
     for (Cpu.CpuUsageData data : response.getDataList()) {
       getDataStartNs = Math.max(getDataStartNs, data.getEndTimestamp());
       myCpuTable.insert(mySession, data);
@@ -99,12 +100,14 @@ public class CpuDataPoller extends PollRunner {
       }
 
       myCpuTable.insertActivities(mySession, thread.getTid(), thread.getName(), activities);
+      recordPolledData(count);
     }
 
     // Poll trace info.
     CpuProfiler.GetTraceInfoRequest.Builder traceInfoRequest = CpuProfiler.GetTraceInfoRequest
       .newBuilder().setSession(mySession).setFromTimestamp(myTraceInfoRequestStartTimestampNs).setToTimestamp(Long.MAX_VALUE);
     CpuProfiler.GetTraceInfoResponse traceInfoResponse = myPollingService.getTraceInfo(traceInfoRequest.build());
+    recordPolledData(traceInfoResponse.getTraceInfoCount());
     for (Cpu.CpuTraceInfo traceInfo : traceInfoResponse.getTraceInfoList()) {
       myCpuTable.insertTraceInfo(mySession, traceInfo);
       myTraceInfoRequestStartTimestampNs =
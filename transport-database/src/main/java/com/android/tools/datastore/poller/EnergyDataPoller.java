@@ -71,7 +71,7 @@ public final class EnergyDataPoller extends PollRunner {
                           @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
                           @NotNull EnergyServiceGrpc.EnergyServiceBlockingStub energyService,
                           @NotNull LogService logService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MIN_POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myBatteryModel = batteryModel;
     myEnergyTable = eventTable;
     myTransportService = transportService;
@@ -118,7 +118,9 @@ public final class EnergyDataPoller extends PollRunner {
   }
 
   private void addLatestEvents(@NotNull EnergyProfiler.EnergyRequest request) {
-    for (Common.Event event : myEnergyService.getEvents(request).getEventsList()) {
+    EnergyProfiler.EnergyEventsResponse response = myEnergyService.getEvents(request);
+    recordPolledData(response.getEventsCount());
+    for (Common.Event event : response.getEventsList()) {
       // Location-related events.
       if (event.getEnergyEvent().hasLocationUpdateRequested()) {
         myBatteryModel.handleEvent(
@@ -199,6 +201,7 @@ public final class EnergyDataPoller extends PollRunner {
         CpuProfiler.CpuDataRequest.newBuilder().setSession(request.getSession()).setStartTimestamp(request.getStartTimestamp())
           .setEndTimestamp(request.getEndTimestamp()).build();
       CpuProfiler.CpuDataResponse cpuDataResponse = myCpuService.getData(cpuDataRequest);
+      recordPolledData(cpuDataResponse.getDataCount());
       Cpu.CpuUsageData prevUsageData = myLastData;
 
       for (Cpu.CpuUsageData currUsageData : cpuDataResponse.getDataList()) {
@@ -38,7 +38,7 @@ public class MemoryDataPoller extends PollRunner {
                           @NotNull MemoryStatsTable statsTable,
                           @NotNull MemoryServiceGrpc.MemoryServiceBlockingStub pollingService,
                           @NotNull Consumer<Runnable> fetchExecutor) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MIN_POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     mySession = session;
     myMemoryStatsTable = statsTable;
     myPollingService = pollingService;
@@ -69,6 +69,8 @@ public class MemoryDataPoller extends PollRunner {
     MemoryRequest.Builder dataRequestBuilder =
       MemoryRequest.newBuilder().setSession(mySession).setStartTime(myDataRequestStartTimestampNs).setEndTime(Long.MAX_VALUE);
     MemoryData response = myPollingService.getData(dataRequestBuilder.build());
+    recordPolledData(response.getMemSamplesCount() + response.getAllocStatsSamplesCount() + response.getGcStatsSamplesCount() +
+                     response.getAllocationsInfoCount() + response.getHeapDumpInfosCount());
 
     // TODO: A UI request may come in while mid way through the poll, this can cause us to have partial data
     // returned to the UI. This can be solved using transactions in the DB when this class is moved fully over.
@@ -15,29 +15,79 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.diagnostic.Logger;
 import io.grpc.StatusRuntimeException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A {@link RunnableFuture} which, while running, triggers a callback at a specified period
  * (which can be used to poll a target service at some frequency).
+ * <p>
+ * Running the future only schedules the first poll. A single shared scheduler times the polls of every runner, and hands each poll to a
+ * shared pool whose threads are only held while polling, so idle pollers don't each hold on to a blocking thread, and a poll blocked on an
+ * unresponsive stream doesn't delay the polls of other runners. Pollers created with a period range adapt their period to the amount of data
+ * reported through {@link #recordPolledData(int)}: it doubles up to the maximum while polls come back empty, and halves down to the
+ * minimum while polls come back with at least {@link #HOT_POLL_DATA_COUNT} records. Other polls reset it to the default period.
  */
 public abstract class PollRunner implements RunnableFuture<Void> {
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
+  public static final long MIN_POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(100);
+  public static final long MAX_POLLING_DELAY_NS = TimeUnit.SECONDS.toNanos(2);
 
-  private long myPollPeriodNs;
+  /**
+   * Number of records returned by a poll for the stream to be considered hot.
+   */
+  @VisibleForTesting
+  static final int HOT_POLL_DATA_COUNT = 64;
 
-  private boolean myIsRunning = false;
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+    new ThreadFactoryBuilder().setNameFormat("DataStorePollScheduler").setDaemon(true).build());
+  private static final ExecutorService POLL_EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setNameFormat("DataStorePoller-%d").setDaemon(true).build());
+
+  private final long myDefaultPollPeriodNs;
+  private final long myMinPollPeriodNs;
+  private final long myMaxPollPeriodNs;
+
+  private volatile long myPollPeriodNs;
+
+  // Records reported by the current poll, or -1 if the poller doesn't report any.
+  private int myPolledDataCount = -1;
+
+  private volatile boolean myIsRunning = false;
 
   private CountDownLatch myRunning = new CountDownLatch(1);
 
   private CountDownLatch myIsDone = new CountDownLatch(1);
 
+  // Guards the scheduling state below against a concurrent cancel.
+  private final Object myScheduleLock = new Object();
+  @Nullable private ScheduledFuture<?> myScheduledPoll;
+  private boolean myIsPolling = false;
 
   public PollRunner(long pollPeriodNs) {
+    this(pollPeriodNs, pollPeriodNs, pollPeriodNs);
+  }
+
+  /**
+   * Creates a runner whose period adapts to the data rate of the stream, between the min and max period.
+   */
+  public PollRunner(long pollPeriodNs, long minPollPeriodNs, long maxPollPeriodNs) {
+    assert minPollPeriodNs <= pollPeriodNs && pollPeriodNs <= maxPollPeriodNs;
+    myDefaultPollPeriodNs = pollPeriodNs;
+    myMinPollPeriodNs = minPollPeriodNs;
+    myMaxPollPeriodNs = maxPollPeriodNs;
     myPollPeriodNs = pollPeriodNs;
   }
 
@@ -53,32 +103,115 @@ public abstract class PollRunner implements RunnableFuture<Void> {
 
   @Override
   public void run() {
-    try {
-      myIsRunning = true;
-      while (myRunning.getCount() > 0) {
-        long startTimeNs = System.nanoTime();
-        poll();
-        long sleepTime = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
-        myRunning.await(sleepTime, TimeUnit.NANOSECONDS);
+    myIsRunning = true;
+    synchronized (myScheduleLock) {
+      if (isCancelled()) {
+        finish();
+        return;
       }
+      schedulePoll(0);
     }
-    catch (InterruptedException | StatusRuntimeException e) {
-      Thread.currentThread().interrupt();
+  }
+
+  public abstract void poll();
+
+  /**
+   * Called by {@link #poll()} implementations with the number of records the poll received. Polls of adaptive runners which don't call
+   * this leave the period unchanged.
+   */
+  protected final void recordPolledData(int count) {
+    myPolledDataCount = Math.max(myPolledDataCount, 0) + count;
+  }
+
+  /**
+   * @return the delay until the next poll.
+   */
+  @VisibleForTesting
+  long getPollPeriodNs() {
+    return myPollPeriodNs;
+  }
+
+  private void tick() {
+    synchronized (myScheduleLock) {
+      if (isCancelled()) {
+        finish();
+        return;
+      }
+      myIsPolling = true;
+    }
+
+    long startTimeNs = System.nanoTime();
+    try {
+      myPolledDataCount = -1;
+      poll();
+      adaptPollPeriod(myPolledDataCount);
+    }
+    catch (StatusRuntimeException e) {
+      cancel(true);
+    }
+    catch (RuntimeException e) {
+      // Nothing reads the result of the scheduled poll, so the exception would be lost.
+      getLogger().warn("Stopping " + getClass().getName() + " after an unexpected exception", e);
+      cancel(true);
     }
     finally {
-      myIsRunning = false;
-      myIsDone.countDown();
+      synchronized (myScheduleLock) {
+        myIsPolling = false;
+        if (isCancelled()) {
+          finish();
+        }
+        else {
+          schedulePoll(Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L));
+        }
+      }
     }
   }
 
-  public abstract void poll();
+  private void schedulePoll(long delayNs) {
+    assert Thread.holdsLock(myScheduleLock);
+    myScheduledPoll = SCHEDULER.schedule(() -> POLL_EXECUTOR.execute(this::tick), delayNs, TimeUnit.NANOSECONDS);
+  }
+
+  @VisibleForTesting
+  void adaptPollPeriod(int polledDataCount) {
+    if (polledDataCount < 0 || myMinPollPeriodNs == myMaxPollPeriodNs) {
+      return;
+    }
+    if (polledDataCount == 0) {
+      myPollPeriodNs = Math.min(myPollPeriodNs * 2, myMaxPollPeriodNs);
+    }
+    else if (polledDataCount >= HOT_POLL_DATA_COUNT) {
+      myPollPeriodNs = Math.max(myPollPeriodNs / 2, myMinPollPeriodNs);
+    }
+    else {
+      // Data is flowing at a regular rate.
+      myPollPeriodNs = myDefaultPollPeriodNs;
+    }
+  }
+
+  private void finish() {
+    myIsRunning = false;
+    myIsDone.countDown();
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(PollRunner.class);
+  }
 
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
     myRunning.countDown();
+    synchronized (myScheduleLock) {
+      // A poll in progress finishes the runner once it returns.
+      if (!myIsPolling && myScheduledPoll != null) {
+        myScheduledPoll.cancel(false);
+        myScheduledPoll = null;
+        finish();
+      }
+    }
     return true;
   }
-
   @Override
   public boolean isCancelled() {
     return myRunning.getCount() == 0;
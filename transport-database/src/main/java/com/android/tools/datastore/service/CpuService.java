@@ -156,6 +156,7 @@ public class CpuService extends CpuServiceGrpc.CpuServiceImplBase implements Ser
     if (runner != null) {
       runner.stop();
     }
+    myCpuTable.closeRollups(sessionId);
     // Our polling service can get shutdown if we unplug the device.
     // This should be the only function that gets called as StudioProfilers attempts
     // to stop monitoring the last app it was monitoring.
@@ -88,6 +88,7 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
     myService = dataStoreService;
     myStatsTable = new MemoryStatsTable();
     myAllocationsTable = new MemoryLiveAllocationTable(myLogService);
+    dataStoreService.enableBatchedWrites(myAllocationsTable);
   }
 
   @Override
@@ -123,6 +124,7 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
     if (runner != null) {
       runner.stop();
     }
+    myStatsTable.closeRollups(sessionId);
     // Our polling service can get shutdown if we unplug the device.
     // This should be the only function that gets called as StudioProfilers attempts
     // to stop monitoring the last app it was monitoring.
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class CounterRollupTest {
+
+  @Test
+  fun selectTierPicksCoarsestTierThatResolvesRange() {
+    val start = TimeUnit.SECONDS.toNanos(100)
+    assertThat(CounterRollup.selectTier(start, start + TimeUnit.MINUTES.toNanos(1))).isEqualTo(CounterRollup.RAW_TIER)
+    assertThat(CounterRollup.selectTier(start, start + TimeUnit.HOURS.toNanos(1))).isEqualTo(0)
+    assertThat(CounterRollup.selectTier(start, start + TimeUnit.HOURS.toNanos(10))).isEqualTo(1)
+    assertThat(CounterRollup.selectTier(start, start + TimeUnit.HOURS.toNanos(48))).isEqualTo(2)
+    // Unbounded queries always get the raw data.
+    assertThat(CounterRollup.selectTier(0, Long.MAX_VALUE)).isEqualTo(CounterRollup.RAW_TIER)
+    assertThat(CounterRollup.selectTier(start, Long.MAX_VALUE)).isEqualTo(CounterRollup.RAW_TIER)
+  }
+
+  @Test
+  fun minMaxBucketsKeepExtremeSamples() {
+    val rollup = CounterRollup(CounterRollup.Mode.MIN_MAX)
+    val halfSecond = TimeUnit.MILLISECONDS.toNanos(500)
+    // Two samples per second, with a spike in the second bucket.
+    val closed = mutableListOf<CounterRollup.Bucket>()
+    val values = longArrayOf(5, 6, 1, 100, 7, 8)
+    values.forEachIndexed { i, value -> closed.addAll(rollup.add(1, i * halfSecond, value, byteArrayOf(value.toByte()))) }
+
+    // 1s buckets [0, 1s) and [1s, 2s) got closed, [2s, 3s) is still open.
+    val closedFirstTier = closed.filter { it.toParams()[1] == 0 }
+    assertThat(closedFirstTier).hasSize(2)
+    val samples = rollup.getSamples(1, 0, -1, Long.MAX_VALUE, closedFirstTier)
+    assertThat(samples.map { it[0].toLong() }).containsExactly(5L, 6L, 1L, 100L, 7L, 8L).inOrder()
+
+    // Once every sample of a bucket is below the spike, only the extremes remain.
+    closed.clear()
+    rollup.add(1, 5 * halfSecond, 3, byteArrayOf(3))
+    closed.addAll(rollup.add(1, 10 * halfSecond, 9, byteArrayOf(9)))
+    val secondTier = rollup.getSamples(1, 1, -1, Long.MAX_VALUE, emptyList())
+    assertThat(secondTier.map { it[0].toLong() }).containsExactly(1L, 100L).inOrder()
+  }
+
+  @Test
+  fun lastBucketsKeepLastSample() {
+    val rollup = CounterRollup(CounterRollup.Mode.LAST)
+    val quarterSecond = TimeUnit.MILLISECONDS.toNanos(250)
+    val closed = mutableListOf<CounterRollup.Bucket>()
+    for (i in 0 until 10) {
+      closed.addAll(rollup.add(1, i * quarterSecond, 0, byteArrayOf(i.toByte())))
+    }
+    val firstTier = closed.filter { it.toParams()[1] == 0 }
+    val samples = rollup.getSamples(1, 0, -1, Long.MAX_VALUE, firstTier)
+    // Buckets [0, 1s) and [1s, 2s) are closed, [2s, 3s) is open with samples 8 and 9.
+    assertThat(samples.map { it[0].toInt() }).containsExactly(3, 7, 9).inOrder()
+    // Samples are filtered to the (start, end] range.
+    assertThat(rollup.getSamples(1, 0, TimeUnit.SECONDS.toNanos(1), Long.MAX_VALUE, firstTier).map { it[0].toInt() })
+      .containsExactly(7, 9).inOrder()
+  }
+
+  @Test
+  fun closeReleasesOpenBuckets() {
+    val rollup = CounterRollup(CounterRollup.Mode.LAST)
+    rollup.add(1, 0, 0, byteArrayOf(1))
+    rollup.add(2, 0, 0, byteArrayOf(2))
+
+    val closed = rollup.close(1)
+    assertThat(closed.map { it.toParams()[1] }).containsExactly(0, 1, 2).inOrder()
+    assertThat(rollup.getSamples(1, 0, -1, Long.MAX_VALUE, emptyList())).isEmpty()
+    assertThat(rollup.close(1)).isEmpty()
+    // The other sessions keep their open buckets.
+    assertThat(rollup.getSamples(2, 0, -1, Long.MAX_VALUE, emptyList()).map { it[0].toInt() }).containsExactly(2)
+  }
+}
@@ -25,6 +25,8 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import org.jetbrains.annotations.NotNull;
 import org.junit.After;
@@ -105,6 +107,66 @@ public class DatabaseTableTest {
     }
   }
 
+  @Test
+  public void testDeferredWritesAreFlushedBeforeQuery() throws Exception {
+    myTable.enableBatchedWrites(DataStoreTable.DEFAULT_MAX_PENDING_WRITES);
+    for (int i = 0; i < TEST_DATA_COUNT; i++) {
+      myTable.insertDataDeferred(i);
+    }
+    // Nothing has been written yet, but querying through the table should flush the pending writes first.
+    assertThat(countRows()).isEqualTo(0);
+    ResultSet rs = myTable.readDataRaw();
+    int count = 0;
+    while (rs.next()) {
+      assertThat(rs.getInt(1)).isEqualTo(count++);
+    }
+    assertThat(count).isEqualTo(TEST_DATA_COUNT);
+  }
+
+  @Test
+  public void testDeferredWritesAreFlushedWhenQueueIsFull() throws Exception {
+    myTable.enableBatchedWrites(4);
+    for (int i = 0; i < 10; i++) {
+      myTable.insertDataDeferred(i);
+    }
+    assertThat(countRows()).isEqualTo(8);
+    myTable.flushPendingWrites();
+    assertThat(countRows()).isEqualTo(10);
+  }
+
+  @Test
+  public void testFailedDeferredWritesDoNotDropTheOthers() throws Exception {
+    List<Throwable> errors = new ArrayList<>();
+    DataStoreTable.DataStoreTableErrorCallback callback = errors::add;
+    DataStoreTable.addDataStoreErrorCallback(callback);
+    try {
+      myTable.enableBatchedWrites(DataStoreTable.DEFAULT_MAX_PENDING_WRITES);
+      // Negative values violate the constraint of the column.
+      myTable.insertDataDeferred(1, -1, 2);
+      myTable.flushPendingWrites();
+      assertThat(countRows()).isEqualTo(2);
+      assertThat(errors).hasSize(1);
+    }
+    finally {
+      DataStoreTable.removeDataStoreErrorCallback(callback);
+    }
+  }
+
+  @Test
+  public void testDeferredWritesExecuteImmediatelyWhenBatchingIsDisabled() throws Exception {
+    myTable.insertDataDeferred(1, 2, 3);
+    assertThat(countRows()).isEqualTo(3);
+  }
+
+  /**
+   * Counts the rows in the test table without going through {@link ThreadTestTable}, so pending writes are not flushed.
+   */
+  private int countRows() throws SQLException {
+    ResultSet rs = myDatabase.getConnection().createStatement().executeQuery("SELECT COUNT(*) FROM Thread_Table");
+    rs.next();
+    return rs.getInt(1);
+  }
+
   /**
    * Runnable class that handles querying the database as fast as possible.
    */
@@ -159,7 +221,7 @@ public class DatabaseTableTest {
     public void initialize(@NotNull Connection connection) {
       super.initialize(connection);
       try {
-        createTable("Thread_Table", "DataColumn INTEGER");
+        createTable("Thread_Table", "DataColumn INTEGER CHECK (DataColumn >= 0)");
       }
       catch (SQLException ex) {
         // Failed to create table.
@@ -183,6 +245,12 @@ public class DatabaseTableTest {
       }
     }
 
+    public void insertDataDeferred(int... someData) {
+      for (int i = 0; i < someData.length; i++) {
+        executeDeferred(ThreadTableStatement.INSERT_DATA, someData[i]);
+      }
+    }
+
     public ResultSet readDataRaw() throws SQLException {
       return executeQuery(ThreadTableStatement.READ_DATA);
     }
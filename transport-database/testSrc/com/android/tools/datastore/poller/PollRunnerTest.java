@@ -15,8 +15,12 @@
  */
 package com.android.tools.datastore.poller;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 
@@ -41,6 +45,126 @@ public class PollRunnerTest {
     assertEquals(runner.get(1, TimeUnit.SECONDS), null); // For code completion
   }
 
+  @Test
+  public void testRunDoesNotBlockCallingThread() throws Exception {
+    CountDownLatch polled = new CountDownLatch(3);
+    PollRunner runner = new PollRunner(TEST_PERIOD_NS) {
+      @Override
+      public void poll() {
+        polled.countDown();
+      }
+    };
+    runner.run();
+    assertThat(polled.await(10, TimeUnit.SECONDS)).isTrue();
+    runner.stop();
+    assertThat(runner.isCancelled()).isTrue();
+    assertThat(runner.isDone()).isTrue();
+  }
+
+  @Test
+  public void testBlockedPollDoesNotDelayOtherRunners() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PollRunner blockedRunner = new PollRunner(TEST_PERIOD_NS) {
+      @Override
+      public void poll() {
+        blocked.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    // More runners than processors, so that they can't all have a thread each in a pool sized by processors.
+    int runnerCount = Runtime.getRuntime().availableProcessors() + 1;
+    CountDownLatch polled = new CountDownLatch(runnerCount);
+    List<PollRunner> runners = new ArrayList<>();
+    for (int i = 0; i < runnerCount; i++) {
+      runners.add(new PollRunner(TEST_PERIOD_NS) {
+        private boolean myHasPolled;
+
+        @Override
+        public void poll() {
+          if (!myHasPolled) {
+            myHasPolled = true;
+            polled.countDown();
+          }
+        }
+      });
+    }
+
+    blockedRunner.run();
+    assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+    runners.forEach(PollRunner::run);
+    assertThat(polled.await(10, TimeUnit.SECONDS)).isTrue();
+
+    runners.forEach(PollRunner::stop);
+    release.countDown();
+    blockedRunner.stop();
+    assertThat(blockedRunner.isDone()).isTrue();
+  }
+
+  @Test
+  public void testUnexpectedExceptionStopsRunner() throws Exception {
+    CountDownLatch polled = new CountDownLatch(1);
+    PollRunner runner = new PollRunner(TEST_PERIOD_NS) {
+      @Override
+      public void poll() {
+        polled.countDown();
+        throw new IllegalStateException("Poll failure");
+      }
+    };
+    runner.run();
+    assertThat(polled.await(10, TimeUnit.SECONDS)).isTrue();
+    runner.get(10, TimeUnit.SECONDS);
+    assertThat(runner.isCancelled()).isTrue();
+    assertThat(runner.isDone()).isTrue();
+  }
+
+  @Test
+  public void testAdaptivePollPeriod() {
+    PollRunner runner = new PollRunner(PollRunner.POLLING_DELAY_NS, PollRunner.MIN_POLLING_DELAY_NS, PollRunner.MAX_POLLING_DELAY_NS) {
+      @Override
+      public void poll() {
+      }
+    };
+    // Idle polls back off up to the max period.
+    runner.adaptPollPeriod(0);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(PollRunner.POLLING_DELAY_NS * 2);
+    for (int i = 0; i < 10; i++) {
+      runner.adaptPollPeriod(0);
+    }
+    assertThat(runner.getPollPeriodNs()).isEqualTo(PollRunner.MAX_POLLING_DELAY_NS);
+
+    // Regular data goes back to the default period.
+    runner.adaptPollPeriod(1);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(PollRunner.POLLING_DELAY_NS);
+
+    // Hot streams are polled more often, down to the min period.
+    for (int i = 0; i < 10; i++) {
+      runner.adaptPollPeriod(PollRunner.HOT_POLL_DATA_COUNT);
+    }
+    assertThat(runner.getPollPeriodNs()).isEqualTo(PollRunner.MIN_POLLING_DELAY_NS);
+
+    // Polls which don't report their data leave the period alone.
+    runner.adaptPollPeriod(-1);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(PollRunner.MIN_POLLING_DELAY_NS);
+  }
+
+  @Test
+  public void testFixedPollPeriod() {
+    PollRunner runner = new PollRunner(TEST_PERIOD_NS) {
+      @Override
+      public void poll() {
+      }
+    };
+    runner.adaptPollPeriod(0);
+    runner.adaptPollPeriod(PollRunner.HOT_POLL_DATA_COUNT);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(TEST_PERIOD_NS);
+  }
+
   private static class PollRunnerMinimalImpl extends PollRunner {
     private long myLastCallbackTime = 0;
     private long myTickCallCount = 0;